@@ -5,18 +5,35 @@ import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.Objects;
+import java.util.regex.Pattern;
 
 /**
  * The Expense class represents an expense item with attributes for date, price, category, and
  * description. It is designed to encapsulate expense information and provides methods for
  * validation and manipulation.
+ *
+ * <p>Besides the date string, which is what is stored and shown, an expense keeps its date as an
+ * epoch day, so comparing dates is a comparison of two numbers instead of parsing the string. In
+ * the same way, the price is kept as a whole number of minor units (øre) next to the amount in
+ * kroner, so totals can be summed exactly. A price is rounded to the nearest minor unit.
+ *
+ * <p>An expense has an id that tells it apart from the other expenses of its user, even from an
+ * identical one. The id is 0 until the expense is added to an {@link ExpenseHandlerImpl} or read
+ * from a store, and it is not part of the equality of expenses.
  */
 public class Expense {
   @Expose private String description;
   @Expose private String category;
   @Expose private String date;
   @Expose private double price;
+  @Expose private long id;
+  private transient int epochDay = UNKNOWN_EPOCH_DAY;
+  private transient long minorUnits = UNKNOWN_MINOR_UNITS;
   private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+  private static final Pattern CATEGORY_PATTERN = Pattern.compile("^[a-zA-Z]+$");
+  private static final int UNKNOWN_EPOCH_DAY = Integer.MIN_VALUE;
+  private static final long UNKNOWN_MINOR_UNITS = Long.MIN_VALUE;
+  private static final long MAX_MINOR_UNITS = (1L << 53) - 1;
 
   /** Constructs an empty Expense object. */
   public Expense() {}
@@ -59,6 +76,33 @@ public class Expense {
     setDescription(description);
   }
 
+  /**
+   * Retrieves the id of the expense.
+   *
+   * @return The id, or 0 if the expense has not been given one yet.
+   */
+  public long getId() {
+    return id;
+  }
+
+  /**
+   * Gives the expense its id. An id is only given once, so the same id may be set again but not
+   * another one.
+   *
+   * @param id The id, which must be positive.
+   * @throws IllegalArgumentException If the id is not positive.
+   * @throws IllegalStateException If the expense already has another id.
+   */
+  public void setId(long id) {
+    if (id <= 0) {
+      throw new IllegalArgumentException("Id must be positive.");
+    }
+    if (this.id != 0 && this.id != id) {
+      throw new IllegalStateException("The expense already has the id " + this.id + ".");
+    }
+    this.id = id;
+  }
+
   /**
    * Retrieves the date of the expense.
    *
@@ -68,6 +112,26 @@ public class Expense {
     return date;
   }
 
+  /**
+   * Retrieves the date of the expense as the number of days since 01.01.1970, the same value as
+   * {@link LocalDate#toEpochDay()} gives. An expense that was filled in without its setters, such
+   * as by a JSON library setting its fields, works it out from the date string the first time.
+   *
+   * @return The epoch day of the date.
+   * @throws IllegalStateException If the expense has no date.
+   */
+  public int toEpochDay() {
+    int day = epochDay;
+    if (day == UNKNOWN_EPOCH_DAY) {
+      if (date == null) {
+        throw new IllegalStateException("The expense has no date.");
+      }
+      day = (int) LocalDate.parse(date, DATE_FORMATTER).toEpochDay();
+      epochDay = day;
+    }
+    return day;
+  }
+
   /**
    * Sets the date of the expense. Converts LocalDate to a date string in the desired format.
    *
@@ -79,12 +143,14 @@ public class Expense {
       throw new IllegalArgumentException("Date cannot be null.");
     }
     this.date = date.format(DATE_FORMATTER);
+    this.epochDay = (int) date.toEpochDay();
   }
 
   /**
    * Sets the expense's date from a string. The method parses the string into a LocalDate object
    * assuming a format of "dd.MM.yyyy". The resulting LocalDate is then formatted back into a string
-   * and stored as the expense date.
+   * and stored as the expense date. A string that is already in that format is stored as it is, so
+   * expenses created from the same string share it.
    *
    * @param date A string representation of the date in the format "dd.MM.yyyy".
    * @throws IllegalArgumentException If the date string is null, empty, or cannot be parsed into a
@@ -96,7 +162,9 @@ public class Expense {
     }
     try {
       LocalDate dateValue = LocalDate.parse(date, DATE_FORMATTER);
-      this.date = dateValue.format(DATE_FORMATTER);
+      String formatted = dateValue.format(DATE_FORMATTER);
+      this.date = formatted.equals(date) ? date : formatted;
+      this.epochDay = (int) dateValue.toEpochDay();
     } catch (DateTimeParseException e) {
       throw new IllegalArgumentException("The date format should be 'dd.MM.yyyy'.");
     }
@@ -112,16 +180,38 @@ public class Expense {
   }
 
   /**
-   * Sets the price of the expense.
+   * Retrieves the price of the expense in minor units, so 12.50 kroner is 1250 øre. An expense that
+   * was filled in without its setters, such as by a JSON library setting its fields, works it out
+   * from the price the first time.
+   *
+   * @return The price in minor units.
+   */
+  public long toMinorUnits() {
+    long units = minorUnits;
+    if (units == UNKNOWN_MINOR_UNITS) {
+      units = Math.round(price * 100);
+      minorUnits = units;
+    }
+    return units;
+  }
+
+  /**
+   * Sets the price of the expense, rounded to the nearest minor unit.
    *
    * @param price The price to be set.
-   * @throws IllegalArgumentException If the provided price is negative.
+   * @throws IllegalArgumentException If the provided price is negative, not a number, or too large
+   *     to be counted exactly in minor units.
    */
   public void setPrice(double price) {
     if (price < 0) {
       throw new IllegalArgumentException("Price cannot be negative.");
     }
-    this.price = price;
+    if (!(price * 100 <= MAX_MINOR_UNITS)) {
+      throw new IllegalArgumentException("Price is not a valid amount.");
+    }
+    long units = Math.round(price * 100);
+    this.price = units / 100.0;
+    this.minorUnits = units;
   }
 
   /**
@@ -143,7 +233,7 @@ public class Expense {
     if (category == null || category.trim().isEmpty()) {
       throw new IllegalArgumentException("Category cannot be null or empty.");
     }
-    if (!category.matches("^[a-zA-Z]+$")) {
+    if (!CATEGORY_PATTERN.matcher(category).matches()) {
       throw new IllegalArgumentException(
           "Category should only contain alphabetic characters and spaces.");
     }
@@ -181,7 +271,7 @@ public class Expense {
   /**
    * Compares this expense to the specified object for equality. The result is true if and only if
    * the argument is not null and is an Expense object that has the same description, category,
-   * date, and price as this object.
+   * date, and price as this object. The ids are not compared.
    *
    * @param obj the object to compare this Expense against
    * @return true if the given object represents an Expense equivalent to this expense, false
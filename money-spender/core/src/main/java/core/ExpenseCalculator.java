@@ -16,4 +16,12 @@ public interface ExpenseCalculator {
    * @return The total value of all the expenses in the list.
    */
   public double getTotalExpenseValueOfList(List<Expense> expenses);
+
+  /**
+   * Calculates the exact total value of the given list of expenses in minor units (øre).
+   *
+   * @param expenses A list of expenses to calculate the total value for.
+   * @return The total value of all the expenses in the list, in minor units.
+   */
+  public long getTotalMinorUnitsOfList(List<Expense> expenses);
 }
@@ -6,7 +6,8 @@ import java.util.List;
  * An implementation of the {@link ExpenseCalculator} interface.
  *
  * <p>This class provides a concrete implementation of the ExpenseCalculator using Java streams to
- * calculate the total value of a list of expenses.
+ * calculate the total value of a list of expenses. The prices are summed as whole minor units, so
+ * the total is exact and does not drift however many expenses there are.
  */
 public class ExpenseCalculatorImpl implements ExpenseCalculator {
 
@@ -17,6 +18,16 @@ public class ExpenseCalculatorImpl implements ExpenseCalculator {
    */
   @Override
   public double getTotalExpenseValueOfList(List<Expense> expenses) {
-    return expenses.stream().mapToDouble(Expense::getPrice).sum();
+    return getTotalMinorUnitsOfList(expenses) / 100.0;
+  }
+
+  /**
+   * Calculates the exact total value of the given list of expenses in minor units (øre).
+   *
+   * @param expenses A list of expenses to calculate the total value for.
+   */
+  @Override
+  public long getTotalMinorUnitsOfList(List<Expense> expenses) {
+    return expenses.stream().mapToLong(Expense::toMinorUnits).sum();
   }
 }
@@ -22,6 +22,24 @@ public interface ExpenseFilterer {
       List<Expense> expenses, LocalDate startDate, LocalDate endDate, String category)
       throws IllegalArgumentException;
 
+  /**
+   * Filters the expenses of a handler based on a specified date range and category. By default
+   * the expenses of the handler are filtered as a list.
+   *
+   * @param handler The handler whose expenses are to be filtered.
+   * @param startDate The start date of the date range for filtering.
+   * @param endDate The end date of the date range for filtering.
+   * @param category The category by which expenses should be filtered. If null or empty, the filter
+   *     will not be applied based on category.
+   * @return A list of expenses that match the given date range and category criteria.
+   * @throws IllegalArgumentException if the start date is after the end date.
+   */
+  default List<Expense> filterExpenses(
+      ExpenseHandler handler, LocalDate startDate, LocalDate endDate, String category)
+      throws IllegalArgumentException {
+    return filterExpenses(handler.getAllExpenses(), startDate, endDate, category);
+  }
+
   /**
    * Retrieves expenses from a list and sorts them based on a specified comparator.
    *
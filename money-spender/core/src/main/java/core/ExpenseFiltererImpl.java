@@ -1,7 +1,6 @@
 package core;
 
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
@@ -13,8 +12,6 @@ import java.util.stream.Collectors;
  */
 public class ExpenseFiltererImpl implements ExpenseFilterer {
 
-  private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy");
-
   /**
    * Validates that the start date is not after the end date.
    *
@@ -29,7 +26,8 @@ public class ExpenseFiltererImpl implements ExpenseFilterer {
   }
 
   /**
-   * Filters a list of expenses by the specified start and end dates.
+   * Filters a list of expenses by the specified start and end dates. The dates are compared as
+   * epoch days, so no date string is parsed.
    *
    * @param expenses the list of expenses to filter
    * @param startDate the start date (inclusive) for the filter; can be null
@@ -39,14 +37,11 @@ public class ExpenseFiltererImpl implements ExpenseFilterer {
   private List<Expense> filterExpensesByDate(
       List<Expense> expenses, LocalDate startDate, LocalDate endDate) {
     validateDates(startDate, endDate);
+    long start = startDate == null ? Long.MIN_VALUE : startDate.toEpochDay();
+    long end = endDate == null ? Long.MAX_VALUE : endDate.toEpochDay();
 
     return expenses.stream()
-        .filter(
-            e -> {
-              LocalDate expenseDate = LocalDate.parse(e.getDate(), DATE_FORMATTER);
-              return (startDate == null || !expenseDate.isBefore(startDate))
-                  && (endDate == null || !expenseDate.isAfter(endDate));
-            })
+        .filter(e -> e.toEpochDay() >= start && e.toEpochDay() <= end)
         .collect(Collectors.toList());
   }
 
@@ -74,6 +69,23 @@ public class ExpenseFiltererImpl implements ExpenseFilterer {
     return filteredExpenses;
   }
 
+  /**
+   * Filters the expenses of a handler through {@link ExpenseHandler#findExpenses}, which uses the
+   * date indexes of the handler instead of scanning its expenses.
+   *
+   * @param handler the handler whose expenses to filter
+   * @param startDate the start date (inclusive) for the filter; can be null
+   * @param endDate the end date (inclusive) for the filter; can be null
+   * @param category the category to filter by; can be null or empty
+   * @return a list of expenses that meet the filter criteria, in the order of their ids
+   * @throws IllegalArgumentException if the start date is after the end date
+   */
+  @Override
+  public List<Expense> filterExpenses(
+      ExpenseHandler handler, LocalDate startDate, LocalDate endDate, String category) {
+    return handler.findExpenses(startDate, endDate, category);
+  }
+
   /**
    * Sorts a list of expenses based on the provided comparator.
    *
@@ -1,5 +1,6 @@
 package core;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Set;
 
@@ -10,12 +11,14 @@ import java.util.Set;
 public interface ExpenseHandler {
 
   /**
-   * Adds a new expense to the collection.
+   * Adds a new expense to the collection. An expense without an id is added as a copy with the
+   * next id, so the expense passed in is never changed.
    *
    * @param expense The expense to be added.
-   * @throws IllegalArgumentException if the expense is null.
+   * @return The expense as it is kept, with its id.
+   * @throws IllegalArgumentException if the expense is null or has the id of another expense.
    */
-  void addExpense(Expense expense);
+  Expense addExpense(Expense expense);
 
   /**
    * Removes an expense from the collection.
@@ -26,14 +29,39 @@ public interface ExpenseHandler {
    */
   boolean removeExpense(Expense expense);
 
+  /**
+   * Removes the expense with the given id.
+   *
+   * @param id The id of the expense.
+   * @return The removed expense, or null if there is no expense with the id.
+   */
+  Expense removeExpenseById(long id);
+
+  /**
+   * Retrieves the id the next expense added without an id is given. It is greater than the id of
+   * every expense the collection has held, including removed ones, so an id is never reused.
+   *
+   * @return The next id.
+   */
+  long getNextId();
+
+  /**
+   * Retrieves the expense with the given id.
+   *
+   * @param id The id of the expense.
+   * @return The expense, or null if there is no expense with the id.
+   */
+  Expense getExpenseById(long id);
+
   /**
    * Updates an existing expense with a new one.
    *
    * @param oldExpense The expense to be replaced.
    * @param newExpense The new expense to replace with.
+   * @return The expense as it is kept, with the id of the replaced expense.
    * @throws IllegalArgumentException if the old expense is not found.
    */
-  void updateExpense(Expense oldExpense, Expense newExpense);
+  Expense updateExpense(Expense oldExpense, Expense newExpense);
 
   /**
    * Retrieves all expenses in the collection.
@@ -42,6 +70,19 @@ public interface ExpenseHandler {
    */
   List<Expense> getAllExpenses();
 
+  /**
+   * Retrieves the expenses that fall within a date range and match a category, in the order of
+   * their ids. This differs from the order of {@link #getAllExpenses()} when an expense is added
+   * with the id of one removed before.
+   *
+   * @param startDate The first date of the range, or null for no lower bound.
+   * @param endDate The last date of the range, or null for no upper bound.
+   * @param category The category to match, or null or blank for all categories.
+   * @return A list containing the matching expenses.
+   * @throws IllegalArgumentException if the start date is after the end date.
+   */
+  List<Expense> findExpenses(LocalDate startDate, LocalDate endDate, String category);
+
   /**
    * Returns a set of unique expense categories.
    *
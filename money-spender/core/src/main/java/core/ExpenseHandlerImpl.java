@@ -1,24 +1,61 @@
 package core;
 
 import com.google.gson.annotations.Expose;
+import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Queue;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.TreeMap;
 
 /**
  * Handles operations related to expenses and their categories. Provides methods for adding,
  * updating, and removing expenses, and tracks unique expense categories.
+ *
+ * <p>The expenses are kept by their ids in the order they were added, so finding, updating and
+ * removing an expense by its id, or through an expense that has its id, takes constant time. An
+ * expense that already has an id keeps it, and an expense with the id of another expense is
+ * rejected. An added expense without an id is kept as a copy with the next id. The next id is
+ * stored with the expenses and is greater than every id the handler has held, so the id of a
+ * removed expense is not given out again after the handler is saved and loaded. An expense without
+ * a matching id is found by comparing it with every expense, as before.
+ *
+ * <p>Every category is kept with the number of expenses that use it, so adding, removing or
+ * updating an expense updates the categories without looking at the other expenses. A category
+ * given to the constructor without any expenses is kept with a count of zero.
+ *
+ * <p>The first call to {@link #findExpenses(LocalDate, LocalDate, String)} indexes the expenses by
+ * their epoch day, both all together and per category, and from then on the indexes are updated on
+ * every change. A query looks up the days of its date range in the index of its category, so it
+ * only visits the expenses it returns. Handlers that are never queried, such as the copies a store
+ * makes of a user, do not pay for building the indexes. An expense must not have its date or
+ * category changed while it is handled here; it is replaced through {@link #updateExpense(Expense,
+ * Expense)} instead.
  */
 public class ExpenseHandlerImpl implements ExpenseHandler {
 
-  @Expose private List<Expense> expenses;
-  private Set<String> categories;
+  @Expose private Collection<Expense> expenses;
+  private final transient Map<Long, Expense> expensesById = new LinkedHashMap<>();
+  @Expose private long nextId = 1;
+  private final transient Map<String, Integer> categoryCounts = new HashMap<>();
+  private final transient NavigableMap<Integer, NavigableMap<Long, Expense>> expensesByDay =
+      new TreeMap<>();
+  private final transient Map<String, NavigableMap<Integer, NavigableMap<Long, Expense>>>
+      expensesByCategoryAndDay = new HashMap<>();
+  private transient boolean indexed;
+  private final Set<String> categories = Collections.unmodifiableSet(categoryCounts.keySet());
 
   /** Default constructor initializes an empty list of expenses and categories. */
   public ExpenseHandlerImpl() {
-    this(new ArrayList<>(), new HashSet<>());
+    this(new ArrayList<>(), Set.of());
   }
 
   /**
@@ -28,7 +65,21 @@ public class ExpenseHandlerImpl implements ExpenseHandler {
    * @param expenses The list of expenses to initialize with.
    */
   public ExpenseHandlerImpl(List<Expense> expenses) {
-    this(expenses, expenses.stream().map(Expense::getCategory).collect(Collectors.toSet()));
+    this(expenses, Set.of());
+  }
+
+  /**
+   * Initializes the ExpenseHandler with a list of expenses and the id to give the next expense,
+   * such as when it is read from a store. The next id is raised above the ids of the expenses if
+   * needed.
+   *
+   * @param expenses The list of expenses to initialize with.
+   * @param nextId The id to give the next expense added without an id.
+   * @throws IllegalArgumentException if two expenses have the same id.
+   */
+  public ExpenseHandlerImpl(List<Expense> expenses, long nextId) {
+    this(expenses, Set.of());
+    this.nextId = Math.max(this.nextId, nextId);
   }
 
   /**
@@ -36,73 +87,185 @@ public class ExpenseHandlerImpl implements ExpenseHandler {
    *
    * @param expenses The list of expenses to initialize with.
    * @param categories The set of unique categories to initialize with.
+   * @throws IllegalArgumentException if two expenses have the same id.
    */
   public ExpenseHandlerImpl(List<Expense> expenses, Set<String> categories) {
     this.expenses = new ArrayList<>(expenses);
-    this.categories = new HashSet<>(categories);
+    for (String category : categories) {
+      categoryCounts.put(category, 0);
+    }
+    loadCategories();
   }
 
   /**
-   * Adds a new expense to the list and its category to the set.
+   * Adds a new expense and its category to the set. An expense with an id is kept as it is, and an
+   * expense without one is kept as a copy with the next id.
    *
    * @param expense The expense to be added.
-   * @throws IllegalArgumentException if the expense is null.
+   * @return The expense as it is kept, with its id.
+   * @throws IllegalArgumentException if the expense is null or has the id of another expense.
    */
   @Override
-  public void addExpense(Expense expense) {
+  public Expense addExpense(Expense expense) {
     if (expense == null) {
       throw new IllegalArgumentException("Expense cannot be null.");
     }
-    this.expenses.add(expense);
-    this.categories.add(expense.getCategory());
+    Expense added = expense;
+    if (expense.getId() == 0) {
+      added =
+          new Expense(
+              expense.getDate(),
+              expense.getCategory(),
+              expense.getPrice(),
+              expense.getDescription());
+      added.setId(nextId);
+    } else if (expensesById.containsKey(expense.getId())) {
+      throw new IllegalArgumentException(
+          "An expense with id " + expense.getId() + " has already been added.");
+    }
+    expensesById.put(added.getId(), added);
+    nextId = Math.max(nextId, added.getId() + 1);
+    addCategory(added.getCategory());
+    index(added);
+    return added;
   }
 
   /**
-   * Removes an expense from the list. If the category of the expense is not used by any other
-   * expense, it's removed from the set.
+   * Removes an expense. If the category of the expense is not used by any other expense, it's
+   * removed from the set.
    *
    * @param expense The expense to be removed.
    * @return true if the expense was successfully removed, false otherwise.
    */
   @Override
   public boolean removeExpense(Expense expense) {
-    // If the expense is successfully removed from the list
-    if (this.expenses.remove(expense)) {
-      // Then check if the category is used by any other expense
-      if (!checkIfCategoryUsed(expense)) {
-        this.categories.remove(expense.getCategory());
-      }
-      return true;
+    Expense stored = findExpense(expense);
+    if (stored == null) {
+      return false;
+    }
+    removeExpenseById(stored.getId());
+    return true;
+  }
+
+  /**
+   * Removes the expense with the given id.
+   *
+   * @param id The id of the expense.
+   * @return The removed expense, or null if there is no expense with the id.
+   */
+  @Override
+  public Expense removeExpenseById(long id) {
+    Expense removed = expensesById.remove(id);
+    if (removed != null) {
+      removeCategory(removed.getCategory());
+      unindex(removed);
     }
-    return false;
+    return removed;
+  }
+
+  /**
+   * Retrieves the id the next expense added without an id is given.
+   *
+   * @return The next id.
+   */
+  @Override
+  public long getNextId() {
+    return nextId;
   }
 
   /**
-   * Updates an existing expense with a new one. Manages categories based on the update.
+   * Retrieves the expense with the given id.
+   *
+   * @param id The id of the expense.
+   * @return The expense, or null if there is no expense with the id.
+   */
+  @Override
+  public Expense getExpenseById(long id) {
+    return expensesById.get(id);
+  }
+
+  /**
+   * Updates an existing expense with a new one, which is kept as a copy with the id and the place
+   * of the old one, so the caller's expense is not changed. Manages categories based on the update.
    *
    * @param oldExpense The expense to be replaced.
    * @param newExpense The new expense to replace with.
+   * @return The expense as it is kept, with the id of the replaced expense.
    * @throws IllegalArgumentException if the old expense is not found.
    */
-  public void updateExpense(Expense oldExpense, Expense newExpense) {
-    int index = expenses.indexOf(oldExpense);
-    if (index != -1) {
-      // If categories are different, manage category sets accordingly
-      if (!oldExpense.getCategory().equals(newExpense.getCategory())) {
-        // Add new category
-        categories.add(newExpense.getCategory());
-
-        // Check for old category usage before updating the expenses list
-        if (!checkIfCategoryUsed(oldExpense)) {
-          categories.remove(oldExpense.getCategory());
-        }
-      }
-
-      // Update the expense in the list after handling categories
-      expenses.set(index, newExpense);
-    } else {
+  @Override
+  public Expense updateExpense(Expense oldExpense, Expense newExpense) {
+    Expense replaced = findExpense(oldExpense);
+    if (replaced == null) {
       throw new IllegalArgumentException("Expense not found.");
     }
+    Expense updated =
+        new Expense(
+            newExpense.getDate(),
+            newExpense.getCategory(),
+            newExpense.getPrice(),
+            newExpense.getDescription());
+    updated.setId(replaced.getId());
+    expensesById.put(replaced.getId(), updated);
+    addCategory(updated.getCategory());
+    removeCategory(replaced.getCategory());
+    unindex(replaced);
+    index(updated);
+    return updated;
+  }
+
+  /**
+   * Finds the expenses within a date range and of a category through the date indexes, in the order
+   * of their ids. The indexes are built on the first call. The expenses of every day are kept by
+   * their ids, so the days of the range are merged in id order without sorting the result. Expenses
+   * without a date are never found.
+   *
+   * @param startDate The first date of the range, or null for no lower bound.
+   * @param endDate The last date of the range, or null for no upper bound.
+   * @param category The category to match, or null or blank for all categories.
+   * @return A new list of the matching expenses.
+   * @throws IllegalArgumentException if the start date is after the end date.
+   */
+  @Override
+  public List<Expense> findExpenses(LocalDate startDate, LocalDate endDate, String category) {
+    if (startDate != null && endDate != null && startDate.isAfter(endDate)) {
+      throw new IllegalArgumentException("Start date cannot be after end date.");
+    }
+    if (!indexed) {
+      indexed = true;
+      for (Expense expense : expensesById.values()) {
+        index(expense);
+      }
+    }
+    NavigableMap<Integer, NavigableMap<Long, Expense>> days =
+        category == null || category.trim().isEmpty()
+            ? expensesByDay
+            : expensesByCategoryAndDay.get(category);
+    List<Expense> found = new ArrayList<>();
+    if (days == null) {
+      return found;
+    }
+    int from = startDate == null ? Integer.MIN_VALUE : toIndexDay(startDate);
+    int to = endDate == null ? Integer.MAX_VALUE : toIndexDay(endDate);
+    NavigableMap<Integer, NavigableMap<Long, Expense>> range = days.subMap(from, true, to, true);
+    if (range.size() == 1) {
+      found.addAll(range.firstEntry().getValue().values());
+      return found;
+    }
+    Queue<Expense> next = new PriorityQueue<>(Comparator.comparingLong(Expense::getId));
+    for (NavigableMap<Long, Expense> day : range.values()) {
+      next.add(day.firstEntry().getValue());
+    }
+    while (!next.isEmpty()) {
+      Expense expense = next.poll();
+      found.add(expense);
+      Map.Entry<Long, Expense> following =
+          range.get(expense.toEpochDay()).higherEntry(expense.getId());
+      if (following != null) {
+        next.add(following.getValue());
+      }
+    }
+    return found;
   }
 
   /**
@@ -112,24 +275,41 @@ public class ExpenseHandlerImpl implements ExpenseHandler {
    */
   @Override
   public List<Expense> getAllExpenses() {
-    return new ArrayList<>(this.expenses);
+    return new ArrayList<>(expensesById.values());
   }
 
   /**
-   * Returns a set of unique categories.
+   * Returns a set of unique categories. The set is a read-only view, so it is not copied, and it
+   * follows later changes to the expenses.
    *
    * @return Set of categories.
    */
   @Override
   public Set<String> getCategories() {
-    return new HashSet<>(this.categories);
+    return categories;
   }
 
-  /** Rebuilds the set of unique categories from the list of expenses. */
+  /**
+   * Indexes the expenses by their ids and recounts the expenses of every category, such as after
+   * the list of expenses and the next id were filled in by a JSON library. The expenses keep their
+   * ids, and the next id is raised above them if needed.
+   *
+   * @throws IllegalArgumentException if two expenses have the same id.
+   */
   public void loadCategories() {
-    for (Expense expense : expenses) {
-      this.categories.add(expense.getCategory());
+    final List<Expense> loaded = expenses == null ? List.of() : new ArrayList<>(expenses);
+    final long storedNextId = nextId;
+    expensesById.clear();
+    expensesByDay.clear();
+    expensesByCategoryAndDay.clear();
+    indexed = false;
+    nextId = 1;
+    categoryCounts.replaceAll((category, count) -> 0);
+    for (Expense expense : loaded) {
+      addExpense(expense);
     }
+    nextId = Math.max(nextId, storedNextId);
+    expenses = expensesById.values();
   }
 
   /**
@@ -138,7 +318,7 @@ public class ExpenseHandlerImpl implements ExpenseHandler {
    * @return Count of expenses.
    */
   public int getExpenseCount() {
-    return expenses.size();
+    return expensesById.size();
   }
 
   /**
@@ -151,17 +331,110 @@ public class ExpenseHandlerImpl implements ExpenseHandler {
   }
 
   /**
-   * Checks if the category of a given expense is used by any other expense.
+   * Finds the stored expense equal to the given one, through its id if it has the id of an equal
+   * expense and by comparing it with every expense otherwise.
+   *
+   * @param expense The expense to find.
+   * @return The stored expense, or null if there is no equal expense.
+   */
+  private Expense findExpense(Expense expense) {
+    if (expense == null) {
+      return null;
+    }
+    Expense stored = expensesById.get(expense.getId());
+    if (stored != null && stored.equals(expense)) {
+      return stored;
+    }
+    for (Expense candidate : expensesById.values()) {
+      if (candidate.equals(expense)) {
+        return candidate;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Adds an expense to the date index of all expenses and to that of its category, once the
+   * indexes are built.
+   *
+   * @param expense The expense to index.
+   */
+  private void index(Expense expense) {
+    if (!indexed || expense.getDate() == null) {
+      return;
+    }
+    int day = expense.toEpochDay();
+    expensesByDay.computeIfAbsent(day, key -> new TreeMap<>()).put(expense.getId(), expense);
+    expensesByCategoryAndDay
+        .computeIfAbsent(expense.getCategory(), key -> new TreeMap<>())
+        .computeIfAbsent(day, key -> new TreeMap<>())
+        .put(expense.getId(), expense);
+  }
+
+  /**
+   * Removes an expense from the date indexes, along with any day or category left empty.
    *
-   * @param expenseToCheck Expense whose category is to be checked.
-   * @return true if the category is used by any other expense, false otherwise.
+   * @param expense The expense to remove from the indexes.
    */
-  private boolean checkIfCategoryUsed(Expense expenseToCheck) {
-    for (Expense e : this.expenses) {
-      if (e.getCategory().equals(expenseToCheck.getCategory()) && !e.equals(expenseToCheck)) {
-        return true;
+  private void unindex(Expense expense) {
+    if (!indexed || expense.getDate() == null) {
+      return;
+    }
+    int day = expense.toEpochDay();
+    removeFromDay(expensesByDay, day, expense.getId());
+    NavigableMap<Integer, NavigableMap<Long, Expense>> days =
+        expensesByCategoryAndDay.get(expense.getCategory());
+    if (days != null) {
+      removeFromDay(days, day, expense.getId());
+      if (days.isEmpty()) {
+        expensesByCategoryAndDay.remove(expense.getCategory());
       }
     }
-    return false;
+  }
+
+  /**
+   * Removes an expense from a day of a date index, and the day if no expense is left on it.
+   *
+   * @param days The date index.
+   * @param day The epoch day of the expense.
+   * @param id The id of the expense.
+   */
+  private static void removeFromDay(
+      NavigableMap<Integer, NavigableMap<Long, Expense>> days, int day, long id) {
+    days.computeIfPresent(
+        day,
+        (key, expenses) -> {
+          expenses.remove(id);
+          return expenses.isEmpty() ? null : expenses;
+        });
+  }
+
+  /**
+   * Converts a bound of a date range to a key of the date indexes. Dates beyond the keys are
+   * clamped to the first or last key.
+   *
+   * @param date The date.
+   * @return The epoch day of the date, clamped to the range of an int.
+   */
+  private static int toIndexDay(LocalDate date) {
+    return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, date.toEpochDay()));
+  }
+
+  /**
+   * Counts one more expense in a category.
+   *
+   * @param category The category of the expense.
+   */
+  private void addCategory(String category) {
+    categoryCounts.merge(category, 1, Integer::sum);
+  }
+
+  /**
+   * Counts one expense less in a category, and removes the category when no expense uses it.
+   *
+   * @param category The category of the expense.
+   */
+  private void removeCategory(String category) {
+    categoryCounts.computeIfPresent(category, (name, count) -> count > 1 ? count - 1 : null);
   }
 }
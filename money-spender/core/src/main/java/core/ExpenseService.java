@@ -83,8 +83,9 @@ public class ExpenseService {
 
   /**
    * Filters and sorts a user's expenses based on the specified category and date range. This method
-   * first filters the expenses by the provided category and the date range. After filtering, the
-   * expenses are sorted in descending order according to the price.
+   * first filters the user's ExpenseHandler through the ExpenseFilterer; the default filterer finds
+   * the expenses through the date index of the handler. After filtering, the expenses are sorted
+   * in descending order according to the price.
    *
    * @param user The user whose expenses are to be filtered.
    * @param category The category for which expenses are to be filtered.
@@ -100,9 +101,8 @@ public class ExpenseService {
       User user, String category, LocalDate startDate, LocalDate endDate)
       throws IllegalArgumentException {
     return expenseFilterer.getExpensesCompared(
-        expenseFilterer.filterExpenses(
-            user.getExpenseHandler().getAllExpenses(), startDate, endDate, category),
-        (e1, e2) -> Double.compare(e2.getPrice(), e1.getPrice()));
+        expenseFilterer.filterExpenses(user.getExpenseHandler(), startDate, endDate, category),
+        (e1, e2) -> Long.compare(e2.toMinorUnits(), e1.toMinorUnits()));
   }
 
   /**
@@ -158,15 +158,29 @@ public class ExpenseService {
     return expenseCalculator.getTotalExpenseValueOfList(expenses);
   }
 
+  /**
+   * Calculates the exact total value for a given list of expenses in minor units (øre).
+   *
+   * @param expenses A list of expenses for which the total value needs to be calculated.
+   * @return The total value of all the expenses in the list, in minor units.
+   */
+  public long calculateTotalMinorUnitsForList(List<Expense> expenses) {
+    return expenseCalculator.getTotalMinorUnitsOfList(expenses);
+  }
+
   /**
    * Finds and retrieves a specific expense from a user's list of expenses based on the given
-   * expense object.
+   * expense object. An expense with the id of an equal expense is found through its id.
    *
    * @param user The user for whom to search for the expense.
    * @param expense The expense object to find within the user's expenses.
    * @return The expense object if found, or null if the expense is not found.
    */
   public Expense findExpense(User user, Expense expense) {
+    Expense byId = user.getExpenseHandler().getExpenseById(expense.getId());
+    if (byId != null && byId.equals(expense)) {
+      return byId;
+    }
     for (Expense userExpense : getAllExpensesForUser(user)) {
       if (userExpense.equals(expense)) {
         return userExpense;
@@ -0,0 +1,78 @@
+package core;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * A User whose expenses are only loaded when they are first accessed. It is meant for the many
+ * calls that only need the username and password of a user, such as authentication, so they do
+ * not pay for reading every expense and building the categories. The expenses are loaded once,
+ * through the loader given when the user is created, and kept after that. The handler of the
+ * superclass is never created, so a lazy user written out field by field, as by a reflective JSON
+ * serializer, only holds its username and password; copy it with {@link User#User(User)} to write
+ * out its expenses.
+ */
+public class LazyUser extends User {
+
+  private ExpenseLoader loader;
+  private ExpenseHandler expenseHandler;
+
+  /** Loads the expenses of a lazy user, for example from where a store keeps the user. */
+  @FunctionalInterface
+  public interface ExpenseLoader {
+
+    /**
+     * Loads the expenses of the user, along with the id the handler gives the next expense.
+     *
+     * @return The handler of the expenses of the user.
+     * @throws IOException If an error occurs while reading the expenses.
+     */
+    ExpenseHandler load() throws IOException;
+  }
+
+  /**
+   * Constructs a LazyUser with the given username and password, whose expenses are loaded by the
+   * given loader on first access.
+   *
+   * @param username The username of the user.
+   * @param password The password associated with the user.
+   * @param loader The loader of the expenses of the user.
+   * @throws IllegalArgumentException If the username or password is invalid, or the loader is null.
+   */
+  public LazyUser(String username, String password, ExpenseLoader loader) {
+    setUsername(username);
+    setPassword(password);
+    if (loader == null) {
+      throw new IllegalArgumentException("Expense loader cannot be null");
+    }
+    this.loader = loader;
+  }
+
+  /**
+   * Retrieves the ExpenseHandler of the user, loading the expenses the first time it is called.
+   *
+   * @return The user's ExpenseHandler instance.
+   * @throws UncheckedIOException If the expenses cannot be loaded.
+   */
+  @Override
+  public synchronized ExpenseHandler getExpenseHandler() {
+    if (expenseHandler == null) {
+      try {
+        expenseHandler = loader.load();
+      } catch (IOException e) {
+        throw new UncheckedIOException("Could not load the expenses of " + getUsername(), e);
+      }
+      loader = null;
+    }
+    return expenseHandler;
+  }
+
+  /**
+   * Checks whether the expenses of the user have been loaded.
+   *
+   * @return True if the expenses have been loaded; otherwise, false.
+   */
+  public synchronized boolean hasLoadedExpenses() {
+    return expenseHandler != null;
+  }
+}
@@ -7,12 +7,14 @@ import java.util.List;
 /**
  * Represents a response object that includes a list of expenses and their total value. This class
  * is designed as a Container class to be able to send a list of expenses and their total value as a
- * http response.
+ * http response. The total is sent both as an amount in kroner and as an exact number of minor
+ * units (øre).
  */
 public class ListAndValueContainer {
 
   @Expose private List<Expense> expenses;
   @Expose private double total;
+  @Expose private long totalMinorUnits;
 
   /**
    * Constructs an empty ListAndValueContainer object. This constructor is provided to facilitate
@@ -31,7 +33,7 @@ public class ListAndValueContainer {
   public ListAndValueContainer(List<Expense> expenses, double total) {
 
     this.expenses = new ArrayList<>(expenses);
-    this.total = total;
+    setTotal(total);
   }
 
   /**
@@ -49,7 +51,17 @@ public class ListAndValueContainer {
    * @param total The value to set as the total of expenses.
    */
   public void setTotal(double total) {
-    this.total = total;
+    setTotalMinorUnits(Math.round(total * 100));
+  }
+
+  /**
+   * Sets the total value of the expenses in minor units.
+   *
+   * @param totalMinorUnits The value to set as the total of expenses, in minor units.
+   */
+  public void setTotalMinorUnits(long totalMinorUnits) {
+    this.totalMinorUnits = totalMinorUnits;
+    this.total = totalMinorUnits / 100.0;
   }
 
   /**
@@ -70,4 +82,13 @@ public class ListAndValueContainer {
   public double getTotal() {
     return total;
   }
+
+  /**
+   * Returns the exact total value of the expenses in minor units.
+   *
+   * @return The total value in minor units.
+   */
+  public long getTotalMinorUnits() {
+    return totalMinorUnits;
+  }
 }
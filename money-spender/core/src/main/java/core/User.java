@@ -3,6 +3,7 @@ package core;
 import com.google.gson.annotations.Expose;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Pattern;
 
 /**
  * The User class represents a user with attributes such as username, password, and a list of
@@ -10,6 +11,8 @@ import java.util.List;
  */
 public class User {
 
+  private static final Pattern USERNAME_PATTERN = Pattern.compile("^[a-zA-Z]+$");
+
   @Expose private String username;
   @Expose private String password;
   @Expose private ExpenseHandlerImpl expenseHandler;
@@ -31,6 +34,24 @@ public class User {
     this.expenseHandler = new ExpenseHandlerImpl(expenses);
   }
 
+  /**
+   * Constructs a User object around an expense handler that is already filled, such as one a JSON
+   * reader has built, so its expenses are not copied into another handler.
+   *
+   * @param username The username of the user.
+   * @param password The password associated with the user.
+   * @param expenseHandler The handler of the user's expenses.
+   * @throws IllegalArgumentException If the username is null or empty, or the handler is null.
+   */
+  public User(String username, String password, ExpenseHandlerImpl expenseHandler) {
+    if (expenseHandler == null) {
+      throw new IllegalArgumentException("Expense handler cannot be null.");
+    }
+    this.setUsername(username);
+    this.setPassword(password);
+    this.expenseHandler = expenseHandler;
+  }
+
   /**
    * Constructs a User object based on another user instance. This constructor allows for creating a
    * copy of a user with the same username, password, and a list of expenses derived from the
@@ -38,10 +59,14 @@ public class User {
    * record with potentially shared or new ExpenseHandler data.
    *
    * @param user The user instance from which to copy properties. The username, password, and
-   *     expense data are copied to the new User object.
+   *     expense data are copied to the new User object, and the copy gives out the same ids.
    */
   public User(User user) {
-    this(user.getUsername(), user.getPassword(), user.getExpenseHandler().getAllExpenses());
+    this(
+        user.getUsername(),
+        user.getPassword(),
+        new ExpenseHandlerImpl(
+            user.getExpenseHandler().getAllExpenses(), user.getExpenseHandler().getNextId()));
   }
 
   /**
@@ -77,7 +102,7 @@ public class User {
     if (username.length() > 15) {
       throw new IllegalArgumentException("Username cannot exceed 15 characters");
     }
-    if (!username.matches("^[a-zA-Z]+$")) {
+    if (!USERNAME_PATTERN.matcher(username).matches()) {
       throw new IllegalArgumentException("Username should only contain alphabetic characters");
     }
     this.username = username;
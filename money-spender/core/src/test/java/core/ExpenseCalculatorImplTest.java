@@ -3,8 +3,10 @@ package core;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 
 /** Unit tests for the {@link ExpenseCalculatorImpl} class. */
@@ -40,4 +42,20 @@ public class ExpenseCalculatorImplTest {
         expenseCalculator.getTotalExpenseValueOfList(Arrays.asList(expense1, expense2, expense3)),
         0.001);
   }
+
+  /**
+   * Test case for a long history of prices that have no exact binary representation.
+   *
+   * <p>Validates that the total is exact, where summing the prices as doubles would drift.
+   */
+  @Test
+  public void testGetTotalOfManyExpensesIsExact() {
+    List<Expense> expenses = new ArrayList<>();
+    for (int i = 0; i < 100_000; i++) {
+      expenses.add(new Expense(LocalDate.now(), "Food", 0.1, "Candy"));
+    }
+
+    assertEquals(1_000_000, expenseCalculator.getTotalMinorUnitsOfList(expenses));
+    assertEquals(10_000.0, expenseCalculator.getTotalExpenseValueOfList(expenses));
+  }
 }
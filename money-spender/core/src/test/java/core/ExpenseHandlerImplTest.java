@@ -3,10 +3,12 @@ package core;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
@@ -170,4 +172,156 @@ public class ExpenseHandlerImplTest {
     ExpenseHandlerImpl handler2 = new ExpenseHandlerImpl(Arrays.asList(expense3, expense4));
     assertEquals(2, handler2.getCategoryCount());
   }
+
+  /** Tests that a category is kept until the last expense that uses it is removed. */
+  @Test
+  public void testCategoryCounts() {
+    Expense duplicate = new Expense(dateNow, "Food", 10.0, "Lunch at cafe");
+    handler.addExpense(duplicate);
+    assertTrue(handler.removeExpense(expense1));
+    assertTrue(handler.getCategories().contains("Food"));
+    assertTrue(handler.removeExpense(duplicate));
+    assertFalse(handler.getCategories().contains("Food"));
+
+    ExpenseHandlerImpl withCategories =
+        new ExpenseHandlerImpl(List.of(expense1), Set.of("Food", "Rent"));
+    assertEquals(Set.of("Food", "Rent"), withCategories.getCategories());
+    withCategories.loadCategories();
+    assertEquals(2, withCategories.getCategoryCount());
+    withCategories.removeExpense(expense1);
+    assertEquals(Set.of("Rent"), withCategories.getCategories());
+  }
+
+  /** Tests that the categories are a read-only view that follows changes to the expenses. */
+  @Test
+  public void testGetCategoriesIsView() {
+    Set<String> categories = handler.getCategories();
+    assertThrows(UnsupportedOperationException.class, () -> categories.add("Rent"));
+    handler.addExpense(new Expense(dateNow, "Rent", 5000.0, "January"));
+    assertTrue(categories.contains("Rent"));
+  }
+
+  /**
+   * Tests that expenses are given distinct ids without changing the expenses passed in, and can be
+   * found and removed by them.
+   */
+  @Test
+  public void testExpenseIds() {
+    final Expense stored = handler.getAllExpenses().get(0);
+    assertEquals(1, stored.getId());
+    assertEquals(2, handler.getAllExpenses().get(1).getId());
+    assertEquals(0, expense1.getId());
+    Expense duplicate = new Expense(dateNow, "Food", 10.0, "Lunch at cafe");
+    Expense added = handler.addExpense(duplicate);
+    assertEquals(0, duplicate.getId());
+    assertEquals(3, added.getId());
+    assertSame(added, handler.getExpenseById(3));
+
+    assertEquals(expense2, handler.removeExpenseById(2));
+    assertEquals(null, handler.removeExpenseById(2));
+    assertEquals(null, handler.getExpenseById(2));
+    assertFalse(handler.getCategories().contains("Entertainment"));
+    assertEquals(4, handler.addExpense(new Expense(dateNow, "Rent", 5000.0, "January")).getId());
+    handler.removeExpenseById(4);
+    assertEquals(5, handler.addExpense(new Expense(dateNow, "Rent", 5000.0, "February")).getId());
+    assertEquals(6, handler.getNextId());
+
+    ExpenseHandlerImpl other = new ExpenseHandlerImpl(List.of(added, stored), 10);
+    assertEquals(List.of(added, stored), other.getAllExpenses());
+    assertEquals(3, other.getAllExpenses().get(0).getId());
+    assertEquals(10, other.getNextId());
+    assertThrows(IllegalArgumentException.class, () -> other.addExpense(stored));
+    assertEquals(10, other.addExpense(expense1).getId());
+    assertThrows(
+        IllegalArgumentException.class, () -> new ExpenseHandlerImpl(List.of(stored, stored)));
+  }
+
+  /** Tests that an updated expense keeps the id and the place of the expense it replaces. */
+  @Test
+  public void testUpdateExpenseKeepsId() {
+    Expense newExpense = new Expense(dateNow, "Food", 12.0, "Dinner");
+    Expense updated = handler.updateExpense(expense1, newExpense);
+    assertEquals(1, updated.getId());
+    assertEquals(0, newExpense.getId());
+    assertSame(updated, handler.getExpenseById(1));
+    assertEquals(List.of(updated, expense2), handler.getAllExpenses());
+  }
+
+  /** Tests that an expense that already has an id can replace another one without being changed. */
+  @Test
+  public void testUpdateExpenseWithId() {
+    Expense withId = handler.getExpenseById(1);
+    Expense updated = handler.updateExpense(expense2, withId);
+    assertEquals(2, updated.getId());
+    assertEquals(1, withId.getId());
+    assertSame(withId, handler.getExpenseById(1));
+    assertSame(updated, handler.getExpenseById(2));
+  }
+
+  /** Tests that expenses are found by date range and category in the order of their ids. */
+  @Test
+  public void testFindExpenses() {
+    Expense old = new Expense(dateNow.minusYears(1), "Food", 5.0, "Old lunch");
+    handler.addExpense(old);
+    assertEquals(List.of(expense1, expense2, old), handler.findExpenses(null, null, null));
+    assertEquals(List.of(expense1, old), handler.findExpenses(null, null, "Food"));
+    assertEquals(List.of(expense1, expense2), handler.findExpenses(dateYesterday, dateNow, " "));
+    assertEquals(List.of(old), handler.findExpenses(null, dateYesterday, "Food"));
+    assertEquals(List.of(), handler.findExpenses(null, null, "Rent"));
+    assertEquals(List.of(expense1), handler.findExpenses(dateNow, LocalDate.MAX, "Food"));
+    assertThrows(
+        IllegalArgumentException.class, () -> handler.findExpenses(dateNow, dateYesterday, null));
+  }
+
+  /** Tests that the date indexes follow expenses that are added, updated and removed. */
+  @Test
+  public void testFindExpensesAfterChanges() {
+    assertEquals(List.of(expense1), handler.findExpenses(dateNow, dateNow, null));
+    Expense rent = handler.addExpense(new Expense(dateNow, "Rent", 5000.0, "January"));
+    assertEquals(List.of(expense1, rent), handler.findExpenses(dateNow, dateNow, null));
+
+    Expense moved = new Expense(dateYesterday, "Food", 10.0, "Lunch at cafe");
+    handler.updateExpense(expense1, moved);
+    assertEquals(List.of(rent), handler.findExpenses(dateNow, dateNow, null));
+    assertEquals(List.of(moved, expense2), handler.findExpenses(dateYesterday, dateYesterday, ""));
+    assertEquals(List.of(moved), handler.findExpenses(null, null, "Food"));
+
+    handler.removeExpenseById(rent.getId());
+    assertEquals(List.of(), handler.findExpenses(null, null, "Rent"));
+    handler.loadCategories();
+    assertEquals(List.of(moved, expense2), handler.findExpenses(null, null, null));
+  }
+
+  /** Tests that expenses found over several days are merged in the order of their ids. */
+  @Test
+  public void testFindExpensesInIdOrder() {
+    List<Expense> expenses = new ArrayList<>();
+    long[] ids = {4, 1, 6, 2, 5, 3};
+    for (int i = 0; i < ids.length; i++) {
+      Expense expense = new Expense(dateNow.minusDays(i % 3), "Food", i + 1.0, "Meal " + i);
+      expense.setId(ids[i]);
+      expenses.add(expense);
+    }
+    ExpenseHandlerImpl loaded = new ExpenseHandlerImpl(expenses, 7);
+
+    List<Long> found = new ArrayList<>();
+    for (Expense expense : loaded.findExpenses(null, null, "Food")) {
+      found.add(expense.getId());
+    }
+    assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L), found);
+    assertEquals(
+        List.of(expenses.get(1), expenses.get(3), expenses.get(0), expenses.get(4)),
+        loaded.findExpenses(dateNow.minusDays(1), dateNow, "Food"));
+  }
+
+  /** Tests that an expense added with the id of a removed one is found in the place of its id. */
+  @Test
+  public void testFindExpensesWithReusedId() {
+    handler.removeExpenseById(1);
+    Expense readded = new Expense(dateNow, "Food", 12.0, "Dinner");
+    readded.setId(1);
+    handler.addExpense(readded);
+    assertEquals(List.of(expense2, readded), handler.getAllExpenses());
+    assertEquals(List.of(readded, expense2), handler.findExpenses(null, null, null));
+  }
 }
@@ -109,6 +109,30 @@ public class ExpenseServiceTest {
     assertEquals(2, filteredExpenses.size());
   }
 
+  /** Tests that expenses are filtered through a filterer that has been set. */
+  @Test
+  public void testFilterExpensesForUserUsesFilterer() {
+    this.expenseService.addExpenseForUser(user, expense1);
+    this.expenseService.addExpenseForUser(user, expense2);
+    ExpenseFilterer filterer =
+        new ExpenseFilterer() {
+          @Override
+          public List<Expense> filterExpenses(
+              List<Expense> expenses, LocalDate startDate, LocalDate endDate, String category) {
+            return expenses.subList(0, 1);
+          }
+
+          @Override
+          public List<Expense> getExpensesCompared(
+              List<Expense> expenses, Comparator<Expense> comparator) {
+            return expenses;
+          }
+        };
+    this.expenseService.setExpenseFilterer(filterer);
+    assertEquals(
+        List.of(expense1), this.expenseService.filterExpensesForUser(user, "Food", null, null));
+  }
+
   /** Tests sorting expenses for a user in ascending order of price. */
   @Test
   public void testGetExpensesComparedCheapestFirst() {
@@ -137,6 +161,17 @@ public class ExpenseServiceTest {
     assertEquals(300, this.expenseService.calculateTotalExpenseValueForUser(user), 0.001);
   }
 
+  /** Tests the exact total of a list of expenses in minor units. */
+  @Test
+  public void testCalculateTotalMinorUnitsForList() {
+    this.expenseService.addExpenseForUser(user, expense1);
+    this.expenseService.addExpenseForUser(user, expense2);
+    assertEquals(
+        30_000,
+        this.expenseService.calculateTotalMinorUnitsForList(
+            user.getExpenseHandler().getAllExpenses()));
+  }
+
   /*
    * Tests the retrieval of the total expense value for a user, when the user has no expenses.
    */
@@ -2,8 +2,10 @@ package core;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import com.google.gson.Gson;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.Objects;
@@ -68,6 +70,56 @@ public class ExpenseTest {
         IllegalArgumentException.class,
         () -> expense.setDateString("12-12-2022"),
         "This should lead to illegalArgumentException, because is wrong format");
+
+    String date = "12.12.2022";
+    expense.setDateString(date);
+    assertSame(date, expense.getDate(), "A date in the expected format should be kept as it is");
+  }
+
+  /** Test to verify that the epoch day follows the date, however the date was set. */
+  @Test
+  public void testToEpochDay() {
+    assertEquals(LocalDate.now().toEpochDay(), expense.toEpochDay());
+    assertEquals(0, new Expense("01.01.1970", "PC", 6000.0, "New PC").toEpochDay());
+    expense.setDateString("31.12.1969");
+    assertEquals(-1, expense.toEpochDay());
+    expense.setDate(LocalDate.of(2024, 3, 1));
+    assertEquals(LocalDate.of(2024, 3, 1).toEpochDay(), expense.toEpochDay());
+
+    Expense read = new Gson().fromJson("{\"date\":\"02.01.1970\",\"price\":1.0}", Expense.class);
+    assertEquals(1, read.toEpochDay());
+    assertThrows(IllegalStateException.class, () -> new Expense().toEpochDay());
+  }
+
+  /** Test to verify that prices are kept in whole minor units and rounded to them. */
+  @Test
+  public void testToMinorUnits() {
+    assertEquals(10000, expense.toMinorUnits());
+    expense.setPrice(0.1);
+    assertEquals(10, expense.toMinorUnits());
+    expense.setPrice(12.3456);
+    assertEquals(1235, expense.toMinorUnits());
+    assertEquals(12.35, expense.getPrice());
+    assertThrows(IllegalArgumentException.class, () -> expense.setPrice(Double.NaN));
+    assertThrows(IllegalArgumentException.class, () -> expense.setPrice(1e15));
+
+    Expense read = new Gson().fromJson("{\"date\":\"02.01.1970\",\"price\":19.99}", Expense.class);
+    assertEquals(1999, read.toMinorUnits());
+  }
+
+  /** Tests that an expense is given an id once and that the id is not compared by equals. */
+  @Test
+  public void testSetId() {
+    assertEquals(0, expense.getId());
+    assertThrows(IllegalArgumentException.class, () -> expense.setId(0));
+    expense.setId(7);
+    expense.setId(7);
+    assertEquals(7, expense.getId());
+    assertThrows(IllegalStateException.class, () -> expense.setId(8));
+    Expense same =
+        new Expense(
+            expense.getDate(), expense.getCategory(), expense.getPrice(), expense.getDescription());
+    assertEquals(same, expense);
   }
 
   /** Test to verify that setting a null date throws an IllegalArgumentException. */
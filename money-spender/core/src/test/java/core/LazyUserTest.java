@@ -0,0 +1,93 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+/** JUnit test class for {@link LazyUser} class. */
+public class LazyUserTest {
+
+  /** Tests that the expenses are loaded once, on the first access of the expense handler. */
+  @Test
+  public void testLoadsExpensesOnFirstAccess() {
+    Expense expense = new Expense(LocalDate.of(2024, 1, 1), "Food", 10.0, "Lunch");
+    AtomicInteger loads = new AtomicInteger();
+    LazyUser user =
+        new LazyUser(
+            "OlaNordmann",
+            "password123",
+            () -> {
+              loads.incrementAndGet();
+              return new ExpenseHandlerImpl(List.of(expense));
+            });
+
+    assertEquals("OlaNordmann", user.getUsername());
+    assertEquals("password123", user.getPassword());
+    assertFalse(user.hasLoadedExpenses());
+    assertEquals(0, loads.get());
+
+    ExpenseHandler handler = user.getExpenseHandler();
+    assertTrue(user.hasLoadedExpenses());
+    assertEquals(List.of(expense), handler.getAllExpenses());
+    assertEquals(Set.of("Food"), handler.getCategories());
+    assertSame(handler, user.getExpenseHandler());
+    assertEquals(1, loads.get());
+  }
+
+  /**
+   * Tests that writing out a lazy user field by field holds only its username and password, and
+   * does not load its expenses.
+   */
+  @Test
+  public void testReflectiveJsonHoldsNoExpenses() {
+    LazyUser user =
+        new LazyUser(
+            "OlaNordmann",
+            "password123",
+            () -> {
+              throw new IOException("Expenses should not be loaded");
+            });
+    assertEquals(
+        "{\"username\":\"OlaNordmann\",\"password\":\"password123\"}",
+        new Gson().toJson(user, User.class));
+    assertFalse(user.hasLoadedExpenses());
+  }
+
+  /** Tests that a copy of a lazy user holds its expenses. */
+  @Test
+  public void testCopyLoadsExpenses() {
+    Expense expense = new Expense(LocalDate.of(2024, 1, 1), "Food", 10.0, "Lunch");
+    User copy =
+        new User(
+            new LazyUser(
+                "OlaNordmann", "password123", () -> new ExpenseHandlerImpl(List.of(expense))));
+    assertEquals(List.of(expense), copy.getExpenseHandler().getAllExpenses());
+  }
+
+  /** Tests that a failing loader is reported, and that a missing loader is rejected. */
+  @Test
+  public void testInvalidLoader() {
+    LazyUser user =
+        new LazyUser(
+            "OlaNordmann",
+            "password123",
+            () -> {
+              throw new IOException("Store is gone");
+            });
+    assertThrows(UncheckedIOException.class, user::getExpenseHandler);
+    assertFalse(user.hasLoadedExpenses());
+    assertThrows(
+        IllegalArgumentException.class, () -> new LazyUser("OlaNordmann", "password123", null));
+  }
+}
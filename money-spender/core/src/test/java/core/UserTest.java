@@ -2,6 +2,7 @@ package core;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.time.LocalDate;
@@ -57,6 +58,18 @@ public class UserTest {
     assertEquals(2, this.expenseService.getAllExpensesForUser(this.user).size());
   }
 
+  /** Tests that the User constructor that accepts a handler keeps that handler. */
+  @Test
+  public void testConstructorWithHandler() {
+    ExpenseHandlerImpl handler = new ExpenseHandlerImpl();
+    handler.addExpense(expense1);
+    User withHandler = new User("OlaNordmann", "password123", handler);
+    assertSame(handler, withHandler.getExpenseHandler());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new User("OlaNordmann", "password123", (ExpenseHandlerImpl) null));
+  }
+
   /**
    * Tests the User constructor with invalid usernames. Verifies that an exception is thrown for null
    * or empty usernames.
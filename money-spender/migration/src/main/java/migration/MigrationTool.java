@@ -0,0 +1,211 @@
+package migration;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import persistence.BinaryStoreCodec;
+import persistence.GzipStoreCodec;
+import persistence.JsonStoreCodec;
+import persistence.MigrationReport;
+import persistence.PartitionedRepository;
+import persistence.ShardedJsonController;
+import persistence.StoreCodec;
+import persistence.StoreMigrator;
+
+/**
+ * Command-line tool that migrates a store file into another layout or format while the server is
+ * stopped. The store is streamed one user at a time, so stores of several gigabytes can be
+ * migrated with a small heap. When the migration is done, the target is read back and its number
+ * of users and expenses and their checksum are compared with those of the source, and the
+ * throughput of the migration is reported.
+ *
+ * <p>Files and store folders are given by their names in the application folder "money_spender"
+ * in the home directory, and default to the names the REST server uses:
+ *
+ * <pre>
+ * --source FILE              store file to migrate (default user.json)
+ * --source-format FORMAT     json or binary (default json); compressed files are detected
+ * --layout LAYOUT            file, sharded or partitioned (required)
+ * --target NAME              target file or store folder (default user.bin, users or partitions)
+ * --format FORMAT            json or binary, for the file layout (default binary)
+ * --compression COMPRESSION  none or gzip, for the file layout (default none)
+ * --compression-level LEVEL  gzip level from 1 to 9 (default 6)
+ * </pre>
+ *
+ * <p>The tool exits with 0 if the target matches the source, 1 if it does not or the migration
+ * failed, and 2 if the arguments are invalid.
+ */
+public final class MigrationTool {
+
+  static final int EXIT_VERIFIED = 0;
+  static final int EXIT_FAILED = 1;
+  static final int EXIT_USAGE = 2;
+
+  private static final Path APP_FOLDER =
+      Paths.get(System.getProperty("user.home"), "money_spender");
+  private static final Set<String> OPTIONS =
+      Set.of(
+          "source",
+          "source-format",
+          "layout",
+          "target",
+          "format",
+          "compression",
+          "compression-level");
+
+  private MigrationTool() {}
+
+  /**
+   * Runs the tool and exits with its exit code.
+   *
+   * @param args The command-line arguments.
+   */
+  public static void main(String[] args) {
+    System.exit(run(args, System.out));
+  }
+
+  /**
+   * Runs the tool.
+   *
+   * @param args The command-line arguments.
+   * @param out The stream to report to.
+   * @return The exit code.
+   */
+  static int run(String[] args, PrintStream out) {
+    try {
+      Map<String, String> options = parse(args);
+      Path source = APP_FOLDER.resolve(options.getOrDefault("source", "user.json"));
+      if (!Files.isRegularFile(source)) {
+        throw new IllegalArgumentException("The source store does not exist: " + source);
+      }
+      StoreCodec sourceCodec =
+          new GzipStoreCodec(codec(options.getOrDefault("source-format", "json")), 6);
+      StoreMigrator.Target target = target(options, source);
+      out.println("Migrating " + source + " ...");
+      MigrationReport report = StoreMigrator.migrate(source, sourceCodec, target);
+      out.println(report);
+      return report.isVerified() ? EXIT_VERIFIED : EXIT_FAILED;
+    } catch (IllegalArgumentException e) {
+      out.println("Error: " + e.getMessage());
+      out.println(
+          "Usage: --layout file|sharded|partitioned [--source FILE] [--source-format json|binary]"
+              + " [--target NAME] [--format json|binary] [--compression none|gzip]"
+              + " [--compression-level 1-9]");
+      return EXIT_USAGE;
+    } catch (IOException e) {
+      out.println("Migration failed: " + e.getMessage());
+      return EXIT_FAILED;
+    }
+  }
+
+  /**
+   * Parses arguments of the form "--name value".
+   *
+   * @param args The command-line arguments.
+   * @return The values by option name.
+   * @throws IllegalArgumentException If an option is unknown, repeated or has no value.
+   */
+  static Map<String, String> parse(String[] args) {
+    Map<String, String> options = new HashMap<>();
+    for (int i = 0; i < args.length; i += 2) {
+      String name = args[i].startsWith("--") ? args[i].substring(2) : "";
+      if (!OPTIONS.contains(name)) {
+        throw new IllegalArgumentException("Unknown option: " + args[i]);
+      }
+      if (i + 1 >= args.length) {
+        throw new IllegalArgumentException("Missing value of " + args[i]);
+      }
+      if (options.put(name, args[i + 1]) != null) {
+        throw new IllegalArgumentException("Repeated option: " + args[i]);
+      }
+    }
+    return options;
+  }
+
+  /**
+   * Creates the target of the migration from the options.
+   *
+   * @param options The parsed options.
+   * @param source The source file, which a file target must not replace.
+   * @return The target.
+   * @throws IOException If a store folder cannot be created.
+   * @throws IllegalArgumentException If the layout, format or compression is unknown.
+   */
+  private static StoreMigrator.Target target(Map<String, String> options, Path source)
+      throws IOException {
+    String layout = options.get("layout");
+    if (layout == null) {
+      throw new IllegalArgumentException("The layout of the target is required.");
+    }
+    switch (layout) {
+      case "sharded":
+        return StoreMigrator.sharded(new ShardedJsonController(folderName(options, "users")));
+      case "partitioned":
+        return StoreMigrator.partitioned(
+            new PartitionedRepository(folderName(options, "partitions")));
+      case "file":
+        String format = options.getOrDefault("format", "binary");
+        StoreCodec codec = codec(format);
+        String name = format.equals("json") ? "user.json" : "user.bin";
+        switch (options.getOrDefault("compression", "none")) {
+          case "none":
+            break;
+          case "gzip":
+            int level = Integer.parseInt(options.getOrDefault("compression-level", "6"));
+            codec = new GzipStoreCodec(codec, level);
+            name += ".gz";
+            break;
+          default:
+            throw new IllegalArgumentException(
+                "Unknown compression: " + options.get("compression"));
+        }
+        Path path = APP_FOLDER.resolve(options.getOrDefault("target", name));
+        if (path.normalize().equals(source.normalize())) {
+          throw new IllegalArgumentException("The target must not be the source store.");
+        }
+        return StoreMigrator.file(path, codec);
+      default:
+        throw new IllegalArgumentException("Unknown layout: " + layout);
+    }
+  }
+
+  /**
+   * Retrieves the name of the target store folder. The stores keep their folder in the application
+   * folder, so the name cannot be a path.
+   *
+   * @param options The parsed options.
+   * @param defaultName The name the REST server uses.
+   * @return The name of the store folder.
+   * @throws IllegalArgumentException If the name is a path.
+   */
+  private static String folderName(Map<String, String> options, String defaultName) {
+    String name = options.getOrDefault("target", defaultName);
+    if (name.isEmpty() || name.contains("/") || name.contains("\\") || name.startsWith(".")) {
+      throw new IllegalArgumentException("The target store must be a folder name: " + name);
+    }
+    return name;
+  }
+
+  /**
+   * Creates the codec of a file format.
+   *
+   * @param format The format, either "json" or "binary".
+   * @return The codec.
+   * @throws IllegalArgumentException If the format is unknown.
+   */
+  private static StoreCodec codec(String format) {
+    switch (format) {
+      case "json":
+        return new JsonStoreCodec();
+      case "binary":
+        return new BinaryStoreCodec();
+      default:
+        throw new IllegalArgumentException("Unknown format: " + format);
+    }
+  }
+}
@@ -0,0 +1,3 @@
+module moneySpender.migration {
+  requires moneySpender.persistence;
+}
@@ -0,0 +1,127 @@
+package migration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import core.Expense;
+import core.User;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import persistence.BinaryStoreCodec;
+import persistence.GzipStoreCodec;
+import persistence.JsonStoreCodec;
+
+/** JUnit test class for {@link MigrationTool} class. */
+public class MigrationToolTest {
+
+  private static final String SOURCE_FILE = "migrationtooltest.json";
+  private static final String TARGET_FILE = "migrationtooltest.bin.gz";
+  private static final String TARGET_STORE = "migrationtooltest";
+  private final Path appFolder = Paths.get(System.getProperty("user.home"), "money_spender");
+  private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+  private final PrintStream out = new PrintStream(output, true, StandardCharsets.UTF_8);
+
+  /**
+   * Writes a JSON store with a few users before each test.
+   *
+   * @throws IOException If an I/O error occurs while setting up the test.
+   */
+  @BeforeEach
+  public void setUp() throws IOException {
+    List<User> users = new ArrayList<>();
+    for (String name : new String[] {"alice", "bob", "carol"}) {
+      User user = new User(name, "password");
+      user.getExpenseHandler().addExpense(new Expense(LocalDate.of(2024, 3, 1), "Food", 12.5, "A"));
+      user.getExpenseHandler().addExpense(new Expense(LocalDate.of(2024, 4, 1), "Rent", 5e3, "B"));
+      users.add(user);
+    }
+    Files.createDirectories(appFolder);
+    try (OutputStream file = Files.newOutputStream(appFolder.resolve(SOURCE_FILE))) {
+      new JsonStoreCodec().write(users, file);
+    }
+  }
+
+  /**
+   * Deletes the test files and stores after each test.
+   *
+   * @throws IOException If an I/O error occurs while cleaning up.
+   */
+  @AfterEach
+  public void tearDown() throws IOException {
+    for (String name : new String[] {SOURCE_FILE, TARGET_FILE, TARGET_STORE}) {
+      Path path = appFolder.resolve(name);
+      if (Files.exists(path)) {
+        try (Stream<Path> paths = Files.walk(path)) {
+          for (Path file : paths.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) {
+            Files.delete(file);
+          }
+        }
+      }
+      Files.deleteIfExists(appFolder.resolve(name + ".lock"));
+    }
+  }
+
+  /**
+   * Tests migrating into a compressed binary file and into a partitioned store.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Test
+  public void testMigrate() throws IOException {
+    String[] toFile = {
+      "--source", SOURCE_FILE, "--layout", "file", "--compression", "gzip", "--target", TARGET_FILE
+    };
+    assertEquals(MigrationTool.EXIT_VERIFIED, MigrationTool.run(toFile, out));
+    String report = output.toString(StandardCharsets.UTF_8);
+    assertTrue(report.contains("Migrated 3 users with 6 expenses"), report);
+    try (InputStream in = Files.newInputStream(appFolder.resolve(TARGET_FILE))) {
+      GzipStoreCodec codec = new GzipStoreCodec(new BinaryStoreCodec(), 6);
+      assertEquals(3, codec.read(in).size());
+    }
+
+    String[] toPartitions = {
+      "--source", SOURCE_FILE, "--layout", "partitioned", "--target", TARGET_STORE
+    };
+    assertEquals(MigrationTool.EXIT_VERIFIED, MigrationTool.run(toPartitions, out));
+    assertEquals(MigrationTool.EXIT_USAGE, MigrationTool.run(toPartitions, out));
+  }
+
+  /** Tests that invalid arguments are reported with the usage and their own exit code. */
+  @Test
+  public void testInvalidArguments() {
+    String[][] invalid = {
+      {"--source", SOURCE_FILE},
+      {"--source", SOURCE_FILE, "--layout", "tree"},
+      {"--source", "missing.json", "--layout", "file"},
+      {"--source", SOURCE_FILE, "--layout", "file", "--format", "json", "--target", SOURCE_FILE},
+      {"--source", SOURCE_FILE, "--layout", "sharded", "--target", "../elsewhere"},
+      {"--source", SOURCE_FILE, "--layout", "file", "--compression", "zip"},
+    };
+    for (String[] args : invalid) {
+      assertEquals(MigrationTool.EXIT_USAGE, MigrationTool.run(args, out), String.join(" ", args));
+    }
+    assertTrue(output.toString(StandardCharsets.UTF_8).contains("Usage:"));
+    assertThrows(IllegalArgumentException.class, () -> MigrationTool.parse(new String[] {"-x"}));
+    assertThrows(
+        IllegalArgumentException.class, () -> MigrationTool.parse(new String[] {"--layout"}));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> MigrationTool.parse(new String[] {"--layout", "file", "--layout", "sharded"}));
+  }
+}
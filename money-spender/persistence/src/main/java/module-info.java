@@ -1,6 +1,8 @@
 module moneySpender.persistence {
   requires transitive moneySpender.core;
   requires transitive com.google.gson;
+  requires java.sql;
+  requires com.h2database;
 
   exports persistence;
 
@@ -0,0 +1,217 @@
+package persistence;
+
+import core.Expense;
+import core.User;
+import java.io.IOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the calls of a {@link UserRepository} and {@link ExpenseRepository} on dedicated I/O
+ * threads and returns a {@link CompletableFuture} for each, so the calling thread does not wait
+ * for the disk. The calls for a user always run on the same thread in the order they were made,
+ * so a load sees every change queued before it, while calls for different users run in parallel.
+ * A change is reported as done once it has reached the configured {@link Durability}.
+ */
+public class AsyncRepository implements AutoCloseable {
+
+  private static final Logger LOGGER = System.getLogger(AsyncRepository.class.getName());
+  private static final int QUEUE_CAPACITY = 10_000;
+  private static final long CLOSE_TIMEOUT_SECONDS = 30;
+
+  private final UserRepository userRepository;
+  private final ExpenseRepository expenseRepository;
+  private final Durability durability;
+  private final ThreadPoolExecutor[] stripes;
+
+  /** A call to the store that is run on an I/O thread. */
+  @FunctionalInterface
+  public interface StoreCall<T> {
+
+    /**
+     * Runs the call.
+     *
+     * @return The result of the call.
+     * @throws IOException If an error occurs while accessing the store.
+     */
+    T call() throws IOException;
+  }
+
+  /**
+   * Constructs an `AsyncRepository` for the given store.
+   *
+   * @param userRepository The users of the store.
+   * @param expenseRepository The expenses of the store, usually the same object.
+   * @param threads The number of I/O threads.
+   * @param durability How far a change must have come before it is reported as done.
+   * @throws IllegalArgumentException If the number of threads is not positive or the durability is
+   *     null.
+   */
+  public AsyncRepository(
+      UserRepository userRepository,
+      ExpenseRepository expenseRepository,
+      int threads,
+      Durability durability) {
+    if (threads <= 0) {
+      throw new IllegalArgumentException("The number of threads must be positive.");
+    }
+    if (durability == null) {
+      throw new IllegalArgumentException("Durability cannot be null.");
+    }
+    this.userRepository = userRepository;
+    this.expenseRepository = expenseRepository;
+    this.durability = durability;
+    this.stripes = new ThreadPoolExecutor[threads];
+    for (int i = 0; i < threads; i++) {
+      String name = "store-io-" + i;
+      stripes[i] =
+          new ThreadPoolExecutor(
+              1,
+              1,
+              0,
+              TimeUnit.MILLISECONDS,
+              new LinkedBlockingQueue<>(QUEUE_CAPACITY),
+              runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+              });
+    }
+  }
+
+  /**
+   * Retrieves how far a change must have come before it is reported as done.
+   *
+   * @return The durability of changes.
+   */
+  public Durability getDurability() {
+    return durability;
+  }
+
+  /**
+   * Loads a user after every change to the user queued before it.
+   *
+   * @param username The username of the user.
+   * @return A future of the user, or of null if there is no user with the username.
+   */
+  public CompletableFuture<User> loadUserAsync(String username) {
+    return submit(username, () -> userRepository.findUser(username), Durability.WRITTEN);
+  }
+
+  /**
+   * Adds an expense to a user.
+   *
+   * @param username The username of the user.
+   * @param expense The expense to add.
+   * @return A future of the changed user, or of null if there is no user with the username. With
+   *     {@link Durability#QUEUED} the future completes with null once the change is queued.
+   */
+  public CompletableFuture<User> addExpenseAsync(String username, Expense expense) {
+    return submit(username, () -> expenseRepository.addExpense(username, expense), durability);
+  }
+
+  /**
+   * Removes an expense from a user.
+   *
+   * @param username The username of the user.
+   * @param expense The expense to remove.
+   * @return A future of the changed user, or of null if there is no user with the username. With
+   *     {@link Durability#QUEUED} the future completes with null once the change is queued.
+   */
+  public CompletableFuture<User> removeExpenseAsync(String username, Expense expense) {
+    return submit(username, () -> expenseRepository.removeExpense(username, expense), durability);
+  }
+
+  /**
+   * Removes the expense with the given id from a user.
+   *
+   * @param username The username of the user.
+   * @param id The id of the expense to remove.
+   * @return A future of the changed user, or of null if there is no user with the username. With
+   *     {@link Durability#QUEUED} the future completes with null once the change is queued.
+   */
+  public CompletableFuture<User> removeExpenseByIdAsync(String username, long id) {
+    return submit(username, () -> expenseRepository.removeExpenseById(username, id), durability);
+  }
+
+  /**
+   * Runs a call to the store on the I/O thread of a user. With {@link Durability#QUEUED} the
+   * future completes with null as soon as the call is queued and a failure of the call is logged.
+   * Otherwise it completes with the result of the call, after the store has been synced to disk
+   * with {@link Durability#FSYNCED}, or exceptionally with the error of the call.
+   *
+   * @param <T> The type of the result.
+   * @param username The username of the user the call belongs to.
+   * @param call The call to run.
+   * @param durability How far the call must have come before the future completes.
+   * @return A future of the result of the call. It fails with a {@link
+   *     RejectedExecutionException} if the queue of the thread is full or the repository is closed.
+   */
+  public <T> CompletableFuture<T> submit(
+      String username, StoreCall<T> call, Durability durability) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    Runnable task =
+        () -> {
+          try {
+            T value = call.call();
+            if (durability == Durability.FSYNCED) {
+              userRepository.sync();
+            }
+            result.complete(value);
+          } catch (IOException | RuntimeException e) {
+            result.completeExceptionally(e);
+          }
+        };
+    try {
+      stripeFor(username).execute(task);
+    } catch (RejectedExecutionException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    if (durability != Durability.QUEUED) {
+      return result;
+    }
+    result.whenComplete(
+        (value, error) -> {
+          if (error != null) {
+            LOGGER.log(Level.WARNING, "Queued change of " + username + " failed", error);
+          }
+        });
+    return CompletableFuture.completedFuture(null);
+  }
+
+  /**
+   * Retrieves the I/O thread of a user.
+   *
+   * @param username The username of the user.
+   * @return The executor of the thread.
+   */
+  private ThreadPoolExecutor stripeFor(String username) {
+    int hash = username == null ? 0 : username.hashCode();
+    return stripes[Math.floorMod(hash ^ (hash >>> 16), stripes.length)];
+  }
+
+  /**
+   * Stops accepting calls and waits for the queued calls to finish, so queued changes are not
+   * lost when the application shuts down.
+   */
+  @Override
+  public void close() {
+    for (ThreadPoolExecutor stripe : stripes) {
+      stripe.shutdown();
+    }
+    try {
+      for (ThreadPoolExecutor stripe : stripes) {
+        if (!stripe.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+          LOGGER.log(Level.WARNING, "Queued changes were not finished before shutdown");
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,476 @@
+package persistence;
+
+import core.Expense;
+import core.ExpenseHandler;
+import core.ExpenseHandlerImpl;
+import core.User;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary {@link StoreCodec}. A store starts with a magic number and a format version,
+ * followed by one record per user. Every record is prefixed with its length, so a lookup can skip
+ * the records of other users after reading their username.
+ *
+ * <p>A record holds the username, the password and the expenses of a user. Each expense is stored
+ * as a reference to the record's category dictionary, the date as an epoch day, the price and the
+ * description. A category is written out the first time a record uses it and referred to by its
+ * index after that. A price is stored as the whole number of minor units the expense keeps. Older
+ * stores may also hold a price as a raw double, which is still read. The id of an expense is stored
+ * as the difference to the id of the previous expense, which is usually 1, and the record ends with
+ * the id the handler gives its next expense, stored as its distance past the last id. Stores of
+ * version 2 have no next id, so their handlers continue after the highest id, and stores of version
+ * 1 have no ids at all, so their expenses are given ids when they are read. Numbers are written as
+ * variable-length integers, so small values take a single byte.
+ */
+public class BinaryStoreCodec implements StoreCodec {
+
+  private static final int MAGIC = 0x4D53_4231;
+  private static final int VERSION = 3;
+  private static final int VERSION_WITHOUT_NEXT_ID = 2;
+  private static final int VERSION_WITHOUT_IDS = 1;
+  private static final int PRICE_MINOR_UNITS = 0;
+  private static final int PRICE_DOUBLE = 1;
+  private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+
+  @Override
+  public void write(List<User> users, OutputStream out) throws IOException {
+    UserWriter writer = openWriter(out);
+    for (User user : users) {
+      writer.accept(user);
+    }
+    writer.finish();
+  }
+
+  @Override
+  public String getFileExtension() {
+    return ".bin";
+  }
+
+  @Override
+  public List<User> read(InputStream in) throws IOException {
+    return readAll(in, true);
+  }
+
+  @Override
+  public void readEach(InputStream in, UserSink sink) throws IOException {
+    DataInputStream data = new DataInputStream(in);
+    int version = readHeader(data);
+    if (version == 0) {
+      return;
+    }
+    long length;
+    while ((length = readRecordLength(data)) >= 0) {
+      sink.accept(readUser(data, version, length, null, true));
+    }
+  }
+
+  @Override
+  public UserWriter openWriter(OutputStream out) throws IOException {
+    // The length prefix of a record is only known once the record is complete.
+    ByteArrayOutputStream record = new ByteArrayOutputStream();
+    writeHeader(out);
+    return new UserWriter() {
+      @Override
+      public void accept(User user) throws IOException {
+        record.reset();
+        writeUser(user, record);
+        writeVarLong(out, record.size());
+        record.writeTo(out);
+      }
+
+      @Override
+      public void finish() throws IOException {
+        out.flush();
+      }
+    };
+  }
+
+  @Override
+  public User find(InputStream in, String username, boolean readExpenses) throws IOException {
+    DataInputStream data = new DataInputStream(in);
+    int version = readHeader(data);
+    if (version == 0) {
+      return null;
+    }
+    long length;
+    while ((length = readRecordLength(data)) >= 0) {
+      User user = readUser(data, version, length, username, readExpenses);
+      if (user != null) {
+        return user;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public List<User> readHeaders(InputStream in) throws IOException {
+    return readAll(in, false);
+  }
+
+  /**
+   * Reads every record of the stream.
+   *
+   * @param in The stream to read from.
+   * @param readExpenses Whether the expenses of the users should be read.
+   * @return The users read from the stream.
+   * @throws IOException If an error occurs while reading from the stream.
+   */
+  private static List<User> readAll(InputStream in, boolean readExpenses) throws IOException {
+    List<User> users = new ArrayList<>();
+    DataInputStream data = new DataInputStream(in);
+    int version = readHeader(data);
+    if (version == 0) {
+      return users;
+    }
+    long length;
+    while ((length = readRecordLength(data)) >= 0) {
+      users.add(readUser(data, version, length, null, readExpenses));
+    }
+    return users;
+  }
+
+  /**
+   * Writes the magic number and format version.
+   *
+   * @param out The stream to write to.
+   * @throws IOException If an error occurs while writing to the stream.
+   */
+  private static void writeHeader(OutputStream out) throws IOException {
+    for (int shift = 24; shift >= 0; shift -= 8) {
+      out.write(MAGIC >>> shift);
+    }
+    writeVarLong(out, VERSION);
+  }
+
+  /**
+   * Reads and checks the magic number and format version.
+   *
+   * @param in The stream to read from.
+   * @return The format version, or 0 if the stream is empty.
+   * @throws IOException If the stream is not a binary store of a supported version.
+   */
+  private static int readHeader(DataInputStream in) throws IOException {
+    int first = in.read();
+    if (first < 0) {
+      return 0;
+    }
+    int magic = first << 24 | in.readUnsignedByte() << 16 | in.readUnsignedShort();
+    if (magic != MAGIC) {
+      throw new IOException("Not a binary Moneyspender store.");
+    }
+    long version = readVarLong(in);
+    if (version < VERSION_WITHOUT_IDS || version > VERSION) {
+      throw new IOException("Unsupported binary store version: " + version);
+    }
+    return (int) version;
+  }
+
+  /**
+   * Writes the fields of a user to a record.
+   *
+   * @param user The user to write.
+   * @param out The record to write to.
+   * @throws IOException If an error occurs while writing to the record.
+   */
+  private static void writeUser(User user, OutputStream out) throws IOException {
+    writeString(out, user.getUsername());
+    writeString(out, user.getPassword());
+    ExpenseHandler handler = user.getExpenseHandler();
+    List<Expense> expenses = handler.getAllExpenses();
+    writeVarLong(out, expenses.size());
+    Map<String, Integer> categories = new HashMap<>();
+    long previousId = 0;
+    for (Expense expense : expenses) {
+      Integer index = categories.get(expense.getCategory());
+      if (index == null) {
+        writeVarLong(out, categories.size());
+        writeString(out, expense.getCategory());
+        categories.put(expense.getCategory(), categories.size());
+      } else {
+        writeVarLong(out, index);
+      }
+      writeVarLong(out, zigZag(expense.toEpochDay()));
+      writePrice(out, expense.toMinorUnits());
+      writeString(out, expense.getDescription());
+      writeVarLong(out, zigZag(expense.getId() - previousId));
+      previousId = expense.getId();
+    }
+    writeVarLong(out, handler.getNextId() - previousId - 1);
+  }
+
+  /**
+   * Reads a user record if it has the given username, and otherwise skips the rest of the record
+   * as soon as the username is known. Categories and dates are taken from the shared {@link
+   * StringPool}, so expenses of all users share one string for each of them.
+   *
+   * @param in The stream positioned after the record length.
+   * @param version The format version of the store.
+   * @param length The length of the record in bytes.
+   * @param username The username of the user to find, or null to read any user.
+   * @param readExpenses Whether the expenses of the user should be read.
+   * @return The user if it has the given username; otherwise, null.
+   * @throws IOException If an error occurs while reading from the stream.
+   */
+  private static User readUser(
+      DataInputStream in, int version, long length, String username, boolean readExpenses)
+      throws IOException {
+    CountingInput record = new CountingInput(in);
+    String name = readString(record);
+    if (username != null && !name.equals(username)) {
+      in.skipNBytes(length - record.count);
+      return null;
+    }
+    String password = readString(record);
+    List<Expense> expenses = new ArrayList<>();
+    if (!readExpenses) {
+      in.skipNBytes(length - record.count);
+      return new User(name, password, expenses);
+    }
+    long expenseCount = readVarLong(record);
+    List<String> categories = new ArrayList<>();
+    long id = 0;
+    for (long i = 0; i < expenseCount; i++) {
+      int index = (int) readVarLong(record);
+      if (index == categories.size()) {
+        categories.add(StringPool.SHARED.canonical(readString(record)));
+      } else if (index > categories.size()) {
+        throw new IOException("Invalid category reference in the record of " + name);
+      }
+      String date =
+          StringPool.SHARED.canonical(
+              LocalDate.ofEpochDay(unZigZag(readVarLong(record))).format(DATE_FORMATTER));
+      double price = readPrice(record);
+      String description = readString(record);
+      Expense expense = new Expense(date, categories.get(index), price, description);
+      if (version != VERSION_WITHOUT_IDS) {
+        id += unZigZag(readVarLong(record));
+        if (id <= 0) {
+          throw new IOException("Invalid expense id in the record of " + name);
+        }
+        expense.setId(id);
+      }
+      expenses.add(expense);
+    }
+    long nextId = 0;
+    if (version == VERSION) {
+      nextId = id + 1 + readVarLong(record);
+    }
+    if (record.count != length) {
+      throw new IOException("Invalid length of the record of " + name);
+    }
+    try {
+      return new User(name, password, new ExpenseHandlerImpl(expenses, nextId));
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Invalid expenses in the record of " + name, e);
+    }
+  }
+
+  /**
+   * Reads the length of the next record.
+   *
+   * @param in The stream to read from.
+   * @return The length of the record, or -1 at the end of the stream.
+   * @throws IOException If an error occurs while reading from the stream.
+   */
+  private static long readRecordLength(DataInputStream in) throws IOException {
+    int first = in.read();
+    if (first < 0) {
+      return -1;
+    }
+    return readVarLong(in, first);
+  }
+
+  /**
+   * Writes a price as a whole number of minor units.
+   *
+   * @param out The stream to write to.
+   * @param minorUnits The price to write, in minor units.
+   * @throws IOException If an error occurs while writing to the stream.
+   */
+  private static void writePrice(OutputStream out, long minorUnits) throws IOException {
+    out.write(PRICE_MINOR_UNITS);
+    writeVarLong(out, minorUnits);
+  }
+
+  /**
+   * Reads a price written by {@link #writePrice(OutputStream, long)}, or written as a raw double
+   * by older versions of the codec.
+   *
+   * @param in The stream to read from.
+   * @return The price.
+   * @throws IOException If an error occurs while reading from the stream.
+   */
+  private static double readPrice(InputStream in) throws IOException {
+    int kind = readByte(in);
+    if (kind == PRICE_MINOR_UNITS) {
+      return readVarLong(in) / 100.0;
+    }
+    if (kind != PRICE_DOUBLE) {
+      throw new IOException("Invalid price encoding: " + kind);
+    }
+    long bits = 0;
+    for (int i = 0; i < Long.BYTES; i++) {
+      bits = bits << 8 | readByte(in);
+    }
+    return Double.longBitsToDouble(bits);
+  }
+
+  /**
+   * Writes a string as its length in bytes followed by its UTF-8 bytes.
+   *
+   * @param out The stream to write to.
+   * @param value The string to write.
+   * @throws IOException If an error occurs while writing to the stream.
+   */
+  private static void writeString(OutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    writeVarLong(out, bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Reads a string written by {@link #writeString(OutputStream, String)}.
+   *
+   * @param in The stream to read from.
+   * @return The string.
+   * @throws IOException If an error occurs while reading from the stream.
+   */
+  private static String readString(InputStream in) throws IOException {
+    int length = (int) readVarLong(in);
+    byte[] bytes = in.readNBytes(length);
+    if (bytes.length != length) {
+      throw new EOFException();
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Writes a non-negative number in groups of seven bits, least significant group first, setting
+   * the high bit of every byte except the last.
+   *
+   * @param out The stream to write to.
+   * @param value The number to write.
+   * @throws IOException If an error occurs while writing to the stream.
+   */
+  private static void writeVarLong(OutputStream out, long value) throws IOException {
+    long remaining = value;
+    while ((remaining & ~0x7FL) != 0) {
+      out.write((int) (remaining & 0x7F | 0x80));
+      remaining >>>= 7;
+    }
+    out.write((int) remaining);
+  }
+
+  /**
+   * Reads a number written by {@link #writeVarLong(OutputStream, long)}.
+   *
+   * @param in The stream to read from.
+   * @return The number.
+   * @throws IOException If an error occurs while reading from the stream.
+   */
+  private static long readVarLong(InputStream in) throws IOException {
+    return readVarLong(in, readByte(in));
+  }
+
+  /**
+   * Reads a number written by {@link #writeVarLong(OutputStream, long)} whose first byte has
+   * already been read.
+   *
+   * @param in The stream to read the remaining bytes from.
+   * @param first The first byte of the number.
+   * @return The number.
+   * @throws IOException If an error occurs while reading from the stream.
+   */
+  private static long readVarLong(InputStream in, int first) throws IOException {
+    long value = first & 0x7F;
+    int current = first;
+    for (int shift = 7; (current & 0x80) != 0; shift += 7) {
+      if (shift > 63) {
+        throw new IOException("Invalid variable-length number.");
+      }
+      current = readByte(in);
+      value |= (long) (current & 0x7F) << shift;
+    }
+    return value;
+  }
+
+  /**
+   * Reads a single byte.
+   *
+   * @param in The stream to read from.
+   * @return The byte as an unsigned value.
+   * @throws IOException If the end of the stream is reached or an error occurs.
+   */
+  private static int readByte(InputStream in) throws IOException {
+    int value = in.read();
+    if (value < 0) {
+      throw new EOFException();
+    }
+    return value;
+  }
+
+  /**
+   * Maps a signed number to a non-negative one, so numbers close to zero stay small.
+   *
+   * @param value The signed number.
+   * @return The encoded number.
+   */
+  private static long zigZag(long value) {
+    return value << 1 ^ value >> 63;
+  }
+
+  /**
+   * Reverses {@link #zigZag(long)}.
+   *
+   * @param value The encoded number.
+   * @return The signed number.
+   */
+  private static long unZigZag(long value) {
+    return value >>> 1 ^ -(value & 1);
+  }
+
+  /** A stream that counts the bytes read from the record it wraps. */
+  private static final class CountingInput extends InputStream {
+    private final InputStream in;
+    private long count;
+
+    /**
+     * Constructs a counting stream.
+     *
+     * @param in The stream to read from.
+     */
+    CountingInput(InputStream in) {
+      this.in = in;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int value = in.read();
+      if (value >= 0) {
+        count++;
+      }
+      return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      int read = in.read(buffer, offset, length);
+      if (read > 0) {
+        count += read;
+      }
+      return read;
+    }
+  }
+}
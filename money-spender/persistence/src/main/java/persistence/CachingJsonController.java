@@ -0,0 +1,448 @@
+package persistence;
+
+import core.User;
+import java.io.IOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * A {@link JsonController} that keeps all users of the JSON data file in memory. The file is read
+ * once, reads are served from memory and changed users are written back to the file in the
+ * background at a fixed interval. Calling {@link #close()} stops the background writer and
+ * performs a final, blocking flush so no saved user is lost on shutdown.
+ *
+ * <p>The file may also be changed by another process, such as the desktop app and the REST server
+ * sharing a store. Before every flush, and after every change seen by {@link
+ * #watchForExternalChanges(long)}, users that were changed in the file are replaced in memory and
+ * users that were removed from the file are dropped. Users saved in memory but not yet flushed win
+ * over the file.
+ */
+public class CachingJsonController extends JsonController implements AutoCloseable {
+
+  /** The default time in milliseconds between two background flushes. */
+  public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+
+  private static final Logger LOGGER = System.getLogger(CachingJsonController.class.getName());
+
+  private final Map<String, User> users = new LinkedHashMap<>();
+  private final Set<String> dirtyUsers = new HashSet<>();
+  private final Object flushLock = new Object();
+  private final ScheduledExecutorService flusher;
+  private boolean loaded;
+  private String loadedStamp;
+  private StoreWatcher watcher;
+  private long watchDebounceMillis = -1;
+
+  /**
+   * Constructs a `CachingJsonController` for the given file with the default flush interval.
+   *
+   * @param file The name of the JSON file to work with.
+   * @throws IOException If an I/O error occurs while setting the file path.
+   */
+  public CachingJsonController(String file) throws IOException {
+    this(file, DEFAULT_FLUSH_INTERVAL_MILLIS);
+  }
+
+  /**
+   * Constructs a `CachingJsonController` for the given file which writes changed users back to the
+   * file every {@code flushIntervalMillis} milliseconds.
+   *
+   * @param file The name of the JSON file to work with.
+   * @param flushIntervalMillis The time in milliseconds between two background flushes.
+   * @throws IOException If an I/O error occurs while setting the file path.
+   * @throws IllegalArgumentException If the flush interval is not positive.
+   */
+  public CachingJsonController(String file, long flushIntervalMillis) throws IOException {
+    this(file, flushIntervalMillis, null);
+  }
+
+  /**
+   * Constructs a `CachingJsonController` for the given file in the format of the given codec,
+   * which writes changed users back to the file every {@code flushIntervalMillis} milliseconds.
+   *
+   * @param file The name of the file to work with.
+   * @param flushIntervalMillis The time in milliseconds between two background flushes.
+   * @param codec The format of the file, or null for pretty-printed JSON.
+   * @throws IOException If an I/O error occurs while setting the file path.
+   * @throws IllegalArgumentException If the flush interval is not positive.
+   */
+  public CachingJsonController(String file, long flushIntervalMillis, StoreCodec codec)
+      throws IOException {
+    super(file, codec);
+    if (flushIntervalMillis <= 0) {
+      throw new IllegalArgumentException("Flush interval must be positive.");
+    }
+    this.flusher =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "money-spender-flusher");
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.flusher.scheduleWithFixedDelay(
+        this::flushInBackground, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Flushes pending changes to the current file before switching to the new one. The cache is
+   * reloaded from the new file on the next access.
+   *
+   * @param file The name of the JSON file to work with.
+   * @throws IOException If an I/O error occurs while flushing or setting the file path.
+   */
+  @Override
+  public void setFilePath(String file) throws IOException {
+    synchronized (flushLock) {
+      flush();
+      synchronized (this) {
+        super.setFilePath(file);
+        users.clear();
+        dirtyUsers.clear();
+        loaded = false;
+      }
+      if (watchDebounceMillis >= 0) {
+        watchForExternalChanges(watchDebounceMillis);
+      }
+    }
+  }
+
+  /**
+   * Watches the file for changes by other processes, so they are seen without checking the file
+   * on every read. Once a burst of changes has settled for the debounce time, the users that were
+   * changed in the file are reloaded. Writes of this controller are recognized and ignored.
+   *
+   * @param debounceMillis The time in milliseconds without changes before the file is reloaded.
+   * @throws IOException If an error occurs while starting to watch the file.
+   * @throws IllegalArgumentException If the debounce time is negative.
+   */
+  public void watchForExternalChanges(long debounceMillis) throws IOException {
+    synchronized (flushLock) {
+      StoreWatcher newWatcher =
+          new StoreWatcher(getFilePath(), debounceMillis, this::reloadInBackground);
+      stopWatching();
+      watcher = newWatcher;
+      watchDebounceMillis = debounceMillis;
+    }
+  }
+
+  /**
+   * Reloads the users that were changed in the file since it was last read or written by this
+   * controller. Users with unflushed changes are kept as they are in memory.
+   *
+   * @return The number of users that were replaced, added or removed in memory.
+   * @throws IOException If an error occurs while reading the file.
+   */
+  public int reloadExternalChanges() throws IOException {
+    synchronized (flushLock) {
+      return reloadIfChanged();
+    }
+  }
+
+  /**
+   * Stores the user in memory and marks it for the next flush.
+   *
+   * @param user The User object to be saved.
+   */
+  @Override
+  public synchronized void saveNewUserToJson(User user) throws IOException {
+    ensureLoaded();
+    users.remove(user.getUsername());
+    users.put(user.getUsername(), new User(user));
+    dirtyUsers.add(user.getUsername());
+  }
+
+  /**
+   * Returns copies of all cached users.
+   *
+   * @return A list of User objects.
+   * @throws IOException If the file has to be loaded and an error occurs while reading it.
+   */
+  @Override
+  public synchronized List<User> readUsersFromJson() throws IOException {
+    ensureLoaded();
+    List<User> copies = new ArrayList<>(users.size());
+    for (User user : users.values()) {
+      copies.add(new User(user));
+    }
+    return copies;
+  }
+
+  /**
+   * Checks if a username exists among the cached users.
+   *
+   * @param username The username to check for existence.
+   * @return True if the username exists; otherwise, false.
+   * @throws IOException If the file has to be loaded and an error occurs while reading it.
+   */
+  @Override
+  public synchronized boolean checkIfUserNameExists(String username) throws IOException {
+    ensureLoaded();
+    return users.containsKey(username);
+  }
+
+  /**
+   * Validates the username and password combination against the cached users.
+   *
+   * @param username The username to validate.
+   * @param password The password to validate.
+   * @return True if the combination is correct; otherwise, false.
+   * @throws IOException If the file has to be loaded and an error occurs while reading it.
+   */
+  @Override
+  public synchronized boolean checkIfPasswordIsCorrect(String username, String password)
+      throws IOException {
+    ensureLoaded();
+    User user = users.get(username);
+    return user != null && user.getPassword().equals(password);
+  }
+
+  /**
+   * Authenticates a user against the users in memory, which already are an index of their own.
+   *
+   * @param username The username to authenticate.
+   * @param password The password to authenticate.
+   * @return A copy of the User object if the combination is correct; otherwise, null.
+   * @throws IOException If the file has to be loaded and an error occurs while reading it.
+   */
+  @Override
+  public synchronized User authenticateUser(String username, String password)
+      throws IOException {
+    ensureLoaded();
+    User user = users.get(username);
+    return user != null && user.getPassword().equals(password) ? new User(user) : null;
+  }
+
+  /**
+   * Returns a copy of the cached user, so callers can modify it freely until they save it again.
+   *
+   * @param username The username of the user to retrieve.
+   * @return A copy of the User object if found; otherwise, null.
+   * @throws IOException If the file has to be loaded and an error occurs while reading it.
+   */
+  @Override
+  public synchronized User getUser(String username) throws IOException {
+    ensureLoaded();
+    User user = users.get(username);
+    return user == null ? null : new User(user);
+  }
+
+  /** Returns true, as every user stays cached in memory once the file is loaded. */
+  @Override
+  public boolean keepsUsersInMemory() {
+    return true;
+  }
+
+  /**
+   * Forces every saved user to disk by flushing the cache.
+   *
+   * @throws IOException If an error occurs while writing to the file.
+   */
+  @Override
+  public void sync() throws IOException {
+    flush();
+  }
+
+  /**
+   * Writes all cached users to the file if any user has been saved since the last flush.
+   *
+   * @throws IOException If an error occurs while writing to the file.
+   */
+  public void flush() throws IOException {
+    synchronized (flushLock) {
+      synchronized (this) {
+        if (dirtyUsers.isEmpty()) {
+          return;
+        }
+      }
+      StoreLocks locks = storeLocks();
+      Lock commitLock = locks.commitLock();
+      commitLock.lock();
+      try {
+        locks.acquireFileLock();
+        try {
+          flushLocked();
+        } finally {
+          locks.releaseFileLock();
+        }
+      } finally {
+        commitLock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Merges the changes of other processes and writes all cached users to the file, while the store
+   * is locked.
+   *
+   * @throws IOException If an error occurs while reading or writing the file.
+   */
+  private void flushLocked() throws IOException {
+    reloadIfChanged();
+    List<User> snapshot;
+    Set<String> flushed;
+    synchronized (this) {
+      snapshot = new ArrayList<>(users.values());
+      flushed = new HashSet<>(dirtyUsers);
+      dirtyUsers.clear();
+    }
+    try {
+      writeUsersToJson(snapshot);
+      String stamp = getStoreStamp();
+      synchronized (this) {
+        loadedStamp = stamp;
+      }
+    } catch (IOException e) {
+      synchronized (this) {
+        dirtyUsers.addAll(flushed);
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Returns whether there are saved users that have not been written to the file yet. Waits for a
+   * flush that is already running to complete.
+   *
+   * @return True if a flush is pending; otherwise, false.
+   */
+  public boolean hasPendingChanges() {
+    synchronized (flushLock) {
+      synchronized (this) {
+        return !dirtyUsers.isEmpty();
+      }
+    }
+  }
+
+  /**
+   * Stops the background flushing and writes all pending changes to the file.
+   *
+   * @throws IOException If an error occurs while writing to the file.
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized (flushLock) {
+      stopWatching();
+      watchDebounceMillis = -1;
+    }
+    flusher.shutdown();
+    try {
+      flusher.awaitTermination(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    flush();
+  }
+
+  /**
+   * Loads all users from the file into memory unless they already are.
+   *
+   * @throws IOException If an error occurs while reading from the file.
+   */
+  private void ensureLoaded() throws IOException {
+    if (!loaded) {
+      loadedStamp = getStoreStamp();
+      for (User user : super.readUsersFromJson()) {
+        users.put(user.getUsername(), user);
+      }
+      loaded = true;
+    }
+  }
+
+  /**
+   * Reloads the users that changed in the file if the file changed since it was last read or
+   * written. Must be called while holding the flush lock.
+   *
+   * @return The number of users that were replaced, added or removed in memory.
+   * @throws IOException If an error occurs while reading the file.
+   */
+  private int reloadIfChanged() throws IOException {
+    String stamp = getStoreStamp();
+    synchronized (this) {
+      if (!loaded || stamp.equals(loadedStamp)) {
+        return 0;
+      }
+    }
+    Map<String, User> fileUsers = new LinkedHashMap<>();
+    for (User user : super.readUsersFromJson()) {
+      fileUsers.put(user.getUsername(), user);
+    }
+    synchronized (this) {
+      int affected = 0;
+      for (String username : new ArrayList<>(users.keySet())) {
+        if (!fileUsers.containsKey(username) && !dirtyUsers.contains(username)) {
+          users.remove(username);
+          affected++;
+        }
+      }
+      for (User fileUser : fileUsers.values()) {
+        String username = fileUser.getUsername();
+        if (!dirtyUsers.contains(username) && !isSameUser(users.get(username), fileUser)) {
+          users.put(username, fileUser);
+          affected++;
+        }
+      }
+      loadedStamp = stamp;
+      return affected;
+    }
+  }
+
+  /**
+   * Checks whether a cached user equals the user read from the file.
+   *
+   * @param cached The cached user, or null if it is not cached.
+   * @param fileUser The user read from the file.
+   * @return True if both have the same password and expenses; otherwise, false.
+   */
+  private static boolean isSameUser(User cached, User fileUser) {
+    return cached != null
+        && cached.getPassword().equals(fileUser.getPassword())
+        && cached
+            .getExpenseHandler()
+            .getAllExpenses()
+            .equals(fileUser.getExpenseHandler().getAllExpenses());
+  }
+
+  /**
+   * Stops watching the file, if it is watched. Must be called while holding the flush lock.
+   *
+   * @throws IOException If an error occurs while closing the watcher.
+   */
+  private void stopWatching() throws IOException {
+    if (watcher != null) {
+      watcher.close();
+      watcher = null;
+    }
+  }
+
+  /** Reloads changes from the watcher thread, where an exception would stop the watcher. */
+  private void reloadInBackground() {
+    try {
+      int affected = reloadExternalChanges();
+      if (affected > 0) {
+        LOGGER.log(Level.DEBUG, "Reloaded " + affected + " users changed in " + getFilePath());
+      }
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "Could not reload users from " + getFilePath(), e);
+    }
+  }
+
+  /** Flushes from the background thread, where an exception would cancel all later flushes. */
+  private void flushInBackground() {
+    try {
+      flush();
+    } catch (IOException e) {
+      // The changes stay marked as dirty and are retried on the next flush.
+      LOGGER.log(Level.WARNING, "Could not flush users to " + getFilePath(), e);
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package persistence;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Metrics of the commits of a store. A commit writes one batch of saves to disk, and the latency
+ * of a save is the time from when it was submitted until the commit holding it was on disk. All
+ * methods are thread-safe.
+ */
+public class CommitMetrics {
+
+  private long commitCount;
+  private long saveCount;
+  private int maxBatchSize;
+  private long totalLatencyNanos;
+  private long maxLatencyNanos;
+  private int lastBatchSize;
+
+  /**
+   * Records a finished commit.
+   *
+   * @param batchSize The number of saves in the commit.
+   * @param latencyNanos The latency of every save in the commit, in nanoseconds.
+   */
+  synchronized void recordCommit(int batchSize, long[] latencyNanos) {
+    commitCount++;
+    saveCount += batchSize;
+    lastBatchSize = batchSize;
+    maxBatchSize = Math.max(maxBatchSize, batchSize);
+    for (long latency : latencyNanos) {
+      totalLatencyNanos += latency;
+      maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+    }
+  }
+
+  /**
+   * Retrieves the number of commits.
+   *
+   * @return The number of commits.
+   */
+  public synchronized long getCommitCount() {
+    return commitCount;
+  }
+
+  /**
+   * Retrieves the number of saves over all commits.
+   *
+   * @return The number of saves.
+   */
+  public synchronized long getSaveCount() {
+    return saveCount;
+  }
+
+  /**
+   * Retrieves the number of saves in the last commit.
+   *
+   * @return The size of the last batch, or 0 if there has been no commit.
+   */
+  public synchronized int getLastBatchSize() {
+    return lastBatchSize;
+  }
+
+  /**
+   * Retrieves the largest number of saves in a single commit.
+   *
+   * @return The size of the largest batch.
+   */
+  public synchronized int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  /**
+   * Retrieves the average number of saves per commit.
+   *
+   * @return The average batch size, or 0 if there has been no commit.
+   */
+  public synchronized double getAverageBatchSize() {
+    return commitCount == 0 ? 0 : (double) saveCount / commitCount;
+  }
+
+  /**
+   * Retrieves the average latency of a save.
+   *
+   * @return The average latency in milliseconds, or 0 if there has been no save.
+   */
+  public synchronized double getAverageLatencyMillis() {
+    return saveCount == 0 ? 0 : totalLatencyNanos / 1_000_000.0 / saveCount;
+  }
+
+  /**
+   * Retrieves the highest latency of a save.
+   *
+   * @return The highest latency in milliseconds.
+   */
+  public synchronized double getMaxLatencyMillis() {
+    return maxLatencyNanos / 1_000_000.0;
+  }
+
+  /**
+   * Retrieves all metrics by name, for example to report them.
+   *
+   * @return The metrics, in a fixed order.
+   */
+  public synchronized Map<String, Number> toMap() {
+    Map<String, Number> metrics = new LinkedHashMap<>();
+    metrics.put("commitCount", commitCount);
+    metrics.put("saveCount", saveCount);
+    metrics.put("lastBatchSize", lastBatchSize);
+    metrics.put("maxBatchSize", maxBatchSize);
+    metrics.put("averageBatchSize", getAverageBatchSize());
+    metrics.put("averageLatencyMillis", getAverageLatencyMillis());
+    metrics.put("maxLatencyMillis", getMaxLatencyMillis());
+    return metrics;
+  }
+}
@@ -0,0 +1,203 @@
+package persistence;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A compact index from username to password and the location of the user in the store. It lets a
+ * store authenticate a user without reading any expenses. The index is saved next to the store
+ * together with a stamp of the store it describes, so an index that no longer matches its store is
+ * detected and rebuilt. The index also remembers the stamp of its own file, so an index that
+ * another process has saved since is detected and loaded again.
+ */
+class CredentialsIndex {
+
+  private static final Gson GSON = new Gson();
+
+  private final Path indexPath;
+  private Map<String, Entry> entries = new HashMap<>();
+  private String stamp;
+  private String fileStamp;
+
+  /** The credentials of a single user. */
+  static final class Entry {
+    private final String password;
+    private final String location;
+
+    /**
+     * Constructs an entry.
+     *
+     * @param password The password of the user.
+     * @param location Where the store keeps the user.
+     */
+    Entry(String password, String location) {
+      this.password = password;
+      this.location = location;
+    }
+
+    /**
+     * Retrieves the password of the user.
+     *
+     * @return The password.
+     */
+    String getPassword() {
+      return password;
+    }
+
+    /**
+     * Retrieves where the store keeps the user.
+     *
+     * @return The location of the user in the store.
+     */
+    String getLocation() {
+      return location;
+    }
+  }
+
+  /** The content of an index file. */
+  private static final class IndexFile {
+    private String stamp;
+    private Map<String, Entry> entries;
+  }
+
+  /**
+   * Constructs an empty index that is saved to the given path.
+   *
+   * @param indexPath The path of the index file.
+   */
+  CredentialsIndex(Path indexPath) {
+    this.indexPath = indexPath;
+  }
+
+  /**
+   * Checks whether the index in memory describes the store with the given stamp.
+   *
+   * @param storeStamp The current stamp of the store.
+   * @return True if the index is up to date; otherwise, false.
+   */
+  synchronized boolean isCurrent(String storeStamp) {
+    return storeStamp.equals(stamp);
+  }
+
+  /**
+   * Checks whether the index file is still the one this index was loaded from or saved to.
+   *
+   * @return True if the file is unchanged; false if it is missing or was saved again since.
+   * @throws IOException If an error occurs while reading the attributes of the index file.
+   */
+  synchronized boolean isFileCurrent() throws IOException {
+    return Files.exists(indexPath) && JsonController.stampOf(indexPath).equals(fileStamp);
+  }
+
+  /**
+   * Loads the index file if it describes the store with the given stamp.
+   *
+   * @param storeStamp The current stamp of the store.
+   * @return True if the index file was loaded; false if it is missing, unreadable or outdated.
+   * @throws IOException If an error occurs while reading the index file.
+   */
+  synchronized boolean load(String storeStamp) throws IOException {
+    if (!Files.exists(indexPath)) {
+      return false;
+    }
+    try (Reader reader = Files.newBufferedReader(indexPath, StandardCharsets.UTF_8)) {
+      IndexFile file = GSON.fromJson(reader, IndexFile.class);
+      if (file == null || file.entries == null || !storeStamp.equals(file.stamp)) {
+        return false;
+      }
+      this.entries = file.entries;
+      this.stamp = file.stamp;
+      this.fileStamp = JsonController.stampOf(indexPath);
+      return true;
+    } catch (JsonParseException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Replaces all entries, for example after the index has been rebuilt from the store.
+   *
+   * @param newEntries The entries of all users in the store.
+   */
+  synchronized void replaceAll(Map<String, Entry> newEntries) {
+    this.entries = new HashMap<>(newEntries);
+  }
+
+  /**
+   * Retrieves the credentials of a user.
+   *
+   * @param username The username to look up.
+   * @return The entry of the user, or null if the user is not in the index.
+   */
+  synchronized Entry get(String username) {
+    return entries.get(username);
+  }
+
+  /**
+   * Adds or replaces the credentials of a user.
+   *
+   * @param username The username of the user.
+   * @param password The password of the user.
+   * @param location Where the store keeps the user.
+   * @return True if the index changed; false if it already held these credentials.
+   */
+  synchronized boolean put(String username, String password, String location) {
+    Entry entry = entries.get(username);
+    if (entry != null
+        && entry.getPassword().equals(password)
+        && entry.getLocation().equals(location)) {
+      return false;
+    }
+    entries.put(username, new Entry(password, location));
+    return true;
+  }
+
+  /**
+   * Saves the index together with the stamp of the store it now describes. The file is written to
+   * a temporary file first, which is forced to disk and then atomically moved over the index, so
+   * neither a reader nor a crash ever leaves a half-written index.
+   *
+   * @param storeStamp The current stamp of the store.
+   * @throws IOException If an error occurs while writing the index file.
+   */
+  synchronized void save(String storeStamp) throws IOException {
+    IndexFile file = new IndexFile();
+    file.stamp = storeStamp;
+    file.entries = entries;
+    Path tempPath = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+    try (FileChannel channel =
+        FileChannel.open(
+            tempPath,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+      Writer writer =
+          new BufferedWriter(
+              new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8));
+      GSON.toJson(file, writer);
+      writer.flush();
+      channel.force(true);
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(tempPath);
+      throw e;
+    }
+    Files.move(
+        tempPath, indexPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    this.stamp = storeStamp;
+    this.fileStamp = JsonController.stampOf(indexPath);
+  }
+}
@@ -0,0 +1,23 @@
+package persistence;
+
+/**
+ * How far a change must have come before an {@link AsyncRepository} reports it as done. A lower
+ * level answers sooner, at the risk of losing the change if the process or machine fails.
+ */
+public enum Durability {
+
+  /**
+   * The change is queued for the store. It is lost if the process stops before it is applied, and
+   * a failure to apply it is only logged.
+   */
+  QUEUED,
+
+  /**
+   * The change is applied to the store and seen by every later read. A store that writes changes
+   * back in the background may not have them on disk yet.
+   */
+  WRITTEN,
+
+  /** The change is applied to the store and forced to disk. */
+  FSYNCED
+}
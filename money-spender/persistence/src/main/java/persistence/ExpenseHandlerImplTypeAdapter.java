@@ -1,25 +1,30 @@
 package persistence;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonElement;
+import com.google.gson.JsonSyntaxException;
 import com.google.gson.TypeAdapter;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
+import core.Expense;
 import core.ExpenseHandlerImpl;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Custom Gson TypeAdapter for the ExpenseHandlerImpl class. This adapter is used to customize the
- * serialization and deserialization process for instances of ExpenseHandlerImpl.
+ * serialization and deserialization process for instances of ExpenseHandlerImpl. The expenses are
+ * streamed one by one through an {@link ExpenseTypeAdapter}, so no intermediate JSON tree and no
+ * Gson instance is created on any call.
  */
 public class ExpenseHandlerImplTypeAdapter extends TypeAdapter<ExpenseHandlerImpl> {
 
-  private final TypeAdapter<JsonElement> elementAdapter = new Gson().getAdapter(JsonElement.class);
+  private final ExpenseTypeAdapter expenseAdapter = new ExpenseTypeAdapter();
 
   /**
-   * Serializes an instance of ExpenseHandlerImpl to JSON. This method delegates the serialization
-   * process to the default Gson implementation, then post-processes the resulting JSON if
-   * necessary.
+   * Serializes an instance of ExpenseHandlerImpl to JSON as an object holding the list of expenses
+   * and the id of the next expense. The categories are not written, as they are derived from the
+   * expenses.
    *
    * @param out The JsonWriter to write the JSON structure to.
    * @param value The ExpenseHandlerImpl instance to serialize.
@@ -27,27 +32,103 @@ public class ExpenseHandlerImplTypeAdapter extends TypeAdapter<ExpenseHandlerImp
    */
   @Override
   public void write(JsonWriter out, ExpenseHandlerImpl value) throws IOException {
+    if (value == null) {
+      out.nullValue();
+      return;
+    }
+    writeExpenses(out, value.getAllExpenses(), value.getNextId());
+  }
+
+  /**
+   * Writes the given expenses in the format of a serialized ExpenseHandlerImpl, for callers that
+   * hold the expenses of any ExpenseHandler.
+   *
+   * @param out The JsonWriter to write the JSON structure to.
+   * @param expenses The expenses of the handler.
+   * @param nextId The id the handler gives the next expense.
+   * @throws IOException If an error occurs writing to the JsonWriter.
+   */
+  void writeExpenses(JsonWriter out, List<Expense> expenses, long nextId) throws IOException {
     out.beginObject();
     out.name("expenses");
-    elementAdapter.write(out, new Gson().toJsonTree(value.getAllExpenses()));
+    out.beginArray();
+    for (Expense expense : expenses) {
+      expenseAdapter.write(out, expense);
+    }
+    out.endArray();
+    out.name("nextId").value(nextId);
     out.endObject();
   }
 
   /**
-   * Deserializes a JSON representation into an instance of ExpenseHandlerImpl. This method uses
-   * Gson's internal logic to construct the object and then invokes the loadCategories method to
-   * perform any necessary post-deserialization steps.
+   * Deserializes a JSON representation into an instance of ExpenseHandlerImpl. The expenses keep
+   * their ids, and the categories of the handler are collected from the expenses that are read. A
+   * handler stored without the id of the next expense gives the id after the highest one.
    *
    * @param in The JsonReader to read the JSON structure from.
    * @return An instance of ExpenseHandlerImpl populated with data from the JSON input.
    * @throws IOException If an error occurs reading from the JsonReader.
+   * @throws JsonSyntaxException If two expenses have the same id.
    */
   @Override
   public ExpenseHandlerImpl read(JsonReader in) throws IOException {
-    JsonElement tree = elementAdapter.read(in);
-    Gson gson = new Gson();
-    ExpenseHandlerImpl handler = gson.fromJson(tree, ExpenseHandlerImpl.class);
-    handler.loadCategories();
-    return handler;
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    String path = in.getPath();
+    List<Expense> expenses = new ArrayList<>();
+    long nextId = readInto(in, expenses);
+    try {
+      return new ExpenseHandlerImpl(expenses, nextId);
+    } catch (IllegalArgumentException e) {
+      throw new JsonSyntaxException("Invalid expenses at " + path + ": " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Reads the expenses of a serialized ExpenseHandlerImpl without creating the handler, for
+   * callers that only need the list.
+   *
+   * @param in The JsonReader positioned at the start of the handler object.
+   * @return The expenses of the handler.
+   * @throws IOException If an error occurs reading from the JsonReader.
+   */
+  List<Expense> readExpenses(JsonReader in) throws IOException {
+    List<Expense> expenses = new ArrayList<>();
+    readInto(in, expenses);
+    return expenses;
+  }
+
+  /**
+   * Reads a serialized ExpenseHandlerImpl, adding its expenses to the given list.
+   *
+   * @param in The JsonReader positioned at the start of the handler object.
+   * @param expenses The list to add the expenses to.
+   * @return The id of the next expense, or 0 if the handler was stored without it.
+   * @throws IOException If an error occurs reading from the JsonReader.
+   */
+  private long readInto(JsonReader in, List<Expense> expenses) throws IOException {
+    long nextId = 0;
+    in.beginObject();
+    while (in.hasNext()) {
+      String name = in.nextName();
+      if (name.equals("expenses") && in.peek() == JsonToken.BEGIN_ARRAY) {
+        in.beginArray();
+        while (in.hasNext()) {
+          Expense expense = expenseAdapter.read(in);
+          if (expense != null) {
+            expenses.add(expense);
+          }
+        }
+        in.endArray();
+      } else if (name.equals("nextId") && in.peek() == JsonToken.NUMBER) {
+        nextId = in.nextLong();
+      } else {
+        in.skipValue();
+      }
+    }
+    in.endObject();
+    return nextId;
   }
 }
@@ -0,0 +1,70 @@
+package persistence;
+
+import core.Expense;
+import core.User;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A store of the expenses of users. Every change is applied to the stored user as one step, so
+ * concurrent changes to the same user are not lost.
+ */
+public interface ExpenseRepository {
+
+  /**
+   * Adds an expense to a user.
+   *
+   * @param username The username of the user.
+   * @param expense The expense to add.
+   * @return The changed user, or null if there is no user with the username.
+   * @throws IOException If an error occurs while writing the store.
+   */
+  User addExpense(String username, Expense expense) throws IOException;
+
+  /**
+   * Removes an expense equal to the given one from a user.
+   *
+   * @param username The username of the user.
+   * @param expense The expense to remove.
+   * @return The user after the removal, or null if there is no user with the username.
+   * @throws IOException If an error occurs while writing the store.
+   */
+  User removeExpense(String username, Expense expense) throws IOException;
+
+  /**
+   * Removes the expense with the given id from a user.
+   *
+   * @param username The username of the user.
+   * @param id The id of the expense to remove.
+   * @return The user after the removal, or null if there is no user with the username.
+   * @throws IOException If an error occurs while writing the store.
+   */
+  User removeExpenseById(String username, long id) throws IOException;
+
+  /**
+   * Retrieves the expenses of a user that match a category and fall within a date range, in the
+   * order they were added.
+   *
+   * @param username The username of the user.
+   * @param category The category to match, or null or blank for all categories.
+   * @param start The first date of the range, or null for no lower bound.
+   * @param end The last date of the range, or null for no upper bound.
+   * @return The matching expenses.
+   * @throws IllegalArgumentException If the user does not exist or the start is after the end.
+   * @throws IOException If an error occurs while reading the store.
+   */
+  List<Expense> findExpenses(String username, String category, LocalDate start, LocalDate end)
+      throws IOException;
+
+  /**
+   * Retrieves the categories of the expenses of a user.
+   *
+   * @param username The username of the user.
+   * @return The categories in use.
+   * @throws IllegalArgumentException If the user does not exist.
+   * @throws IOException If an error occurs while reading the store.
+   */
+  Set<String> findCategories(String username) throws IOException;
+}
@@ -0,0 +1,99 @@
+package persistence;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import core.Expense;
+import java.io.IOException;
+
+/**
+ * Custom Gson TypeAdapter for the Expense class. It writes the fields of an expense directly to the
+ * JsonWriter and reads them directly from the JsonReader, without reflection and without building
+ * an intermediate JSON tree. The JSON format is the same as the one Gson produces by reflection.
+ */
+public class ExpenseTypeAdapter extends TypeAdapter<Expense> {
+
+  /**
+   * Serializes an expense as an object with its description, category, date, price and id.
+   *
+   * @param out The JsonWriter to write the JSON structure to.
+   * @param value The Expense instance to serialize.
+   * @throws IOException If an error occurs writing to the JsonWriter.
+   */
+  @Override
+  public void write(JsonWriter out, Expense value) throws IOException {
+    if (value == null) {
+      out.nullValue();
+      return;
+    }
+    out.beginObject();
+    out.name("description").value(value.getDescription());
+    out.name("category").value(value.getCategory());
+    out.name("date").value(value.getDate());
+    out.name("price").value(value.getPrice());
+    out.name("id").value(value.getId());
+    out.endObject();
+  }
+
+  /**
+   * Deserializes an expense. Unknown fields are skipped, and the expense is validated the same way
+   * as when it is created. An expense stored without an id, or with the id 0, is read without one,
+   * and is given one when it is added to a user. The category and date are taken from the shared
+   * {@link StringPool}, so expenses with the same category or date share one string.
+   *
+   * @param in The JsonReader to read the JSON structure from.
+   * @return The Expense read from the JSON input, or null for a JSON null.
+   * @throws IOException If an error occurs reading from the JsonReader.
+   * @throws JsonSyntaxException If the expense is missing a field or has an invalid value.
+   */
+  @Override
+  public Expense read(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    String path = in.getPath();
+    String description = null;
+    String category = null;
+    String date = null;
+    double price = 0;
+    long id = 0;
+
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case "description":
+          description = in.nextString();
+          break;
+        case "category":
+          category = StringPool.SHARED.canonical(in.nextString());
+          break;
+        case "date":
+          date = StringPool.SHARED.canonical(in.nextString());
+          break;
+        case "price":
+          price = in.nextDouble();
+          break;
+        case "id":
+          id = in.nextLong();
+          break;
+        default:
+          in.skipValue();
+          break;
+      }
+    }
+    in.endObject();
+
+    try {
+      Expense expense = new Expense(date, category, price, description);
+      if (id != 0) {
+        expense.setId(id);
+      }
+      return expense;
+    } catch (IllegalArgumentException e) {
+      throw new JsonSyntaxException("Invalid expense at " + path + ": " + e.getMessage(), e);
+    }
+  }
+}
@@ -0,0 +1,160 @@
+package persistence;
+
+import core.User;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces saves that arrive at the same time into a single commit. The first thread to submit a
+ * save becomes the leader: it waits for the commit window, takes every save submitted so far and
+ * writes them in one commit. Threads that submit while a commit is running wait for it and then
+ * commit everything that queued up meanwhile as the next batch. Every thread returns only once its
+ * own save has been committed, or throws the error of the commit that held it.
+ */
+class GroupCommitter {
+
+  /** Writes a batch of saved users to disk. */
+  @FunctionalInterface
+  interface BatchWriter {
+    void write(List<User> batch) throws IOException;
+  }
+
+  /** A save waiting to be committed. */
+  private static final class PendingSave {
+    private final User user;
+    private final long submittedNanos = System.nanoTime();
+    private boolean done;
+    private IOException error;
+
+    PendingSave(User user) {
+      this.user = user;
+    }
+  }
+
+  private final BatchWriter writer;
+  private final CommitMetrics metrics = new CommitMetrics();
+  private List<PendingSave> pending = new ArrayList<>();
+  private boolean committing;
+  private volatile long windowNanos;
+
+  /**
+   * Constructs a `GroupCommitter` that commits batches with the given writer.
+   *
+   * @param writer The writer of a batch.
+   */
+  GroupCommitter(BatchWriter writer) {
+    this.writer = writer;
+  }
+
+  /**
+   * Sets how long a leader waits for more saves before it commits. With a window of 0, a batch
+   * only holds the saves that arrived while the previous commit was running.
+   *
+   * @param windowMillis The commit window in milliseconds.
+   * @throws IllegalArgumentException If the window is negative.
+   */
+  void setWindowMillis(long windowMillis) {
+    if (windowMillis < 0) {
+      throw new IllegalArgumentException("Commit window cannot be negative.");
+    }
+    this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+  }
+
+  /**
+   * Retrieves the metrics of the commits.
+   *
+   * @return The commit metrics.
+   */
+  CommitMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Submits a save and waits until it has been committed.
+   *
+   * @param user The user to save.
+   * @throws IOException If the commit holding the save failed.
+   * @throws InterruptedIOException If the thread is interrupted while waiting. The save may still
+   *     be committed by another thread.
+   */
+  void submit(User user) throws IOException {
+    PendingSave save = new PendingSave(user);
+    synchronized (this) {
+      pending.add(save);
+      try {
+        while (committing && !save.done) {
+          wait();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for a commit.");
+      }
+      if (save.done) {
+        if (save.error != null) {
+          throw new IOException("The commit of this save failed.", save.error);
+        }
+        return;
+      }
+      committing = true;
+    }
+    IOException error = lead();
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  /**
+   * Commits all pending saves as the leader, then hands over to the next leader.
+   *
+   * @return The error of the commit, or null if it succeeded.
+   */
+  private IOException lead() {
+    boolean interrupted = false;
+    if (windowNanos > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(windowNanos);
+      } catch (InterruptedException e) {
+        // The saves are committed anyway, as other threads may be waiting for them.
+        interrupted = true;
+      }
+    }
+    List<PendingSave> batch;
+    synchronized (this) {
+      batch = pending;
+      pending = new ArrayList<>();
+    }
+    IOException error = null;
+    try {
+      List<User> users = new ArrayList<>(batch.size());
+      for (PendingSave save : batch) {
+        users.add(save.user);
+      }
+      writer.write(users);
+    } catch (IOException e) {
+      error = e;
+    } catch (RuntimeException e) {
+      error = new IOException("The commit failed.", e);
+    }
+    long now = System.nanoTime();
+    long[] latencies = new long[batch.size()];
+    for (int i = 0; i < latencies.length; i++) {
+      latencies[i] = now - batch.get(i).submittedNanos;
+    }
+    metrics.recordCommit(batch.size(), latencies);
+    synchronized (this) {
+      for (PendingSave save : batch) {
+        save.done = true;
+        save.error = error;
+      }
+      committing = false;
+      notifyAll();
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    return error;
+  }
+}
@@ -0,0 +1,184 @@
+package persistence;
+
+import core.User;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A {@link StoreCodec} that compresses the format of another codec with gzip. Users are written
+ * through a streaming compressor and read back through a streaming decompressor, so the store is
+ * never held in memory as a whole, and a lookup stops decompressing once the user is found. A
+ * store that was written without compression is still read, so compression can be turned on for
+ * an existing store, which is compressed on its next save.
+ */
+public class GzipStoreCodec implements StoreCodec {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int GZIP_MAGIC_FIRST = 0x1f;
+  private static final int GZIP_MAGIC_SECOND = 0x8b;
+
+  private final StoreCodec codec;
+  private final int level;
+
+  /**
+   * Constructs a `GzipStoreCodec` that compresses the given codec at the given level.
+   *
+   * @param codec The format to compress, or null for pretty-printed JSON.
+   * @param level The compression level, from 1 for the fastest to 9 for the smallest, or 0 to
+   *     store the data without compressing it.
+   * @throws IllegalArgumentException If the level is not between 0 and 9.
+   */
+  public GzipStoreCodec(StoreCodec codec, int level) {
+    if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+      throw new IllegalArgumentException("The compression level must be between 0 and 9.");
+    }
+    this.codec = codec != null ? codec : new JsonStoreCodec();
+    this.level = level;
+  }
+
+  /**
+   * Retrieves the compression level.
+   *
+   * @return The compression level, from 0 to 9.
+   */
+  public int getLevel() {
+    return level;
+  }
+
+  @Override
+  public void write(List<User> users, OutputStream out) throws IOException {
+    try (LevelGzipOutputStream gzip = new LevelGzipOutputStream(new KeepOpenOutput(out), level)) {
+      codec.write(users, gzip);
+    }
+  }
+
+  /**
+   * Retrieves the file extension of the compressed format, which is that of the format it
+   * compresses followed by ".gz".
+   *
+   * @return The file extension, including its leading dot.
+   */
+  @Override
+  public String getFileExtension() {
+    return codec.getFileExtension() + ".gz";
+  }
+
+  @Override
+  public List<User> read(InputStream in) throws IOException {
+    try (InputStream decompressed = decompress(in)) {
+      return codec.read(decompressed);
+    }
+  }
+
+  @Override
+  public void readEach(InputStream in, UserSink sink) throws IOException {
+    try (InputStream decompressed = decompress(in)) {
+      codec.readEach(decompressed, sink);
+    }
+  }
+
+  @Override
+  public UserWriter openWriter(OutputStream out) throws IOException {
+    LevelGzipOutputStream gzip = new LevelGzipOutputStream(new KeepOpenOutput(out), level);
+    UserWriter writer = codec.openWriter(gzip);
+    return new UserWriter() {
+      @Override
+      public void accept(User user) throws IOException {
+        writer.accept(user);
+      }
+
+      @Override
+      public void finish() throws IOException {
+        writer.finish();
+        gzip.close();
+      }
+    };
+  }
+
+  @Override
+  public User find(InputStream in, String username, boolean readExpenses) throws IOException {
+    try (InputStream decompressed = decompress(in)) {
+      return codec.find(decompressed, username, readExpenses);
+    }
+  }
+
+  @Override
+  public List<User> readHeaders(InputStream in) throws IOException {
+    try (InputStream decompressed = decompress(in)) {
+      return codec.readHeaders(decompressed);
+    }
+  }
+
+  /**
+   * Wraps the stream in a decompressor if it starts with the gzip header, and otherwise reads it
+   * as it is. Closing the returned stream releases the decompressor but leaves the given stream
+   * open.
+   *
+   * @param in The stream to read from.
+   * @return The stream of the uncompressed format.
+   * @throws IOException If an error occurs while reading from the stream.
+   */
+  private static InputStream decompress(InputStream in) throws IOException {
+    PushbackInputStream pushback = new PushbackInputStream(new KeepOpenInput(in), 2);
+    int first = pushback.read();
+    int second = first < 0 ? -1 : pushback.read();
+    if (second >= 0) {
+      pushback.unread(second);
+    }
+    if (first >= 0) {
+      pushback.unread(first);
+    }
+    if (first == GZIP_MAGIC_FIRST && second == GZIP_MAGIC_SECOND) {
+      return new GZIPInputStream(pushback, BUFFER_SIZE);
+    }
+    return pushback;
+  }
+
+  /** A gzip stream that compresses at a given level instead of the default one. */
+  private static final class LevelGzipOutputStream extends GZIPOutputStream {
+
+    LevelGzipOutputStream(OutputStream out, int level) throws IOException {
+      super(out, BUFFER_SIZE);
+      def.setLevel(level);
+    }
+  }
+
+  /** An output stream that passes everything on but does not close the stream it wraps. */
+  private static final class KeepOpenOutput extends FilterOutputStream {
+
+    KeepOpenOutput(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
+    }
+  }
+
+  /** An input stream that passes everything on but does not close the stream it wraps. */
+  private static final class KeepOpenInput extends FilterInputStream {
+
+    KeepOpenInput(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public void close() {
+      // The stream is owned by the caller.
+    }
+  }
+}
@@ -0,0 +1,679 @@
+package persistence;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.annotations.Expose;
+import core.Expense;
+import core.ExpenseHandlerImpl;
+import core.User;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A {@link JsonController} that records every change as one line in an append-only journal next
+ * to the JSON data file, which acts as a snapshot. On startup the journal is replayed on top of the
+ * snapshot, and all reads are served from memory. Once the journal grows past a threshold, a
+ * background compactor writes a fresh snapshot and starts an empty journal.
+ *
+ * <p>To compact, the journal is closed with a trailer holding the checksum of the snapshot it
+ * applies to and renamed to {@code <file>.journal.old}, while new changes go to a fresh journal.
+ * The new snapshot then replaces the old one and the old journal is deleted. If the application
+ * stops in between, the old journal is only replayed if its trailer matches the snapshot on disk,
+ * so no change is lost or applied twice.
+ */
+public class JournaledJsonController extends JsonController implements AutoCloseable {
+
+  /** The default journal size in bytes that triggers a compaction. */
+  public static final long DEFAULT_COMPACTION_THRESHOLD_BYTES = 1024 * 1024;
+
+  private static final Logger LOGGER = System.getLogger(JournaledJsonController.class.getName());
+  private static final String JOURNAL_SUFFIX = ".journal";
+  private static final String OLD_JOURNAL_SUFFIX = ".journal.old";
+  private static final String SNAPSHOT_SUFFIX = ".tmp";
+
+  private final Gson journalGson =
+      new GsonBuilder()
+          .registerTypeAdapter(Expense.class, new ExpenseTypeAdapter())
+          .registerTypeAdapter(ExpenseHandlerImpl.class, new ExpenseHandlerImplTypeAdapter())
+          .registerTypeAdapter(User.class, new UserTypeAdapter())
+          .excludeFieldsWithoutExposeAnnotation()
+          .create();
+  private final long compactionThresholdBytes;
+  private final ExecutorService compactor;
+  private final Map<String, User> users = new LinkedHashMap<>();
+  private OutputStream journal;
+  private FileChannel journalChannel;
+  private long journalSize;
+  private boolean unforced;
+  private boolean oldJournalUnforced;
+  private long snapshotChecksum;
+  private List<User> pendingSnapshot;
+  private boolean compacting;
+
+  /** A single line of the journal. Only the fields used by its operation are set. */
+  private static final class JournalRecord {
+    @Expose private String op;
+    @Expose private String username;
+    @Expose private User user;
+    @Expose private Expense expense;
+    @Expose private Expense newExpense;
+    @Expose private Long base;
+
+    private JournalRecord(String op, String username) {
+      this.op = op;
+      this.username = username;
+    }
+  }
+
+  /**
+   * Constructs a `JournaledJsonController` for the given file with the default compaction
+   * threshold.
+   *
+   * @param file The name of the JSON file to use as snapshot.
+   * @throws IOException If an I/O error occurs while loading the snapshot or the journal.
+   */
+  public JournaledJsonController(String file) throws IOException {
+    this(file, DEFAULT_COMPACTION_THRESHOLD_BYTES);
+  }
+
+  /**
+   * Constructs a `JournaledJsonController` for the given file which compacts the journal once it
+   * grows past {@code compactionThresholdBytes} bytes.
+   *
+   * @param file The name of the JSON file to use as snapshot.
+   * @param compactionThresholdBytes The journal size in bytes that triggers a compaction.
+   * @throws IOException If an I/O error occurs while loading the snapshot or the journal.
+   * @throws IllegalArgumentException If the threshold is not positive.
+   */
+  public JournaledJsonController(String file, long compactionThresholdBytes) throws IOException {
+    super(file);
+    if (compactionThresholdBytes <= 0) {
+      throw new IllegalArgumentException("Compaction threshold must be positive.");
+    }
+    this.compactionThresholdBytes = compactionThresholdBytes;
+    this.compactor =
+        Executors.newSingleThreadExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "money-spender-compactor");
+              thread.setDaemon(true);
+              return thread;
+            });
+    open();
+  }
+
+  /**
+   * Closes the journal of the current file and loads the snapshot and journal of the new one.
+   *
+   * @param file The name of the JSON file to use as snapshot.
+   * @throws IOException If an I/O error occurs while switching files.
+   */
+  @Override
+  public synchronized void setFilePath(String file) throws IOException {
+    awaitCompaction();
+    journal.close();
+    super.setFilePath(file);
+    open();
+  }
+
+  /**
+   * Forces the journal to disk. A record is written to the journal before a save returns, but it is
+   * only forced here.
+   *
+   * @throws IOException If an error occurs while forcing the journal.
+   */
+  @Override
+  public synchronized void sync() throws IOException {
+    forceJournal();
+  }
+
+  /**
+   * Returns whether the journal, or the journal moved aside for a compaction until its snapshot is
+   * written, holds records that have not been forced to disk.
+   *
+   * @return True if a journal holds records that are not forced yet; otherwise, false.
+   */
+  public synchronized boolean hasUnforcedChanges() {
+    return unforced || oldJournalUnforced;
+  }
+
+  /**
+   * Records the whole user in the journal, replacing any earlier version of the user.
+   *
+   * @param user The User object to be saved.
+   * @throws IOException If an error occurs while writing to the journal.
+   */
+  @Override
+  public synchronized void saveNewUserToJson(User user) throws IOException {
+    JournalRecord record = new JournalRecord("user", user.getUsername());
+    record.user = user;
+    append(record);
+    users.put(user.getUsername(), new User(user));
+    compactIfNeeded();
+  }
+
+  /**
+   * Records only the added expense in the journal.
+   *
+   * @param user The User object the expense was added to.
+   * @param expense The expense that was added.
+   * @throws IOException If an error occurs while writing to the journal.
+   */
+  @Override
+  public synchronized void saveAddedExpense(User user, Expense expense) throws IOException {
+    if (!users.containsKey(user.getUsername())) {
+      saveNewUserToJson(user);
+      return;
+    }
+    JournalRecord record = new JournalRecord("add", user.getUsername());
+    record.expense = expense;
+    append(record);
+    apply(record);
+    compactIfNeeded();
+  }
+
+  /**
+   * Records only the removed expense in the journal.
+   *
+   * @param user The User object the expense was removed from.
+   * @param expense The expense that was removed.
+   * @throws IOException If an error occurs while writing to the journal.
+   */
+  @Override
+  public synchronized void saveRemovedExpense(User user, Expense expense) throws IOException {
+    if (!users.containsKey(user.getUsername())) {
+      saveNewUserToJson(user);
+      return;
+    }
+    JournalRecord record = new JournalRecord("remove", user.getUsername());
+    record.expense = expense;
+    append(record);
+    apply(record);
+    compactIfNeeded();
+  }
+
+  /**
+   * Records only the replaced expense and its replacement in the journal.
+   *
+   * @param user The User object whose expense was replaced.
+   * @param oldExpense The expense that was replaced.
+   * @param newExpense The expense that replaced it.
+   * @throws IOException If an error occurs while writing to the journal.
+   */
+  @Override
+  public synchronized void saveUpdatedExpense(User user, Expense oldExpense, Expense newExpense)
+      throws IOException {
+    if (!users.containsKey(user.getUsername())) {
+      saveNewUserToJson(user);
+      return;
+    }
+    JournalRecord record = new JournalRecord("update", user.getUsername());
+    record.expense = oldExpense;
+    record.newExpense = newExpense;
+    append(record);
+    apply(record);
+    compactIfNeeded();
+  }
+
+  /**
+   * Returns copies of all users.
+   *
+   * @return A list of User objects.
+   */
+  @Override
+  public synchronized List<User> readUsersFromJson() {
+    List<User> copies = new ArrayList<>(users.size());
+    for (User user : users.values()) {
+      copies.add(new User(user));
+    }
+    return copies;
+  }
+
+  /**
+   * Checks if a username exists.
+   *
+   * @param username The username to check for existence.
+   * @return True if the username exists; otherwise, false.
+   */
+  @Override
+  public synchronized boolean checkIfUserNameExists(String username) {
+    return users.containsKey(username);
+  }
+
+  /**
+   * Validates the username and password combination.
+   *
+   * @param username The username to validate.
+   * @param password The password to validate.
+   * @return True if the combination is correct; otherwise, false.
+   */
+  @Override
+  public synchronized boolean checkIfPasswordIsCorrect(String username, String password) {
+    User user = users.get(username);
+    return user != null && user.getPassword().equals(password);
+  }
+
+  /**
+   * Authenticates a user against the users in memory, which already are an index of their own.
+   *
+   * @param username The username to authenticate.
+   * @param password The password to authenticate.
+   * @return A copy of the User object if the combination is correct; otherwise, null.
+   */
+  @Override
+  public synchronized User authenticateUser(String username, String password) {
+    User user = users.get(username);
+    return user != null && user.getPassword().equals(password) ? new User(user) : null;
+  }
+
+  /**
+   * Returns a copy of the user, so callers can modify it freely until they save it again.
+   *
+   * @param username The username of the user to retrieve.
+   * @return A copy of the User object if found; otherwise, null.
+   */
+  @Override
+  public synchronized User getUser(String username) {
+    User user = users.get(username);
+    return user == null ? null : new User(user);
+  }
+
+  /**
+   * Retrieves the current size of the journal in bytes.
+   *
+   * @return The journal size.
+   */
+  public synchronized long getJournalSize() {
+    return journalSize;
+  }
+
+  /**
+   * Folds the journal into a fresh snapshot and waits for it to be written.
+   *
+   * @throws IOException If an error occurs while writing the snapshot.
+   */
+  public void compact() throws IOException {
+    List<User> snapshot;
+    synchronized (this) {
+      awaitCompaction();
+      snapshot = pendingSnapshot != null ? pendingSnapshot : rotate();
+      compacting = true;
+    }
+    writeSnapshot(snapshot);
+  }
+
+  /**
+   * Waits for a running compaction and closes the journal.
+   *
+   * @throws IOException If an error occurs while closing the journal.
+   */
+  @Override
+  public void close() throws IOException {
+    compactor.shutdown();
+    try {
+      compactor.awaitTermination(30, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (this) {
+      journal.close();
+    }
+  }
+
+  /**
+   * Loads the snapshot, finishes an interrupted compaction and replays the journal.
+   *
+   * @throws IOException If an error occurs while reading or writing the store.
+   */
+  private void open() throws IOException {
+    users.clear();
+    pendingSnapshot = null;
+    snapshotChecksum = loadSnapshot();
+
+    Path oldJournalPath = siblingPath(OLD_JOURNAL_SUFFIX);
+    if (Files.exists(oldJournalPath)) {
+      if (replay(oldJournalPath, true)) {
+        snapshotChecksum = writeSnapshotFile(new ArrayList<>(users.values()));
+      }
+      Files.delete(oldJournalPath);
+    }
+
+    Path journalPath = siblingPath(JOURNAL_SUFFIX);
+    if (Files.exists(journalPath)) {
+      truncateTornTail(journalPath);
+      replay(journalPath, false);
+    }
+    openJournal();
+  }
+
+  /**
+   * Cuts off a last line that was only partly written, so new records start on a line of their
+   * own.
+   *
+   * @param journalPath The journal to repair.
+   * @throws IOException If an error occurs while reading or truncating the journal.
+   */
+  private static void truncateTornTail(Path journalPath) throws IOException {
+    try (FileChannel channel =
+        FileChannel.open(journalPath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      ByteBuffer buffer = ByteBuffer.allocate(1);
+      long end = channel.size();
+      while (end > 0) {
+        buffer.clear();
+        channel.read(buffer, end - 1);
+        if (buffer.get(0) == '\n') {
+          break;
+        }
+        end--;
+      }
+      if (end < channel.size()) {
+        channel.truncate(end);
+      }
+    }
+  }
+
+  /**
+   * Reads the snapshot into memory.
+   *
+   * @return The checksum of the snapshot file.
+   * @throws IOException If an error occurs while reading the snapshot.
+   */
+  private long loadSnapshot() throws IOException {
+    CRC32 crc = new CRC32();
+    try (InputStream in = new CheckedInputStream(Files.newInputStream(getFilePath()), crc);
+        Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+      User[] snapshot = getGson().fromJson(reader, User[].class);
+      if (snapshot != null) {
+        for (User user : snapshot) {
+          users.put(user.getUsername(), user);
+        }
+      }
+      byte[] rest = new byte[8192];
+      while (in.read(rest) != -1) {
+        // Read the remaining bytes so they are part of the checksum.
+      }
+    }
+    return crc.getValue();
+  }
+
+  /**
+   * Applies every record of a journal to the users in memory. A malformed last line is the result
+   * of an interrupted append and is ignored.
+   *
+   * @param journalPath The journal to replay.
+   * @param requireBase Whether the journal must end with a trailer matching the loaded snapshot.
+   * @return False if a trailer was required and did not match, in which case nothing is applied.
+   * @throws IOException If an error occurs while reading the journal, a line is malformed or a
+   *     record adds an expense with an id the user already has.
+   */
+  private boolean replay(Path journalPath, boolean requireBase) throws IOException {
+    List<JournalRecord> records = new ArrayList<>();
+    Long base = null;
+    try (BufferedReader reader = Files.newBufferedReader(journalPath, StandardCharsets.UTF_8)) {
+      String line = reader.readLine();
+      while (line != null) {
+        String next = reader.readLine();
+        try {
+          JournalRecord record = journalGson.fromJson(line, JournalRecord.class);
+          if (record != null && record.base != null) {
+            base = record.base;
+          } else if (record != null) {
+            records.add(record);
+          }
+        } catch (JsonParseException e) {
+          if (next != null) {
+            throw new IOException("Malformed journal line in " + journalPath, e);
+          }
+        }
+        line = next;
+      }
+    }
+    if (requireBase && (base == null || base != snapshotChecksum)) {
+      return false;
+    }
+    for (JournalRecord record : records) {
+      try {
+        apply(record);
+      } catch (IllegalArgumentException e) {
+        throw new IOException("Invalid journal record in " + journalPath, e);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Applies a single journal record to the users in memory.
+   *
+   * @param record The record to apply.
+   */
+  private void apply(JournalRecord record) {
+    if ("user".equals(record.op)) {
+      users.put(record.username, record.user);
+      return;
+    }
+    User user = users.get(record.username);
+    if (user == null) {
+      return;
+    }
+    switch (record.op) {
+      case "add":
+        user.getExpenseHandler().addExpense(record.expense);
+        break;
+      case "remove":
+        user.getExpenseHandler().removeExpense(record.expense);
+        break;
+      case "update":
+        user.getExpenseHandler().updateExpense(record.expense, record.newExpense);
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * Appends a record to the journal.
+   *
+   * @param record The record to append.
+   * @throws IOException If an error occurs while writing to the journal.
+   */
+  private void append(JournalRecord record) throws IOException {
+    byte[] line = (journalGson.toJson(record) + "\n").getBytes(StandardCharsets.UTF_8);
+    journal.write(line);
+    journal.flush();
+    journalSize += line.length;
+    unforced = true;
+  }
+
+  /**
+   * Schedules a compaction if the journal grew past the threshold and no compaction is running.
+   * Must be called after the appended record has been applied to the users in memory.
+   *
+   * @throws IOException If an error occurs while moving the journal aside.
+   */
+  private void compactIfNeeded() throws IOException {
+    if (journalSize >= compactionThresholdBytes && !compacting) {
+      List<User> snapshot = pendingSnapshot != null ? pendingSnapshot : rotate();
+      compacting = true;
+      compactor.execute(() -> compactInBackground(snapshot));
+    }
+  }
+
+  /**
+   * Closes the current journal with a trailer, moves it aside and starts an empty journal. The
+   * journal is forced to disk before it is moved, as the records in it may already have been
+   * acknowledged to {@link #sync()} callers that only force the new journal.
+   *
+   * @return Copies of all users, which is the content of the next snapshot.
+   * @throws IOException If an error occurs while moving the journal.
+   */
+  private List<User> rotate() throws IOException {
+    JournalRecord trailer = new JournalRecord("base", null);
+    trailer.base = snapshotChecksum;
+    journal.write((journalGson.toJson(trailer) + "\n").getBytes(StandardCharsets.UTF_8));
+    unforced = true;
+    forceJournal();
+    journal.close();
+    Files.move(
+        siblingPath(JOURNAL_SUFFIX),
+        siblingPath(OLD_JOURNAL_SUFFIX),
+        StandardCopyOption.ATOMIC_MOVE);
+    oldJournalUnforced = unforced;
+    unforced = false;
+    openJournal();
+    pendingSnapshot = readUsersFromJson();
+    return pendingSnapshot;
+  }
+
+  /**
+   * Writes the snapshot and removes the old journal it replaces. The folder is forced to disk
+   * before the old journal is removed, so the journal is only gone once the renamed snapshot is
+   * durable.
+   *
+   * @param snapshot The users to write.
+   * @throws IOException If an error occurs while writing the snapshot.
+   */
+  private void writeSnapshot(List<User> snapshot) throws IOException {
+    try {
+      long checksum = writeSnapshotFile(snapshot);
+      forceFolderOf(getFilePath());
+      synchronized (this) {
+        snapshotChecksum = checksum;
+        pendingSnapshot = null;
+        oldJournalUnforced = false;
+        Files.deleteIfExists(siblingPath(OLD_JOURNAL_SUFFIX));
+      }
+    } finally {
+      synchronized (this) {
+        compacting = false;
+        notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Writes the snapshot from the compactor thread, where the snapshot is retried on the next
+   * compaction if writing it fails.
+   *
+   * @param snapshot The users to write.
+   */
+  private void compactInBackground(List<User> snapshot) {
+    try {
+      writeSnapshot(snapshot);
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "Could not compact journal of " + getFilePath(), e);
+    }
+  }
+
+  /**
+   * Writes the users to a temporary file, which is forced to disk and then replaces the snapshot.
+   *
+   * @param snapshot The users to write.
+   * @return The checksum of the new snapshot file.
+   * @throws IOException If an error occurs while writing the file.
+   */
+  private long writeSnapshotFile(List<User> snapshot) throws IOException {
+    Path tempPath = siblingPath(SNAPSHOT_SUFFIX);
+    CRC32 crc = new CRC32();
+    try (FileChannel channel =
+        FileChannel.open(
+            tempPath,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+      Writer writer =
+          new OutputStreamWriter(
+              new CheckedOutputStream(
+                  new BufferedOutputStream(Channels.newOutputStream(channel)), crc),
+              StandardCharsets.UTF_8);
+      getGson().toJson(snapshot, writer);
+      writer.flush();
+      channel.force(true);
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(tempPath);
+      throw e;
+    }
+    Files.move(
+        tempPath,
+        getFilePath(),
+        StandardCopyOption.ATOMIC_MOVE,
+        StandardCopyOption.REPLACE_EXISTING);
+    return crc.getValue();
+  }
+
+  /**
+   * Flushes the journal and forces it to disk. Must be called while holding the lock.
+   *
+   * @throws IOException If an error occurs while forcing the journal.
+   */
+  private void forceJournal() throws IOException {
+    journal.flush();
+    journalChannel.force(false);
+    unforced = false;
+  }
+
+  /**
+   * Opens the journal for appending.
+   *
+   * @throws IOException If an error occurs while opening the journal.
+   */
+  private void openJournal() throws IOException {
+    Path journalPath = siblingPath(JOURNAL_SUFFIX);
+    journalChannel =
+        FileChannel.open(
+            journalPath,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND);
+    journal = new BufferedOutputStream(Channels.newOutputStream(journalChannel));
+    journalSize = Files.size(journalPath);
+  }
+
+  /** Waits until no compaction is running. Must be called while holding the lock. */
+  private void awaitCompaction() {
+    while (compacting) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Resolves a file next to the snapshot.
+   *
+   * @param suffix The suffix appended to the snapshot's file name.
+   * @return The path to the file.
+   */
+  private Path siblingPath(String suffix) {
+    return getFilePath().resolveSibling(getFilePath().getFileName() + suffix);
+  }
+}
@@ -1,34 +1,50 @@
 package persistence;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import core.Expense;
 import core.ExpenseHandlerImpl;
+import core.LazyUser;
 import core.User;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.Reader;
-import java.io.Writer;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
 
 /**
  * The JsonController class provides methods for handling JSON data related to User objects. It
  * allows saving, reading, and manipulating user data in a JSON format.
+ *
+ * <p>Reads take no locks: the file is only ever replaced as a whole, so a read sees either the old
+ * or the new content. Changes to a user should go through {@link #mutateUser}, which keeps
+ * concurrent changes to the same user from overwriting each other, and every write of the file
+ * holds an operating system lock on the store, so several processes can share it.
  */
 public class JsonController {
 
   private Path filePath;
-  private final Gson gson =
-      new GsonBuilder()
-          .registerTypeAdapter(ExpenseHandlerImpl.class, new ExpenseHandlerImplTypeAdapter())
-          .excludeFieldsWithoutExposeAnnotation()
-          .setPrettyPrinting()
-          .create();
+  private CredentialsIndex credentials;
+  private final StoreCodec codec;
+  private final GroupCommitter committer = new GroupCommitter(this::commitUsers);
+  private volatile MappedStore mappedStore;
+  private volatile SegmentedJsonWriter.Segments segments;
+  private final Gson gson = JsonStoreCodec.createGson();
 
   /**
    * Constructs a `JsonController` with the provided file name and sets the file path for working
@@ -39,7 +55,41 @@ public class JsonController {
    *     directories or files.
    */
   public JsonController(String file) throws IOException {
-    setFilePath(file);
+    this(resolveStorePath(file));
+  }
+
+  /**
+   * Constructs a `JsonController` that stores the users in the given file in the format of the
+   * given codec, for example a {@link BinaryStoreCodec}.
+   *
+   * @param file The name of the file to work with.
+   * @param codec The format of the file, or null for pretty-printed JSON.
+   * @throws IOException If an I/O error occurs while setting the file path or creating necessary
+   *     directories or files.
+   */
+  public JsonController(String file, StoreCodec codec) throws IOException {
+    this(resolveStorePath(file), codec);
+  }
+
+  /**
+   * Constructs a `JsonController` working with the given, already resolved path.
+   *
+   * @param filePath The path to the data store.
+   */
+  protected JsonController(Path filePath) {
+    this(filePath, null);
+  }
+
+  /**
+   * Constructs a `JsonController` working with the given, already resolved path in the format of
+   * the given codec.
+   *
+   * @param filePath The path to the data store.
+   * @param codec The format of the data store, or null for pretty-printed JSON.
+   */
+  protected JsonController(Path filePath, StoreCodec codec) {
+    this.filePath = filePath;
+    this.codec = codec != null ? codec : new JsonStoreCodec(gson);
   }
 
   /**
@@ -50,19 +100,120 @@ public class JsonController {
    *     directories or files.
    */
   public void setFilePath(String file) throws IOException {
+    setResolvedFilePath(resolveStorePath(file));
+  }
+
+  /**
+   * Resolves the given file name inside the application folder in the user's home directory. The
+   * folder and the file are created if they do not exist.
+   *
+   * @param file The name of the JSON file to work with.
+   * @return The path to the JSON file.
+   * @throws IOException If an I/O error occurs while creating the folder or the file.
+   */
+  private static Path resolveStorePath(String file) throws IOException {
+    Path userJsonFilePath = resolveAppFolder().resolve(file);
+
+    if (!Files.exists(userJsonFilePath)) {
+      Files.createFile(userJsonFilePath);
+    }
+
+    return userJsonFilePath;
+  }
+
+  /**
+   * Resolves the application folder in the user's home directory, creating it if it does not
+   * exist.
+   *
+   * @return The path to the application folder.
+   * @throws IOException If an I/O error occurs while creating the folder.
+   */
+  protected static Path resolveAppFolder() throws IOException {
     Path userHomePath = Paths.get(System.getProperty("user.home"));
     Path userFolderPath = userHomePath.resolve("money_spender");
-    Path userJsonFilePath = userFolderPath.resolve(file);
 
     if (!Files.exists(userFolderPath)) {
       Files.createDirectory(userFolderPath);
     }
 
-    if (!Files.exists(userJsonFilePath)) {
-      Files.createFile(userJsonFilePath);
+    return userFolderPath;
+  }
+
+  /**
+   * Sets the resolved path of the data store.
+   *
+   * @param filePath The path to the data store.
+   */
+  protected void setResolvedFilePath(Path filePath) {
+    this.filePath = filePath;
+    this.segments = null;
+    if (mappedStore != null) {
+      mappedStore = new MappedStore(filePath);
+    }
+    synchronized (this) {
+      this.credentials = null;
     }
+  }
+
+  /**
+   * Sets whether reads map the store file into memory instead of reading it through a stream. A
+   * mapped store is only mapped again when the file changes, so repeated reads of a large store
+   * that rarely changes cost almost no I/O. It suits read-heavy deployments. On Windows, a mapped
+   * file cannot be replaced, so saves may fail while reads are mapped.
+   *
+   * @param mapped Whether reads should map the store file.
+   */
+  public void setMappedReads(boolean mapped) {
+    this.mappedStore = mapped ? new MappedStore(filePath) : null;
+  }
+
+  /**
+   * Checks whether reads map the store file into memory.
+   *
+   * @return True if reads are mapped; otherwise, false.
+   */
+  public boolean isMappedReads() {
+    return mappedStore != null;
+  }
+
+  /**
+   * Retrieves the memory-mapped view of the store.
+   *
+   * @return The mapped store, or null if reads are not mapped.
+   */
+  MappedStore getMappedStore() {
+    return mappedStore;
+  }
+
+  /**
+   * Retrieves the Gson instance used to read and write users.
+   *
+   * @return The configured Gson instance.
+   */
+  protected Gson getGson() {
+    return gson;
+  }
 
-    this.filePath = userJsonFilePath;
+  /**
+   * Maps the name of a store file to the file of the same store in the format of this controller,
+   * such as "user.json" to "user.bin" for the binary format. A name without a file extension is
+   * returned as it is.
+   *
+   * @param name The name of the store file.
+   * @return The name of the file in the format of the codec.
+   */
+  public String toStoreFileName(String name) {
+    int dot = name.indexOf('.');
+    return dot < 0 ? name : name.substring(0, dot) + codec.getFileExtension();
+  }
+
+  /**
+   * Retrieves the codec that defines the format of the data store.
+   *
+   * @return The codec of the store.
+   */
+  protected StoreCodec getCodec() {
+    return codec;
   }
 
   /**
@@ -75,22 +226,270 @@ public class JsonController {
   }
 
   /**
-   * Saves a new User object to the JSON data file.
+   * Saves a new User object to the JSON data file. Saves from several threads at the same time are
+   * coalesced into a single write of the file, and the method returns once the write holding this
+   * save is on disk.
    *
    * @param user The User object to be saved.
    * @throws IOException If an error occurs while writing to the file.
    */
   public void saveNewUserToJson(User user) throws IOException {
-    List<User> users = readUsersFromJson();
-    if (checkIfUserNameExists(user.getUsername())) {
-      User oldUser = getUserFromList(user.getUsername(), users);
-      users.remove(oldUser);
+    committer.submit(user);
+  }
+
+  /**
+   * Reads, changes and saves a user as one step. The read and the save hold a lock for the user,
+   * so a concurrent change to the same user waits and then sees this change, instead of both
+   * reading the same version and the last save undoing the first. Changes to different users
+   * usually take different locks and run in parallel. The operating system lock on the store is
+   * held as well, so another process cannot change the user in between.
+   *
+   * @param username The username of the user to change.
+   * @param mutation The change, which must save the user through this controller.
+   * @return The changed user, or null if there is no user with the username, in which case the
+   *     mutation is not applied.
+   * @throws IOException If an error occurs while reading or saving the user.
+   */
+  public User mutateUser(String username, UserMutation mutation) throws IOException {
+    StoreLocks locks = storeLocks();
+    Lock userLock = locks.userLock(username);
+    userLock.lock();
+    try {
+      locks.acquireFileLock();
+      try {
+        User user = getUser(username);
+        if (user != null) {
+          mutation.apply(user);
+        }
+        return user;
+      } finally {
+        locks.releaseFileLock();
+      }
+    } finally {
+      userLock.unlock();
+    }
+  }
+
+  /**
+   * Forces every saved user to disk. Every write of the file is forced before a save returns, so
+   * there is nothing left to do; controllers that write in the background override this method.
+   *
+   * @throws IOException If an error occurs while writing to the file.
+   */
+  public void sync() throws IOException {}
+
+  /**
+   * Retrieves the locks of the store, which are shared by every controller of the store in this
+   * process.
+   *
+   * @return The locks of the store.
+   */
+  StoreLocks storeLocks() {
+    return StoreLocks.forStore(filePath);
+  }
+
+  /**
+   * Sets how long a save waits for saves from other threads to join the same write of the file.
+   * The default of 0 only coalesces the saves that arrive while the previous write is running.
+   *
+   * @param windowMillis The commit window in milliseconds.
+   * @throws IllegalArgumentException If the window is negative.
+   */
+  public void setCommitWindowMillis(long windowMillis) {
+    committer.setWindowMillis(windowMillis);
+  }
+
+  /**
+   * Retrieves the metrics of the writes of saved users, such as the number of saves per write and
+   * how long a save waited until it was on disk.
+   *
+   * @return The commit metrics.
+   */
+  public CommitMetrics getCommitMetrics() {
+    return committer.getMetrics();
+  }
+
+  /**
+   * Writes a batch of saved users to the file in one commit. A user saved more than once in the
+   * batch ends up with the last saved version. The commit lock and the operating system lock of the
+   * store are held from reading the file until it is replaced, so a write from another controller
+   * or process is never lost.
+   *
+   * @param batch The users to save, in the order they were saved.
+   * @throws IOException If an error occurs while reading or writing the file.
+   */
+  private void commitUsers(List<User> batch) throws IOException {
+    StoreLocks locks = storeLocks();
+    locks.commitLock().lock();
+    try {
+      locks.acquireFileLock();
+      try {
+        commitUsersLocked(batch);
+      } finally {
+        locks.releaseFileLock();
+      }
+    } finally {
+      locks.commitLock().unlock();
     }
-    users.add(user);
+  }
 
-    try (Writer writer = new FileWriter(this.filePath.toFile(), StandardCharsets.UTF_8)) {
-      gson.toJson(users, writer);
+  /**
+   * Writes a batch of saved users to the file while the store is locked. If this controller wrote
+   * the file last, only the saved users are serialized and the other users are copied from the old
+   * file; otherwise all users are read and written.
+   *
+   * @param batch The users to save, in the order they were saved.
+   * @throws IOException If an error occurs while reading or writing the file.
+   */
+  private void commitUsersLocked(List<User> batch) throws IOException {
+    final CredentialsIndex index = credentials();
+    if (!writeChangedUsers(batch)) {
+      List<User> users = readUsersFromJson();
+      for (User user : batch) {
+        User oldUser = getUserFromList(user.getUsername(), users);
+        if (oldUser != null) {
+          users.remove(oldUser);
+        }
+        users.add(user);
+      }
+      writeUsersToJson(users);
+    }
+    String location = String.valueOf(filePath.getFileName());
+    for (User user : batch) {
+      index.put(user.getUsername(), user.getPassword(), location);
     }
+    index.save(getStoreStamp());
+  }
+
+  /**
+   * Saves a user after an expense has been added to it. Stores that can record a single change
+   * override this method to avoid writing the whole user.
+   *
+   * @param user The User object the expense was added to.
+   * @param expense The expense that was added.
+   * @throws IOException If an error occurs while writing to the file.
+   */
+  public void saveAddedExpense(User user, Expense expense) throws IOException {
+    saveNewUserToJson(user);
+  }
+
+  /**
+   * Saves a user after an expense has been removed from it. Stores that can record a single change
+   * override this method to avoid writing the whole user.
+   *
+   * @param user The User object the expense was removed from.
+   * @param expense The expense that was removed.
+   * @throws IOException If an error occurs while writing to the file.
+   */
+  public void saveRemovedExpense(User user, Expense expense) throws IOException {
+    saveNewUserToJson(user);
+  }
+
+  /**
+   * Saves a user after one of its expenses has been replaced. Stores that can record a single
+   * change override this method to avoid writing the whole user.
+   *
+   * @param user The User object whose expense was replaced.
+   * @param oldExpense The expense that was replaced.
+   * @param newExpense The expense that replaced it.
+   * @throws IOException If an error occurs while writing to the file.
+   */
+  public void saveUpdatedExpense(User user, Expense oldExpense, Expense newExpense)
+      throws IOException {
+    saveNewUserToJson(user);
+  }
+
+  /**
+   * Writes the given User objects to the JSON data file, replacing its current content. The users
+   * are written to a temporary file, which is forced to disk and then atomically moved over the
+   * file, so a crash leaves either the old or the new content and never a half-written file.
+   *
+   * @param users The User objects to be written.
+   * @throws IOException If an error occurs while writing to the file.
+   */
+  protected void writeUsersToJson(List<User> users) throws IOException {
+    segments = null;
+    Path tempPath = filePath.resolveSibling(filePath.getFileName() + ".tmp");
+    SegmentedJsonWriter.Segments written = null;
+    try (FileChannel channel =
+        FileChannel.open(
+            tempPath,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+      if (codec instanceof JsonStoreCodec) {
+        written = new SegmentedJsonWriter(((JsonStoreCodec) codec).getGson()).write(users, channel);
+      } else {
+        OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel));
+        codec.write(users, out);
+        out.flush();
+      }
+      channel.force(true);
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(tempPath);
+      throw e;
+    }
+    Files.move(
+        tempPath, filePath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    if (written != null) {
+      segments = written.withStamp(stampOf(filePath));
+    }
+  }
+
+  /**
+   * Writes the saved users into a copy of the file in which every other user is copied from the
+   * old file byte for byte, if the segments of the users in the file are known. Only the saved
+   * users are serialized, and the copy replaces the file the same way a full write does.
+   *
+   * @param batch The users to save, in the order they were saved.
+   * @return True if the users were written; false if the segments of the file are not known.
+   * @throws IOException If an error occurs while reading or writing the file.
+   */
+  private boolean writeChangedUsers(List<User> batch) throws IOException {
+    SegmentedJsonWriter.Segments current = segments;
+    if (current == null || !(codec instanceof JsonStoreCodec)
+        || !current.describes(getStoreStamp())) {
+      return false;
+    }
+    Map<String, User> changed = new LinkedHashMap<>();
+    for (User user : batch) {
+      changed.remove(user.getUsername());
+      changed.put(user.getUsername(), user);
+    }
+    segments = null;
+    Path tempPath = filePath.resolveSibling(filePath.getFileName() + ".tmp");
+    SegmentedJsonWriter.Segments written;
+    try (FileChannel source = FileChannel.open(filePath, StandardOpenOption.READ);
+        FileChannel target =
+            FileChannel.open(
+                tempPath,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+      written =
+          new SegmentedJsonWriter(((JsonStoreCodec) codec).getGson())
+              .writeChanged(source, current, changed.values(), target);
+      target.force(true);
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(tempPath);
+      throw e;
+    }
+    Files.move(
+        tempPath, filePath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    segments = written.withStamp(stampOf(filePath));
+    return true;
+  }
+
+  /**
+   * Checks whether the byte range of every user in the file is known, so the next save only
+   * serializes the users it changes.
+   *
+   * @return True if the next save is incremental.
+   * @throws IOException If an error occurs while reading the attributes of the file.
+   */
+  boolean hasSegments() throws IOException {
+    SegmentedJsonWriter.Segments current = segments;
+    return current != null && current.describes(getStoreStamp());
   }
 
   /**
@@ -100,40 +499,65 @@ public class JsonController {
    * @throws IOException If an error occurs while reading from the file.
    */
   public List<User> readUsersFromJson() throws IOException {
-    List<User> users = new ArrayList<>();
-    if (Files.exists(filePath)) {
-      try (Reader reader = new FileReader(filePath.toFile(), StandardCharsets.UTF_8)) {
-        User[] userArray = gson.fromJson(reader, User[].class);
-        if (userArray != null) {
-          for (User user : userArray) {
-            users.add(user);
-          }
-        }
-      }
+    if (!Files.exists(filePath)) {
+      return new ArrayList<>();
     }
-    return users;
+    try (InputStream in = openStore()) {
+      return codec.read(in);
+    }
+  }
+
+  /**
+   * Checks whether the controller keeps its users in memory once they are loaded. A controller
+   * reads its file on every call; controllers that cache their users override this method.
+   *
+   * @return True if the controller keeps loaded users in memory; otherwise, false.
+   */
+  public boolean keepsUsersInMemory() {
+    return false;
+  }
+
+  /**
+   * Loads every user of the store once and brings the credentials index up to date, so the first
+   * requests do not pay for a cold store. A controller that keeps its users in memory fills its
+   * cache. A single file is parsed by one thread, so only stores kept in many files use the
+   * parallelism.
+   *
+   * @param parallelism The number of threads to load with.
+   * @return The report of the warm-up.
+   * @throws IOException If an error occurs while reading the store.
+   * @throws IllegalArgumentException If the parallelism is not positive.
+   */
+  public WarmUpReport warmUp(int parallelism) throws IOException {
+    if (parallelism <= 0) {
+      throw new IllegalArgumentException("Parallelism must be positive.");
+    }
+    long start = System.nanoTime();
+    List<User> users = readUsersFromJson();
+    credentials();
+    long expenses = 0;
+    for (User user : users) {
+      expenses += user.getExpenseHandler().getAllExpenses().size();
+    }
+    long millis = (System.nanoTime() - start) / 1_000_000;
+    return new WarmUpReport(users.size(), expenses, StoreWarmer.sizeOf(filePath), millis);
   }
 
   /**
-   * Checks if a username already exists in the JSON data file.
+   * Checks if a username already exists in the JSON data file. The file is streamed and the
+   * expenses of the users are skipped without being read into objects.
    *
    * @param username The username to check for existence.
    * @return True if the username exists; otherwise, false.
    * @throws IOException If an error occurs while reading from the file.
    */
   public boolean checkIfUserNameExists(String username) throws IOException {
-    List<User> users;
-    users = readUsersFromJson();
-    for (User user : users) {
-      if (user.getUsername().equals(username)) {
-        return true;
-      }
-    }
-    return false;
+    return findUser(username, false) != null;
   }
 
   /**
-   * Validates if the provided username and password combination exists in the JSON data.
+   * Validates if the provided username and password combination exists in the JSON data. The file
+   * is streamed and the expenses of the users are skipped without being read into objects.
    *
    * @param username The username to validate.
    * @param password The password to validate.
@@ -141,26 +565,193 @@ public class JsonController {
    * @throws IOException If an error occurs while reading from the file.
    */
   public boolean checkIfPasswordIsCorrect(String username, String password) throws IOException {
-    List<User> users;
-    users = readUsersFromJson();
-    for (User user : users) {
-      if (user.getUsername().equals(username) && user.getPassword().equals(password)) {
-        return true;
-      }
-    }
-    return false;
+    User user = findUser(username, false);
+    return user != null && user.getPassword().equals(password);
   }
 
   /**
-   * Retrieves a User object by its username.
+   * Retrieves a User object by its username. The file is streamed, users with other usernames are
+   * skipped without being read into objects, and reading stops as soon as the user is found.
    *
    * @param username The username of the user to retrieve.
    * @return The User object if found; otherwise, null.
    * @throws IOException If an error occurs while reading from the file.
    */
   public User getUser(String username) throws IOException {
-    List<User> users = readUsersFromJson();
-    return getUserFromList(username, users);
+    return findUser(username, true);
+  }
+
+  /**
+   * Authenticates a user and retrieves it if the password is correct. The username and password
+   * are checked against the credentials index, so no expenses are read to authenticate. The
+   * returned user is a {@link LazyUser}, which only reads its expenses from the location the index
+   * holds for it, such as its shard, when they are first accessed.
+   *
+   * @param username The username to authenticate.
+   * @param password The password to authenticate.
+   * @return The User object if the combination is correct; otherwise, null.
+   * @throws IOException If an error occurs while reading the index.
+   */
+  public User authenticateUser(String username, String password) throws IOException {
+    CredentialsIndex.Entry entry = credentials().get(username);
+    if (entry == null || !entry.getPassword().equals(password)) {
+      return null;
+    }
+    String location = entry.getLocation();
+    return new LazyUser(
+        username,
+        password,
+        () -> {
+          User user = loadUser(username, location);
+          return user == null ? new ExpenseHandlerImpl() : user.getExpenseHandler();
+        });
+  }
+
+  /**
+   * Loads an authenticated user from the location the credentials index holds for it.
+   *
+   * @param username The username of the user to load.
+   * @param location The location of the user in the store.
+   * @return The User object if found; otherwise, null.
+   * @throws IOException If an error occurs while reading the store.
+   */
+  User loadUser(String username, String location) throws IOException {
+    return getUser(username);
+  }
+
+  /**
+   * Retrieves the credentials index of the store. The index is loaded from its file again if the
+   * file has been saved since, and if it matches the current stamp of the store, and rebuilt from
+   * the store otherwise.
+   *
+   * @return The credentials index, up to date with the store.
+   * @throws IOException If an error occurs while reading the index or the store.
+   */
+  synchronized CredentialsIndex credentials() throws IOException {
+    String stamp = getStoreStamp();
+    if (credentials == null) {
+      credentials = new CredentialsIndex(getCredentialsPath());
+    }
+    if ((!credentials.isCurrent(stamp) || !credentials.isFileCurrent())
+        && !credentials.load(stamp)) {
+      credentials.replaceAll(readCredentials());
+      credentials.save(stamp);
+    }
+    return credentials;
+  }
+
+  /**
+   * Resolves the file of the credentials index, which is kept next to the store.
+   *
+   * @return The path to the credentials index.
+   */
+  Path getCredentialsPath() {
+    return filePath.resolveSibling(filePath.getFileName() + ".credentials");
+  }
+
+  /**
+   * Computes a stamp of the store that changes whenever the store is written, so a credentials
+   * index saved for another version of the store is detected.
+   *
+   * @return The stamp of the store.
+   * @throws IOException If an error occurs while reading the attributes of the store.
+   */
+  String getStoreStamp() throws IOException {
+    if (!Files.exists(filePath)) {
+      return "missing";
+    }
+    return stampOf(filePath);
+  }
+
+  /**
+   * Forces the entries of the folder of a file to disk, so a file that was moved into the folder
+   * survives a power loss before another file is removed. File systems that cannot open a folder,
+   * such as on Windows, already write the entries of a folder through, and are skipped.
+   *
+   * @param file The file whose folder is forced.
+   * @throws IOException If an error occurs while forcing the folder.
+   */
+  static void forceFolderOf(Path file) throws IOException {
+    Path folder = file.toAbsolutePath().getParent();
+    if (folder == null) {
+      return;
+    }
+    try (FileChannel channel = FileChannel.open(folder, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (AccessDeniedException e) {
+      // The folder cannot be opened on this file system.
+    }
+  }
+
+  /**
+   * Computes a stamp of a file from its size, its modification time to the precision of the file
+   * system and its identity, so the stamp changes when the file is written or replaced, even within
+   * the same millisecond.
+   *
+   * @param path The path to the file.
+   * @return The stamp of the file.
+   * @throws IOException If an error occurs while reading the attributes of the file.
+   */
+  static String stampOf(Path path) throws IOException {
+    BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+    return attributes.size()
+        + ":"
+        + attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS)
+        + ":"
+        + attributes.fileKey();
+  }
+
+  /**
+   * Reads the credentials of all users in the store. The file is streamed and the expenses of the
+   * users are skipped without being read into objects.
+   *
+   * @return The credentials of every user by username.
+   * @throws IOException If an error occurs while reading from the file.
+   */
+  Map<String, CredentialsIndex.Entry> readCredentials() throws IOException {
+    Map<String, CredentialsIndex.Entry> entries = new HashMap<>();
+    if (!Files.exists(filePath)) {
+      return entries;
+    }
+    String location = String.valueOf(filePath.getFileName());
+    try (InputStream in = openStore()) {
+      for (User user : codec.readHeaders(in)) {
+        entries.put(user.getUsername(), new CredentialsIndex.Entry(user.getPassword(), location));
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * Streams through the data file until the user with the given username is found.
+   *
+   * @param username The username of the user to find.
+   * @param readExpenses Whether the expenses of the found user should be read. If not, the returned
+   *     user has no expenses and must only be used for its username and password.
+   * @return The User object if found; otherwise, null.
+   * @throws IOException If an error occurs while reading from the file.
+   */
+  private User findUser(String username, boolean readExpenses) throws IOException {
+    if (!Files.exists(filePath)) {
+      return null;
+    }
+    try (InputStream in = openStore()) {
+      return codec.find(in, username, readExpenses);
+    }
+  }
+
+  /**
+   * Opens the data file for buffered reading, from the memory-mapped view if reads are mapped.
+   *
+   * @return The stream of the data file.
+   * @throws IOException If an error occurs while opening the file.
+   */
+  private InputStream openStore() throws IOException {
+    MappedStore mapped = mappedStore;
+    if (mapped != null) {
+      return mapped.open();
+    }
+    return new BufferedInputStream(Files.newInputStream(filePath));
   }
 
   /**
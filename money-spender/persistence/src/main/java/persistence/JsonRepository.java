@@ -0,0 +1,186 @@
+package persistence;
+
+import core.Expense;
+import core.ExpenseFilterer;
+import core.ExpenseFiltererImpl;
+import core.User;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The repositories of users and expenses backed by a {@link JsonController}, and so by any of its
+ * file layouts. Queries read the user from the store and filter its expenses in memory with a
+ * single scan. The user is read again for every query, so building the date index of {@link
+ * core.ExpenseHandlerImpl} would cost more than the scan; the index serves callers that keep a
+ * handler between queries. Closing the repository closes the controller if it holds resources, such
+ * as a cache with unflushed changes.
+ */
+public class JsonRepository implements UserRepository, ExpenseRepository, AutoCloseable {
+
+  private final JsonController controller;
+  private final ExpenseFilterer filterer = new ExpenseFiltererImpl();
+
+  /**
+   * Constructs a `JsonRepository` backed by the given controller.
+   *
+   * @param controller The controller of the store.
+   */
+  public JsonRepository(JsonController controller) {
+    this.controller = controller;
+  }
+
+  /**
+   * Retrieves the controller of the store.
+   *
+   * @return The controller.
+   */
+  public JsonController getController() {
+    return controller;
+  }
+
+  @Override
+  public User findUser(String username) throws IOException {
+    return controller.getUser(username);
+  }
+
+  @Override
+  public List<User> findAllUsers() throws IOException {
+    return controller.readUsersFromJson();
+  }
+
+  @Override
+  public boolean existsUser(String username) throws IOException {
+    return controller.checkIfUserNameExists(username);
+  }
+
+  @Override
+  public User authenticate(String username, String password) throws IOException {
+    return controller.authenticateUser(username, password);
+  }
+
+  @Override
+  public boolean createUser(User user) throws IOException {
+    if (controller.checkIfUserNameExists(user.getUsername())) {
+      return false;
+    }
+    controller.saveNewUserToJson(user);
+    return true;
+  }
+
+  /**
+   * Switches to the store file of the given name in the format of the controller, so a client
+   * that names "user.json" keeps a binary or compressed store in "user.bin" or "user.json.gz".
+   */
+  @Override
+  public void setStoreName(String name) throws IOException {
+    controller.setFilePath(controller.toStoreFileName(name));
+  }
+
+  @Override
+  public Map<String, Number> getMetrics() {
+    return controller.getCommitMetrics().toMap();
+  }
+
+  @Override
+  public boolean isNamedByFile() {
+    return true;
+  }
+
+  @Override
+  public boolean keepsUsersInMemory() {
+    return controller.keepsUsersInMemory();
+  }
+
+  @Override
+  public WarmUpReport warmUp(int parallelism) throws IOException {
+    return controller.warmUp(parallelism);
+  }
+
+  @Override
+  public User addExpense(String username, Expense expense) throws IOException {
+    return controller.mutateUser(
+        username,
+        user -> {
+          Expense added = user.getExpenseHandler().addExpense(expense);
+          controller.saveAddedExpense(user, added);
+        });
+  }
+
+  @Override
+  public User removeExpense(String username, Expense expense) throws IOException {
+    return controller.mutateUser(
+        username,
+        user -> {
+          if (user.getExpenseHandler().removeExpense(expense)) {
+            controller.saveRemovedExpense(user, expense);
+          }
+        });
+  }
+
+  @Override
+  public User removeExpenseById(String username, long id) throws IOException {
+    return controller.mutateUser(
+        username,
+        user -> {
+          Expense removed = user.getExpenseHandler().removeExpenseById(id);
+          if (removed != null) {
+            controller.saveRemovedExpense(user, removed);
+          }
+        });
+  }
+
+  @Override
+  public List<Expense> findExpenses(
+      String username, String category, LocalDate start, LocalDate end) throws IOException {
+    return filterer.filterExpenses(
+        getExistingUser(username).getExpenseHandler().getAllExpenses(), start, end, category);
+  }
+
+  @Override
+  public Set<String> findCategories(String username) throws IOException {
+    return new HashSet<>(getExistingUser(username).getExpenseHandler().getCategories());
+  }
+
+  @Override
+  public void sync() throws IOException {
+    controller.sync();
+  }
+
+  /**
+   * Closes the controller if it holds resources.
+   *
+   * @throws IOException If an error occurs while closing the controller.
+   */
+  @Override
+  public void close() throws IOException {
+    if (controller instanceof AutoCloseable) {
+      try {
+        ((AutoCloseable) controller).close();
+      } catch (IOException | RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new IOException("Could not close the store.", e);
+      }
+    }
+  }
+
+  /**
+   * Retrieves a user that must exist.
+   *
+   * @param username The username of the user.
+   * @return The user.
+   * @throws IllegalArgumentException If there is no user with the username.
+   * @throws IOException If an error occurs while reading the store.
+   */
+  private User getExistingUser(String username) throws IOException {
+    User user = controller.getUser(username);
+    if (user == null) {
+      throw new IllegalArgumentException("User not found.");
+    }
+    return user;
+  }
+}
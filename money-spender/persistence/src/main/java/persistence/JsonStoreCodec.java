@@ -0,0 +1,247 @@
+package persistence;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import core.Expense;
+import core.ExpenseHandlerImpl;
+import core.User;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link StoreCodec} that stores users as a JSON array, written by the given Gson instance.
+ * Lookups stream through the array and skip the expenses of all users other than the one that is
+ * looked up.
+ */
+public class JsonStoreCodec implements StoreCodec {
+
+  private final Gson gson;
+
+  /**
+   * Constructs a `JsonStoreCodec` that writes pretty-printed JSON with the type adapters of the
+   * persistence module, the same format a {@link JsonController} uses by default.
+   */
+  public JsonStoreCodec() {
+    this(createGson());
+  }
+
+  /**
+   * Constructs a `JsonStoreCodec` that reads and writes users with the given Gson instance.
+   *
+   * @param gson The Gson instance, with the type adapters of the persistence module registered.
+   */
+  public JsonStoreCodec(Gson gson) {
+    this.gson = gson;
+  }
+
+  /**
+   * Creates a Gson instance with the type adapters of the persistence module, which writes
+   * pretty-printed JSON.
+   *
+   * @return The configured Gson instance.
+   */
+  static Gson createGson() {
+    return new GsonBuilder()
+        .registerTypeAdapter(Expense.class, new ExpenseTypeAdapter())
+        .registerTypeAdapter(ExpenseHandlerImpl.class, new ExpenseHandlerImplTypeAdapter())
+        .registerTypeAdapter(User.class, new UserTypeAdapter())
+        .excludeFieldsWithoutExposeAnnotation()
+        .setPrettyPrinting()
+        .create();
+  }
+
+  /**
+   * Retrieves the Gson instance users are read and written with.
+   *
+   * @return The Gson instance.
+   */
+  Gson getGson() {
+    return gson;
+  }
+
+  @Override
+  public void write(List<User> users, OutputStream out) throws IOException {
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    gson.toJson(users, writer);
+    writer.flush();
+  }
+
+  @Override
+  public List<User> read(InputStream in) throws IOException {
+    List<User> users = new ArrayList<>();
+    User[] userArray = gson.fromJson(newReader(in), User[].class);
+    if (userArray != null) {
+      for (User user : userArray) {
+        users.add(user);
+      }
+    }
+    return users;
+  }
+
+  @Override
+  public void readEach(InputStream in, UserSink sink) throws IOException {
+    JsonReader reader = openUserArray(in);
+    while (reader != null && reader.hasNext()) {
+      User user = readUser(reader, null, true);
+      if (user != null) {
+        sink.accept(user);
+      }
+    }
+  }
+
+  /**
+   * Opens a writer that serializes users into the array one at a time. The written store is the
+   * same as the one {@link #write(List, OutputStream)} gives for the whole list.
+   *
+   * @param out The stream to write to. It is not closed.
+   * @return The writer.
+   * @throws IOException If an error occurs while writing to the stream.
+   */
+  @Override
+  public UserWriter openWriter(OutputStream out) throws IOException {
+    JsonWriter writer =
+        gson.newJsonWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+    writer.beginArray();
+    return new UserWriter() {
+      @Override
+      public void accept(User user) {
+        gson.toJson(user, User.class, writer);
+      }
+
+      @Override
+      public void finish() throws IOException {
+        writer.endArray();
+        writer.flush();
+      }
+    };
+  }
+
+  @Override
+  public User find(InputStream in, String username, boolean readExpenses) throws IOException {
+    JsonReader reader = openUserArray(in);
+    while (reader != null && reader.hasNext()) {
+      User user = readUser(reader, username, readExpenses);
+      if (user != null) {
+        return user;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public List<User> readHeaders(InputStream in) throws IOException {
+    List<User> users = new ArrayList<>();
+    JsonReader reader = openUserArray(in);
+    while (reader != null && reader.hasNext()) {
+      User user = readUser(reader, null, false);
+      if (user != null) {
+        users.add(user);
+      }
+    }
+    return users;
+  }
+
+  /**
+   * Steps into the array of users of the stream.
+   *
+   * @param in The stream to read from.
+   * @return A reader positioned at the first user, or null if the stream holds no users.
+   * @throws IOException If an error occurs while reading from the stream.
+   */
+  private JsonReader openUserArray(InputStream in) throws IOException {
+    JsonReader reader = new JsonReader(newReader(in));
+    try {
+      if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+        reader.beginArray();
+        return reader;
+      }
+    } catch (EOFException e) {
+      // A stream that is empty or only holds whitespace holds no users.
+    }
+    return null;
+  }
+
+  /**
+   * Creates a buffered UTF-8 reader for the stream.
+   *
+   * @param in The stream to read from.
+   * @return The reader.
+   */
+  private static BufferedReader newReader(InputStream in) {
+    return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Reads the next user object from the reader if it has the given username, and otherwise skips
+   * the rest of the object as soon as its username is known.
+   *
+   * @param reader The reader positioned at the start of a user object.
+   * @param username The username of the user to find, or null to read any user.
+   * @param readExpenses Whether the expenses of the user should be read.
+   * @return The User object if it has the given username; otherwise, null.
+   * @throws IOException If an error occurs while reading from the stream.
+   */
+  User readUser(JsonReader reader, String username, boolean readExpenses) throws IOException {
+    String name = null;
+    String password = null;
+    JsonElement bufferedHandler = null;
+    ExpenseHandlerImpl handler = null;
+
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+        case "username":
+          name = reader.nextString();
+          if (username != null && !name.equals(username)) {
+            while (reader.hasNext()) {
+              reader.nextName();
+              reader.skipValue();
+            }
+            reader.endObject();
+            return null;
+          }
+          break;
+        case "password":
+          password = reader.nextString();
+          break;
+        case "expenseHandler":
+          if (!readExpenses) {
+            reader.skipValue();
+          } else if (name == null) {
+            // The username is not known yet, so the expenses are kept until it is.
+            bufferedHandler = JsonParser.parseReader(reader);
+          } else {
+            handler = gson.getAdapter(ExpenseHandlerImpl.class).read(reader);
+          }
+          break;
+        default:
+          reader.skipValue();
+          break;
+      }
+    }
+    reader.endObject();
+
+    if (name == null || username != null && !name.equals(username)) {
+      return null;
+    }
+    if (bufferedHandler != null) {
+      handler = gson.fromJson(bufferedHandler, ExpenseHandlerImpl.class);
+    }
+    return new User(name, password, handler != null ? handler : new ExpenseHandlerImpl());
+  }
+}
@@ -0,0 +1,107 @@
+package persistence;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only memory-mapped view of a store file. The file is mapped once and every read streams
+ * from the mapped pages, so repeated reads cost no system calls and no copies into a buffer of the
+ * stream. The file is mapped again only when its stamp changes. The stamp holds the size, the
+ * modification time to the precision of the file system, and the identity of the file, so a store
+ * replaced by moving a new file over it is remapped even within the same millisecond. A mapping of
+ * the old file stays valid and keeps showing the old version until it is remapped.
+ */
+final class MappedStore {
+
+  private final Path path;
+  private MappedByteBuffer buffer;
+  private String stamp;
+  private int mapCount;
+
+  /**
+   * Constructs a `MappedStore` of the given file.
+   *
+   * @param path The path to the store file.
+   */
+  MappedStore(Path path) {
+    this.path = path;
+  }
+
+  /**
+   * Opens a stream over the mapped file, mapping the file first if it changed since it was last
+   * mapped.
+   *
+   * @return A stream of the whole file, independent of other streams opened before.
+   * @throws IOException If an error occurs while mapping the file, or if the file is too large to
+   *     be mapped as one buffer.
+   */
+  synchronized InputStream open() throws IOException {
+    String currentStamp = JsonController.stampOf(path);
+    if (buffer == null || !currentStamp.equals(stamp)) {
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+          throw new IOException("The store is too large to be mapped: " + size + " bytes.");
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      }
+      stamp = currentStamp;
+      mapCount++;
+    }
+    return new BufferInputStream(buffer.duplicate());
+  }
+
+  /**
+   * Retrieves how often the file has been mapped.
+   *
+   * @return The number of mappings.
+   */
+  synchronized int getMapCount() {
+    return mapCount;
+  }
+
+  /** A stream that reads a byte buffer from its position to its limit. */
+  private static final class BufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    BufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, count);
+      return count;
+    }
+
+    @Override
+    public long skip(long count) {
+      int skipped = (int) Math.max(0, Math.min(count, buffer.remaining()));
+      buffer.position(buffer.position() + skipped);
+      return skipped;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+}
@@ -0,0 +1,177 @@
+package persistence;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The result of migrating a store: how many users and expenses were read from the source and found
+ * in the target, the checksums of both, how many bytes the source had and how long the migration
+ * and its verification took.
+ */
+public class MigrationReport {
+
+  private final long users;
+  private final long expenses;
+  private final long sourceChecksum;
+  private final long targetUsers;
+  private final long targetExpenses;
+  private final long targetChecksum;
+  private final long bytesRead;
+  private final long millis;
+  private final long verifyMillis;
+
+  /**
+   * Constructs a report of a finished migration.
+   *
+   * @param users The number of users read from the source.
+   * @param expenses The number of expenses read from the source.
+   * @param sourceChecksum The checksum of the users of the source.
+   * @param targetUsers The number of users read back from the target.
+   * @param targetExpenses The number of expenses read back from the target.
+   * @param targetChecksum The checksum of the users of the target.
+   * @param bytesRead The size of the source in bytes.
+   * @param millis The time the migration took, in milliseconds.
+   * @param verifyMillis The time reading back the target took, in milliseconds.
+   */
+  public MigrationReport(
+      long users,
+      long expenses,
+      long sourceChecksum,
+      long targetUsers,
+      long targetExpenses,
+      long targetChecksum,
+      long bytesRead,
+      long millis,
+      long verifyMillis) {
+    this.users = users;
+    this.expenses = expenses;
+    this.sourceChecksum = sourceChecksum;
+    this.targetUsers = targetUsers;
+    this.targetExpenses = targetExpenses;
+    this.targetChecksum = targetChecksum;
+    this.bytesRead = bytesRead;
+    this.millis = millis;
+    this.verifyMillis = verifyMillis;
+  }
+
+  /**
+   * Retrieves the number of users read from the source.
+   *
+   * @return The number of users.
+   */
+  public long getUsers() {
+    return users;
+  }
+
+  /**
+   * Retrieves the number of expenses read from the source.
+   *
+   * @return The number of expenses.
+   */
+  public long getExpenses() {
+    return expenses;
+  }
+
+  /**
+   * Retrieves the checksum of the users of the source.
+   *
+   * @return The checksum.
+   */
+  public long getSourceChecksum() {
+    return sourceChecksum;
+  }
+
+  /**
+   * Retrieves the checksum of the users read back from the target.
+   *
+   * @return The checksum.
+   */
+  public long getTargetChecksum() {
+    return targetChecksum;
+  }
+
+  /**
+   * Retrieves the size of the source.
+   *
+   * @return The number of bytes.
+   */
+  public long getBytesRead() {
+    return bytesRead;
+  }
+
+  /**
+   * Retrieves the time the migration took, without its verification.
+   *
+   * @return The time in milliseconds.
+   */
+  public long getMillis() {
+    return millis;
+  }
+
+  /**
+   * Checks whether the target holds the same users and expenses as the source.
+   *
+   * @return True if the counts and checksums of the source and the target match.
+   */
+  public boolean isVerified() {
+    return users == targetUsers && expenses == targetExpenses && sourceChecksum == targetChecksum;
+  }
+
+  /**
+   * Retrieves how many users were migrated per second.
+   *
+   * @return The number of users per second.
+   */
+  public double getUsersPerSecond() {
+    return users * 1000.0 / Math.max(millis, 1);
+  }
+
+  /**
+   * Retrieves how many megabytes of the source were migrated per second.
+   *
+   * @return The number of megabytes per second.
+   */
+  public double getMegabytesPerSecond() {
+    return bytesRead / (1024.0 * 1024.0) * 1000.0 / Math.max(millis, 1);
+  }
+
+  /**
+   * Retrieves all values of the report by name, for example to report them.
+   *
+   * @return The values, in a fixed order.
+   */
+  public Map<String, Number> toMap() {
+    Map<String, Number> report = new LinkedHashMap<>();
+    report.put("users", users);
+    report.put("expenses", expenses);
+    report.put("sourceChecksum", sourceChecksum);
+    report.put("targetUsers", targetUsers);
+    report.put("targetExpenses", targetExpenses);
+    report.put("targetChecksum", targetChecksum);
+    report.put("bytesRead", bytesRead);
+    report.put("millis", millis);
+    report.put("verifyMillis", verifyMillis);
+    return report;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        Locale.ROOT,
+        "Migrated %d users with %d expenses from %d bytes in %d ms (%.0f users/s, %.1f MB/s); "
+            + "verified %d users with %d expenses in %d ms, checksums %016x and %016x %s",
+        users,
+        expenses,
+        bytesRead,
+        millis,
+        getUsersPerSecond(),
+        getMegabytesPerSecond(),
+        targetUsers,
+        targetExpenses,
+        verifyMillis,
+        sourceChecksum,
+        targetChecksum,
+        isVerified() ? "match" : "DO NOT MATCH");
+  }
+}
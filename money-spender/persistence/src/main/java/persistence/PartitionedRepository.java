@@ -0,0 +1,789 @@
+package persistence;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import core.Expense;
+import core.ExpenseFilterer;
+import core.ExpenseFiltererImpl;
+import core.ExpenseHandlerImpl;
+import core.LazyUser;
+import core.User;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * The repositories of users and expenses in a store folder where the expenses of every user are
+ * partitioned by month. Every user has a folder with a small manifest, which holds the password,
+ * the months that have expenses and the categories in use, and one JSON file per month. A query
+ * for a date range only reads the partitions of the months it overlaps, so a user with years of
+ * history only pays for the months asked about. Authentication only reads the manifest, and the
+ * authenticated user reads its partitions once its expenses are accessed.
+ *
+ * <p>Every expense is stored with a sequence number, so expenses are returned in the order they
+ * were added even though they are spread over several files. The id of an expense is its sequence
+ * number plus one, and the next sequence number in the manifest is the high-water mark of the ids:
+ * a created user keeps the ids of its expenses exactly and continues after the next id of its
+ * handler, an added expense with an id keeps it if it is above the mark, and the id of a removed
+ * expense is never given out again. A change rewrites only
+ * the partition of the month of the expense and the manifest, each through a temporary file that
+ * is forced to disk and atomically moved into place. Changes hold the lock of the user and the
+ * operating system lock of the store, while reads take no locks.
+ *
+ * <p>The manifest is written before the partition, and it covers both the old and the new state of
+ * the partition: the counts of an added expense and the next sequence number are raised first,
+ * while the counts of a removed expense are only lowered in a second write once the partition is
+ * gone. A crash between the writes therefore leaves a manifest that lists every partition and never
+ * hands out a sequence number twice, though its counts may be too high. The manifest also records
+ * the size the changed partition should have, and the next change of the user recounts the
+ * manifest from the partitions if the partition does not have that size.
+ */
+public class PartitionedRepository implements UserRepository, ExpenseRepository {
+
+  private static final String MANIFEST_FILE = "manifest.json";
+  private static final String PARTITION_SUFFIX = ".json";
+  private static final Type ENTRIES_TYPE = new TypeToken<List<Entry>>() {}.getType();
+
+  private final Gson gson =
+      new GsonBuilder().registerTypeAdapter(Expense.class, new ExpenseTypeAdapter()).create();
+  private final ExpenseFilterer filterer = new ExpenseFiltererImpl();
+  private final AtomicLong partitionReads = new AtomicLong();
+  private volatile Path storePath;
+
+  /**
+   * Constructs a `PartitionedRepository` for the given store folder, which is created if it does
+   * not exist.
+   *
+   * @param store The name of the store folder inside the application folder.
+   * @throws IOException If an I/O error occurs while creating the store folder.
+   */
+  public PartitionedRepository(String store) throws IOException {
+    setStoreName(store);
+  }
+
+  /**
+   * Switches to the given store folder in the application folder, which is created if it does not
+   * exist. A name with a file extension, such as "user.json", names the file of another layout, so
+   * the current folder is kept.
+   *
+   * @param name The name of the store folder.
+   * @throws IOException If an I/O error occurs while creating the store folder.
+   */
+  @Override
+  public final void setStoreName(String name) throws IOException {
+    if (storePath != null && name.contains(".")) {
+      return;
+    }
+    Path path = JsonController.resolveAppFolder().resolve(name);
+    Files.createDirectories(path);
+    storePath = path;
+  }
+
+  /**
+   * Retrieves the path of the store folder.
+   *
+   * @return The path of the store folder.
+   */
+  public Path getStorePath() {
+    return storePath;
+  }
+
+  @Override
+  public User findUser(String username) throws IOException {
+    Path folder = getUserFolder(username);
+    Manifest manifest = readManifest(folder);
+    return manifest == null ? null : readUser(folder, manifest);
+  }
+
+  @Override
+  public List<User> findAllUsers() throws IOException {
+    List<User> users = new ArrayList<>();
+    forEachUser(users::add);
+    users.sort(Comparator.comparing(User::getUsername));
+    return users;
+  }
+
+  /**
+   * Checks whether the store has any users, without reading them.
+   *
+   * @return True if at least one user has a manifest.
+   * @throws IOException If an error occurs while listing the store folder.
+   */
+  boolean hasUsers() throws IOException {
+    try (DirectoryStream<Path> folders = Files.newDirectoryStream(storePath, Files::isDirectory)) {
+      for (Path folder : folders) {
+        if (Files.exists(folder.resolve(MANIFEST_FILE))) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Reads the users of the store one at a time, in no particular order, so only one user is held
+   * in memory at a time.
+   *
+   * @param sink The sink to pass the users to.
+   * @throws IOException If an error occurs while reading a user or in the sink.
+   */
+  void forEachUser(StoreCodec.UserSink sink) throws IOException {
+    try (DirectoryStream<Path> folders = Files.newDirectoryStream(storePath, Files::isDirectory)) {
+      for (Path folder : folders) {
+        Manifest manifest = readManifest(folder);
+        if (manifest != null) {
+          sink.accept(readUser(folder, manifest));
+        }
+      }
+    }
+  }
+
+  @Override
+  public boolean existsUser(String username) throws IOException {
+    Path folder = getUserFolder(username);
+    return folder != null && Files.exists(folder.resolve(MANIFEST_FILE));
+  }
+
+  @Override
+  public User authenticate(String username, String password) throws IOException {
+    Path folder = getUserFolder(username);
+    Manifest manifest = readManifest(folder);
+    if (manifest == null || !manifest.password.equals(password)) {
+      return null;
+    }
+    return lazyUser(manifest);
+  }
+
+  /**
+   * Creates a user whose expenses are only read from the partitions once they are accessed.
+   *
+   * @param manifest The manifest of the user.
+   * @return The user.
+   */
+  private LazyUser lazyUser(Manifest manifest) {
+    return new LazyUser(
+        manifest.username,
+        manifest.password,
+        () -> {
+          User user = findUser(manifest.username);
+          return user == null ? new ExpenseHandlerImpl() : user.getExpenseHandler();
+        });
+  }
+
+  @Override
+  public boolean createUser(User user) throws IOException {
+    final Path store = storePath;
+    Path folder = getUserFolder(store, user.getUsername());
+    if (folder == null) {
+      throw new IllegalArgumentException("Invalid username: " + user.getUsername());
+    }
+    StoreLocks locks = StoreLocks.forStore(store);
+    Lock userLock = locks.userLock(user.getUsername());
+    userLock.lock();
+    try {
+      locks.acquireFileLock();
+      try {
+        if (Files.exists(folder.resolve(MANIFEST_FILE))) {
+          return false;
+        }
+        Files.createDirectories(folder);
+        Manifest manifest = new Manifest(user.getUsername(), user.getPassword());
+        manifest.nextSequence = user.getExpenseHandler().getNextId() - 1;
+        Map<String, List<Entry>> partitions = new TreeMap<>();
+        for (Expense expense : user.getExpenseHandler().getAllExpenses()) {
+          Entry entry = new Entry(expense.getId() - 1, expense);
+          partitions.computeIfAbsent(monthOf(expense), month -> new ArrayList<>()).add(entry);
+          manifest.count(monthOf(expense), expense.getCategory(), 1);
+        }
+        for (Map.Entry<String, List<Entry>> partition : partitions.entrySet()) {
+          writePartition(folder, partition.getKey(), partition.getValue());
+        }
+        writeAtomically(folder.resolve(MANIFEST_FILE), manifest, Manifest.class);
+        return true;
+      } finally {
+        locks.releaseFileLock();
+      }
+    } finally {
+      userLock.unlock();
+    }
+  }
+
+  /**
+   * Adds the given users to an empty store, for example the users of an existing JSON store.
+   *
+   * @param users The users to add.
+   * @return The number of users that were added, which is 0 if the store already had users.
+   * @throws IOException If an error occurs while reading or writing the store.
+   */
+  public int importUsersIfEmpty(List<User> users) throws IOException {
+    if (!findAllUsers().isEmpty()) {
+      return 0;
+    }
+    int imported = 0;
+    for (User user : users) {
+      if (createUser(user)) {
+        imported++;
+      }
+    }
+    return imported;
+  }
+
+  /**
+   * Retrieves the number of partitions read since the repository was created, as "partitionReads".
+   *
+   * @return The metrics of the store by name.
+   */
+  @Override
+  public Map<String, Number> getMetrics() {
+    return Map.of("partitionReads", partitionReads.get());
+  }
+
+  /**
+   * Reads the manifest and partitions of all users in parallel, one task per user.
+   *
+   * @param parallelism The number of threads to load with.
+   * @return The report of the warm-up.
+   * @throws IOException If an error occurs while reading the store.
+   * @throws IllegalArgumentException If the parallelism is not positive.
+   */
+  @Override
+  public WarmUpReport warmUp(int parallelism) throws IOException {
+    List<Path> folders = new ArrayList<>();
+    try (DirectoryStream<Path> paths = Files.newDirectoryStream(storePath, Files::isDirectory)) {
+      paths.forEach(folders::add);
+    }
+    return StoreWarmer.warmUp(
+        folders,
+        parallelism,
+        folder -> {
+          Manifest manifest = readManifest(folder);
+          return manifest == null ? null : readUser(folder, manifest);
+        });
+  }
+
+  /**
+   * Adds an expense to a user, writing only the partition of its month. An expense without an id is
+   * given the next id, and an expense with an id keeps it.
+   *
+   * @throws IllegalArgumentException If the expense has an id that has already been given out.
+   */
+  @Override
+  public User addExpense(String username, Expense expense) throws IOException {
+    return mutatePartition(
+        username,
+        monthOf(expense),
+        (manifest, entries) -> {
+          if (expense.getId() == 0) {
+            entries.add(new Entry(manifest.nextSequence++, expense));
+          } else if (expense.getId() > manifest.nextSequence) {
+            manifest.nextSequence = expense.getId();
+            entries.add(new Entry(expense.getId() - 1, expense));
+          } else {
+            throw new IllegalArgumentException(
+                "The id " + expense.getId() + " has already been given to an expense.");
+          }
+          manifest.count(monthOf(expense), expense.getCategory(), 1);
+          return true;
+        });
+  }
+
+  @Override
+  public User removeExpense(String username, Expense expense) throws IOException {
+    return mutatePartition(
+        username,
+        monthOf(expense),
+        (manifest, entries) -> {
+          for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).expense.equals(expense)) {
+              entries.remove(i);
+              manifest.count(monthOf(expense), expense.getCategory(), -1);
+              return true;
+            }
+          }
+          return false;
+        });
+  }
+
+  /**
+   * Removes the expense with the given id from a user. The partition of the expense is found by
+   * reading the expenses of the user, and only that partition is written.
+   */
+  @Override
+  public User removeExpenseById(String username, long id) throws IOException {
+    User user = findUser(username);
+    if (user == null) {
+      return null;
+    }
+    Expense expense = user.getExpenseHandler().getExpenseById(id);
+    if (expense == null) {
+      return user;
+    }
+    return mutatePartition(
+        username,
+        monthOf(expense),
+        (manifest, entries) -> {
+          for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).sequence == id - 1) {
+              entries.remove(i);
+              manifest.count(monthOf(expense), expense.getCategory(), -1);
+              return true;
+            }
+          }
+          return false;
+        });
+  }
+
+  /**
+   * Retrieves the expenses of a user that match a category and fall within a date range, reading
+   * only the partitions of the months the range overlaps. No partition is read if the user has no
+   * expense in the category.
+   *
+   * @param username The username of the user.
+   * @param category The category to match, or null or blank for all categories.
+   * @param start The first date of the range, or null for no lower bound.
+   * @param end The last date of the range, or null for no upper bound.
+   * @return The matching expenses, in the order they were added.
+   * @throws IllegalArgumentException If the user does not exist or the start is after the end.
+   * @throws IOException If an error occurs while reading the store.
+   */
+  @Override
+  public List<Expense> findExpenses(
+      String username, String category, LocalDate start, LocalDate end) throws IOException {
+    Path folder = getUserFolder(username);
+    Manifest manifest = getExistingManifest(folder);
+    List<String> months = new ArrayList<>();
+    boolean anyCategory = category == null || category.trim().isEmpty();
+    if (anyCategory || manifest.categories.containsKey(category)) {
+      String first = start == null ? null : YearMonth.from(start).toString();
+      String last = end == null ? null : YearMonth.from(end).toString();
+      for (String month : manifest.months.keySet()) {
+        if ((first == null || month.compareTo(first) >= 0)
+            && (last == null || month.compareTo(last) <= 0)) {
+          months.add(month);
+        }
+      }
+    }
+    return filterer.filterExpenses(readExpenses(folder, months), start, end, category);
+  }
+
+  @Override
+  public Set<String> findCategories(String username) throws IOException {
+    return new HashSet<>(getExistingManifest(getUserFolder(username)).categories.keySet());
+  }
+
+  /** A change of one partition of a user. */
+  @FunctionalInterface
+  private interface PartitionChange {
+
+    /**
+     * Applies the change to the entries of the partition and to the manifest.
+     *
+     * @param manifest The manifest of the user.
+     * @param entries The entries of the partition, which may be changed.
+     * @return True if the partition changed and should be written; otherwise, false.
+     */
+    boolean apply(Manifest manifest, List<Entry> entries);
+  }
+
+  /**
+   * Changes one partition of a user while holding the lock of the user and the operating system
+   * lock of the store. The partition and the manifest are only written if they changed, and a
+   * partition without entries is deleted. A manifest that covers the old and the new state is
+   * written before the partition, and the exact manifest after it if the two differ. Only the
+   * changed partition is read; the expenses of the returned user are read once they are accessed.
+   *
+   * @param username The username of the user.
+   * @param month The month of the partition.
+   * @param change The change to apply.
+   * @return The user after the change, or null if there is no user with the username.
+   * @throws IOException If an error occurs while reading or writing the store.
+   */
+  private User mutatePartition(String username, String month, PartitionChange change)
+      throws IOException {
+    final Path store = storePath;
+    Path folder = getUserFolder(store, username);
+    if (folder == null) {
+      return null;
+    }
+    StoreLocks locks = StoreLocks.forStore(store);
+    Lock userLock = locks.userLock(username);
+    userLock.lock();
+    try {
+      locks.acquireFileLock();
+      try {
+        Manifest manifest = readManifest(folder);
+        if (manifest == null) {
+          return null;
+        }
+        reconcile(folder, manifest);
+        List<Entry> entries = readPartition(folder, month);
+        Manifest before = manifest.copy();
+        if (change.apply(manifest, entries)) {
+          Path partition = folder.resolve(month + PARTITION_SUFFIX);
+          byte[] content =
+              entries.isEmpty()
+                  ? null
+                  : gson.toJson(entries, ENTRIES_TYPE).getBytes(StandardCharsets.UTF_8);
+          manifest.pendingMonth = month;
+          manifest.pendingBytes = content == null ? -1 : content.length;
+          Manifest covering = before.covering(manifest);
+          writeAtomically(folder.resolve(MANIFEST_FILE), covering, Manifest.class);
+          if (content == null) {
+            Files.deleteIfExists(partition);
+          } else {
+            writeBytesAtomically(partition, content);
+          }
+          if (!covering.hasCounts(manifest)) {
+            writeAtomically(folder.resolve(MANIFEST_FILE), manifest, Manifest.class);
+          }
+        }
+        return lazyUser(manifest);
+      } finally {
+        locks.releaseFileLock();
+      }
+    } finally {
+      userLock.unlock();
+    }
+  }
+
+  /**
+   * Recounts the manifest from the partitions if the last change of the user was interrupted
+   * before its partition was written, which shows as a partition without the size the manifest
+   * records for it. The manifest is changed in memory and written by the next change.
+   *
+   * @param folder The folder of the user.
+   * @param manifest The manifest of the user.
+   * @throws IOException If an error occurs while reading the partitions.
+   */
+  private void reconcile(Path folder, Manifest manifest) throws IOException {
+    if (manifest.pendingMonth == null) {
+      return;
+    }
+    Path partition = folder.resolve(manifest.pendingMonth + PARTITION_SUFFIX);
+    long bytes = Files.exists(partition) ? Files.size(partition) : -1;
+    if (bytes != manifest.pendingBytes) {
+      Map<String, Integer> months = new TreeMap<>();
+      Map<String, Integer> categories = new TreeMap<>();
+      for (String month : manifest.months.keySet()) {
+        for (Entry entry : readPartition(folder, month)) {
+          months.merge(month, 1, Integer::sum);
+          categories.merge(entry.expense.getCategory(), 1, Integer::sum);
+        }
+      }
+      manifest.months = months;
+      manifest.categories = categories;
+    }
+    manifest.pendingMonth = null;
+    manifest.pendingBytes = 0;
+  }
+
+  /**
+   * Resolves the folder of the given user in the current store folder.
+   *
+   * @param username The username.
+   * @return The path to the folder, or null if the username cannot be a valid username.
+   */
+  private Path getUserFolder(String username) {
+    return getUserFolder(storePath, username);
+  }
+
+  /**
+   * Resolves the folder of the given user in a store folder, named the same way as the shards of a
+   * {@link ShardedJsonController}.
+   *
+   * @param store The store folder.
+   * @param username The username.
+   * @return The path to the folder, or null if the username cannot be a valid username.
+   */
+  private static Path getUserFolder(Path store, String username) {
+    String name = ShardedJsonController.shardName(username);
+    return name == null ? null : store.resolve(name);
+  }
+
+  /**
+   * Reads the manifest of a user.
+   *
+   * @param folder The folder of the user, or null.
+   * @return The manifest, or null if the user does not exist.
+   * @throws IOException If an error occurs while reading the manifest.
+   */
+  private Manifest readManifest(Path folder) throws IOException {
+    if (folder == null) {
+      return null;
+    }
+    Path path = folder.resolve(MANIFEST_FILE);
+    if (!Files.exists(path)) {
+      return null;
+    }
+    try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+      Manifest manifest = gson.fromJson(reader, Manifest.class);
+      if (manifest == null) {
+        return null;
+      }
+      manifest.months = new TreeMap<>(manifest.months == null ? Map.of() : manifest.months);
+      manifest.categories =
+          new TreeMap<>(manifest.categories == null ? Map.of() : manifest.categories);
+      return manifest;
+    }
+  }
+
+  /**
+   * Reads the manifest of a user that must exist.
+   *
+   * @param folder The folder of the user, or null.
+   * @return The manifest.
+   * @throws IllegalArgumentException If the user does not exist.
+   * @throws IOException If an error occurs while reading the manifest.
+   */
+  private Manifest getExistingManifest(Path folder) throws IOException {
+    Manifest manifest = readManifest(folder);
+    if (manifest == null) {
+      throw new IllegalArgumentException("User not found.");
+    }
+    return manifest;
+  }
+
+  /**
+   * Reads a user with the expenses of all of its partitions.
+   *
+   * @param folder The folder of the user.
+   * @param manifest The manifest of the user.
+   * @return The user.
+   * @throws IOException If an error occurs while reading a partition.
+   */
+  private User readUser(Path folder, Manifest manifest) throws IOException {
+    return new User(
+        manifest.username,
+        manifest.password,
+        new ExpenseHandlerImpl(
+            readExpenses(folder, new ArrayList<>(manifest.months.keySet())),
+            manifest.nextSequence + 1));
+  }
+
+  /**
+   * Reads the expenses of the given partitions in the order they were added.
+   *
+   * @param folder The folder of the user.
+   * @param months The months of the partitions to read.
+   * @return The expenses of the partitions.
+   * @throws IOException If an error occurs while reading a partition.
+   */
+  private List<Expense> readExpenses(Path folder, List<String> months) throws IOException {
+    List<Entry> entries = new ArrayList<>();
+    for (String month : months) {
+      entries.addAll(readPartition(folder, month));
+    }
+    entries.sort(Comparator.comparingLong(entry -> entry.sequence));
+    List<Expense> expenses = new ArrayList<>(entries.size());
+    for (Entry entry : entries) {
+      expenses.add(entry.expense);
+    }
+    return expenses;
+  }
+
+  /**
+   * Reads the entries of one partition.
+   *
+   * @param folder The folder of the user.
+   * @param month The month of the partition.
+   * @return The entries of the partition, which is empty if the partition does not exist.
+   * @throws IOException If an error occurs while reading the partition.
+   */
+  private List<Entry> readPartition(Path folder, String month) throws IOException {
+    Path path = folder.resolve(month + PARTITION_SUFFIX);
+    if (!Files.exists(path)) {
+      return new ArrayList<>();
+    }
+    partitionReads.incrementAndGet();
+    try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+      List<Entry> entries = gson.fromJson(reader, ENTRIES_TYPE);
+      if (entries == null) {
+        return new ArrayList<>();
+      }
+      for (Entry entry : entries) {
+        entry.expense.setId(entry.sequence + 1);
+      }
+      return new ArrayList<>(entries);
+    }
+  }
+
+  /**
+   * Writes the entries of one partition.
+   *
+   * @param folder The folder of the user.
+   * @param month The month of the partition.
+   * @param entries The entries of the partition.
+   * @throws IOException If an error occurs while writing the partition.
+   */
+  private void writePartition(Path folder, String month, List<Entry> entries) throws IOException {
+    writeAtomically(folder.resolve(month + PARTITION_SUFFIX), entries, ENTRIES_TYPE);
+  }
+
+  /**
+   * Writes a value as JSON to a temporary file, which is forced to disk and then atomically moved
+   * over the given file.
+   *
+   * @param path The file to write.
+   * @param value The value to write.
+   * @param type The type of the value.
+   * @throws IOException If an error occurs while writing the file.
+   */
+  private void writeAtomically(Path path, Object value, Type type) throws IOException {
+    writeBytesAtomically(path, gson.toJson(value, type).getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Writes bytes to a temporary file, which is forced to disk and then atomically moved over the
+   * given file.
+   *
+   * @param path The file to write.
+   * @param content The bytes to write.
+   * @throws IOException If an error occurs while writing the file.
+   */
+  private static void writeBytesAtomically(Path path, byte[] content) throws IOException {
+    Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+    try (FileChannel channel =
+        FileChannel.open(
+            tempPath,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+      ByteBuffer buffer = ByteBuffer.wrap(content);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(true);
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(tempPath);
+      throw e;
+    }
+    Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Computes the month of the partition an expense belongs to.
+   *
+   * @param expense The expense.
+   * @return The month, such as "2024-01".
+   */
+  private static String monthOf(Expense expense) {
+    return YearMonth.from(LocalDate.ofEpochDay(expense.toEpochDay())).toString();
+  }
+
+  /** The manifest of a user, which is stored as JSON. */
+  private static final class Manifest {
+    private String username;
+    private String password;
+    private long nextSequence;
+    private Map<String, Integer> months;
+    private Map<String, Integer> categories;
+    private String pendingMonth;
+    private long pendingBytes;
+
+    Manifest(String username, String password) {
+      this.username = username;
+      this.password = password;
+      this.months = new TreeMap<>();
+      this.categories = new TreeMap<>();
+    }
+
+    /**
+     * Copies the manifest.
+     *
+     * @return A manifest with the same values and its own counts.
+     */
+    Manifest copy() {
+      Manifest copy = new Manifest(username, password);
+      copy.nextSequence = nextSequence;
+      copy.months.putAll(months);
+      copy.categories.putAll(categories);
+      copy.pendingMonth = pendingMonth;
+      copy.pendingBytes = pendingBytes;
+      return copy;
+    }
+
+    /**
+     * Creates a manifest that covers both this manifest and a changed one: every month and
+     * category has the higher of the two counts, and the rest is taken from the changed manifest.
+     *
+     * @param changed The changed manifest.
+     * @return The covering manifest.
+     */
+    Manifest covering(Manifest changed) {
+      Manifest covering = changed.copy();
+      months.forEach((month, count) -> covering.months.merge(month, count, Math::max));
+      categories.forEach(
+          (category, count) -> covering.categories.merge(category, count, Math::max));
+      return covering;
+    }
+
+    /**
+     * Checks whether another manifest has the same counts of months and categories.
+     *
+     * @param other The other manifest.
+     * @return True if the counts are the same.
+     */
+    boolean hasCounts(Manifest other) {
+      return months.equals(other.months) && categories.equals(other.categories);
+    }
+
+    /**
+     * Changes the number of expenses of a month and a category, removing both once they have no
+     * expenses.
+     *
+     * @param month The month.
+     * @param category The category.
+     * @param delta The change of the number of expenses.
+     */
+    void count(String month, String category, int delta) {
+      months.merge(month, delta, (count, change) -> count + change == 0 ? null : count + change);
+      categories.merge(
+          category, delta, (count, change) -> count + change == 0 ? null : count + change);
+    }
+  }
+
+  /**
+   * An expense in a partition with its sequence number, which is stored as JSON. The expense of an
+   * entry has the id that belongs to the sequence number: an expense with another id, such as one
+   * without an id, is copied, so the expense of the caller is not changed.
+   */
+  private static final class Entry {
+    private final long sequence;
+    private final Expense expense;
+
+    Entry(long sequence, Expense expense) {
+      this.sequence = sequence;
+      if (expense.getId() == sequence + 1) {
+        this.expense = expense;
+      } else {
+        this.expense =
+            new Expense(
+                expense.getDate(),
+                expense.getCategory(),
+                expense.getPrice(),
+                expense.getDescription());
+        this.expense.setId(sequence + 1);
+      }
+    }
+  }
+}
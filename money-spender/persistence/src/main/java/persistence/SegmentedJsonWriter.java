@@ -0,0 +1,250 @@
+package persistence;
+
+import com.google.gson.Gson;
+import core.User;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes a JSON store as an array of user segments and keeps the byte range of every segment, so a
+ * later save can copy the users that did not change from the old file with {@link
+ * FileChannel#transferTo} and only serialize the users that did. Neighbouring unchanged users are
+ * copied with a single transfer, so saving one user of a large store costs a few zero-copy
+ * transfers and the serialization of that user alone.
+ */
+final class SegmentedJsonWriter {
+
+  private static final byte[] EMPTY = "[]".getBytes(StandardCharsets.UTF_8);
+
+  private final Gson gson;
+  private final byte[] header;
+  private final byte[] separator;
+  private final byte[] footer;
+  private final String indent;
+
+  /**
+   * The byte ranges of the users in a file written by a {@link SegmentedJsonWriter}, in the order
+   * they appear in the file, together with the stamp of the file they describe.
+   */
+  static final class Segments {
+
+    private final Map<String, long[]> ranges;
+    private final String stamp;
+
+    private Segments(Map<String, long[]> ranges, String stamp) {
+      this.ranges = ranges;
+      this.stamp = stamp;
+    }
+
+    /**
+     * Creates a copy of the segments that describes the file with the given stamp.
+     *
+     * @param stamp The stamp of the written file.
+     * @return The segments with the stamp.
+     */
+    Segments withStamp(String stamp) {
+      return new Segments(ranges, stamp);
+    }
+
+    /**
+     * Checks whether the segments describe the file with the given stamp.
+     *
+     * @param stamp The current stamp of the file.
+     * @return True if the file has not been written since the segments were recorded.
+     */
+    boolean describes(String stamp) {
+      return this.stamp != null && this.stamp.equals(stamp);
+    }
+  }
+
+  /**
+   * Constructs a `SegmentedJsonWriter` that serializes users with the given Gson instance. The
+   * brackets, separators and indentation of the array are taken from how the Gson instance writes
+   * an array, so the file is the same as the one Gson writes for the whole list of users.
+   *
+   * @param gson The Gson instance, with the type adapters of the persistence module registered.
+   */
+  SegmentedJsonWriter(Gson gson) {
+    this.gson = gson;
+    String sample = gson.toJson(new int[] {1, 2});
+    int first = sample.indexOf('1');
+    int second = sample.indexOf('2');
+    String prefix = sample.substring(0, first);
+    this.header = prefix.getBytes(StandardCharsets.UTF_8);
+    this.separator = sample.substring(first + 1, second).getBytes(StandardCharsets.UTF_8);
+    this.footer = sample.substring(second + 1).getBytes(StandardCharsets.UTF_8);
+    this.indent = prefix.substring(prefix.lastIndexOf('\n') + 1);
+  }
+
+  /**
+   * Writes all users to the channel.
+   *
+   * @param users The users to write.
+   * @param target The channel to write to, positioned at its start.
+   * @return The segments of the written users, or null if a username occurs more than once.
+   * @throws IOException If an error occurs while writing to the channel.
+   */
+  Segments write(List<User> users, FileChannel target) throws IOException {
+    Map<String, long[]> ranges = new LinkedHashMap<>();
+    if (users.isEmpty()) {
+      writeFully(target, EMPTY, 0);
+      return new Segments(ranges, null);
+    }
+    long position = writeFully(target, header, 0);
+    boolean unique = true;
+    for (User user : users) {
+      if (!ranges.isEmpty()) {
+        position = writeFully(target, separator, position);
+      }
+      byte[] segment = serialize(user);
+      unique &= ranges.put(user.getUsername(), new long[] {position, segment.length}) == null;
+      position = writeFully(target, segment, position);
+    }
+    writeFully(target, footer, position);
+    return unique ? new Segments(ranges, null) : null;
+  }
+
+  /**
+   * Writes the users of the source file to the channel, with the changed users replacing their
+   * earlier versions. The unchanged users are copied from the source file in their order and the
+   * changed users are appended after them, the same order a full write of the store gives.
+   *
+   * @param source The file the segments describe.
+   * @param segments The segments of the source file.
+   * @param changed The changed users, with at most one version of every user.
+   * @param target The channel to write to, positioned at its start.
+   * @return The segments of the written file.
+   * @throws IOException If an error occurs while reading from the source or writing the target.
+   */
+  Segments writeChanged(
+      FileChannel source, Segments segments, Collection<User> changed, FileChannel target)
+      throws IOException {
+    Set<String> changedNames = new HashSet<>();
+    for (User user : changed) {
+      changedNames.add(user.getUsername());
+    }
+    Map<String, long[]> ranges = new LinkedHashMap<>();
+    if (changed.isEmpty() && changedNames.containsAll(segments.ranges.keySet())) {
+      writeFully(target, EMPTY, 0);
+      return new Segments(ranges, null);
+    }
+    long position = writeFully(target, header, 0);
+    long runStart = -1;
+    long runEnd = -1;
+    Map<String, long[]> run = new LinkedHashMap<>();
+    for (Map.Entry<String, long[]> entry : segments.ranges.entrySet()) {
+      if (changedNames.contains(entry.getKey())) {
+        continue;
+      }
+      long start = entry.getValue()[0];
+      long end = start + entry.getValue()[1];
+      if (runStart >= 0 && start != runEnd + separator.length) {
+        position = copyRun(source, runStart, runEnd, run, ranges, target, position);
+        run.clear();
+        runStart = -1;
+      }
+      if (runStart < 0) {
+        runStart = start;
+      }
+      runEnd = end;
+      run.put(entry.getKey(), entry.getValue());
+    }
+    if (runStart >= 0) {
+      position = copyRun(source, runStart, runEnd, run, ranges, target, position);
+    }
+    for (User user : changed) {
+      if (!ranges.isEmpty()) {
+        position = writeFully(target, separator, position);
+      }
+      byte[] segment = serialize(user);
+      ranges.put(user.getUsername(), new long[] {position, segment.length});
+      position = writeFully(target, segment, position);
+    }
+    writeFully(target, footer, position);
+    return new Segments(ranges, null);
+  }
+
+  /**
+   * Serializes a user as an element of the array, indented one level deeper than on its own.
+   * Strings in JSON cannot hold a line break, so every line break starts a new line of the user.
+   *
+   * @param user The user to serialize.
+   * @return The UTF-8 bytes of the user.
+   */
+  private byte[] serialize(User user) {
+    String json = gson.toJson(user, User.class);
+    if (!indent.isEmpty()) {
+      json = json.replace("\n", "\n" + indent);
+    }
+    return json.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Copies a run of neighbouring segments from the source file with one transfer and records
+   * their new ranges.
+   *
+   * @param source The source file.
+   * @param runStart The offset of the first segment of the run in the source file.
+   * @param runEnd The offset after the last segment of the run in the source file.
+   * @param run The segments of the run.
+   * @param ranges The ranges of the written file, which the run is added to.
+   * @param target The channel to write to.
+   * @param position The offset in the target to write the run at.
+   * @return The offset in the target after the run.
+   * @throws IOException If an error occurs while copying the run.
+   */
+  private long copyRun(
+      FileChannel source,
+      long runStart,
+      long runEnd,
+      Map<String, long[]> run,
+      Map<String, long[]> ranges,
+      FileChannel target,
+      long position)
+      throws IOException {
+    long runPosition = position;
+    if (!ranges.isEmpty()) {
+      runPosition = writeFully(target, separator, position);
+    }
+    for (Map.Entry<String, long[]> entry : run.entrySet()) {
+      long[] range = entry.getValue();
+      ranges.put(entry.getKey(), new long[] {runPosition + range[0] - runStart, range[1]});
+    }
+    long length = runEnd - runStart;
+    long copied = 0;
+    while (copied < length) {
+      long transferred = source.transferTo(runStart + copied, length - copied, target);
+      if (transferred <= 0) {
+        throw new IOException("The store ended before the segment of a user.");
+      }
+      copied += transferred;
+    }
+    return runPosition + length;
+  }
+
+  /**
+   * Writes all bytes to the channel at its current position.
+   *
+   * @param target The channel to write to.
+   * @param bytes The bytes to write.
+   * @param position The current offset of the target.
+   * @return The offset in the target after the bytes.
+   * @throws IOException If an error occurs while writing to the channel.
+   */
+  private static long writeFully(FileChannel target, byte[] bytes, long position)
+      throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    while (buffer.hasRemaining()) {
+      target.write(buffer);
+    }
+    return position + bytes.length;
+  }
+}
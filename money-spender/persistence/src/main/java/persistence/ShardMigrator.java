@@ -0,0 +1,47 @@
+package persistence;
+
+import core.User;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Moves the users of a single-file store into a sharded store. The source file is left untouched,
+ * so the migration can be verified before the old store is removed.
+ */
+public final class ShardMigrator {
+
+  private ShardMigrator() {}
+
+  /**
+   * Copies every user of the source store into its own shard in the target store. Users that
+   * already have a shard in the target store are overwritten by the version in the source store.
+   *
+   * @param source The single-file store to migrate from.
+   * @param target The sharded store to migrate to.
+   * @return The number of users that were migrated.
+   * @throws IOException If an error occurs while reading the source or writing a shard.
+   */
+  public static int migrate(JsonController source, ShardedJsonController target)
+      throws IOException {
+    List<User> users = source.readUsersFromJson();
+    target.writeUsersToJson(users);
+    return users.size();
+  }
+
+  /**
+   * Migrates the source store only if the target store does not contain any users yet, so it can
+   * safely be run on every start of the application.
+   *
+   * @param source The single-file store to migrate from.
+   * @param target The sharded store to migrate to.
+   * @return The number of users that were migrated, which is 0 if the target already had users.
+   * @throws IOException If an error occurs while reading the source or writing a shard.
+   */
+  public static int migrateIfEmpty(JsonController source, ShardedJsonController target)
+      throws IOException {
+    if (!target.readUsersFromJson().isEmpty()) {
+      return 0;
+    }
+    return migrate(source, target);
+  }
+}
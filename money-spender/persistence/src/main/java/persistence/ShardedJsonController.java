@@ -0,0 +1,359 @@
+package persistence;
+
+import com.google.gson.stream.JsonReader;
+import core.User;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link JsonController} that stores every user in its own JSON file, a shard, inside a store
+ * folder in the application folder. Saving a user only rewrites that user's shard, so the cost of a
+ * write does not grow with the number of users and writers of different users never touch the same
+ * file.
+ */
+public class ShardedJsonController extends JsonController {
+
+  private static final String SHARD_SUFFIX = ".json";
+  private static final String SHARDS_STAMP = "shards";
+  private static final Pattern USERNAME = Pattern.compile("[a-zA-Z]+");
+
+  private final JsonStoreCodec shardCodec = new JsonStoreCodec(getGson());
+
+  /**
+   * Constructs a `ShardedJsonController` for the given store folder, which is created if it does
+   * not exist.
+   *
+   * @param store The name of the store folder inside the application folder.
+   * @throws IOException If an I/O error occurs while creating the store folder.
+   */
+  public ShardedJsonController(String store) throws IOException {
+    super(resolveStoreFolder(store));
+  }
+
+  /**
+   * Sets the store folder to work with. The folder is created if it does not exist. A name with a
+   * file extension, such as the "user.json" a client of a single-file store sends, names a file
+   * rather than a folder, so the current folder is kept.
+   *
+   * @param store The name of the store folder inside the application folder.
+   * @throws IOException If an I/O error occurs while creating the store folder.
+   */
+  @Override
+  public void setFilePath(String store) throws IOException {
+    if (store.contains(".")) {
+      return;
+    }
+    setResolvedFilePath(resolveStoreFolder(store));
+  }
+
+  /**
+   * Resolves the given store name inside the application folder, creating the folder if it does
+   * not exist.
+   *
+   * @param store The name of the store folder.
+   * @return The path to the store folder.
+   * @throws IOException If an I/O error occurs while creating the folder.
+   */
+  private static Path resolveStoreFolder(String store) throws IOException {
+    Path storePath = resolveAppFolder().resolve(store);
+    if (!Files.exists(storePath)) {
+      Files.createDirectory(storePath);
+    }
+    return storePath;
+  }
+
+  /**
+   * Saves the user to its own shard, replacing any earlier version of the user. The credentials
+   * index is only rewritten when the user is new or the password changed. The commit lock and the
+   * operating system lock of the store are held while writing, as the credentials index is shared
+   * by all shards.
+   *
+   * @param user The User object to be saved.
+   * @throws IOException If an error occurs while writing to the shard.
+   */
+  @Override
+  public void saveNewUserToJson(User user) throws IOException {
+    StoreLocks locks = storeLocks();
+    locks.commitLock().lock();
+    try {
+      locks.acquireFileLock();
+      try {
+        writeUsersToJson(List.of(user));
+      } finally {
+        locks.releaseFileLock();
+      }
+    } finally {
+      locks.commitLock().unlock();
+    }
+  }
+
+  /**
+   * Writes every given user to its own shard. Every shard is written to a temporary file, which is
+   * forced to disk and then atomically moved over the shard, so a crash leaves either the old or
+   * the new version of the user. The credentials index is rewritten at most once, after all shards
+   * are written, and only if a user is new or has a new password.
+   *
+   * @param users The User objects to be written.
+   * @throws IOException If an error occurs while writing to a shard.
+   */
+  @Override
+  protected void writeUsersToJson(List<User> users) throws IOException {
+    CredentialsIndex index = credentials();
+    boolean changed = false;
+    for (User user : users) {
+      Path shard = getShardPath(user.getUsername());
+      writeShard(shard, user);
+      String location = String.valueOf(shard.getFileName());
+      changed |= index.put(user.getUsername(), user.getPassword(), location);
+    }
+    if (changed) {
+      index.save(getStoreStamp());
+    }
+  }
+
+  /**
+   * Reads the users of all shards in the store folder.
+   *
+   * @return A list of User objects.
+   * @throws IOException If an error occurs while reading a shard.
+   */
+  @Override
+  public List<User> readUsersFromJson() throws IOException {
+    List<User> users = new ArrayList<>();
+    forEachUser(users::add);
+    return users;
+  }
+
+  /**
+   * Reads the users of all shards one at a time, so only one user is held in memory at a time.
+   *
+   * @param sink The sink to pass the users to.
+   * @throws IOException If an error occurs while reading a shard or in the sink.
+   */
+  void forEachUser(StoreCodec.UserSink sink) throws IOException {
+    try (DirectoryStream<Path> shards =
+        Files.newDirectoryStream(getFilePath(), "*" + SHARD_SUFFIX)) {
+      for (Path shard : shards) {
+        User user = readShard(shard);
+        if (user != null) {
+          sink.accept(user);
+        }
+      }
+    }
+  }
+
+  /**
+   * Parses all shards in parallel, one task per shard, and brings the credentials index up to
+   * date.
+   *
+   * @param parallelism The number of threads to load with.
+   * @return The report of the warm-up.
+   * @throws IOException If an error occurs while reading a shard.
+   * @throws IllegalArgumentException If the parallelism is not positive.
+   */
+  @Override
+  public WarmUpReport warmUp(int parallelism) throws IOException {
+    long start = System.nanoTime();
+    List<Path> shards = new ArrayList<>();
+    try (DirectoryStream<Path> paths =
+        Files.newDirectoryStream(getFilePath(), "*" + SHARD_SUFFIX)) {
+      paths.forEach(shards::add);
+    }
+    WarmUpReport report = StoreWarmer.warmUp(shards, parallelism, this::readShard);
+    credentials();
+    long millis = (System.nanoTime() - start) / 1_000_000;
+    return new WarmUpReport(report.getUsers(), report.getExpenses(), report.getBytesRead(), millis);
+  }
+
+  /**
+   * Checks if the user has a shard in the store folder.
+   *
+   * @param username The username to check for existence.
+   * @return True if the username exists; otherwise, false.
+   */
+  @Override
+  public boolean checkIfUserNameExists(String username) {
+    Path shard = getShardPath(username);
+    return shard != null && Files.exists(shard);
+  }
+
+  /**
+   * Validates the username and password combination by reading only the user's shard.
+   *
+   * @param username The username to validate.
+   * @param password The password to validate.
+   * @return True if the combination is correct; otherwise, false.
+   * @throws IOException If an error occurs while reading the shard.
+   */
+  @Override
+  public boolean checkIfPasswordIsCorrect(String username, String password) throws IOException {
+    User user = getUser(username);
+    return user != null && user.getPassword().equals(password);
+  }
+
+  /**
+   * Retrieves a user by reading only the user's shard.
+   *
+   * @param username The username of the user to retrieve.
+   * @return The User object if found; otherwise, null.
+   * @throws IOException If an error occurs while reading the shard.
+   */
+  @Override
+  public User getUser(String username) throws IOException {
+    if (!checkIfUserNameExists(username)) {
+      return null;
+    }
+    return readShard(getShardPath(username));
+  }
+
+  /**
+   * Loads an authenticated user from the shard the credentials index holds for it.
+   *
+   * @param username The username of the user to load.
+   * @param location The file name of the user's shard.
+   * @return The User object if found; otherwise, null.
+   * @throws IOException If an error occurs while reading the shard.
+   */
+  @Override
+  User loadUser(String username, String location) throws IOException {
+    Path shard = getFilePath().resolve(location);
+    return Files.exists(shard) ? readShard(shard) : null;
+  }
+
+  /**
+   * Computes a stamp of the store folder. Every shard is written through the store, which saves
+   * the credentials index whenever a user is added or gets a new password, so the index itself is
+   * the record of the credentials. The stamp is therefore the same for every version of the
+   * folder, and the index is only loaded again when its own file has been saved by another
+   * process, or rebuilt from the shards when the file is missing or was saved with another stamp.
+   *
+   * @return The stamp of the store folder.
+   */
+  @Override
+  String getStoreStamp() {
+    return SHARDS_STAMP;
+  }
+
+  /**
+   * Reads the credentials of the users of all shards. Every shard is streamed and its expenses are
+   * skipped without being read into objects.
+   *
+   * @return The credentials of every user by username.
+   * @throws IOException If an error occurs while reading a shard.
+   */
+  @Override
+  Map<String, CredentialsIndex.Entry> readCredentials() throws IOException {
+    Map<String, CredentialsIndex.Entry> entries = new HashMap<>();
+    try (DirectoryStream<Path> shards =
+        Files.newDirectoryStream(getFilePath(), "*" + SHARD_SUFFIX)) {
+      for (Path shard : shards) {
+        if (Files.size(shard) == 0) {
+          continue;
+        }
+        try (JsonReader reader =
+            new JsonReader(Files.newBufferedReader(shard, StandardCharsets.UTF_8))) {
+          User user = shardCodec.readUser(reader, null, false);
+          if (user != null) {
+            String location = String.valueOf(shard.getFileName());
+            entries.put(
+                user.getUsername(), new CredentialsIndex.Entry(user.getPassword(), location));
+          }
+        }
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * Resolves the shard of the given user.
+   *
+   * @param username The username of the shard.
+   * @return The path to the shard, or null if the username cannot be a valid username.
+   */
+  protected Path getShardPath(String username) {
+    String name = shardName(username);
+    return name == null ? null : getFilePath().resolve(name + SHARD_SUFFIX);
+  }
+
+  /**
+   * Computes the file name of the given user without extension. Usernames only contain letters,
+   * and every upper case letter is written as an underscore followed by the lower case letter, so
+   * two usernames that only differ in case never share a file on case-insensitive file systems.
+   *
+   * @param username The username.
+   * @return The file name, or null if the username cannot be a valid username.
+   */
+  static String shardName(String username) {
+    if (username == null || !USERNAME.matcher(username).matches()) {
+      return null;
+    }
+    StringBuilder name = new StringBuilder(username.length() + 4);
+    for (char c : username.toCharArray()) {
+      if (Character.isUpperCase(c)) {
+        name.append('_').append(Character.toLowerCase(c));
+      } else {
+        name.append(c);
+      }
+    }
+    return name.toString();
+  }
+
+  /**
+   * Writes a user to a temporary file next to its shard, forces it to disk and atomically moves it
+   * over the shard.
+   *
+   * @param shard The path to the shard.
+   * @param user The User object to write.
+   * @throws IOException If an error occurs while writing the shard.
+   */
+  private void writeShard(Path shard, User user) throws IOException {
+    Path tempPath = shard.resolveSibling(shard.getFileName() + ".tmp");
+    try (FileChannel channel =
+        FileChannel.open(
+            tempPath,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+      Writer writer =
+          new BufferedWriter(
+              new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8));
+      getGson().toJson(user, writer);
+      writer.flush();
+      channel.force(true);
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(tempPath);
+      throw e;
+    }
+    Files.move(
+        tempPath, shard, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Reads the user stored in the given shard.
+   *
+   * @param shard The path to the shard.
+   * @return The User object, or null if the shard is empty.
+   * @throws IOException If an error occurs while reading the shard.
+   */
+  private User readShard(Path shard) throws IOException {
+    try (Reader reader = Files.newBufferedReader(shard, StandardCharsets.UTF_8)) {
+      return getGson().fromJson(reader, User.class);
+    }
+  }
+}
@@ -0,0 +1,578 @@
+package persistence;
+
+import core.Expense;
+import core.ExpenseHandlerImpl;
+import core.LazyUser;
+import core.User;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The repositories of users and expenses backed by an embedded H2 database in a file in the
+ * application folder. Expenses are indexed by user and date and by user, category and date, so
+ * filtering the expenses of a user is a range scan of an index instead of reading and parsing the
+ * whole user. All access goes through one connection, and every change runs in its own
+ * transaction. An authenticated user only reads its expenses once they are accessed.
+ *
+ * <p>The id of an expense is the id of its row, which the database numbers across all users. An
+ * imported user's expenses are therefore given new ids. Prices are stored as whole minor units
+ * (øre), so they are kept and compared exactly; a database that still has the older floating
+ * point price column is converted when it is opened.
+ */
+public class SqlRepository implements UserRepository, ExpenseRepository, AutoCloseable {
+
+  private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+  private static final String[] SCHEMA = {
+    "CREATE TABLE IF NOT EXISTS users ("
+        + "username VARCHAR(255) PRIMARY KEY, "
+        + "password VARCHAR(255) NOT NULL)",
+    "CREATE TABLE IF NOT EXISTS expenses ("
+        + "id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+        + "username VARCHAR(255) NOT NULL REFERENCES users(username), "
+        + "expense_date DATE NOT NULL, "
+        + "category VARCHAR(255) NOT NULL, "
+        + "price_minor BIGINT NOT NULL, "
+        + "description VARCHAR NOT NULL)",
+    "CREATE INDEX IF NOT EXISTS expenses_by_date ON expenses(username, expense_date)",
+    "CREATE INDEX IF NOT EXISTS expenses_by_category "
+        + "ON expenses(username, category, expense_date)"
+  };
+  private static final String[] PRICE_MIGRATION = {
+    "ALTER TABLE expenses ADD COLUMN price_minor BIGINT",
+    "UPDATE expenses SET price_minor = CAST(ROUND(price * 100) AS BIGINT)",
+    "ALTER TABLE expenses ALTER COLUMN price_minor SET NOT NULL",
+    "ALTER TABLE expenses DROP COLUMN price"
+  };
+  private static final String EXPENSE_COLUMNS = "expense_date, category, price_minor, description";
+  private static final String SELECTED_COLUMNS = EXPENSE_COLUMNS + ", e.id";
+
+  private Connection connection;
+  private Path databasePath;
+
+  /**
+   * Constructs a `SqlRepository` with a database of the given name in the application folder. The
+   * database and its tables are created if they do not exist.
+   *
+   * @param name The name of the database, without file extension.
+   * @throws IOException If the database cannot be opened or created.
+   */
+  public SqlRepository(String name) throws IOException {
+    setStoreName(name);
+  }
+
+  /**
+   * Opens the database of the given name in the application folder, closing the current one.
+   *
+   * @param name The name of the database, without file extension.
+   * @throws IOException If the database cannot be opened or created.
+   */
+  @Override
+  public final synchronized void setStoreName(String name) throws IOException {
+    Path path = JsonController.resolveAppFolder().resolve(name);
+    Connection newConnection;
+    try {
+      newConnection = DriverManager.getConnection("jdbc:h2:file:" + path.toAbsolutePath());
+      try (Statement statement = newConnection.createStatement()) {
+        for (String sql : SCHEMA) {
+          statement.execute(sql);
+        }
+        if (hasColumn(newConnection, "EXPENSES", "PRICE")) {
+          for (String sql : PRICE_MIGRATION) {
+            statement.execute(sql);
+          }
+        }
+      }
+    } catch (SQLException e) {
+      throw new IOException("Could not open the database " + path, e);
+    }
+    Connection oldConnection = connection;
+    connection = newConnection;
+    databasePath = path;
+    closeConnection(oldConnection);
+  }
+
+  /**
+   * Checks whether a table of the database has a column, such as a column of an older schema.
+   *
+   * @param connection The connection to the database.
+   * @param table The name of the table, in upper case.
+   * @param column The name of the column, in upper case.
+   * @return True if the table has the column; otherwise, false.
+   * @throws SQLException If the schema cannot be read.
+   */
+  private static boolean hasColumn(Connection connection, String table, String column)
+      throws SQLException {
+    try (ResultSet columns = connection.getMetaData().getColumns(null, null, table, column)) {
+      return columns.next();
+    }
+  }
+
+  /**
+   * Retrieves the path of the database, without the file extension added by H2.
+   *
+   * @return The path of the database.
+   */
+  public synchronized Path getDatabasePath() {
+    return databasePath;
+  }
+
+  @Override
+  public synchronized User findUser(String username) throws IOException {
+    try {
+      String password = findPassword(username);
+      return password == null ? null : new User(username, password, queryExpenses(username));
+    } catch (SQLException e) {
+      throw new IOException("Could not read user " + username, e);
+    }
+  }
+
+  @Override
+  public synchronized List<User> findAllUsers() throws IOException {
+    String sql =
+        "SELECT u.username, u.password, "
+            + SELECTED_COLUMNS
+            + " FROM users u LEFT JOIN expenses e ON e.username = u.username"
+            + " ORDER BY u.username, e.id";
+    Map<String, User> users = new LinkedHashMap<>();
+    try (Statement statement = connection.createStatement();
+        ResultSet rows = statement.executeQuery(sql)) {
+      while (rows.next()) {
+        String username = rows.getString(1);
+        User user = users.get(username);
+        if (user == null) {
+          user = new User(username, rows.getString(2));
+          users.put(username, user);
+        }
+        if (rows.getDate(3) != null) {
+          user.getExpenseHandler().addExpense(readExpense(rows, 3));
+        }
+      }
+    } catch (SQLException e) {
+      throw new IOException("Could not read the users", e);
+    }
+    return new ArrayList<>(users.values());
+  }
+
+  @Override
+  public synchronized boolean existsUser(String username) throws IOException {
+    try {
+      return findPassword(username) != null;
+    } catch (SQLException e) {
+      throw new IOException("Could not read user " + username, e);
+    }
+  }
+
+  @Override
+  public synchronized User authenticate(String username, String password) throws IOException {
+    try {
+      String storedPassword = findPassword(username);
+      if (storedPassword == null || !storedPassword.equals(password)) {
+        return null;
+      }
+      return new LazyUser(
+          username, storedPassword, () -> new ExpenseHandlerImpl(loadExpenses(username)));
+    } catch (SQLException e) {
+      throw new IOException("Could not read user " + username, e);
+    }
+  }
+
+  /**
+   * Loads all expenses of a user, for an authenticated user once its expenses are accessed.
+   *
+   * @param username The username of the user.
+   * @return The expenses of the user.
+   * @throws IOException If an error occurs while reading the database.
+   */
+  private synchronized List<Expense> loadExpenses(String username) throws IOException {
+    try {
+      return queryExpenses(username);
+    } catch (SQLException e) {
+      throw new IOException("Could not read the expenses of user " + username, e);
+    }
+  }
+
+  @Override
+  public synchronized boolean createUser(User user) throws IOException {
+    try {
+      return inTransaction(
+          transaction -> {
+            if (findPassword(user.getUsername()) != null) {
+              return false;
+            }
+            try (PreparedStatement insert =
+                transaction.prepareStatement(
+                    "INSERT INTO users (username, password) VALUES (?, ?)")) {
+              insert.setString(1, user.getUsername());
+              insert.setString(2, user.getPassword());
+              insert.executeUpdate();
+            }
+            for (Expense expense : user.getExpenseHandler().getAllExpenses()) {
+              insertExpense(transaction, user.getUsername(), expense);
+            }
+            return true;
+          });
+    } catch (SQLException e) {
+      throw new IOException("Could not create user " + user.getUsername(), e);
+    }
+  }
+
+  /**
+   * Adds the given users to an empty database, for example the users of an existing JSON store.
+   *
+   * @param users The users to add.
+   * @return The number of users that were added, which is 0 if the database already had users.
+   * @throws IOException If an error occurs while reading or writing the database.
+   */
+  public synchronized int importUsersIfEmpty(List<User> users) throws IOException {
+    try (Statement statement = connection.createStatement();
+        ResultSet rows = statement.executeQuery("SELECT COUNT(*) FROM users")) {
+      rows.next();
+      if (rows.getLong(1) > 0) {
+        return 0;
+      }
+    } catch (SQLException e) {
+      throw new IOException("Could not read the users", e);
+    }
+    int imported = 0;
+    for (User user : users) {
+      if (createUser(user)) {
+        imported++;
+      }
+    }
+    return imported;
+  }
+
+  @Override
+  public synchronized User addExpense(String username, Expense expense) throws IOException {
+    try {
+      return inTransaction(
+          transaction -> {
+            String password = findPassword(username);
+            if (password == null) {
+              return null;
+            }
+            insertExpense(transaction, username, expense);
+            return new User(username, password, queryExpenses(username));
+          });
+    } catch (SQLException e) {
+      throw new IOException("Could not add an expense to user " + username, e);
+    }
+  }
+
+  @Override
+  public synchronized User removeExpense(String username, Expense expense) throws IOException {
+    String sql =
+        "DELETE FROM expenses WHERE id = (SELECT MIN(id) FROM expenses"
+            + " WHERE username = ? AND expense_date = ? AND category = ? AND price_minor = ?"
+            + " AND description = ?)";
+    try {
+      return inTransaction(
+          transaction -> {
+            String password = findPassword(username);
+            if (password == null) {
+              return null;
+            }
+            try (PreparedStatement delete = transaction.prepareStatement(sql)) {
+              delete.setString(1, username);
+              setExpense(delete, 2, expense);
+              delete.executeUpdate();
+            }
+            return new User(username, password, queryExpenses(username));
+          });
+    } catch (SQLException e) {
+      throw new IOException("Could not remove an expense from user " + username, e);
+    }
+  }
+
+  @Override
+  public synchronized User removeExpenseById(String username, long id) throws IOException {
+    try {
+      return inTransaction(
+          transaction -> {
+            String password = findPassword(username);
+            if (password == null) {
+              return null;
+            }
+            try (PreparedStatement delete =
+                transaction.prepareStatement(
+                    "DELETE FROM expenses WHERE id = ? AND username = ?")) {
+              delete.setLong(1, id);
+              delete.setString(2, username);
+              delete.executeUpdate();
+            }
+            return new User(username, password, queryExpenses(username));
+          });
+    } catch (SQLException e) {
+      throw new IOException("Could not remove an expense from user " + username, e);
+    }
+  }
+
+  /**
+   * Retrieves the matching expenses with one indexed range scan: by user and date, or by user,
+   * category and date when a category is given.
+   */
+  @Override
+  public synchronized List<Expense> findExpenses(
+      String username, String category, LocalDate start, LocalDate end) throws IOException {
+    if (start != null && end != null && start.isAfter(end)) {
+      throw new IllegalArgumentException("Start date cannot be after end date.");
+    }
+    boolean byCategory = category != null && !category.trim().isEmpty();
+    StringBuilder sql =
+        new StringBuilder("SELECT " + SELECTED_COLUMNS + " FROM expenses e WHERE username = ?");
+    if (byCategory) {
+      sql.append(" AND category = ?");
+    }
+    if (start != null) {
+      sql.append(" AND expense_date >= ?");
+    }
+    if (end != null) {
+      sql.append(" AND expense_date <= ?");
+    }
+    sql.append(" ORDER BY id");
+    try {
+      requireUser(username);
+      try (PreparedStatement query = connection.prepareStatement(sql.toString())) {
+        int index = 1;
+        query.setString(index++, username);
+        if (byCategory) {
+          query.setString(index++, category);
+        }
+        if (start != null) {
+          query.setDate(index++, Date.valueOf(start));
+        }
+        if (end != null) {
+          query.setDate(index, Date.valueOf(end));
+        }
+        return readExpenses(query);
+      }
+    } catch (SQLException e) {
+      throw new IOException("Could not read the expenses of user " + username, e);
+    }
+  }
+
+  @Override
+  public synchronized Set<String> findCategories(String username) throws IOException {
+    try {
+      requireUser(username);
+      try (PreparedStatement query =
+          connection.prepareStatement(
+              "SELECT DISTINCT category FROM expenses WHERE username = ?")) {
+        query.setString(1, username);
+        Set<String> categories = new HashSet<>();
+        try (ResultSet rows = query.executeQuery()) {
+          while (rows.next()) {
+            categories.add(rows.getString(1));
+          }
+        }
+        return categories;
+      }
+    } catch (SQLException e) {
+      throw new IOException("Could not read the categories of user " + username, e);
+    }
+  }
+
+  /**
+   * Forces the committed transactions to disk. H2 writes a commit to its file without waiting for
+   * the disk, so the database is checkpointed and the file synced.
+   *
+   * @throws IOException If an error occurs while writing the database.
+   */
+  @Override
+  public synchronized void sync() throws IOException {
+    try (Statement statement = connection.createStatement()) {
+      statement.execute("CHECKPOINT SYNC");
+    } catch (SQLException e) {
+      throw new IOException("Could not sync the database " + databasePath, e);
+    }
+  }
+
+  /**
+   * Closes the connection to the database.
+   *
+   * @throws IOException If an error occurs while closing the connection.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    Connection oldConnection = connection;
+    connection = null;
+    closeConnection(oldConnection);
+  }
+
+  /**
+   * Closes a connection to a database.
+   *
+   * @param oldConnection The connection to close, or null.
+   * @throws IOException If an error occurs while closing the connection.
+   */
+  private static void closeConnection(Connection oldConnection) throws IOException {
+    if (oldConnection != null) {
+      try {
+        oldConnection.close();
+      } catch (SQLException e) {
+        throw new IOException("Could not close the database", e);
+      }
+    }
+  }
+
+  /** A step of a transaction, which is given the connection the transaction runs on. */
+  @FunctionalInterface
+  private interface Transaction<T> {
+    T run(Connection transaction) throws SQLException;
+  }
+
+  /**
+   * Runs the given step in a transaction, which is committed if the step succeeds and rolled back
+   * otherwise.
+   *
+   * @param transaction The step to run.
+   * @return The result of the step.
+   * @throws SQLException If the step fails.
+   */
+  private <T> T inTransaction(Transaction<T> transaction) throws SQLException {
+    connection.setAutoCommit(false);
+    try {
+      T result = transaction.run(connection);
+      connection.commit();
+      return result;
+    } catch (SQLException | RuntimeException e) {
+      connection.rollback();
+      throw e;
+    } finally {
+      connection.setAutoCommit(true);
+    }
+  }
+
+  /**
+   * Retrieves the password of a user.
+   *
+   * @param username The username of the user.
+   * @return The password, or null if the user does not exist.
+   * @throws SQLException If the query fails.
+   */
+  private String findPassword(String username) throws SQLException {
+    try (PreparedStatement query =
+        connection.prepareStatement("SELECT password FROM users WHERE username = ?")) {
+      query.setString(1, username);
+      try (ResultSet rows = query.executeQuery()) {
+        return rows.next() ? rows.getString(1) : null;
+      }
+    }
+  }
+
+  /**
+   * Checks that a user exists.
+   *
+   * @param username The username of the user.
+   * @throws IllegalArgumentException If there is no user with the username.
+   * @throws SQLException If the query fails.
+   */
+  private void requireUser(String username) throws SQLException {
+    if (findPassword(username) == null) {
+      throw new IllegalArgumentException("User not found.");
+    }
+  }
+
+  /**
+   * Retrieves all expenses of a user in the order they were added.
+   *
+   * @param username The username of the user.
+   * @return The expenses of the user.
+   * @throws SQLException If the query fails.
+   */
+  private List<Expense> queryExpenses(String username) throws SQLException {
+    try (PreparedStatement query =
+        connection.prepareStatement(
+            "SELECT " + SELECTED_COLUMNS + " FROM expenses e WHERE username = ? ORDER BY id")) {
+      query.setString(1, username);
+      return readExpenses(query);
+    }
+  }
+
+  /**
+   * Runs a query of expense columns and reads the expenses it returns.
+   *
+   * @param query The query, with all parameters set.
+   * @return The expenses.
+   * @throws SQLException If the query fails.
+   */
+  private static List<Expense> readExpenses(PreparedStatement query) throws SQLException {
+    List<Expense> expenses = new ArrayList<>();
+    try (ResultSet rows = query.executeQuery()) {
+      while (rows.next()) {
+        expenses.add(readExpense(rows, 1));
+      }
+    }
+    return expenses;
+  }
+
+  /**
+   * Reads an expense from the expense columns of the current row. The category and date are taken
+   * from the shared {@link StringPool}.
+   *
+   * @param rows The result set, positioned at a row.
+   * @param column The index of the first expense column.
+   * @return The expense.
+   * @throws SQLException If a column cannot be read.
+   */
+  private static Expense readExpense(ResultSet rows, int column) throws SQLException {
+    Expense expense =
+        new Expense(
+            StringPool.SHARED.canonical(rows.getDate(column).toLocalDate().format(DATE_FORMATTER)),
+            StringPool.SHARED.canonical(rows.getString(column + 1)),
+            rows.getLong(column + 2) / 100.0,
+            rows.getString(column + 3));
+    expense.setId(rows.getLong(column + 4));
+    return expense;
+  }
+
+  /**
+   * Inserts an expense of a user. The row is given a new id, and the expense is not changed.
+   *
+   * @param transaction The connection of the running transaction.
+   * @param username The username of the user.
+   * @param expense The expense to insert.
+   * @throws SQLException If the insert fails.
+   */
+  private static void insertExpense(Connection transaction, String username, Expense expense)
+      throws SQLException {
+    try (PreparedStatement insert =
+        transaction.prepareStatement(
+            "INSERT INTO expenses (username, " + EXPENSE_COLUMNS + ") VALUES (?, ?, ?, ?, ?)")) {
+      insert.setString(1, username);
+      setExpense(insert, 2, expense);
+      insert.executeUpdate();
+    }
+  }
+
+  /**
+   * Sets the expense columns of a statement.
+   *
+   * @param statement The statement.
+   * @param index The index of the first expense parameter.
+   * @param expense The expense.
+   * @throws SQLException If a parameter cannot be set.
+   */
+  private static void setExpense(PreparedStatement statement, int index, Expense expense)
+      throws SQLException {
+    statement.setDate(index, Date.valueOf(LocalDate.ofEpochDay(expense.toEpochDay())));
+    statement.setString(index + 1, expense.getCategory());
+    statement.setLong(index + 2, expense.toMinorUnits());
+    statement.setString(index + 3, expense.getDescription());
+  }
+}
@@ -0,0 +1,130 @@
+package persistence;
+
+import core.User;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The file format of a store. A codec writes a list of users to a stream and reads them back, and
+ * it can look up a single user without decoding the expenses of the other users. The {@link
+ * JsonController} uses a {@link JsonStoreCodec} unless another codec is given.
+ *
+ * <p>A store can also be read and written one user at a time with {@link #readEach} and {@link
+ * #openWriter}, so a store larger than the heap can be converted while only one user is held in
+ * memory. The codecs of the persistence module stream; other codecs fall back to reading or
+ * writing the whole list.
+ */
+public interface StoreCodec {
+
+  /** Receives the users of a store one at a time. */
+  @FunctionalInterface
+  interface UserSink {
+
+    /**
+     * Receives the next user.
+     *
+     * @param user The user.
+     * @throws IOException If an error occurs while handling the user.
+     */
+    void accept(User user) throws IOException;
+  }
+
+  /** Writes the users of a store one at a time. */
+  interface UserWriter extends UserSink {
+
+    /**
+     * Writes the end of the store after the last user. The stream is flushed but not closed.
+     *
+     * @throws IOException If an error occurs while writing to the stream.
+     */
+    void finish() throws IOException;
+  }
+
+  /**
+   * Writes the given users to the stream.
+   *
+   * @param users The users to write.
+   * @param out The stream to write to. It is not closed.
+   * @throws IOException If an error occurs while writing to the stream.
+   */
+  void write(List<User> users, OutputStream out) throws IOException;
+
+  /**
+   * Reads all users from the stream. An empty stream holds no users.
+   *
+   * @param in The stream to read from. It is not closed.
+   * @return The users read from the stream.
+   * @throws IOException If an error occurs while reading from the stream.
+   */
+  List<User> read(InputStream in) throws IOException;
+
+  /**
+   * Reads users from the stream until the user with the given username is found.
+   *
+   * @param in The stream to read from. It is not closed.
+   * @param username The username of the user to find.
+   * @param readExpenses Whether the expenses of the found user should be read. If not, the returned
+   *     user has no expenses and must only be used for its username and password.
+   * @return The user if found; otherwise, null.
+   * @throws IOException If an error occurs while reading from the stream.
+   */
+  User find(InputStream in, String username, boolean readExpenses) throws IOException;
+
+  /**
+   * Reads the username and password of all users from the stream, skipping their expenses.
+   *
+   * @param in The stream to read from. It is not closed.
+   * @return The users read from the stream, without expenses.
+   * @throws IOException If an error occurs while reading from the stream.
+   */
+  List<User> readHeaders(InputStream in) throws IOException;
+
+  /**
+   * Retrieves the file extension of stores in this format, which names the file of a store.
+   *
+   * @return The file extension, including its leading dot.
+   */
+  default String getFileExtension() {
+    return ".json";
+  }
+
+  /**
+   * Reads the users of the stream one at a time and passes each to the sink in the order they are
+   * stored.
+   *
+   * @param in The stream to read from. It is not closed.
+   * @param sink The sink to pass the users to.
+   * @throws IOException If an error occurs while reading from the stream or in the sink.
+   */
+  default void readEach(InputStream in, UserSink sink) throws IOException {
+    for (User user : read(in)) {
+      sink.accept(user);
+    }
+  }
+
+  /**
+   * Opens a writer that writes users to the stream one at a time. The store is only complete once
+   * {@link UserWriter#finish()} has been called.
+   *
+   * @param out The stream to write to. It is not closed.
+   * @return The writer.
+   * @throws IOException If an error occurs while writing to the stream.
+   */
+  default UserWriter openWriter(OutputStream out) throws IOException {
+    List<User> users = new ArrayList<>();
+    return new UserWriter() {
+      @Override
+      public void accept(User user) {
+        users.add(user);
+      }
+
+      @Override
+      public void finish() throws IOException {
+        write(users, out);
+      }
+    };
+  }
+}
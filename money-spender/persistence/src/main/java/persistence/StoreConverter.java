@@ -0,0 +1,69 @@
+package persistence;
+
+import core.User;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Converts a store from one file format to another, for example from pretty-printed JSON to the
+ * compact binary format and back. The conversion is lossless: converting a store to another format
+ * and back gives the same users and expenses. The source file is left untouched.
+ */
+public final class StoreConverter {
+
+  private StoreConverter() {}
+
+  /**
+   * Converts the users of the source file into the target file. The target is written to a
+   * temporary file first and then moved into place, so it is never left half written.
+   *
+   * @param source The file to convert.
+   * @param sourceCodec The format of the source file.
+   * @param target The file to write. It is replaced if it exists.
+   * @param targetCodec The format of the target file.
+   * @return The number of users that were converted.
+   * @throws IOException If an error occurs while reading the source or writing the target.
+   */
+  public static int convert(
+      Path source, StoreCodec sourceCodec, Path target, StoreCodec targetCodec)
+      throws IOException {
+    List<User> users;
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(source))) {
+      users = sourceCodec.read(in);
+    }
+    Path tempPath = target.resolveSibling(target.getFileName() + ".tmp");
+    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tempPath))) {
+      targetCodec.write(users, out);
+    }
+    Files.move(tempPath, target, StandardCopyOption.REPLACE_EXISTING);
+    return users.size();
+  }
+
+  /**
+   * Copies all users of the source store into the target store if the target store does not
+   * contain any users yet, so it can safely be run on every start of the application.
+   *
+   * @param source The store to copy from.
+   * @param target The store to copy to, usually in another format.
+   * @return The number of users that were copied, which is 0 if the target already had users.
+   * @throws IOException If an error occurs while reading the source or writing the target.
+   */
+  public static int convertIfEmpty(JsonController source, JsonController target)
+      throws IOException {
+    if (!target.readUsersFromJson().isEmpty()) {
+      return 0;
+    }
+    List<User> users = source.readUsersFromJson();
+    if (!users.isEmpty()) {
+      target.writeUsersToJson(users);
+    }
+    return users.size();
+  }
+}
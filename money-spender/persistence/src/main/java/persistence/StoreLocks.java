@@ -0,0 +1,134 @@
+package persistence;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The locks of a store, shared by every controller of the store in this process. There are three
+ * kinds of locks:
+ *
+ * <ul>
+ *   <li>A striped lock per user, held while a user is read, changed and saved.
+ *   <li>A commit lock, held while the store is written, so only one thread of the process writes
+ *       it at a time.
+ *   <li>An operating system lock, held in a `.lock` file next to the store, so two processes do not
+ *       overwrite each other's changes. It belongs to the whole process, so threads share it: the
+ *       first thread to acquire it locks the file, and the last thread to release it unlocks it.
+ * </ul>
+ *
+ * <p>A thread that needs both takes the lock of a user before the commit lock. The operating system
+ * lock never waits for threads of this process, so it may be acquired while holding either.
+ */
+final class StoreLocks {
+
+  private static final Map<Path, StoreLocks> LOCKS = new ConcurrentHashMap<>();
+
+  private final Path lockPath;
+  private final StripedLocks userLocks = new StripedLocks(64);
+  private final ReentrantLock commitLock = new ReentrantLock();
+  private FileChannel channel;
+  private FileLock fileLock;
+  private int holders;
+
+  private StoreLocks(Path lockPath) {
+    this.lockPath = lockPath;
+  }
+
+  /**
+   * Retrieves the locks of the given store.
+   *
+   * @param storePath The path to the store, either a file or a folder.
+   * @return The locks of the store, shared by every controller of the store in this process.
+   */
+  static StoreLocks forStore(Path storePath) {
+    Path absolutePath = storePath.toAbsolutePath().normalize();
+    Path lockPath = absolutePath.resolveSibling(absolutePath.getFileName() + ".lock");
+    return LOCKS.computeIfAbsent(lockPath, StoreLocks::new);
+  }
+
+  /**
+   * Retrieves the lock of the given user.
+   *
+   * @param username The username of the user.
+   * @return The lock that guards the user.
+   */
+  Lock userLock(String username) {
+    return userLocks.lockFor(username);
+  }
+
+  /**
+   * Retrieves the lock that is held while the store is written.
+   *
+   * @return The commit lock.
+   */
+  Lock commitLock() {
+    return commitLock;
+  }
+
+  /**
+   * Acquires the operating system lock, waiting while another process holds it.
+   *
+   * @throws IOException If an error occurs while opening or locking the lock file.
+   */
+  synchronized void acquireFileLock() throws IOException {
+    if (holders == 0) {
+      FileChannel newChannel =
+          FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+      try {
+        fileLock = newChannel.lock();
+      } catch (IOException | RuntimeException e) {
+        newChannel.close();
+        throw e;
+      }
+      channel = newChannel;
+    }
+    holders++;
+  }
+
+  /**
+   * Releases the operating system lock acquired by the calling thread.
+   *
+   * @throws IOException If an error occurs while unlocking or closing the lock file.
+   * @throws IllegalStateException If the lock is not held.
+   */
+  synchronized void releaseFileLock() throws IOException {
+    if (holders == 0) {
+      throw new IllegalStateException("The store lock is not held.");
+    }
+    holders--;
+    if (holders == 0) {
+      try {
+        fileLock.release();
+      } finally {
+        fileLock = null;
+        channel.close();
+        channel = null;
+      }
+    }
+  }
+
+  /**
+   * Checks whether a thread of this process holds the operating system lock.
+   *
+   * @return True if the lock is held; otherwise, false.
+   */
+  synchronized boolean isFileLockHeld() {
+    return holders > 0;
+  }
+
+  /**
+   * Retrieves the path to the lock file.
+   *
+   * @return The path to the lock file.
+   */
+  Path getLockPath() {
+    return lockPath;
+  }
+}
@@ -0,0 +1,298 @@
+package persistence;
+
+import core.Expense;
+import core.User;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Migrates a store file into another layout or format one user at a time, so a store larger than
+ * the heap can be migrated while the server is stopped. Only one user of the source is held in
+ * memory at a time, apart from the small batches the sharded layout writes. After the migration
+ * the target is read back the same way and the number of users and expenses and a checksum of
+ * their contents are compared with those of the source. The checksum does not depend on the order
+ * of the users, as the sharded and partitioned layouts do not keep it. The source file is left
+ * untouched.
+ */
+public final class StoreMigrator {
+
+  private static final int BATCH_USERS = 1_000;
+  private static final int BATCH_EXPENSES = 100_000;
+
+  private StoreMigrator() {}
+
+  /** A stream of users that is read one user at a time. */
+  @FunctionalInterface
+  public interface UserSource {
+
+    /**
+     * Passes every user of the source to the sink.
+     *
+     * @param sink The sink to pass the users to.
+     * @throws IOException If an error occurs while reading the source or in the sink.
+     */
+    void readEach(StoreCodec.UserSink sink) throws IOException;
+  }
+
+  /** A store that users are migrated into. */
+  public interface Target {
+
+    /**
+     * Writes every user of the source into the store.
+     *
+     * @param source The users to write.
+     * @throws IOException If an error occurs while reading the source or writing the store.
+     */
+    void write(UserSource source) throws IOException;
+
+    /**
+     * Reads the users of the store one at a time, to verify the migration.
+     *
+     * @param sink The sink to pass the users to.
+     * @throws IOException If an error occurs while reading the store or in the sink.
+     */
+    void readEach(StoreCodec.UserSink sink) throws IOException;
+  }
+
+  /**
+   * Creates a target that writes a single store file with the given codec, such as a binary or a
+   * compressed store. The file is written to a temporary file first and then moved into place, so
+   * it is never left half written. An existing file is replaced.
+   *
+   * @param path The file to write.
+   * @param codec The format of the file.
+   * @return The target.
+   */
+  public static Target file(Path path, StoreCodec codec) {
+    return new Target() {
+      @Override
+      public void write(UserSource source) throws IOException {
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tempPath))) {
+          StoreCodec.UserWriter writer = codec.openWriter(out);
+          source.readEach(writer);
+          writer.finish();
+        }
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+      }
+
+      @Override
+      public void readEach(StoreCodec.UserSink sink) throws IOException {
+        readFile(path, codec, sink);
+      }
+    };
+  }
+
+  /**
+   * Creates a target that writes every user to its own shard of a sharded store. Users are written
+   * in small batches, so the credentials index of the store is not rewritten for every user. The
+   * locks of the store are held during the whole migration.
+   *
+   * @param store The sharded store, which must not have any users yet.
+   * @return The target.
+   */
+  public static Target sharded(ShardedJsonController store) {
+    return new Target() {
+      @Override
+      public void write(UserSource source) throws IOException {
+        if (!store.readCredentials().isEmpty()) {
+          throw new IllegalArgumentException("The target store already has users.");
+        }
+        StoreLocks locks = store.storeLocks();
+        locks.commitLock().lock();
+        try {
+          locks.acquireFileLock();
+          try {
+            ShardBatch batch = new ShardBatch(store);
+            source.readEach(batch);
+            batch.flush();
+          } finally {
+            locks.releaseFileLock();
+          }
+        } finally {
+          locks.commitLock().unlock();
+        }
+      }
+
+      @Override
+      public void readEach(StoreCodec.UserSink sink) throws IOException {
+        store.forEachUser(sink);
+      }
+    };
+  }
+
+  /**
+   * Creates a target that writes every user with its expenses partitioned by month.
+   *
+   * @param store The partitioned store, which must not have any users yet.
+   * @return The target.
+   */
+  public static Target partitioned(PartitionedRepository store) {
+    return new Target() {
+      @Override
+      public void write(UserSource source) throws IOException {
+        if (store.hasUsers()) {
+          throw new IllegalArgumentException("The target store already has users.");
+        }
+        source.readEach(
+            user -> {
+              if (!store.createUser(user)) {
+                throw new IllegalArgumentException(
+                    "The target store already has the user " + user.getUsername());
+              }
+            });
+      }
+
+      @Override
+      public void readEach(StoreCodec.UserSink sink) throws IOException {
+        store.forEachUser(sink);
+      }
+    };
+  }
+
+  /**
+   * Migrates the users of the source file into the target and verifies the target by reading it
+   * back.
+   *
+   * @param source The store file to migrate.
+   * @param sourceCodec The format of the source file.
+   * @param target The store to migrate into.
+   * @return The report of the migration, which tells whether the target matches the source.
+   * @throws IOException If an error occurs while reading the source or writing the target.
+   * @throws IllegalArgumentException If the target already has users.
+   */
+  public static MigrationReport migrate(Path source, StoreCodec sourceCodec, Target target)
+      throws IOException {
+    final long bytes = Files.size(source);
+    long start = System.nanoTime();
+    Tally sourceTally = new Tally();
+    target.write(
+        sink ->
+            readFile(
+                source,
+                sourceCodec,
+                user -> {
+                  sourceTally.accept(user);
+                  sink.accept(user);
+                }));
+    long millis = (System.nanoTime() - start) / 1_000_000;
+
+    start = System.nanoTime();
+    Tally targetTally = new Tally();
+    target.readEach(targetTally);
+    long verifyMillis = (System.nanoTime() - start) / 1_000_000;
+    return new MigrationReport(
+        sourceTally.users,
+        sourceTally.expenses,
+        sourceTally.checksum,
+        targetTally.users,
+        targetTally.expenses,
+        targetTally.checksum,
+        bytes,
+        millis,
+        verifyMillis);
+  }
+
+  /**
+   * Reads the users of a store file one at a time.
+   *
+   * @param path The store file.
+   * @param codec The format of the file.
+   * @param sink The sink to pass the users to.
+   * @throws IOException If an error occurs while reading the file or in the sink.
+   */
+  private static void readFile(Path path, StoreCodec codec, StoreCodec.UserSink sink)
+      throws IOException {
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+      codec.readEach(in, sink);
+    }
+  }
+
+  /** Collects users for the sharded layout and writes them once a batch is full. */
+  private static final class ShardBatch implements StoreCodec.UserSink {
+
+    private final ShardedJsonController store;
+    private final List<User> users = new ArrayList<>();
+    private int expenses;
+
+    ShardBatch(ShardedJsonController store) {
+      this.store = store;
+    }
+
+    @Override
+    public void accept(User user) throws IOException {
+      users.add(user);
+      expenses += user.getExpenseHandler().getAllExpenses().size();
+      if (users.size() >= BATCH_USERS || expenses >= BATCH_EXPENSES) {
+        flush();
+      }
+    }
+
+    /**
+     * Writes the users of the batch to their shards.
+     *
+     * @throws IOException If an error occurs while writing a shard.
+     */
+    void flush() throws IOException {
+      if (!users.isEmpty()) {
+        store.writeUsersToJson(users);
+        users.clear();
+        expenses = 0;
+      }
+    }
+  }
+
+  /**
+   * Counts users and expenses and sums a checksum of every user, which covers the username, the
+   * password and the date, category, price and description of every expense in order. The sum does
+   * not depend on the order of the users.
+   */
+  private static final class Tally implements StoreCodec.UserSink {
+
+    private final CRC32C crc = new CRC32C();
+    private long users;
+    private long expenses;
+    private long checksum;
+
+    @Override
+    public void accept(User user) {
+      crc.reset();
+      update(user.getUsername());
+      update(user.getPassword());
+      for (Expense expense : user.getExpenseHandler().getAllExpenses()) {
+        update(expense.getDate());
+        update(expense.getCategory());
+        long bits = Double.doubleToLongBits(expense.getPrice());
+        for (int shift = 56; shift >= 0; shift -= 8) {
+          crc.update((int) (bits >>> shift));
+        }
+        update(expense.getDescription());
+        expenses++;
+      }
+      users++;
+      checksum += crc.getValue();
+    }
+
+    /**
+     * Adds a string and a separator to the checksum of the current user.
+     *
+     * @param value The string, or null.
+     */
+    private void update(String value) {
+      if (value != null) {
+        crc.update(value.getBytes(StandardCharsets.UTF_8));
+      }
+      crc.update(0);
+    }
+  }
+}
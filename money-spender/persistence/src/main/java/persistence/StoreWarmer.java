@@ -0,0 +1,109 @@
+package persistence;
+
+import core.User;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Loads the users of a store that keeps them in many files, such as shards, in parallel on a
+ * fork-join pool. Every file is parsed by one task, so a store of many users loads in a fraction
+ * of the time one thread takes.
+ */
+final class StoreWarmer {
+
+  /** Loads the user kept in one file or folder of a store. */
+  @FunctionalInterface
+  interface UserLoader {
+
+    /**
+     * Loads the user kept at the given path.
+     *
+     * @param path The file or folder of the user.
+     * @return The user, or null if the path holds no user.
+     * @throws IOException If an error occurs while reading the user.
+     */
+    User load(Path path) throws IOException;
+  }
+
+  private StoreWarmer() {}
+
+  /**
+   * Loads the users at the given paths in parallel.
+   *
+   * @param paths The files or folders of the users.
+   * @param parallelism The number of threads to load with.
+   * @param loader The loader of a single user.
+   * @return The report of the warm-up.
+   * @throws IOException If an error occurs while reading a user.
+   * @throws IllegalArgumentException If the parallelism is not positive.
+   */
+  static WarmUpReport warmUp(List<Path> paths, int parallelism, UserLoader loader)
+      throws IOException {
+    if (parallelism <= 0) {
+      throw new IllegalArgumentException("Parallelism must be positive.");
+    }
+    long start = System.nanoTime();
+    LongAdder users = new LongAdder();
+    LongAdder expenses = new LongAdder();
+    LongAdder bytes = new LongAdder();
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      pool.submit(
+              () ->
+                  paths.parallelStream()
+                      .forEach(
+                          path -> {
+                            try {
+                              User user = loader.load(path);
+                              if (user != null) {
+                                users.increment();
+                                expenses.add(user.getExpenseHandler().getAllExpenses().size());
+                              }
+                              bytes.add(sizeOf(path));
+                            } catch (IOException e) {
+                              throw new UncheckedIOException(e);
+                            }
+                          }))
+          .get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while warming up the store.", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof UncheckedIOException) {
+        throw ((UncheckedIOException) e.getCause()).getCause();
+      }
+      throw new IOException("Could not warm up the store.", e.getCause());
+    } finally {
+      pool.shutdown();
+    }
+    long millis = (System.nanoTime() - start) / 1_000_000;
+    return new WarmUpReport(users.sum(), expenses.sum(), bytes.sum(), millis);
+  }
+
+  /**
+   * Computes the size of a file, or of the files directly inside a folder.
+   *
+   * @param path The file or folder.
+   * @return The size in bytes.
+   * @throws IOException If an error occurs while reading the size.
+   */
+  static long sizeOf(Path path) throws IOException {
+    if (!Files.isDirectory(path)) {
+      return Files.exists(path) ? Files.size(path) : 0;
+    }
+    long size = 0;
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(path, Files::isRegularFile)) {
+      for (Path file : files) {
+        size += Files.size(file);
+      }
+    }
+    return size;
+  }
+}
@@ -0,0 +1,122 @@
+package persistence;
+
+import java.io.IOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a store file for changes with a {@link WatchService} on its folder and notifies a
+ * listener once a burst of changes has settled. Writing a store usually causes several events,
+ * such as the creation of a temporary file and its move over the store, so the listener is only
+ * called after no change to the store has been seen for the debounce time. The listener runs on
+ * the daemon thread of the watcher.
+ */
+final class StoreWatcher implements AutoCloseable {
+
+  private static final Logger LOGGER = System.getLogger(StoreWatcher.class.getName());
+
+  private final Path storePath;
+  private final Path fileName;
+  private final long debounceMillis;
+  private final Runnable listener;
+  private final WatchService watchService;
+  private final Thread thread;
+
+  /**
+   * Constructs a `StoreWatcher` and starts watching the store.
+   *
+   * @param storePath The path to the store file.
+   * @param debounceMillis The time in milliseconds without changes before the listener is called.
+   * @param listener The listener to call after the store changed.
+   * @throws IOException If an error occurs while registering the folder of the store.
+   * @throws IllegalArgumentException If the debounce time is negative or the store has no folder.
+   */
+  StoreWatcher(Path storePath, long debounceMillis, Runnable listener) throws IOException {
+    if (debounceMillis < 0) {
+      throw new IllegalArgumentException("Debounce time cannot be negative.");
+    }
+    this.storePath = storePath.toAbsolutePath();
+    this.fileName = this.storePath.getFileName();
+    Path folder = this.storePath.getParent();
+    if (folder == null) {
+      throw new IllegalArgumentException("The store must be a file in a folder.");
+    }
+    this.debounceMillis = debounceMillis;
+    this.listener = listener;
+    this.watchService = FileSystems.getDefault().newWatchService();
+    try {
+      folder.register(
+              watchService,
+              StandardWatchEventKinds.ENTRY_CREATE,
+              StandardWatchEventKinds.ENTRY_MODIFY,
+              StandardWatchEventKinds.ENTRY_DELETE);
+    } catch (IOException | RuntimeException e) {
+      watchService.close();
+      throw e;
+    }
+    this.thread = new Thread(this::watch, "money-spender-watcher");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /** Waits for changes to the store until the watcher is closed. */
+  private void watch() {
+    try {
+      while (true) {
+        if (!isStoreChanged(watchService.take())) {
+          continue;
+        }
+        WatchKey next = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+        while (next != null) {
+          isStoreChanged(next);
+          next = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+        }
+        try {
+          listener.run();
+        } catch (RuntimeException e) {
+          LOGGER.log(Level.WARNING, "Could not handle a change of " + storePath, e);
+        }
+      }
+    } catch (ClosedWatchServiceException | InterruptedException e) {
+      // The watcher has been closed.
+    }
+  }
+
+  /**
+   * Takes the events of a key and resets it.
+   *
+   * @param key The key with events.
+   * @return True if one of the events concerns the store file; otherwise, false.
+   */
+  private boolean isStoreChanged(WatchKey key) {
+    boolean changed = false;
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW
+          || Objects.equals(fileName, event.context())) {
+        changed = true;
+      }
+    }
+    key.reset();
+    return changed;
+  }
+
+  /**
+   * Stops watching the store.
+   *
+   * @throws IOException If an error occurs while closing the watch service.
+   */
+  @Override
+  public void close() throws IOException {
+    watchService.close();
+    thread.interrupt();
+  }
+}
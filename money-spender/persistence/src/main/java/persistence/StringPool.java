@@ -0,0 +1,63 @@
+package persistence;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A bounded intern table for strings that repeat across many expenses, such as categories and
+ * dates. A user typically has a handful of categories and a few hundred distinct days, so the
+ * expenses read from a store can share one instance of each instead of keeping a copy per expense.
+ * Once the table is full, new strings are returned as they are, so a store with unusual values
+ * cannot grow it without bound.
+ */
+final class StringPool {
+
+  /** The pool shared by all readers of the persistence module. */
+  static final StringPool SHARED = new StringPool(1 << 16);
+
+  private final ConcurrentHashMap<String, String> strings = new ConcurrentHashMap<>();
+  private final int capacity;
+
+  /**
+   * Constructs a `StringPool` that holds at most the given number of strings.
+   *
+   * @param capacity The maximum number of strings in the pool.
+   * @throws IllegalArgumentException If the capacity is not positive.
+   */
+  StringPool(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("The capacity must be positive.");
+    }
+    this.capacity = capacity;
+  }
+
+  /**
+   * Retrieves the canonical instance of a string, adding it to the pool if there is room.
+   *
+   * @param value The string to canonicalize, or null.
+   * @return The instance in the pool that is equal to the string, or the string itself if it is
+   *     not in the pool and the pool is full.
+   */
+  String canonical(String value) {
+    if (value == null) {
+      return null;
+    }
+    String existing = strings.get(value);
+    if (existing != null) {
+      return existing;
+    }
+    if (strings.size() >= capacity) {
+      return value;
+    }
+    existing = strings.putIfAbsent(value, value);
+    return existing == null ? value : existing;
+  }
+
+  /**
+   * Retrieves the number of strings in the pool.
+   *
+   * @return The number of strings.
+   */
+  int size() {
+    return strings.size();
+  }
+}
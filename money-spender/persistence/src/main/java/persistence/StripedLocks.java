@@ -0,0 +1,41 @@
+package persistence;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of locks that keys are spread over by their hash. Mutations of the same key always
+ * take the same lock, while mutations of different keys usually take different locks and run in
+ * parallel, without keeping a lock for every key ever seen.
+ */
+final class StripedLocks {
+
+  private final ReentrantLock[] stripes;
+
+  /**
+   * Constructs a `StripedLocks` with the given number of locks.
+   *
+   * @param stripeCount The number of locks.
+   * @throws IllegalArgumentException If the number of locks is not positive.
+   */
+  StripedLocks(int stripeCount) {
+    if (stripeCount <= 0) {
+      throw new IllegalArgumentException("The number of stripes must be positive.");
+    }
+    stripes = new ReentrantLock[stripeCount];
+    for (int i = 0; i < stripeCount; i++) {
+      stripes[i] = new ReentrantLock();
+    }
+  }
+
+  /**
+   * Retrieves the lock of the given key.
+   *
+   * @param key The key to lock.
+   * @return The lock that guards the key.
+   */
+  Lock lockFor(String key) {
+    int hash = key.hashCode();
+    return stripes[Math.floorMod(hash ^ (hash >>> 16), stripes.length)];
+  }
+}
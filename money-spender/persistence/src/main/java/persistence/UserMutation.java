@@ -0,0 +1,21 @@
+package persistence;
+
+import core.User;
+import java.io.IOException;
+
+/**
+ * A change to a user that is read, changed and saved as one step by {@link
+ * JsonController#mutateUser}. The mutation changes the given user and saves it through the
+ * controller, for example with {@link JsonController#saveAddedExpense}.
+ */
+@FunctionalInterface
+public interface UserMutation {
+
+  /**
+   * Changes and saves the given user.
+   *
+   * @param user The current version of the user.
+   * @throws IOException If an error occurs while saving the user.
+   */
+  void apply(User user) throws IOException;
+}
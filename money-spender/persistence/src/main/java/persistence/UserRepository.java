@@ -0,0 +1,129 @@
+package persistence;
+
+import core.User;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A store of users. Implementations decide how users are kept, such as in a JSON file with {@link
+ * JsonRepository} or in an embedded database with {@link SqlRepository}. The users returned are
+ * copies, so changing them does not change the store.
+ */
+public interface UserRepository {
+
+  /**
+   * Retrieves a user with all of its expenses.
+   *
+   * @param username The username of the user.
+   * @return The user if found; otherwise, null.
+   * @throws IOException If an error occurs while reading the store.
+   */
+  User findUser(String username) throws IOException;
+
+  /**
+   * Retrieves all users with their expenses.
+   *
+   * @return The users of the store.
+   * @throws IOException If an error occurs while reading the store.
+   */
+  List<User> findAllUsers() throws IOException;
+
+  /**
+   * Checks whether a user with the given username exists.
+   *
+   * @param username The username to check for existence.
+   * @return True if the user exists; otherwise, false.
+   * @throws IOException If an error occurs while reading the store.
+   */
+  boolean existsUser(String username) throws IOException;
+
+  /**
+   * Authenticates a user and retrieves it if the password is correct.
+   *
+   * @param username The username to authenticate.
+   * @param password The password to authenticate.
+   * @return The user if the combination is correct; otherwise, null.
+   * @throws IOException If an error occurs while reading the store.
+   */
+  User authenticate(String username, String password) throws IOException;
+
+  /**
+   * Adds a new user with its expenses, unless a user with the same username exists.
+   *
+   * @param user The user to add.
+   * @return True if the user was added; false if the username is taken.
+   * @throws IOException If an error occurs while writing the store.
+   */
+  boolean createUser(User user) throws IOException;
+
+  /**
+   * Switches to another store of the same kind, such as another file or database.
+   *
+   * @param name The name of the store to use.
+   * @throws IOException If an error occurs while opening the store.
+   */
+  void setStoreName(String name) throws IOException;
+
+  /**
+   * Checks whether the store is kept in a file named like the "user.json" of the original JSON
+   * store, so a file name from a client can select it through {@link #setStoreName}. Stores kept
+   * in a database or in folders have names of their own.
+   *
+   * @return True if the store is named by a file name; otherwise, false.
+   */
+  default boolean isNamedByFile() {
+    return false;
+  }
+
+  /**
+   * Retrieves metrics of the store by name, for example to report them.
+   *
+   * @return The metrics of the store, or an empty map if the store has none.
+   */
+  default Map<String, Number> getMetrics() {
+    return Map.of();
+  }
+
+  /**
+   * Forces every change the store has applied to disk. Stores that force every write when it is
+   * made have nothing left to do.
+   *
+   * @throws IOException If an error occurs while writing the changes.
+   */
+  default void sync() throws IOException {}
+
+  /**
+   * Checks whether the store keeps its users in memory once they are loaded, so loading them with
+   * {@link #warmUp} makes later requests faster. Stores that read their files on every request
+   * have nothing to keep warm.
+   *
+   * @return True if the store keeps loaded users in memory; otherwise, false.
+   */
+  default boolean keepsUsersInMemory() {
+    return false;
+  }
+
+  /**
+   * Loads every user of the store once, so the first requests after startup do not pay for a cold
+   * store. Stores kept in many files load them in parallel. Only stores that keep their users in
+   * memory, see {@link #keepsUsersInMemory}, hold on to what is loaded.
+   *
+   * @param parallelism The number of threads to load with.
+   * @return The report of the warm-up.
+   * @throws IOException If an error occurs while reading the store.
+   * @throws IllegalArgumentException If the parallelism is not positive.
+   */
+  default WarmUpReport warmUp(int parallelism) throws IOException {
+    if (parallelism <= 0) {
+      throw new IllegalArgumentException("Parallelism must be positive.");
+    }
+    long start = System.nanoTime();
+    List<User> users = findAllUsers();
+    long expenses = 0;
+    for (User user : users) {
+      expenses += user.getExpenseHandler().getAllExpenses().size();
+    }
+    return new WarmUpReport(users.size(), expenses, 0, (System.nanoTime() - start) / 1_000_000);
+  }
+}
@@ -0,0 +1,97 @@
+package persistence;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import core.ExpenseHandler;
+import core.ExpenseHandlerImpl;
+import core.User;
+import java.io.IOException;
+
+/**
+ * Custom Gson TypeAdapter for the User class. It streams the username, password and expenses of a
+ * user directly between the User object and the JsonWriter or JsonReader, without reflection. The
+ * JSON format is the same as the one Gson produces by reflection.
+ */
+public class UserTypeAdapter extends TypeAdapter<User> {
+
+  private final ExpenseHandlerImplTypeAdapter handlerAdapter = new ExpenseHandlerImplTypeAdapter();
+
+  /**
+   * Serializes a user as an object with its username, password and expense handler.
+   *
+   * @param out The JsonWriter to write the JSON structure to.
+   * @param value The User instance to serialize.
+   * @throws IOException If an error occurs writing to the JsonWriter.
+   */
+  @Override
+  public void write(JsonWriter out, User value) throws IOException {
+    if (value == null) {
+      out.nullValue();
+      return;
+    }
+    out.beginObject();
+    out.name("username").value(value.getUsername());
+    out.name("password").value(value.getPassword());
+    out.name("expenseHandler");
+    ExpenseHandler handler = value.getExpenseHandler();
+    if (handler == null) {
+      out.nullValue();
+    } else {
+      handlerAdapter.writeExpenses(out, handler.getAllExpenses(), handler.getNextId());
+    }
+    out.endObject();
+  }
+
+  /**
+   * Deserializes a user. Unknown fields are skipped, and the username and password are validated
+   * the same way as when a user is created.
+   *
+   * @param in The JsonReader to read the JSON structure from.
+   * @return The User read from the JSON input, or null for a JSON null.
+   * @throws IOException If an error occurs reading from the JsonReader.
+   * @throws JsonSyntaxException If the user is missing a field or has an invalid value.
+   */
+  @Override
+  public User read(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    String path = in.getPath();
+    String username = null;
+    String password = null;
+    ExpenseHandlerImpl handler = null;
+
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case "username":
+          username = in.nextString();
+          break;
+        case "password":
+          password = in.nextString();
+          break;
+        case "expenseHandler":
+          if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+          } else {
+            handler = handlerAdapter.read(in);
+          }
+          break;
+        default:
+          in.skipValue();
+          break;
+      }
+    }
+    in.endObject();
+
+    try {
+      return new User(username, password, handler != null ? handler : new ExpenseHandlerImpl());
+    } catch (IllegalArgumentException e) {
+      throw new JsonSyntaxException("Invalid user at " + path + ": " + e.getMessage(), e);
+    }
+  }
+}
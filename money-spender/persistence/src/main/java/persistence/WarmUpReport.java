@@ -0,0 +1,88 @@
+package persistence;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The result of warming up a store: how many users and expenses were loaded, how many bytes were
+ * read and how long it took.
+ */
+public class WarmUpReport {
+
+  private final long users;
+  private final long expenses;
+  private final long bytesRead;
+  private final long millis;
+
+  /**
+   * Constructs a report of a finished warm-up.
+   *
+   * @param users The number of users loaded.
+   * @param expenses The number of expenses loaded.
+   * @param bytesRead The number of bytes read from the store, or 0 if it is not known.
+   * @param millis The time the warm-up took, in milliseconds.
+   */
+  public WarmUpReport(long users, long expenses, long bytesRead, long millis) {
+    this.users = users;
+    this.expenses = expenses;
+    this.bytesRead = bytesRead;
+    this.millis = millis;
+  }
+
+  /**
+   * Retrieves the number of users loaded.
+   *
+   * @return The number of users.
+   */
+  public long getUsers() {
+    return users;
+  }
+
+  /**
+   * Retrieves the number of expenses loaded.
+   *
+   * @return The number of expenses.
+   */
+  public long getExpenses() {
+    return expenses;
+  }
+
+  /**
+   * Retrieves the number of bytes read from the store.
+   *
+   * @return The number of bytes, or 0 if it is not known.
+   */
+  public long getBytesRead() {
+    return bytesRead;
+  }
+
+  /**
+   * Retrieves the time the warm-up took.
+   *
+   * @return The time in milliseconds.
+   */
+  public long getMillis() {
+    return millis;
+  }
+
+  /**
+   * Retrieves all values of the report by name, for example to report them.
+   *
+   * @return The values, in a fixed order.
+   */
+  public Map<String, Number> toMap() {
+    Map<String, Number> report = new LinkedHashMap<>();
+    report.put("users", users);
+    report.put("expenses", expenses);
+    report.put("bytesRead", bytesRead);
+    report.put("millis", millis);
+    return report;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "Loaded %d users with %d expenses from %d bytes in %d ms",
+        users, expenses, bytesRead, millis);
+  }
+}
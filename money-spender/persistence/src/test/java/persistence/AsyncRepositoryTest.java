@@ -0,0 +1,141 @@
+package persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import core.Expense;
+import core.User;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** JUnit test class for {@link AsyncRepository} class. */
+public class AsyncRepositoryTest {
+
+  private static final String TEST_JSON_FILE = "asynctest.json";
+  private static final long LONG_FLUSH_INTERVAL = 60_000;
+  private final Expense expense = new Expense(LocalDate.of(2024, 1, 1), "Food", 10.0, "Lunch");
+  private CachingJsonController cachingController;
+  private JsonRepository repository;
+
+  /**
+   * Creates a store with one user behind a cache that never flushes on its own during a test.
+   *
+   * @throws IOException If an I/O error occurs while setting up the test.
+   */
+  @BeforeEach
+  public void setUp() throws IOException {
+    cachingController = new CachingJsonController(TEST_JSON_FILE, LONG_FLUSH_INTERVAL);
+    repository = new JsonRepository(cachingController);
+    repository.createUser(new User("testuser", "testpassword"));
+    cachingController.flush();
+  }
+
+  /**
+   * Closes the store and deletes the test files after each test.
+   *
+   * @throws IOException If an I/O error occurs while cleaning up.
+   */
+  @AfterEach
+  public void tearDown() throws IOException {
+    repository.close();
+    Path testFilePath = Paths.get(System.getProperty("user.home"), "money_spender", TEST_JSON_FILE);
+    Files.deleteIfExists(testFilePath);
+    Files.deleteIfExists(testFilePath.resolveSibling(TEST_JSON_FILE + ".credentials"));
+    Files.deleteIfExists(testFilePath.resolveSibling(TEST_JSON_FILE + ".lock"));
+  }
+
+  /**
+   * Tests that a written change is applied when its future completes, but only forced to the file
+   * of a caching store with {@link Durability#FSYNCED}.
+   *
+   * @throws IOException If an I/O error occurs during file operations.
+   */
+  @Test
+  public void testWrittenAndFsynced() throws IOException {
+    try (AsyncRepository written =
+        new AsyncRepository(repository, repository, 2, Durability.WRITTEN)) {
+      User user = written.addExpenseAsync("testuser", expense).join();
+      assertEquals(1, user.getExpenseHandler().getAllExpenses().size());
+      assertTrue(cachingController.hasPendingChanges());
+      assertNull(written.addExpenseAsync("nouser", expense).join());
+    }
+    try (AsyncRepository fsynced =
+        new AsyncRepository(repository, repository, 2, Durability.FSYNCED)) {
+      fsynced.removeExpenseAsync("testuser", expense).join();
+      assertFalse(cachingController.hasPendingChanges());
+      assertTrue(
+          new JsonController(TEST_JSON_FILE)
+              .getUser("testuser")
+              .getExpenseHandler()
+              .getAllExpenses()
+              .isEmpty());
+    }
+  }
+
+  /**
+   * Tests that a queued change is acknowledged before it is applied, and that a later load of the
+   * same user sees it.
+   */
+  @Test
+  public void testQueuedChangeIsSeenByLaterLoad() {
+    CountDownLatch release = new CountDownLatch(1);
+    try (AsyncRepository queued =
+        new AsyncRepository(repository, repository, 1, Durability.QUEUED)) {
+      queued.submit(
+          "testuser",
+          () -> {
+            try {
+              release.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            return null;
+          },
+          Durability.WRITTEN);
+      CompletableFuture<User> change = queued.addExpenseAsync("testuser", expense);
+      assertTrue(change.isDone());
+      assertNull(change.join());
+      CompletableFuture<User> load = queued.loadUserAsync("testuser");
+      assertFalse(load.isDone());
+
+      release.countDown();
+      assertEquals(1, load.join().getExpenseHandler().getAllExpenses().size());
+    }
+  }
+
+  /** Tests that an error of a call fails its future and that invalid arguments are rejected. */
+  @Test
+  public void testFailures() {
+    try (AsyncRepository async =
+        new AsyncRepository(repository, repository, 1, Durability.WRITTEN)) {
+      CompletableFuture<Object> failed =
+          async.submit(
+              "testuser",
+              () -> {
+                throw new IOException("Disk is full");
+              },
+              Durability.WRITTEN);
+      CompletionException error = assertThrows(CompletionException.class, failed::join);
+      assertInstanceOf(IOException.class, error.getCause());
+      assertEquals(Durability.WRITTEN, async.getDurability());
+    }
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new AsyncRepository(repository, repository, 0, Durability.WRITTEN));
+    assertThrows(
+        IllegalArgumentException.class, () -> new AsyncRepository(repository, repository, 1, null));
+  }
+}
@@ -0,0 +1,233 @@
+package persistence;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import core.Expense;
+import core.User;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** JUnit test class for {@link BinaryStoreCodec} and {@link StoreConverter} classes. */
+public class BinaryStoreCodecTest {
+
+  private static final String TEST_BINARY_FILE = "codectest.bin";
+  private static final String TEST_JSON_FILE = "codectest.json";
+  private final Path appFolder = Paths.get(System.getProperty("user.home"), "money_spender");
+  private final BinaryStoreCodec codec = new BinaryStoreCodec();
+  private List<User> users;
+
+  /** Creates users with expenses that share categories before each test. */
+  @BeforeEach
+  public void setUp() {
+    User alice = new User("alice", "password");
+    alice.getExpenseHandler().addExpense(new Expense(LocalDate.of(2024, 1, 1), "Food", 10, "A"));
+    alice.getExpenseHandler().addExpense(new Expense(LocalDate.of(2024, 1, 2), "Rent", 5e3, "B"));
+    alice.getExpenseHandler().addExpense(new Expense(LocalDate.of(1950, 6, 3), "Food", 0.1, "C"));
+    User bob = new User("bob", "secret");
+    bob.getExpenseHandler().addExpense(new Expense(LocalDate.of(2024, 1, 3), "Fun", 1.005, "Ø"));
+    users = List.of(alice, bob, new User("carol", "password"));
+  }
+
+  /**
+   * Deletes the test files after each test.
+   *
+   * @throws IOException If an I/O error occurs while cleaning up.
+   */
+  @AfterEach
+  public void tearDown() throws IOException {
+    for (String file : new String[] {TEST_BINARY_FILE, TEST_JSON_FILE}) {
+      Files.deleteIfExists(appFolder.resolve(file));
+      Files.deleteIfExists(appFolder.resolve(file + ".credentials"));
+      Files.deleteIfExists(appFolder.resolve(file + ".copy"));
+      Files.deleteIfExists(appFolder.resolve(file + ".lock"));
+    }
+  }
+
+  /**
+   * Tests that users and expenses are read back unchanged, including a price that was rounded to
+   * minor units and the ids of the expenses.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Test
+  public void testRoundTrip() throws IOException {
+    List<User> readUsers = codec.read(new ByteArrayInputStream(encode(users)));
+
+    assertEquals(users.size(), readUsers.size());
+    for (int i = 0; i < users.size(); i++) {
+      assertEquals(users.get(i).getUsername(), readUsers.get(i).getUsername());
+      assertEquals(users.get(i).getPassword(), readUsers.get(i).getPassword());
+      assertEquals(
+          users.get(i).getExpenseHandler().getAllExpenses(),
+          readUsers.get(i).getExpenseHandler().getAllExpenses());
+      for (Expense expense : users.get(i).getExpenseHandler().getAllExpenses()) {
+        assertNotNull(readUsers.get(i).getExpenseHandler().getExpenseById(expense.getId()));
+      }
+    }
+  }
+
+  /**
+   * Tests that the id of a removed last expense is not given out again after a round trip.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Test
+  public void testNextIdIsKept() throws IOException {
+    User alice = users.get(0);
+    alice.getExpenseHandler().removeExpense(alice.getExpenseHandler().getExpenseById(3));
+
+    User readAlice = codec.read(new ByteArrayInputStream(encode(users))).get(0);
+    assertEquals(4, readAlice.getExpenseHandler().getNextId());
+    Expense added =
+        readAlice
+            .getExpenseHandler()
+            .addExpense(new Expense(LocalDate.of(2024, 1, 4), "Food", 1, "D"));
+    assertEquals(4, added.getId());
+  }
+
+  /**
+   * Tests looking up single users and reading only the usernames and passwords.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Test
+  public void testFindAndReadHeaders() throws IOException {
+    byte[] bytes = encode(users);
+
+    User bob = codec.find(new ByteArrayInputStream(bytes), "bob", true);
+    assertNotNull(bob);
+    assertEquals(1, bob.getExpenseHandler().getAllExpenses().size());
+    User alice = codec.find(new ByteArrayInputStream(bytes), "alice", false);
+    assertEquals("password", alice.getPassword());
+    assertTrue(alice.getExpenseHandler().getAllExpenses().isEmpty());
+    assertNull(codec.find(new ByteArrayInputStream(bytes), "dave", true));
+    assertEquals(3, codec.readHeaders(new ByteArrayInputStream(bytes)).size());
+  }
+
+  /**
+   * Tests that an empty stream holds no users and that other files are rejected.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Test
+  public void testEmptyAndInvalidStreams() throws IOException {
+    assertTrue(codec.read(new ByteArrayInputStream(new byte[0])).isEmpty());
+    assertNull(codec.find(new ByteArrayInputStream(new byte[0]), "alice", true));
+    assertThrows(
+        IOException.class, () -> codec.read(new ByteArrayInputStream("[]\n".getBytes("UTF-8"))));
+  }
+
+  /**
+   * Tests that a price stored as a raw double by an older version of the codec, which did not store
+   * ids, is still read and rounded to minor units, and that the expense is given an id.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Test
+  public void testReadDoublePrice() throws IOException {
+    ByteArrayOutputStream record = new ByteArrayOutputStream();
+    DataOutputStream recordOut = new DataOutputStream(record);
+    recordOut.write(new byte[] {3, 'b', 'o', 'b', 6, 's', 'e', 'c', 'r', 'e', 't', 1});
+    recordOut.write(new byte[] {0, 3, 'F', 'u', 'n', 0, 1});
+    recordOut.writeDouble(12.3456);
+    recordOut.write(new byte[] {1, 'D'});
+    ByteArrayOutputStream store = new ByteArrayOutputStream();
+    store.write(new byte[] {0x4D, 0x53, 0x42, 0x31, 1, (byte) record.size()});
+    record.writeTo(store);
+
+    List<User> readUsers = codec.read(new ByteArrayInputStream(store.toByteArray()));
+    Expense expense = readUsers.get(0).getExpenseHandler().getAllExpenses().get(0);
+    assertEquals(new Expense(LocalDate.of(1970, 1, 1), "Fun", 12.35, "D"), expense);
+    assertEquals(1235, expense.toMinorUnits());
+    assertEquals(1, expense.getId());
+  }
+
+  /**
+   * Tests a controller that stores users in the binary format.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Test
+  public void testJsonControllerWithBinaryCodec() throws IOException {
+    JsonController binaryController = new JsonController(TEST_BINARY_FILE, codec);
+    for (User user : users) {
+      binaryController.saveNewUserToJson(user);
+    }
+
+    assertEquals(3, binaryController.readUsersFromJson().size());
+    assertTrue(binaryController.checkIfPasswordIsCorrect("bob", "secret"));
+    assertEquals(3, binaryController.getUser("alice").getExpenseHandler().getAllExpenses().size());
+    assertNotNull(binaryController.authenticateUser("carol", "password"));
+
+    new JsonRepository(binaryController).setStoreName(TEST_JSON_FILE);
+    assertEquals(TEST_BINARY_FILE, String.valueOf(binaryController.getFilePath().getFileName()));
+    assertFalse(Files.exists(appFolder.resolve(TEST_JSON_FILE)));
+    assertEquals(3, binaryController.readUsersFromJson().size());
+  }
+
+  /**
+   * Tests that converting JSON to binary and back gives the same JSON file, and that the binary
+   * file is smaller.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Test
+  public void testConvertIsLossless() throws IOException {
+    JsonController jsonController = new JsonController(TEST_JSON_FILE);
+    jsonController.writeUsersToJson(users);
+    JsonController binaryController = new JsonController(TEST_BINARY_FILE, codec);
+    Path json = jsonController.getFilePath();
+    Path binary = binaryController.getFilePath();
+    Path jsonCopy = appFolder.resolve(TEST_JSON_FILE + ".copy");
+
+    assertEquals(3, StoreConverter.convert(json, jsonController.getCodec(), binary, codec));
+    assertEquals(3, StoreConverter.convert(binary, codec, jsonCopy, jsonController.getCodec()));
+    assertArrayEquals(Files.readAllBytes(json), Files.readAllBytes(jsonCopy));
+    assertTrue(Files.size(binary) * 2 < Files.size(json));
+  }
+
+  /**
+   * Tests that an empty store is filled from another store only once.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Test
+  public void testConvertIfEmpty() throws IOException {
+    JsonController jsonController = new JsonController(TEST_JSON_FILE);
+    jsonController.writeUsersToJson(users);
+    JsonController binaryController = new JsonController(TEST_BINARY_FILE, codec);
+
+    assertEquals(3, StoreConverter.convertIfEmpty(jsonController, binaryController));
+    assertEquals(0, StoreConverter.convertIfEmpty(jsonController, binaryController));
+    assertEquals(3, binaryController.readUsersFromJson().size());
+  }
+
+  /**
+   * Encodes users with the binary codec.
+   *
+   * @param usersToEncode The users to encode.
+   * @return The encoded bytes.
+   * @throws IOException If an I/O error occurs.
+   */
+  private byte[] encode(List<User> usersToEncode) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    codec.write(usersToEncode, out);
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,242 @@
+package persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import core.Expense;
+import core.User;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** JUnit test class for {@link CachingJsonController} class. */
+public class CachingJsonControllerTest {
+
+  private static final String TEST_JSON_FILE = "cachetest.json";
+  private static final long LONG_FLUSH_INTERVAL = 60_000;
+  private CachingJsonController cachingController;
+  private JsonController fileController;
+
+  /**
+   * Creates a caching controller that never flushes on its own during a test, and a plain
+   * controller that reads the same file directly.
+   *
+   * @throws IOException If an I/O error occurs while setting up the test.
+   */
+  @BeforeEach
+  public void setUp() throws IOException {
+    cachingController = new CachingJsonController(TEST_JSON_FILE, LONG_FLUSH_INTERVAL);
+    fileController = new JsonController(TEST_JSON_FILE);
+  }
+
+  /**
+   * Closes the caching controller and deletes the test file after each test.
+   *
+   * @throws IOException If an I/O error occurs while cleaning up.
+   */
+  @AfterEach
+  public void tearDown() throws IOException {
+    cachingController.close();
+    Path testFilePath = Paths.get(System.getProperty("user.home"), "money_spender", TEST_JSON_FILE);
+    Files.deleteIfExists(testFilePath);
+    Files.deleteIfExists(testFilePath.resolveSibling(TEST_JSON_FILE + ".credentials"));
+    Files.deleteIfExists(testFilePath.resolveSibling(TEST_JSON_FILE + ".lock"));
+  }
+
+  /**
+   * Tests that saved users are served from memory before they are written to the file.
+   *
+   * @throws IOException If an I/O error occurs during file operations.
+   */
+  @Test
+  public void testReadsAreServedFromCache() throws IOException {
+    cachingController.saveNewUserToJson(new User("testuser", "testpassword"));
+
+    assertTrue(cachingController.hasPendingChanges());
+    assertTrue(cachingController.checkIfUserNameExists("testuser"));
+    assertTrue(cachingController.checkIfPasswordIsCorrect("testuser", "testpassword"));
+    assertFalse(cachingController.checkIfPasswordIsCorrect("testuser", "wrongpassword"));
+    assertEquals(1, cachingController.readUsersFromJson().size());
+    assertTrue(fileController.readUsersFromJson().isEmpty());
+    assertTrue(cachingController.keepsUsersInMemory());
+    assertFalse(fileController.keepsUsersInMemory());
+  }
+
+  /**
+   * Tests that flushing writes the cached users to the file.
+   *
+   * @throws IOException If an I/O error occurs during file operations.
+   */
+  @Test
+  public void testFlushWritesToFile() throws IOException {
+    cachingController.saveNewUserToJson(new User("testuser", "testpassword"));
+    cachingController.flush();
+
+    assertFalse(cachingController.hasPendingChanges());
+    assertNotNull(fileController.getUser("testuser"));
+  }
+
+  /**
+   * Tests that closing the controller flushes pending changes.
+   *
+   * @throws IOException If an I/O error occurs during file operations.
+   */
+  @Test
+  public void testCloseFlushesPendingChanges() throws IOException {
+    cachingController.saveNewUserToJson(new User("testuser", "testpassword"));
+    cachingController.close();
+
+    assertNotNull(fileController.getUser("testuser"));
+  }
+
+  /**
+   * Tests that changed users are written to the file by the background flusher.
+   *
+   * @throws Exception If an I/O error occurs or the test is interrupted.
+   */
+  @Test
+  public void testBackgroundFlush() throws Exception {
+    cachingController.close();
+    cachingController = new CachingJsonController(TEST_JSON_FILE, 10);
+    cachingController.saveNewUserToJson(new User("testuser", "testpassword"));
+
+    for (int i = 0; i < 200 && cachingController.hasPendingChanges(); i++) {
+      Thread.sleep(10);
+    }
+    assertFalse(cachingController.hasPendingChanges());
+    assertNotNull(fileController.getUser("testuser"));
+  }
+
+  /**
+   * Tests that users already in the file are loaded into the cache.
+   *
+   * @throws IOException If an I/O error occurs during file operations.
+   */
+  @Test
+  public void testLoadsExistingUsers() throws IOException {
+    fileController.saveNewUserToJson(new User("existinguser", "testpassword"));
+    cachingController.close();
+    cachingController = new CachingJsonController(TEST_JSON_FILE, LONG_FLUSH_INTERVAL);
+
+    assertTrue(cachingController.checkIfUserNameExists("existinguser"));
+  }
+
+  /**
+   * Tests that callers get copies, so changes are only visible once the user is saved again.
+   *
+   * @throws IOException If an I/O error occurs during file operations.
+   */
+  @Test
+  public void testGetUserReturnsCopy() throws IOException {
+    cachingController.saveNewUserToJson(new User("testuser", "testpassword"));
+    User first = cachingController.getUser("testuser");
+    first.getExpenseHandler().addExpense(new Expense(LocalDate.now(), "Food", 10.0, "Lunch"));
+
+    User second = cachingController.getUser("testuser");
+    assertNotSame(first, second);
+    assertTrue(second.getExpenseHandler().getAllExpenses().isEmpty());
+
+    cachingController.saveNewUserToJson(first);
+    User saved = cachingController.getUser("testuser");
+    assertEquals(1, saved.getExpenseHandler().getAllExpenses().size());
+  }
+
+  /**
+   * Tests that switching file path flushes pending changes to the previous file.
+   *
+   * @throws IOException If an I/O error occurs during file operations.
+   */
+  @Test
+  public void testSetFilePathFlushes() throws IOException {
+    String otherFile = "cachetest2.json";
+    Path otherPath = Paths.get(System.getProperty("user.home"), "money_spender", otherFile);
+    try {
+      cachingController.saveNewUserToJson(new User("testuser", "testpassword"));
+      cachingController.setFilePath(otherFile);
+
+      assertNotNull(fileController.getUser("testuser"));
+      assertFalse(cachingController.checkIfUserNameExists("testuser"));
+    } finally {
+      Files.deleteIfExists(otherPath);
+    }
+  }
+
+  /** Tests that a non-positive flush interval is rejected. */
+  @Test
+  public void testInvalidFlushInterval() {
+    assertThrows(
+        IllegalArgumentException.class, () -> new CachingJsonController(TEST_JSON_FILE, 0));
+  }
+
+  /**
+   * Tests that only the users changed by another process are reloaded, and that unflushed changes
+   * in memory win over the file.
+   *
+   * @throws IOException If an I/O error occurs during file operations.
+   */
+  @Test
+  public void testReloadExternalChanges() throws IOException {
+    fileController.saveNewUserToJson(new User("alice", "password"));
+    fileController.saveNewUserToJson(new User("bob", "password"));
+    fileController.saveNewUserToJson(new User("carol", "password"));
+    assertEquals(3, cachingController.readUsersFromJson().size());
+    assertEquals(0, cachingController.reloadExternalChanges());
+
+    cachingController.saveNewUserToJson(new User("carol", "cached"));
+    User alice = fileController.getUser("alice");
+    alice.getExpenseHandler().addExpense(new Expense(LocalDate.now(), "Food", 10, "Lunch"));
+    fileController.saveNewUserToJson(alice);
+    fileController.saveNewUserToJson(new User("dave", "password"));
+    fileController.saveNewUserToJson(new User("carol", "external"));
+
+    assertEquals(2, cachingController.reloadExternalChanges());
+    assertEquals(1, cachingController.getUser("alice").getExpenseHandler().getAllExpenses().size());
+    assertTrue(cachingController.checkIfUserNameExists("dave"));
+    assertTrue(cachingController.checkIfPasswordIsCorrect("carol", "cached"));
+    assertEquals(0, cachingController.reloadExternalChanges());
+  }
+
+  /**
+   * Tests that a flush keeps the users another process added since the cache was loaded.
+   *
+   * @throws IOException If an I/O error occurs during file operations.
+   */
+  @Test
+  public void testFlushKeepsExternalChanges() throws IOException {
+    cachingController.saveNewUserToJson(new User("alice", "password"));
+    fileController.saveNewUserToJson(new User("bob", "password"));
+
+    cachingController.flush();
+
+    assertNotNull(fileController.getUser("alice"));
+    assertNotNull(fileController.getUser("bob"));
+    assertTrue(cachingController.checkIfUserNameExists("bob"));
+  }
+
+  /**
+   * Tests that a watched cache picks up a change of another process without being asked to.
+   *
+   * @throws Exception If an I/O error occurs or the test is interrupted.
+   */
+  @Test
+  public void testWatcherReloadsExternalChanges() throws Exception {
+    assertTrue(cachingController.readUsersFromJson().isEmpty());
+    cachingController.watchForExternalChanges(20);
+
+    fileController.saveNewUserToJson(new User("alice", "password"));
+
+    for (int i = 0; i < 500 && !cachingController.checkIfUserNameExists("alice"); i++) {
+      Thread.sleep(10);
+    }
+    assertTrue(cachingController.checkIfUserNameExists("alice"));
+  }
+}
@@ -0,0 +1,151 @@
+package persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import core.Expense;
+import core.User;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** JUnit test class for {@link GzipStoreCodec} class. */
+public class GzipStoreCodecTest {
+
+  private static final String TEST_FILE = "gziptest.json.gz";
+  private final Path appFolder = Paths.get(System.getProperty("user.home"), "money_spender");
+  private List<User> users;
+
+  /** Creates users with repetitive expenses before each test. */
+  @BeforeEach
+  public void setUp() {
+    users = new ArrayList<>();
+    for (String name : new String[] {"alice", "bob", "carol"}) {
+      User user = new User(name, "password");
+      for (int day = 1; day <= 28; day++) {
+        user.getExpenseHandler()
+            .addExpense(new Expense(LocalDate.of(2024, 2, day), "Food", day, "Lunch"));
+      }
+      users.add(user);
+    }
+  }
+
+  /**
+   * Deletes the test files after each test.
+   *
+   * @throws IOException If an I/O error occurs while cleaning up.
+   */
+  @AfterEach
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(appFolder.resolve(TEST_FILE));
+    Files.deleteIfExists(appFolder.resolve(TEST_FILE + ".credentials"));
+    Files.deleteIfExists(appFolder.resolve(TEST_FILE + ".lock"));
+  }
+
+  /**
+   * Tests that JSON and binary stores are read back unchanged and take fewer bytes compressed.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Test
+  public void testRoundTrip() throws IOException {
+    for (StoreCodec format : new StoreCodec[] {new JsonStoreCodec(), new BinaryStoreCodec()}) {
+      GzipStoreCodec codec = new GzipStoreCodec(format, 6);
+      byte[] compressed = encode(codec, users);
+      byte[] plain = encode(format, users);
+      assertTrue(compressed.length < plain.length);
+
+      List<User> readUsers = codec.read(new ByteArrayInputStream(compressed));
+      assertEquals(users.size(), readUsers.size());
+      for (int i = 0; i < users.size(); i++) {
+        assertEquals(users.get(i).getUsername(), readUsers.get(i).getUsername());
+        assertEquals(
+            users.get(i).getExpenseHandler().getAllExpenses(),
+            readUsers.get(i).getExpenseHandler().getAllExpenses());
+      }
+      assertEquals(3, codec.readHeaders(new ByteArrayInputStream(compressed)).size());
+      User bob = codec.find(new ByteArrayInputStream(compressed), "bob", true);
+      assertNotNull(bob);
+      assertEquals(28, bob.getExpenseHandler().getAllExpenses().size());
+      assertNull(codec.find(new ByteArrayInputStream(compressed), "dave", true));
+    }
+  }
+
+  /**
+   * Tests that an empty or uncompressed store is read, so compression can be turned on for an
+   * existing store.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Test
+  public void testReadsUncompressedStore() throws IOException {
+    GzipStoreCodec codec = new GzipStoreCodec(null, 1);
+    assertTrue(codec.read(new ByteArrayInputStream(new byte[0])).isEmpty());
+    byte[] plain = encode(new JsonStoreCodec(), users);
+    assertEquals(3, codec.read(new ByteArrayInputStream(plain)).size());
+    assertNotNull(codec.find(new ByteArrayInputStream(plain), "carol", false));
+  }
+
+  /**
+   * Tests that a JsonController with the codec saves and loads users in a compressed file.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Test
+  public void testJsonController() throws IOException {
+    JsonController controller = new JsonController(TEST_FILE, new GzipStoreCodec(null, 9));
+    for (User user : users) {
+      controller.saveNewUserToJson(user);
+    }
+    byte[] header = new byte[2];
+    try (InputStream in = Files.newInputStream(controller.getFilePath())) {
+      assertEquals(2, in.read(header));
+    }
+    assertEquals(0x1f, header[0] & 0xff);
+    assertEquals(0x8b, header[1] & 0xff);
+    assertEquals(3, controller.readUsersFromJson().size());
+    User alice = controller.authenticateUser("alice", "password");
+    assertNotNull(alice);
+    assertEquals(28, alice.getExpenseHandler().getAllExpenses().size());
+
+    new JsonRepository(controller).setStoreName("gziptest.json");
+    assertEquals(TEST_FILE, String.valueOf(controller.getFilePath().getFileName()));
+    assertEquals(3, controller.readUsersFromJson().size());
+    assertEquals(".bin.gz", new GzipStoreCodec(new BinaryStoreCodec(), 6).getFileExtension());
+  }
+
+  /** Tests that a compression level outside of 0 to 9 is rejected. */
+  @Test
+  public void testInvalidLevel() {
+    assertThrows(IllegalArgumentException.class, () -> new GzipStoreCodec(null, -1));
+    assertThrows(IllegalArgumentException.class, () -> new GzipStoreCodec(null, 10));
+    assertEquals(0, new GzipStoreCodec(null, 0).getLevel());
+  }
+
+  /**
+   * Writes the users with the codec.
+   *
+   * @param codec The codec to write with.
+   * @param users The users to write.
+   * @return The written bytes.
+   * @throws IOException If an I/O error occurs.
+   */
+  private static byte[] encode(StoreCodec codec, List<User> users) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    codec.write(users, out);
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,231 @@
+package persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import core.Expense;
+import core.User;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** JUnit test class for {@link JournaledJsonController} class. */
+public class JournaledJsonControllerTest {
+
+  private static final String TEST_JSON_FILE = "journaltest.json";
+  private static final long LARGE_THRESHOLD = 1024 * 1024;
+  private final Path appFolder = Paths.get(System.getProperty("user.home"), "money_spender");
+  private JournaledJsonController journaledController;
+  private Expense lunch;
+  private Expense dinner;
+
+  /**
+   * Creates a journaled controller on an empty test file before each test.
+   *
+   * @throws IOException If an I/O error occurs while setting up the test.
+   */
+  @BeforeEach
+  public void setUp() throws IOException {
+    journaledController = new JournaledJsonController(TEST_JSON_FILE, LARGE_THRESHOLD);
+    lunch = new Expense(LocalDate.of(2024, 1, 1), "Food", 10.0, "Lunch");
+    dinner = new Expense(LocalDate.of(2024, 1, 2), "Food", 20.0, "Dinner");
+  }
+
+  /**
+   * Closes the controller and deletes the snapshot and journal files after each test.
+   *
+   * @throws IOException If an I/O error occurs while cleaning up.
+   */
+  @AfterEach
+  public void tearDown() throws IOException {
+    journaledController.close();
+    Files.deleteIfExists(appFolder.resolve(TEST_JSON_FILE));
+    Files.deleteIfExists(appFolder.resolve(TEST_JSON_FILE + ".journal"));
+    Files.deleteIfExists(appFolder.resolve(TEST_JSON_FILE + ".journal.old"));
+  }
+
+  /**
+   * Tests that changes are appended to the journal without rewriting the snapshot.
+   *
+   * @throws IOException If an I/O error occurs during file operations.
+   */
+  @Test
+  public void testChangesAreAppendedToJournal() throws IOException {
+    User user = new User("testuser", "testpassword");
+    journaledController.saveNewUserToJson(user);
+    long sizeAfterUser = journaledController.getJournalSize();
+
+    user.getExpenseHandler().addExpense(lunch);
+    journaledController.saveAddedExpense(user, lunch);
+
+    assertTrue(journaledController.getJournalSize() > sizeAfterUser);
+    assertEquals(0, Files.size(appFolder.resolve(TEST_JSON_FILE)));
+    assertEquals(
+        1, journaledController.getUser("testuser").getExpenseHandler().getAllExpenses().size());
+  }
+
+  /**
+   * Tests that the journal is replayed on top of the snapshot on startup.
+   *
+   * @throws IOException If an I/O error occurs during file operations.
+   */
+  @Test
+  public void testReplayOnStartup() throws IOException {
+    User user = new User("testuser", "testpassword");
+    journaledController.saveNewUserToJson(user);
+    user.getExpenseHandler().addExpense(lunch);
+    journaledController.saveAddedExpense(user, lunch);
+    user.getExpenseHandler().addExpense(dinner);
+    journaledController.saveAddedExpense(user, dinner);
+    user.getExpenseHandler().removeExpense(lunch);
+    journaledController.saveRemovedExpense(user, lunch);
+    Expense snack = new Expense(LocalDate.of(2024, 1, 3), "Food", 5.0, "Snack");
+    user.getExpenseHandler().updateExpense(dinner, snack);
+    journaledController.saveUpdatedExpense(user, dinner, snack);
+
+    journaledController.close();
+    journaledController = new JournaledJsonController(TEST_JSON_FILE, LARGE_THRESHOLD);
+
+    assertEquals(
+        user.getExpenseHandler().getAllExpenses(),
+        journaledController.getUser("testuser").getExpenseHandler().getAllExpenses());
+  }
+
+  /**
+   * Tests that compaction writes a snapshot readable by a plain controller and empties the
+   * journal.
+   *
+   * @throws IOException If an I/O error occurs during file operations.
+   */
+  @Test
+  public void testCompact() throws IOException {
+    User user = new User("testuser", "testpassword");
+    user.getExpenseHandler().addExpense(lunch);
+    journaledController.saveNewUserToJson(user);
+    journaledController.compact();
+
+    assertEquals(0, journaledController.getJournalSize());
+    assertFalse(Files.exists(appFolder.resolve(TEST_JSON_FILE + ".journal.old")));
+    User fromSnapshot = new JsonController(TEST_JSON_FILE).getUser("testuser");
+    assertEquals(1, fromSnapshot.getExpenseHandler().getAllExpenses().size());
+  }
+
+  /**
+   * Tests that the background compactor folds the journal once it passes the threshold.
+   *
+   * @throws Exception If an I/O error occurs or the test is interrupted.
+   */
+  @Test
+  public void testBackgroundCompaction() throws Exception {
+    journaledController.close();
+    journaledController = new JournaledJsonController(TEST_JSON_FILE, 200);
+    User user = new User("testuser", "testpassword");
+    journaledController.saveNewUserToJson(user);
+    for (int i = 0; i < 10; i++) {
+      Expense expense = new Expense(LocalDate.of(2024, 1, i + 1), "Food", i, "Meal");
+      user.getExpenseHandler().addExpense(expense);
+      journaledController.saveAddedExpense(user, expense);
+    }
+    journaledController.close();
+
+    assertTrue(Files.size(appFolder.resolve(TEST_JSON_FILE)) > 0);
+    journaledController = new JournaledJsonController(TEST_JSON_FILE, LARGE_THRESHOLD);
+    assertEquals(
+        10, journaledController.getUser("testuser").getExpenseHandler().getAllExpenses().size());
+  }
+
+  /**
+   * Tests that changes acknowledged with {@link Durability#FSYNCED} are forced to disk when their
+   * save moves the journal aside for a compaction, where a later sync only forces the new journal.
+   *
+   * @throws IOException If an I/O error occurs during file operations.
+   */
+  @Test
+  public void testRotationForcesJournalWithFsynced() throws IOException {
+    journaledController.close();
+    journaledController = new JournaledJsonController(TEST_JSON_FILE, 200);
+    JsonRepository repository = new JsonRepository(journaledController);
+    repository.createUser(new User("testuser", "testpassword"));
+    try (AsyncRepository fsynced =
+        new AsyncRepository(repository, repository, 1, Durability.FSYNCED)) {
+      for (int i = 0; i < 10; i++) {
+        Expense expense = new Expense(LocalDate.of(2024, 1, i + 1), "Food", i, "Meal");
+        fsynced.addExpenseAsync("testuser", expense).join();
+        assertFalse(journaledController.hasUnforcedChanges());
+      }
+    }
+    journaledController.close();
+
+    assertTrue(Files.size(appFolder.resolve(TEST_JSON_FILE)) > 0);
+    journaledController = new JournaledJsonController(TEST_JSON_FILE, LARGE_THRESHOLD);
+    assertEquals(
+        10, journaledController.getUser("testuser").getExpenseHandler().getAllExpenses().size());
+  }
+
+  /**
+   * Tests that an interrupted compaction is finished on startup without applying changes twice.
+   *
+   * @throws IOException If an I/O error occurs during file operations.
+   */
+  @Test
+  public void testRecoversInterruptedCompaction() throws IOException {
+    User user = new User("testuser", "testpassword");
+    journaledController.saveNewUserToJson(user);
+    user.getExpenseHandler().addExpense(lunch);
+    journaledController.saveAddedExpense(user, lunch);
+    journaledController.close();
+
+    // Simulate a crash after the journal was moved aside, before the snapshot was replaced.
+    Path journal = appFolder.resolve(TEST_JSON_FILE + ".journal");
+    Path oldJournal = appFolder.resolve(TEST_JSON_FILE + ".journal.old");
+    String trailer = "{\"op\":\"base\",\"base\":0}\n";
+    Files.writeString(journal, trailer, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    Files.move(journal, oldJournal);
+
+    journaledController = new JournaledJsonController(TEST_JSON_FILE, LARGE_THRESHOLD);
+    assertEquals(
+        1, journaledController.getUser("testuser").getExpenseHandler().getAllExpenses().size());
+    assertFalse(Files.exists(oldJournal));
+
+    // The old journal is now folded into the snapshot and must not be replayed again.
+    journaledController.close();
+    journaledController = new JournaledJsonController(TEST_JSON_FILE, LARGE_THRESHOLD);
+    assertEquals(
+        1, journaledController.getUser("testuser").getExpenseHandler().getAllExpenses().size());
+  }
+
+  /**
+   * Tests that a torn last line from an interrupted append is ignored.
+   *
+   * @throws IOException If an I/O error occurs during file operations.
+   */
+  @Test
+  public void testIgnoresTornLastLine() throws IOException {
+    journaledController.saveNewUserToJson(new User("testuser", "testpassword"));
+    journaledController.close();
+    Files.writeString(
+        appFolder.resolve(TEST_JSON_FILE + ".journal"),
+        "{\"op\":\"add\",\"usern",
+        StandardCharsets.UTF_8,
+        StandardOpenOption.APPEND);
+
+    journaledController = new JournaledJsonController(TEST_JSON_FILE, LARGE_THRESHOLD);
+    assertTrue(journaledController.checkIfPasswordIsCorrect("testuser", "testpassword"));
+  }
+
+  /** Tests that a non-positive compaction threshold is rejected. */
+  @Test
+  public void testInvalidThreshold() {
+    assertThrows(
+        IllegalArgumentException.class, () -> new JournaledJsonController(TEST_JSON_FILE, 0));
+  }
+}
@@ -4,14 +4,26 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import com.google.gson.Gson;
+import core.Expense;
+import core.LazyUser;
 import core.User;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -41,6 +53,9 @@ public class JsonControllerTest {
   public void tearDownAfterAll() throws IOException {
     Path testFilePath = Paths.get(System.getProperty("user.home"), "money_spender", TEST_JSON_FILE);
     Files.deleteIfExists(testFilePath);
+    Files.deleteIfExists(testFilePath.resolveSibling(TEST_JSON_FILE + ".credentials"));
+    Files.deleteIfExists(testFilePath.resolveSibling(TEST_JSON_FILE + ".tmp"));
+    Files.deleteIfExists(testFilePath.resolveSibling(TEST_JSON_FILE + ".lock"));
   }
 
   /**
@@ -131,4 +146,310 @@ public class JsonControllerTest {
     assertEquals(user.getUsername(), retrievedUser.getUsername());
     assertEquals(user.getPassword(), retrievedUser.getPassword());
   }
+
+  /**
+   * Tests that the streaming lookup finds a user among several and reads its expenses, also when
+   * the expenses come before the username in the file.
+   *
+   * @throws IOException If an I/O error occurs during file operations.
+   */
+  @Test
+  public void getUserStreamsPastOtherUsers() throws IOException {
+    User first = new User("firstuser", "password");
+    first.getExpenseHandler().addExpense(new Expense(LocalDate.now(), "Food", 10.0, "Lunch"));
+    jsonController.saveNewUserToJson(first);
+    jsonController.saveNewUserToJson(new User("seconduser", "password"));
+
+    User retrievedUser = jsonController.getUser("firstuser");
+    assertEquals(1, retrievedUser.getExpenseHandler().getAllExpenses().size());
+    assertTrue(jsonController.checkIfUserNameExists("seconduser"));
+
+    Files.writeString(
+        jsonController.getFilePath(),
+        "[{\"expenseHandler\":{\"expenses\":[{\"description\":\"Lunch\",\"category\":"
+            + "\"Food\",\"date\":\"01.01.2024\",\"price\":10.0}]},"
+            + "\"password\":\"password\",\"username\":\"reordered\"}]");
+    User reordered = jsonController.getUser("reordered");
+    assertNotNull(reordered);
+    assertEquals("Food", reordered.getExpenseHandler().getAllExpenses().get(0).getCategory());
+  }
+
+  /**
+   * Tests authentication through the credentials index, which returns the user only for the
+   * correct password and reads its expenses only when they are accessed.
+   *
+   * @throws IOException If an I/O error occurs during file operations.
+   */
+  @Test
+  public void authenticateUser() throws IOException {
+    User user = new User("testuser", "testpassword");
+    user.getExpenseHandler().addExpense(new Expense(LocalDate.now(), "Food", 10.0, "Lunch"));
+    jsonController.saveNewUserToJson(user);
+
+    User authenticatedUser = jsonController.authenticateUser("testuser", "testpassword");
+    assertNotNull(authenticatedUser);
+    assertFalse(((LazyUser) authenticatedUser).hasLoadedExpenses());
+    assertEquals(1, authenticatedUser.getExpenseHandler().getAllExpenses().size());
+    assertTrue(((LazyUser) authenticatedUser).hasLoadedExpenses());
+    assertNull(jsonController.authenticateUser("testuser", "wrongpassword"));
+    assertNull(jsonController.authenticateUser("nonexistinguser", "testpassword"));
+    assertTrue(Files.exists(jsonController.getCredentialsPath()));
+  }
+
+  /**
+   * Tests that the credentials index is rebuilt when the store was written without it.
+   *
+   * @throws IOException If an I/O error occurs during file operations.
+   */
+  @Test
+  public void authenticateUserRebuildsStaleIndex() throws IOException {
+    jsonController.saveNewUserToJson(new User("testuser", "testpassword"));
+    assertNotNull(jsonController.authenticateUser("testuser", "testpassword"));
+
+    jsonController.writeUsersToJson(
+        List.of(new User("testuser", "newpassword"), new User("otheruser", "password")));
+
+    assertNull(jsonController.authenticateUser("testuser", "testpassword"));
+    assertNotNull(jsonController.authenticateUser("testuser", "newpassword"));
+    assertNotNull(new JsonController(TEST_JSON_FILE).authenticateUser("otheruser", "password"));
+  }
+
+  /**
+   * Tests that a save that fails while writing leaves the previous content of the file intact.
+   *
+   * @throws IOException If an I/O error occurs during file operations.
+   */
+  @Test
+  public void saveIsAtomic() throws IOException {
+    jsonController.saveNewUserToJson(new User("testuser", "testpassword"));
+    StoreCodec jsonCodec = jsonController.getCodec();
+    StoreCodec failingCodec =
+        new StoreCodec() {
+          @Override
+          public void write(List<User> users, OutputStream out) throws IOException {
+            out.write("[{\"username\":".getBytes("UTF-8"));
+            throw new IOException("Disk full");
+          }
+
+          @Override
+          public List<User> read(InputStream in) throws IOException {
+            return jsonCodec.read(in);
+          }
+
+          @Override
+          public User find(InputStream in, String username, boolean readExpenses)
+              throws IOException {
+            return jsonCodec.find(in, username, readExpenses);
+          }
+
+          @Override
+          public List<User> readHeaders(InputStream in) throws IOException {
+            return jsonCodec.readHeaders(in);
+          }
+        };
+    JsonController failingController = new JsonController(TEST_JSON_FILE, failingCodec);
+
+    assertThrows(
+        IOException.class, () -> failingController.saveNewUserToJson(new User("other", "pw")));
+    assertTrue(jsonController.checkIfPasswordIsCorrect("testuser", "testpassword"));
+    assertFalse(jsonController.checkIfUserNameExists("other"));
+    assertFalse(Files.exists(jsonController.getFilePath().resolveSibling(TEST_JSON_FILE + ".tmp")));
+  }
+
+  /**
+   * Tests that saves from several threads are all written, coalesced into fewer writes of the file
+   * than there were saves.
+   *
+   * @throws Exception If an I/O error occurs or the test is interrupted.
+   */
+  @Test
+  public void concurrentSavesAreGroupCommitted() throws Exception {
+    jsonController.setCommitWindowMillis(20);
+    int userCount = 16;
+    ExecutorService executor = Executors.newFixedThreadPool(userCount);
+    try {
+      List<Future<?>> saves = new ArrayList<>();
+      for (int i = 0; i < userCount; i++) {
+        String username = "user" + (char) ('a' + i);
+        saves.add(
+            executor.submit(
+                () -> {
+                  jsonController.saveNewUserToJson(new User(username, "password"));
+                  return null;
+                }));
+      }
+      for (Future<?> save : saves) {
+        save.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    assertEquals(userCount, jsonController.readUsersFromJson().size());
+    CommitMetrics metrics = jsonController.getCommitMetrics();
+    assertEquals(userCount, metrics.getSaveCount());
+    assertTrue(metrics.getCommitCount() < userCount);
+    assertTrue(metrics.getMaxBatchSize() > 1);
+    assertTrue(metrics.getMaxLatencyMillis() > 0);
+  }
+
+  /**
+   * Stress tests concurrent changes: many threads add expenses to a few users at the same time,
+   * through two controllers of the same store, and not a single expense may be lost.
+   *
+   * @throws Exception If an I/O error occurs or the test is interrupted.
+   */
+  @Test
+  public void concurrentMutationsLoseNoUpdates() throws Exception {
+    JsonController otherController = new JsonController(TEST_JSON_FILE);
+    String[] usernames = {"alice", "bob", "carol"};
+    for (String username : usernames) {
+      jsonController.saveNewUserToJson(new User(username, "password"));
+    }
+    int threadCount = 12;
+    int expensesPerThread = 15;
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    try {
+      List<Future<?>> workers = new ArrayList<>();
+      for (int i = 0; i < threadCount; i++) {
+        int thread = i;
+        JsonController controller = i % 2 == 0 ? jsonController : otherController;
+        workers.add(
+            executor.submit(
+                () -> {
+                  start.await();
+                  for (int j = 0; j < expensesPerThread; j++) {
+                    Expense expense =
+                        new Expense(LocalDate.now(), "Food", 10, "Expense " + thread + "." + j);
+                    controller.mutateUser(
+                        usernames[(thread + j) % usernames.length],
+                        user -> {
+                          user.getExpenseHandler().addExpense(expense);
+                          controller.saveAddedExpense(user, expense);
+                        });
+                  }
+                  return null;
+                }));
+      }
+      start.countDown();
+      for (Future<?> worker : workers) {
+        worker.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    int expenseCount = 0;
+    for (User user : jsonController.readUsersFromJson()) {
+      expenseCount += user.getExpenseHandler().getAllExpenses().size();
+    }
+    assertEquals(threadCount * expensesPerThread, expenseCount);
+    assertFalse(jsonController.storeLocks().isFileLockHeld());
+  }
+
+  /**
+   * Tests that a mutation of an unknown user is not applied.
+   *
+   * @throws IOException If an I/O error occurs during file operations.
+   */
+  @Test
+  public void mutateUnknownUser() throws IOException {
+    assertNull(
+        jsonController.mutateUser(
+            "nobody",
+            user -> {
+              throw new IOException("The mutation must not be applied.");
+            }));
+  }
+
+  /**
+   * Tests that mapped reads see the same users as streamed reads, and that the store is only
+   * remapped after it has been written.
+   *
+   * @throws IOException If an I/O error occurs during file operations.
+   */
+  @Test
+  public void testMappedReads() throws IOException {
+    User user = new User("mappeduser", "password");
+    user.getExpenseHandler().addExpense(new Expense(LocalDate.now(), "Food", 10, "Lunch"));
+    jsonController.saveNewUserToJson(user);
+    jsonController.setMappedReads(true);
+    assertTrue(jsonController.isMappedReads());
+
+    assertEquals(1, jsonController.readUsersFromJson().size());
+    assertNotNull(jsonController.getUser("mappeduser"));
+    assertTrue(jsonController.checkIfPasswordIsCorrect("mappeduser", "password"));
+    assertEquals(1, jsonController.getMappedStore().getMapCount());
+
+    jsonController.saveNewUserToJson(new User("otheruser", "password"));
+    assertEquals(2, jsonController.readUsersFromJson().size());
+    assertEquals(2, jsonController.getMappedStore().getMapCount());
+
+    jsonController.setMappedReads(false);
+    assertFalse(jsonController.isMappedReads());
+    assertEquals(2, jsonController.readUsersFromJson().size());
+  }
+
+  /**
+   * Tests that warming up loads every user of the file and builds the credentials index.
+   *
+   * @throws IOException If an I/O error occurs during file operations.
+   */
+  @Test
+  public void testWarmUp() throws IOException {
+    User user = new User("testuser", "testpassword");
+    user.getExpenseHandler().addExpense(new Expense(LocalDate.now(), "Food", 10.0, "Lunch"));
+    jsonController.writeUsersToJson(List.of(user, new User("otheruser", "password")));
+
+    WarmUpReport report = jsonController.warmUp(2);
+
+    assertEquals(2, report.getUsers());
+    assertEquals(1, report.getExpenses());
+    assertEquals(Files.size(jsonController.getFilePath()), report.getBytesRead());
+    assertTrue(Files.exists(jsonController.getCredentialsPath()));
+  }
+
+  /**
+   * Tests that a save to a file this controller wrote only serializes the saved user and copies
+   * the other users byte for byte, and that a file written by another controller is saved in
+   * full.
+   *
+   * @throws IOException If an I/O error occurs during file operations.
+   */
+  @Test
+  public void testIncrementalSave() throws IOException {
+    User first = new User("firstuser", "password");
+    first.getExpenseHandler().addExpense(new Expense(LocalDate.now(), "Food", 10.0, "Lunch"));
+    User second = new User("seconduser", "password");
+    User third = new User("thirduser", "password");
+    third.getExpenseHandler().addExpense(new Expense(LocalDate.now(), "Rent", 500.0, "May"));
+    jsonController.writeUsersToJson(List.of(first, second, third));
+    assertTrue(jsonController.hasSegments());
+    Gson gson = jsonController.getGson();
+    String firstSegment = gson.toJson(first, User.class).replace("\n", "\n  ");
+    String thirdSegment = gson.toJson(third, User.class).replace("\n", "\n  ");
+
+    second.getExpenseHandler().addExpense(new Expense(LocalDate.now(), "Fun", 25.0, "Cinema"));
+    jsonController.saveNewUserToJson(second);
+
+    assertTrue(jsonController.hasSegments());
+    String content = Files.readString(jsonController.getFilePath());
+    assertTrue(content.contains(firstSegment + ",\n  " + thirdSegment));
+    assertEquals(gson.toJson(jsonController.readUsersFromJson()), content);
+    List<User> users = jsonController.readUsersFromJson();
+    assertEquals(3, users.size());
+    assertEquals("seconduser", users.get(2).getUsername());
+    assertEquals(1, users.get(2).getExpenseHandler().getAllExpenses().size());
+    assertEquals(
+        third.getExpenseHandler().getAllExpenses(),
+        users.get(1).getExpenseHandler().getAllExpenses());
+    assertTrue(jsonController.checkIfPasswordIsCorrect("seconduser", "password"));
+
+    new JsonController(TEST_JSON_FILE).saveNewUserToJson(new User("otheruser", "password"));
+    assertFalse(jsonController.hasSegments());
+    jsonController.saveNewUserToJson(new User("fourthuser", "password"));
+    assertTrue(jsonController.hasSegments());
+    assertEquals(5, jsonController.readUsersFromJson().size());
+  }
 }
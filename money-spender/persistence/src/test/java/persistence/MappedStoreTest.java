@@ -0,0 +1,77 @@
+package persistence;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/** JUnit test class for {@link MappedStore} class. */
+public class MappedStoreTest {
+
+  private final Path appFolder = Paths.get(System.getProperty("user.home"), "money_spender");
+  private final Path storePath = appFolder.resolve("mappedtest.json");
+  private final Path tempPath = appFolder.resolve("mappedtest.json.tmp");
+
+  /**
+   * Deletes the test files after each test.
+   *
+   * @throws IOException If an I/O error occurs while cleaning up.
+   */
+  @AfterEach
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(storePath);
+    Files.deleteIfExists(tempPath);
+  }
+
+  /**
+   * Tests that repeated reads share one mapping, and that every stream reads the whole file.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Test
+  public void testRepeatedReadsAreNotRemapped() throws IOException {
+    Files.writeString(storePath, "[{\"username\":\"alice\"}]");
+    MappedStore store = new MappedStore(storePath);
+
+    try (InputStream first = store.open();
+        InputStream second = store.open()) {
+      assertEquals('[', first.read());
+      assertEquals(5, first.skip(5));
+      assertEquals('r', first.read());
+      assertArrayEquals(Files.readAllBytes(storePath), second.readAllBytes());
+      assertEquals(0, second.available());
+      assertEquals(-1, second.read());
+    }
+    assertEquals(1, store.getMapCount());
+  }
+
+  /**
+   * Tests that the file is remapped once it has been replaced, while a stream opened before keeps
+   * reading the old version.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Test
+  public void testReplacedFileIsRemapped() throws IOException {
+    Files.writeString(storePath, "old");
+    MappedStore store = new MappedStore(storePath);
+    InputStream oldStream = store.open();
+
+    Files.writeString(tempPath, "new");
+    Files.move(tempPath, storePath, StandardCopyOption.REPLACE_EXISTING);
+
+    try (InputStream newStream = store.open()) {
+      assertEquals("new", new String(newStream.readAllBytes(), StandardCharsets.UTF_8));
+    }
+    assertEquals("old", new String(oldStream.readAllBytes(), StandardCharsets.UTF_8));
+    assertEquals(2, store.getMapCount());
+  }
+}
@@ -0,0 +1,302 @@
+package persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import core.Expense;
+import core.ExpenseHandlerImpl;
+import core.LazyUser;
+import core.User;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** JUnit test class for {@link PartitionedRepository} class. */
+public class PartitionedRepositoryTest {
+
+  private static final String TEST_STORE = "partitiontest";
+  private final Path appFolder = Paths.get(System.getProperty("user.home"), "money_spender");
+  private PartitionedRepository repository;
+
+  /**
+   * Creates a repository on an empty test store before each test.
+   *
+   * @throws IOException If an I/O error occurs while setting up the test.
+   */
+  @BeforeEach
+  public void setUp() throws IOException {
+    repository = new PartitionedRepository(TEST_STORE);
+  }
+
+  /**
+   * Deletes the test store after each test.
+   *
+   * @throws IOException If an I/O error occurs while cleaning up.
+   */
+  @AfterEach
+  public void tearDown() throws IOException {
+    try (Stream<Path> paths = Files.walk(appFolder.resolve(TEST_STORE))) {
+      for (Path path : paths.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) {
+        Files.delete(path);
+      }
+    }
+    Files.deleteIfExists(appFolder.resolve(TEST_STORE + ".lock"));
+  }
+
+  /**
+   * Tests creating, finding and authenticating users.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Test
+  public void testUsers() throws IOException {
+    User alice = new User("Alice", "password");
+    alice.getExpenseHandler().addExpense(new Expense(LocalDate.of(2024, 2, 1), "Rent", 500, "A"));
+    alice.getExpenseHandler().addExpense(new Expense(LocalDate.of(2024, 1, 1), "Food", 10, "B"));
+    assertTrue(repository.createUser(alice));
+    assertFalse(repository.createUser(new User("Alice", "other")));
+    assertTrue(repository.createUser(new User("alice", "secret")));
+
+    assertTrue(repository.existsUser("Alice"));
+    assertFalse(repository.existsUser("nobody"));
+    assertFalse(repository.existsUser("not valid"));
+    assertNull(repository.findUser("nobody"));
+    assertEquals(
+        alice.getExpenseHandler().getAllExpenses(),
+        repository.findUser("Alice").getExpenseHandler().getAllExpenses());
+    long reads = partitionReads();
+    User authenticated = repository.authenticate("Alice", "password");
+    assertEquals(0, partitionReads() - reads);
+    assertEquals(2, authenticated.getExpenseHandler().getAllExpenses().size());
+    assertEquals(2, partitionReads() - reads);
+    assertNull(repository.authenticate("Alice", "secret"));
+    assertNull(repository.authenticate("nobody", "password"));
+    assertEquals(2, repository.findAllUsers().size());
+    assertEquals(Set.of("Food", "Rent"), repository.findCategories("Alice"));
+    assertTrue(repository.findCategories("alice").isEmpty());
+  }
+
+  /**
+   * Tests that a date range query only reads the partitions of the months it overlaps, and that
+   * expenses keep the order they were added in across partitions.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Test
+  public void testRangeQueryReadsOnlyOverlappingPartitions() throws IOException {
+    repository.createUser(new User("alice", "password"));
+    Expense march = new Expense(LocalDate.of(2023, 3, 31), "Food", 10, "March");
+    Expense january = new Expense(LocalDate.of(2024, 1, 15), "Rent", 5000, "January");
+    Expense february = new Expense(LocalDate.of(2024, 2, 1), "Food", 20, "February");
+    Expense earlyJanuary = new Expense(LocalDate.of(2024, 1, 2), "Food", 30, "Early January");
+    for (Expense expense : List.of(march, january, february, earlyJanuary)) {
+      assertNotNull(repository.addExpense("alice", expense));
+    }
+
+    long reads = partitionReads();
+    assertEquals(
+        List.of(january, earlyJanuary),
+        repository.findExpenses(
+            "alice", null, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31)));
+    assertEquals(1, partitionReads() - reads);
+
+    reads = partitionReads();
+    assertEquals(
+        List.of(february, earlyJanuary),
+        repository.findExpenses("alice", "Food", LocalDate.of(2024, 1, 2), null));
+    assertEquals(2, partitionReads() - reads);
+
+    reads = partitionReads();
+    assertTrue(repository.findExpenses("alice", "Travel", null, null).isEmpty());
+    assertEquals(0, partitionReads() - reads);
+
+    assertEquals(
+        List.of(march, january, february, earlyJanuary),
+        repository.findExpenses("alice", "", null, null));
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            repository.findExpenses(
+                "alice", null, LocalDate.of(2024, 3, 1), LocalDate.of(2024, 1, 1)));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> repository.findExpenses("nobody", null, null, null));
+    assertNull(repository.addExpense("nobody", march));
+  }
+
+  /**
+   * Tests that removing the last expense of a month deletes its partition and unused categories.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Test
+  public void testRemoveExpense() throws IOException {
+    repository.createUser(new User("alice", "password"));
+    Expense rent = new Expense(LocalDate.of(2024, 2, 1), "Rent", 5000, "February");
+    repository.addExpense("alice", rent);
+    repository.addExpense("alice", new Expense(LocalDate.of(2024, 1, 1), "Food", 10, "Lunch"));
+    Path partition = repository.getStorePath().resolve("alice").resolve("2024-02.json");
+    assertTrue(Files.exists(partition));
+
+    User alice =
+        repository.removeExpense("alice", new Expense(LocalDate.of(2024, 2, 1), "Rent", 5000, "X"));
+    assertEquals(2, alice.getExpenseHandler().getAllExpenses().size());
+    alice = repository.removeExpense("alice", rent);
+    assertEquals(1, alice.getExpenseHandler().getAllExpenses().size());
+    assertFalse(Files.exists(partition));
+    assertEquals(Set.of("Food"), repository.findCategories("alice"));
+    assertNull(repository.removeExpense("nobody", rent));
+
+    Expense food = alice.getExpenseHandler().getAllExpenses().get(0);
+    assertEquals(2, food.getId());
+    assertEquals(food, repository.findUser("alice").getExpenseHandler().getExpenseById(2));
+    alice = repository.removeExpenseById("alice", 1);
+    assertEquals(List.of(food), alice.getExpenseHandler().getAllExpenses());
+    alice = repository.removeExpenseById("alice", 2);
+    assertTrue(alice.getExpenseHandler().getAllExpenses().isEmpty());
+    assertNull(repository.removeExpenseById("nobody", 2));
+  }
+
+  /**
+   * Tests that a change reads only the partition it changes, and that the expenses of the returned
+   * user are read once they are accessed.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Test
+  public void testChangesReadOnlyTheirPartition() throws IOException {
+    repository.createUser(new User("alice", "password"));
+    repository.addExpense("alice", new Expense(LocalDate.of(2024, 1, 1), "Food", 10, "Lunch"));
+    long reads = partitionReads();
+    User alice =
+        repository.addExpense("alice", new Expense(LocalDate.of(2024, 2, 1), "Rent", 500, "Rent"));
+    assertEquals(0, partitionReads() - reads);
+    assertFalse(((LazyUser) alice).hasLoadedExpenses());
+    assertEquals(2, alice.getExpenseHandler().getAllExpenses().size());
+    assertEquals(2, partitionReads() - reads);
+  }
+
+  /**
+   * Tests that a change interrupted before its partition was written leaves a manifest that
+   * covers it, and that the next change recounts the manifest without reusing the sequence number.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Test
+  public void testInterruptedChangeIsReconciled() throws IOException {
+    repository.createUser(new User("alice", "password"));
+    repository.addExpense("alice", new Expense(LocalDate.of(2024, 2, 1), "Rent", 500, "Rent"));
+    Files.delete(repository.getStorePath().resolve("alice").resolve("2024-02.json"));
+    assertEquals(Set.of("Rent"), repository.findCategories("alice"));
+
+    User alice =
+        repository.addExpense("alice", new Expense(LocalDate.of(2024, 1, 1), "Food", 10, "Lunch"));
+    assertEquals(Set.of("Food"), repository.findCategories("alice"));
+    assertEquals(1, alice.getExpenseHandler().getAllExpenses().size());
+    assertEquals(2, alice.getExpenseHandler().getAllExpenses().get(0).getId());
+  }
+
+  /**
+   * Tests that a created user keeps the ids of its expenses and its next id, and that the id of a
+   * removed expense is not given out again.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Test
+  public void testIdsAreKept() throws IOException {
+    Expense rent = new Expense(LocalDate.of(2024, 2, 1), "Rent", 5000, "February");
+    rent.setId(2);
+    Expense food = new Expense(LocalDate.of(2024, 1, 1), "Food", 10, "Lunch");
+    food.setId(5);
+    repository.createUser(
+        new User("alice", "password", new ExpenseHandlerImpl(List.of(rent, food), 8)));
+
+    User alice = repository.findUser("alice");
+    assertEquals(rent, alice.getExpenseHandler().getExpenseById(2));
+    assertEquals(food, alice.getExpenseHandler().getExpenseById(5));
+    assertEquals(8, alice.getExpenseHandler().getNextId());
+
+    repository.removeExpenseById("alice", 5);
+    Expense dinner = new Expense(LocalDate.of(2024, 1, 2), "Food", 20, "Dinner");
+    alice = repository.addExpense("alice", dinner);
+    assertEquals(0, dinner.getId());
+    assertEquals(dinner, alice.getExpenseHandler().getExpenseById(8));
+    assertEquals(9, alice.getExpenseHandler().getNextId());
+    assertThrows(IllegalArgumentException.class, () -> repository.addExpense("alice", food));
+  }
+
+  /**
+   * Tests that the file name the UI sends at startup keeps the store folder and its users.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Test
+  public void testFileNameKeepsStoreFolder() throws IOException {
+    repository.createUser(new User("alice", "password"));
+    Path folder = repository.getStorePath();
+
+    repository.setStoreName("user.json");
+    assertEquals(folder, repository.getStorePath());
+    assertNotNull(repository.findUser("alice"));
+  }
+
+  /**
+   * Tests that users are only imported into an empty store.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Test
+  public void testImportUsersIfEmpty() throws IOException {
+    User alice = new User("alice", "password");
+    alice.getExpenseHandler().addExpense(new Expense(LocalDate.of(2024, 1, 1), "Food", 10, "A"));
+    assertEquals(2, repository.importUsersIfEmpty(List.of(alice, new User("bob", "secret"))));
+    assertEquals(0, repository.importUsersIfEmpty(List.of(new User("carol", "secret"))));
+
+    PartitionedRepository reopened = new PartitionedRepository(TEST_STORE);
+    assertEquals(2, reopened.findAllUsers().size());
+    assertEquals(1, reopened.findExpenses("alice", "Food", null, null).size());
+  }
+
+  /**
+   * Tests that warming up reads the partitions of every user.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Test
+  public void testWarmUp() throws IOException {
+    User alice = new User("alice", "password");
+    alice.getExpenseHandler().addExpense(new Expense(LocalDate.of(2024, 1, 1), "Food", 10, "A"));
+    alice.getExpenseHandler().addExpense(new Expense(LocalDate.of(2024, 2, 1), "Food", 20, "B"));
+    repository.createUser(alice);
+    repository.createUser(new User("bob", "password"));
+
+    WarmUpReport report = repository.warmUp(2);
+
+    assertEquals(2, report.getUsers());
+    assertEquals(2, report.getExpenses());
+    assertTrue(report.getBytesRead() > 0);
+    assertEquals(2, partitionReads());
+  }
+
+  /**
+   * Retrieves the number of partitions the repository has read.
+   *
+   * @return The number of partitions read.
+   */
+  private long partitionReads() {
+    return repository.getMetrics().get("partitionReads").longValue();
+  }
+}
@@ -0,0 +1,676 @@
+package persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import core.Expense;
+import core.ExpenseFilterer;
+import core.ExpenseFiltererImpl;
+import core.ExpenseHandlerImpl;
+import core.User;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Benchmarks for the persistence module. They write large stores and take a while, so they only
+ * run when the {@code benchmarks} system property is set:
+ *
+ * <pre>mvn test -pl persistence -Dtest=PersistenceBenchmarkTest -Dbenchmarks=true</pre>
+ *
+ * <p>Each benchmark warms up before it measures and prints the average time per operation.
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+public class PersistenceBenchmarkTest {
+
+  private static final String BENCHMARK_JSON_FILE = "benchmark.json";
+  private static final String BENCHMARK_BINARY_FILE = "benchmark.bin";
+  private static final String BENCHMARK_LARGE_FILE = "benchmarklarge.json";
+  private static final String BENCHMARK_COMPRESSED_FILE = "benchmarkcompressed.json";
+  private static final String BENCHMARK_SEGMENTED_FILE = "benchmarksegmented.json";
+  private static final int USER_COUNT = 10_000;
+  private static final int EXPENSES_PER_USER = 20;
+  private static final int WARMUP_ROUNDS = 3;
+  private static final int MEASURED_ROUNDS = 10;
+  private static final int SERIALIZED_USER_COUNT = 1_000;
+  private static final int LARGE_USER_COUNT = 10_000;
+  private static final int LARGE_EXPENSES_PER_USER = 100;
+  private static JsonController jsonController;
+
+  /**
+   * Writes a store with {@value #USER_COUNT} users that is shared by all benchmarks.
+   *
+   * @throws IOException If an I/O error occurs while writing the store.
+   */
+  @BeforeAll
+  public static void setUp() throws IOException {
+    jsonController = new JsonController(BENCHMARK_JSON_FILE);
+    jsonController.writeUsersToJson(createUsers(USER_COUNT, EXPENSES_PER_USER));
+    System.out.printf(
+        "Benchmark store: %d users, %d bytes%n",
+        USER_COUNT, Files.size(jsonController.getFilePath()));
+  }
+
+  /**
+   * Deletes the benchmark store.
+   *
+   * @throws IOException If an I/O error occurs while deleting the store.
+   */
+  @AfterAll
+  public static void tearDown() throws IOException {
+    Files.deleteIfExists(jsonController.getFilePath());
+    Files.deleteIfExists(jsonController.getCredentialsPath());
+  }
+
+  /**
+   * Compares looking up one user by parsing the whole store with the streaming lookup of {@link
+   * JsonController#getUser(String)}, for a user in the middle and at the end of the store.
+   *
+   * @throws IOException If an I/O error occurs while reading the store.
+   */
+  @Test
+  public void benchmarkGetUser() throws IOException {
+    String[] usernames = {usernameOf(USER_COUNT / 2), usernameOf(USER_COUNT - 1)};
+    for (String username : usernames) {
+      double fullParse =
+          measure(
+              () -> {
+                for (User user : jsonController.readUsersFromJson()) {
+                  if (user.getUsername().equals(username)) {
+                    return user;
+                  }
+                }
+                return null;
+              });
+      double streaming = measure(() -> jsonController.getUser(username));
+      double existence = measure(() -> jsonController.checkIfUserNameExists(username));
+      System.out.printf(
+          "getUser(%s): full parse %.2f ms, streaming %.2f ms (%.1fx), exists %.2f ms%n",
+          username, fullParse, streaming, fullParse / streaming, existence);
+
+      User user = jsonController.getUser(username);
+      assertNotNull(user);
+      assertEquals(EXPENSES_PER_USER, user.getExpenseHandler().getAllExpenses().size());
+    }
+  }
+
+  /**
+   * Compares logging in by streaming the store three times, as the REST service used to, with
+   * {@link JsonController#authenticateUser(String, String)}, which checks the credentials index
+   * and only reads the store to load the one authenticated user, and only once its expenses are
+   * accessed.
+   *
+   * @throws IOException If an I/O error occurs while reading the store.
+   */
+  @Test
+  public void benchmarkAuthenticateUser() throws IOException {
+    String username = usernameOf(USER_COUNT - 1);
+    double threeLookups =
+        measure(
+            () ->
+                jsonController.checkIfUserNameExists(username)
+                        && jsonController.checkIfPasswordIsCorrect(username, "password")
+                    ? jsonController.getUser(username)
+                    : null);
+    double indexed =
+        measure(
+            () -> jsonController.authenticateUser(username, "password").getExpenseHandler());
+    double lazy = measure(() -> jsonController.authenticateUser(username, "password"));
+    double rejected = measure(() -> jsonController.authenticateUser(username, "wrong") == null);
+    System.out.printf(
+        "authenticateUser(%s): three lookups %.2f ms, indexed %.2f ms, "
+            + "without expenses %.3f ms, wrong password %.3f ms%n",
+        username, threeLookups, indexed, lazy, rejected);
+    assertNotNull(jsonController.authenticateUser(username, "password"));
+  }
+
+  /**
+   * Compares serializing and deserializing users with the reflective binding and the tree-based
+   * ExpenseHandlerImpl adapter the persistence module used to have, with the streaming adapters.
+   *
+   * @throws IOException If an operation fails.
+   */
+  @Test
+  public void benchmarkTypeAdapters() throws IOException {
+    User[] users = createUsers(SERIALIZED_USER_COUNT, EXPENSES_PER_USER).toArray(new User[0]);
+    Gson reflective =
+        new GsonBuilder()
+            .registerTypeAdapter(ExpenseHandlerImpl.class, new TreeExpenseHandlerImplTypeAdapter())
+            .excludeFieldsWithoutExposeAnnotation()
+            .create();
+    Gson streaming =
+        new GsonBuilder()
+            .registerTypeAdapter(Expense.class, new ExpenseTypeAdapter())
+            .registerTypeAdapter(ExpenseHandlerImpl.class, new ExpenseHandlerImplTypeAdapter())
+            .registerTypeAdapter(User.class, new UserTypeAdapter())
+            .excludeFieldsWithoutExposeAnnotation()
+            .create();
+    String json = streaming.toJson(users);
+    assertEquals(json, reflective.toJson(users));
+
+    double reflectiveWrite = measure(() -> reflective.toJson(users));
+    double streamingWrite = measure(() -> streaming.toJson(users));
+    double reflectiveRead = measure(() -> reflective.fromJson(json, User[].class));
+    double streamingRead = measure(() -> streaming.fromJson(json, User[].class));
+    System.out.printf(
+        "Type adapters (%d users): write reflective %.2f ms, streaming %.2f ms (%.1fx); "
+            + "read reflective %.2f ms, streaming %.2f ms (%.1fx)%n",
+        SERIALIZED_USER_COUNT,
+        reflectiveWrite,
+        streamingWrite,
+        reflectiveWrite / streamingWrite,
+        reflectiveRead,
+        streamingRead,
+        reflectiveRead / streamingRead);
+    assertEquals(SERIALIZED_USER_COUNT, streaming.fromJson(json, User[].class).length);
+  }
+
+  /**
+   * The ExpenseHandlerImpl adapter the persistence module used before the streaming adapters. It
+   * creates a Gson instance and a JSON tree on every call, and is kept here as a baseline.
+   */
+  private static final class TreeExpenseHandlerImplTypeAdapter
+      extends TypeAdapter<ExpenseHandlerImpl> {
+
+    private final TypeAdapter<JsonElement> elementAdapter =
+        new Gson().getAdapter(JsonElement.class);
+
+    @Override
+    public void write(JsonWriter out, ExpenseHandlerImpl value) throws IOException {
+      out.beginObject();
+      out.name("expenses");
+      elementAdapter.write(out, new Gson().toJsonTree(value.getAllExpenses()));
+      out.endObject();
+    }
+
+    @Override
+    public ExpenseHandlerImpl read(JsonReader in) throws IOException {
+      JsonElement tree = elementAdapter.read(in);
+      ExpenseHandlerImpl handler = new Gson().fromJson(tree, ExpenseHandlerImpl.class);
+      handler.loadCategories();
+      return handler;
+    }
+  }
+
+  /**
+   * Compares the size of the store and the time to load all users in pretty-printed JSON and in
+   * the binary format of {@link BinaryStoreCodec}.
+   *
+   * @throws IOException If an I/O error occurs while converting or reading the store.
+   */
+  @Test
+  public void benchmarkBinaryFormat() throws IOException {
+    JsonController binaryController =
+        new JsonController(BENCHMARK_BINARY_FILE, new BinaryStoreCodec());
+    try {
+      StoreConverter.convert(
+          jsonController.getFilePath(),
+          jsonController.getCodec(),
+          binaryController.getFilePath(),
+          binaryController.getCodec());
+      double json = measure(() -> jsonController.readUsersFromJson());
+      double binary = measure(() -> binaryController.readUsersFromJson());
+      String username = usernameOf(USER_COUNT - 1);
+      double jsonLookup = measure(() -> jsonController.getUser(username));
+      double binaryLookup = measure(() -> binaryController.getUser(username));
+      System.out.printf(
+          "Binary format: %d bytes instead of %d; load all %.2f ms instead of %.2f ms (%.1fx); "
+              + "getUser %.2f ms instead of %.2f ms%n",
+          Files.size(binaryController.getFilePath()),
+          Files.size(jsonController.getFilePath()),
+          binary,
+          json,
+          json / binary,
+          binaryLookup,
+          jsonLookup);
+      assertEquals(USER_COUNT, binaryController.readUsersFromJson().size());
+    } finally {
+      Files.deleteIfExists(binaryController.getFilePath());
+    }
+  }
+
+  /**
+   * Compares reading the store through a stream with reading it from a memory-mapped view, for
+   * loading all users and for looking up the last user.
+   *
+   * @throws IOException If an I/O error occurs while reading the store.
+   */
+  @Test
+  public void benchmarkMappedReads() throws IOException {
+    String username = usernameOf(USER_COUNT - 1);
+    double streamedLoad = measure(() -> jsonController.readUsersFromJson());
+    double streamedLookup = measure(() -> jsonController.getUser(username));
+    jsonController.setMappedReads(true);
+    try {
+      double mappedLoad = measure(() -> jsonController.readUsersFromJson());
+      double mappedLookup = measure(() -> jsonController.getUser(username));
+      System.out.printf(
+          "Mapped reads: load all %.2f ms instead of %.2f ms (%.1fx); "
+              + "getUser %.2f ms instead of %.2f ms (%.1fx); mapped %d time(s)%n",
+          mappedLoad,
+          streamedLoad,
+          streamedLoad / mappedLoad,
+          mappedLookup,
+          streamedLookup,
+          streamedLookup / mappedLookup,
+          jsonController.getMappedStore().getMapCount());
+      assertEquals(1, jsonController.getMappedStore().getMapCount());
+    } finally {
+      jsonController.setMappedReads(false);
+    }
+  }
+
+  /**
+   * Compares a one-month range query of a user with five years of history between a JSON store,
+   * which reads every expense of the user, and a partitioned store, which only reads the partition
+   * of that month.
+   *
+   * @throws IOException If an I/O error occurs while writing or reading the stores.
+   */
+  @Test
+  public void benchmarkPartitionedRangeQuery() throws IOException {
+    List<Expense> expenses = new ArrayList<>();
+    LocalDate firstDate = LocalDate.of(2020, 1, 1);
+    for (int day = 0; day < 5 * 365; day++) {
+      for (int j = 0; j < 10; j++) {
+        expenses.add(new Expense(firstDate.plusDays(day), "Food", j + 1, "Expense " + j));
+      }
+    }
+    User user = new User("historyuser", "password", expenses);
+    JsonController historyController = new JsonController("benchmarkhistory.json");
+    PartitionedRepository partitioned = new PartitionedRepository("benchmarkpartitions");
+    try {
+      JsonRepository json = new JsonRepository(historyController);
+      json.createUser(user);
+      partitioned.createUser(user);
+      LocalDate start = LocalDate.of(2023, 6, 1);
+      LocalDate end = LocalDate.of(2023, 6, 30);
+      assertEquals(
+          json.findExpenses("historyuser", null, start, end),
+          partitioned.findExpenses("historyuser", null, start, end));
+
+      double jsonQuery = measure(() -> json.findExpenses("historyuser", null, start, end));
+      double partitionedQuery =
+          measure(() -> partitioned.findExpenses("historyuser", null, start, end));
+      System.out.printf(
+          "Range query of one month out of %d expenses: %.2f ms instead of %.2f ms (%.1fx)%n",
+          expenses.size(), partitionedQuery, jsonQuery, jsonQuery / partitionedQuery);
+    } finally {
+      Files.deleteIfExists(historyController.getFilePath());
+      Files.deleteIfExists(historyController.getCredentialsPath());
+      Files.deleteIfExists(historyController.storeLocks().getLockPath());
+      try (Stream<Path> paths = Files.walk(partitioned.getStorePath())) {
+        for (Path path : paths.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) {
+          Files.delete(path);
+        }
+      }
+      Files.deleteIfExists(StoreLocks.forStore(partitioned.getStorePath()).getLockPath());
+    }
+  }
+
+  /**
+   * Compares saving a user after adding one expense by reading and writing the whole store, as a
+   * save did before, with the incremental save of {@link JsonController#saveNewUserToJson}, which
+   * copies the other users from the old file with {@code transferTo} and only serializes the saved
+   * user.
+   *
+   * @throws IOException If an I/O error occurs while writing or reading the store.
+   */
+  @Test
+  public void benchmarkIncrementalSave() throws IOException {
+    JsonController controller = new JsonController(BENCHMARK_SEGMENTED_FILE);
+    try {
+      controller.writeUsersToJson(createUsers(USER_COUNT, EXPENSES_PER_USER));
+      User user = controller.getUser(usernameOf(USER_COUNT / 2));
+      user.getExpenseHandler().addExpense(new Expense(LocalDate.now(), "Food", 1.0, "Extra"));
+      double full =
+          measure(
+              () -> {
+                List<User> users = controller.readUsersFromJson();
+                users.removeIf(other -> other.getUsername().equals(user.getUsername()));
+                users.add(user);
+                controller.writeUsersToJson(users);
+                return users;
+              });
+      double incremental =
+          measure(
+              () -> {
+                controller.saveNewUserToJson(user);
+                return user;
+              });
+      System.out.printf(
+          "Save one user of %d (%d bytes): full rewrite %.2f ms, incremental %.2f ms (%.1fx)%n",
+          USER_COUNT,
+          Files.size(controller.getFilePath()),
+          full,
+          incremental,
+          full / incremental);
+      assertEquals(USER_COUNT, controller.readUsersFromJson().size());
+      assertEquals(
+          EXPENSES_PER_USER + 1,
+          controller.getUser(user.getUsername()).getExpenseHandler().getAllExpenses().size());
+    } finally {
+      Files.deleteIfExists(controller.getFilePath());
+      Files.deleteIfExists(controller.getCredentialsPath());
+    }
+  }
+
+  /**
+   * Compares the heap a store of {@value #LARGE_USER_COUNT} users with {@value
+   * #LARGE_EXPENSES_PER_USER} expenses each retains when it is read with the reflective binding,
+   * which gives every expense its own category and date strings, and with the streaming adapters,
+   * which take them from the shared {@link StringPool}. The heap is measured after a full garbage
+   * collection, and the category and date strings are counted by identity.
+   *
+   * @throws IOException If an I/O error occurs while writing or reading the store.
+   */
+  @Test
+  public void benchmarkStringDeduplication() throws IOException {
+    JsonController largeController = new JsonController(BENCHMARK_LARGE_FILE);
+    Gson reflective =
+        new GsonBuilder()
+            .registerTypeAdapter(ExpenseHandlerImpl.class, new TreeExpenseHandlerImplTypeAdapter())
+            .excludeFieldsWithoutExposeAnnotation()
+            .create();
+    try {
+      largeController.writeUsersToJson(createUsers(LARGE_USER_COUNT, LARGE_EXPENSES_PER_USER));
+      long baseline = usedHeap();
+      User[] copies;
+      try (Reader reader = Files.newBufferedReader(largeController.getFilePath())) {
+        copies = reflective.fromJson(reader, User[].class);
+      }
+      long reflectiveHeap = usedHeap() - baseline;
+      long reflectiveStrings = countDistinctStrings(Arrays.asList(copies));
+      copies = null;
+
+      baseline = usedHeap();
+      List<User> users = largeController.readUsersFromJson();
+      long streamingHeap = usedHeap() - baseline;
+      long streamingStrings = countDistinctStrings(users);
+      System.out.printf(
+          "String deduplication (%d expenses): %d MB instead of %d MB retained (%.0f%% less), "
+              + "%d category and date strings instead of %d%n",
+          (long) LARGE_USER_COUNT * LARGE_EXPENSES_PER_USER,
+          streamingHeap >> 20,
+          reflectiveHeap >> 20,
+          100.0 * (reflectiveHeap - streamingHeap) / reflectiveHeap,
+          streamingStrings,
+          reflectiveStrings);
+      assertEquals(LARGE_USER_COUNT, users.size());
+    } finally {
+      Files.deleteIfExists(largeController.getFilePath());
+      Files.deleteIfExists(largeController.getCredentialsPath());
+    }
+  }
+
+  /**
+   * Compares the size of the store and the time to save and load it uncompressed and through a
+   * {@link GzipStoreCodec} at the fastest, the default and the strongest compression level, for
+   * the shared store and for a store of {@value #LARGE_USER_COUNT} users with {@value
+   * #LARGE_EXPENSES_PER_USER} expenses each.
+   *
+   * @throws IOException If an I/O error occurs while writing or reading the stores.
+   */
+  @Test
+  public void benchmarkCompression() throws IOException {
+    List<User> users = jsonController.readUsersFromJson();
+    compareCompression(users, MEASURED_ROUNDS);
+    compareCompression(createUsers(LARGE_USER_COUNT, LARGE_EXPENSES_PER_USER), 1);
+  }
+
+  /**
+   * Saves and loads the users uncompressed and at several compression levels, and prints the
+   * size of the store and the times.
+   *
+   * @param users The users of the store.
+   * @param rounds The number of measured rounds of each save and load.
+   * @throws IOException If an I/O error occurs while writing or reading the stores.
+   */
+  private static void compareCompression(List<User> users, int rounds) throws IOException {
+    JsonController plain = new JsonController(BENCHMARK_COMPRESSED_FILE);
+    try {
+      long plainSize = 0;
+      double plainWrite = 0;
+      double plainRead = 0;
+      for (int level : new int[] {-1, 1, 6, 9}) {
+        JsonController controller =
+            level < 0
+                ? plain
+                : new JsonController(BENCHMARK_COMPRESSED_FILE, new GzipStoreCodec(null, level));
+        double write = time(() -> controller.writeUsersToJson(users), rounds);
+        long size = Files.size(controller.getFilePath());
+        double read = time(controller::readUsersFromJson, rounds);
+        if (level < 0) {
+          plainSize = size;
+          plainWrite = write;
+          plainRead = read;
+          System.out.printf(
+              "Uncompressed store: %d bytes, save %.2f ms, load %.2f ms%n", size, write, read);
+        } else {
+          System.out.printf(
+              "Gzip level %d: %d bytes (%.1f%% of %d), save %.2f ms (%+.2f ms), "
+                  + "load %.2f ms (%+.2f ms)%n",
+              level,
+              size,
+              100.0 * size / plainSize,
+              plainSize,
+              write,
+              write - plainWrite,
+              read,
+              read - plainRead);
+        }
+      }
+    } finally {
+      Files.deleteIfExists(plain.getFilePath());
+      Files.deleteIfExists(plain.getCredentialsPath());
+    }
+  }
+
+  /**
+   * Compares filtering {@value #LARGE_USER_COUNT} times {@value #LARGE_EXPENSES_PER_USER} expenses
+   * by a date range when every date string is parsed, as the filter did before, with the filter of
+   * {@link ExpenseFiltererImpl}, which compares the epoch days the expenses keep.
+   *
+   * @throws IOException If the benchmark fails.
+   */
+  @Test
+  public void benchmarkDateFilter() throws IOException {
+    List<Expense> expenses = new ArrayList<>();
+    for (User user : createUsers(LARGE_USER_COUNT, LARGE_EXPENSES_PER_USER)) {
+      expenses.addAll(user.getExpenseHandler().getAllExpenses());
+    }
+    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+    LocalDate start = LocalDate.of(2021, 1, 1);
+    LocalDate end = LocalDate.of(2021, 12, 31);
+    ExpenseFilterer filterer = new ExpenseFiltererImpl();
+    Operation parsing =
+        () ->
+            expenses.stream()
+                .filter(
+                    e -> {
+                      LocalDate date = LocalDate.parse(e.getDate(), formatter);
+                      return !date.isBefore(start) && !date.isAfter(end);
+                    })
+                .collect(Collectors.toList());
+    Operation epochDays = () -> filterer.filterExpenses(expenses, start, end, null);
+    assertEquals(parsing.run(), epochDays.run());
+
+    double parsed = measure(parsing);
+    double compared = measure(epochDays);
+    System.out.printf(
+        "Date filter of %d expenses: %.2f ms instead of %.2f ms (%.1fx)%n",
+        expenses.size(), compared, parsed, parsed / compared);
+  }
+
+  /**
+   * Compares finding the expenses of one category in one month among {@value #LARGE_USER_COUNT}
+   * times {@value #LARGE_EXPENSES_PER_USER} expenses of one user by scanning them with {@link
+   * ExpenseFiltererImpl} with finding them through the date indexes of {@link ExpenseHandlerImpl},
+   * and reports how long building the indexes takes.
+   *
+   * @throws IOException If the benchmark fails.
+   */
+  @Test
+  public void benchmarkIndexedFilter() throws IOException {
+    User user = createUsers(1, LARGE_USER_COUNT * LARGE_EXPENSES_PER_USER).get(0);
+    ExpenseHandlerImpl handler = (ExpenseHandlerImpl) user.getExpenseHandler();
+    List<Expense> expenses = handler.getAllExpenses();
+    LocalDate start = LocalDate.of(2021, 3, 1);
+    LocalDate end = LocalDate.of(2021, 3, 31);
+    ExpenseFilterer filterer = new ExpenseFiltererImpl();
+    long buildStart = System.nanoTime();
+    List<Expense> indexed = handler.findExpenses(start, end, "Food");
+    double built = (System.nanoTime() - buildStart) / 1_000_000.0;
+    assertEquals(filterer.filterExpenses(expenses, start, end, "Food"), indexed);
+
+    double scanned = measure(() -> filterer.filterExpenses(expenses, start, end, "Food"));
+    double found = measure(() -> handler.findExpenses(start, end, "Food"));
+    System.out.printf(
+        "Filter of %d of %d expenses: %.3f ms instead of %.2f ms (%.0fx), indexed in %.0f ms%n",
+        indexed.size(), expenses.size(), found, scanned, scanned / found, built);
+  }
+
+  /** An operation that is timed by a benchmark and returns no result. */
+  @FunctionalInterface
+  interface Action {
+    void run() throws IOException;
+  }
+
+  /**
+   * Runs the action once to warm up and then returns its average time.
+   *
+   * @param action The action to time.
+   * @param rounds The number of measured rounds.
+   * @return The average time of one run in milliseconds.
+   * @throws IOException If the action fails.
+   */
+  private static double time(Action action, int rounds) throws IOException {
+    action.run();
+    long start = System.nanoTime();
+    for (int i = 0; i < rounds; i++) {
+      action.run();
+    }
+    return (System.nanoTime() - start) / 1_000_000.0 / rounds;
+  }
+
+  /**
+   * Measures the used heap after a full garbage collection.
+   *
+   * @return The used heap in bytes.
+   */
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  /**
+   * Counts the distinct category and date strings of the expenses of the users by identity.
+   *
+   * @param users The users whose expenses are counted.
+   * @return The number of distinct string instances.
+   */
+  private static long countDistinctStrings(List<User> users) {
+    Set<String> strings = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (User user : users) {
+      for (Expense expense : user.getExpenseHandler().getAllExpenses()) {
+        strings.add(expense.getCategory());
+        strings.add(expense.getDate());
+      }
+    }
+    return strings.size();
+  }
+
+  /** An operation that is measured by a benchmark. */
+  @FunctionalInterface
+  interface Operation {
+    Object run() throws IOException;
+  }
+
+  /**
+   * Runs the operation for the warm-up rounds and then returns its average time.
+   *
+   * @param operation The operation to measure.
+   * @return The average time of one run in milliseconds.
+   * @throws IOException If the operation fails.
+   */
+  static double measure(Operation operation) throws IOException {
+    Object sink = null;
+    for (int i = 0; i < WARMUP_ROUNDS; i++) {
+      sink = operation.run();
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < MEASURED_ROUNDS; i++) {
+      sink = operation.run();
+    }
+    long elapsed = System.nanoTime() - start;
+    if (sink == null) {
+      System.out.println("Operation returned no result");
+    }
+    return elapsed / 1_000_000.0 / MEASURED_ROUNDS;
+  }
+
+  /**
+   * Creates users with generated expenses.
+   *
+   * @param userCount The number of users to create.
+   * @param expensesPerUser The number of expenses of every user.
+   * @return The created users.
+   */
+  static List<User> createUsers(int userCount, int expensesPerUser) {
+    String[] categories = {"Food", "Transport", "Rent", "Clothes", "Entertainment"};
+    LocalDate firstDate = LocalDate.of(2020, 1, 1);
+    List<User> users = new ArrayList<>(userCount);
+    for (int i = 0; i < userCount; i++) {
+      List<Expense> expenses = new ArrayList<>(expensesPerUser);
+      for (int j = 0; j < expensesPerUser; j++) {
+        expenses.add(
+            new Expense(
+                firstDate.plusDays((i + j * 7L) % 1500),
+                categories[(i + j) % categories.length],
+                (i * 31 + j * 17) % 100_000 / 100.0,
+                "Expense number " + j));
+      }
+      users.add(new User(usernameOf(i), "password", expenses));
+    }
+    return users;
+  }
+
+  /**
+   * Creates a valid, unique username from a number by spelling its digits as letters.
+   *
+   * @param number The number of the user.
+   * @return The username.
+   */
+  static String usernameOf(int number) {
+    StringBuilder name = new StringBuilder("user");
+    for (char digit : Integer.toString(number).toCharArray()) {
+      name.append((char) ('a' + digit - '0'));
+    }
+    return name.toString();
+  }
+}
@@ -0,0 +1,194 @@
+package persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import core.Expense;
+import core.User;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** JUnit test class for {@link ShardedJsonController} and {@link ShardMigrator} classes. */
+public class ShardedJsonControllerTest {
+
+  private static final String TEST_STORE = "shardtest";
+  private static final String TEST_JSON_FILE = "shardtest.json";
+  private ShardedJsonController shardedController;
+
+  /**
+   * Creates a sharded controller on an empty test store before each test.
+   *
+   * @throws IOException If an I/O error occurs while setting up the test.
+   */
+  @BeforeEach
+  public void setUp() throws IOException {
+    shardedController = new ShardedJsonController(TEST_STORE);
+  }
+
+  /**
+   * Deletes the test store and test file after each test.
+   *
+   * @throws IOException If an I/O error occurs while cleaning up.
+   */
+  @AfterEach
+  public void tearDown() throws IOException {
+    Path appFolder = Paths.get(System.getProperty("user.home"), "money_spender");
+    try (Stream<Path> paths = Files.walk(appFolder.resolve(TEST_STORE))) {
+      for (Path path : paths.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) {
+        Files.delete(path);
+      }
+    }
+    Files.deleteIfExists(appFolder.resolve(TEST_JSON_FILE));
+    Files.deleteIfExists(appFolder.resolve(TEST_STORE + ".credentials"));
+    Files.deleteIfExists(appFolder.resolve(TEST_JSON_FILE + ".credentials"));
+    Files.deleteIfExists(appFolder.resolve(TEST_STORE + ".lock"));
+    Files.deleteIfExists(appFolder.resolve(TEST_JSON_FILE + ".lock"));
+  }
+
+  /**
+   * Tests that the file name of a single-file store keeps the current store folder instead of
+   * creating a folder of that name.
+   *
+   * @throws IOException If an I/O error occurs during file operations.
+   */
+  @Test
+  public void testFileNameKeepsStoreFolder() throws IOException {
+    shardedController.saveNewUserToJson(new User("alice", "password"));
+    Path folder = shardedController.getFilePath();
+
+    shardedController.setFilePath(TEST_JSON_FILE);
+    assertEquals(folder, shardedController.getFilePath());
+    assertFalse(Files.exists(folder.resolveSibling(TEST_JSON_FILE)));
+    assertNotNull(shardedController.getUser("alice"));
+  }
+
+  /**
+   * Tests that every user is written to its own shard, through a temporary file that is moved
+   * over the shard.
+   *
+   * @throws IOException If an I/O error occurs during file operations.
+   */
+  @Test
+  public void testSaveWritesOneShardPerUser() throws IOException {
+    shardedController.saveNewUserToJson(new User("alice", "password"));
+    shardedController.saveNewUserToJson(new User("bob", "password"));
+    shardedController.saveNewUserToJson(new User("bob", "newpassword"));
+
+    assertTrue(Files.exists(shardedController.getFilePath().resolve("alice.json")));
+    assertTrue(Files.exists(shardedController.getFilePath().resolve("bob.json")));
+    assertFalse(Files.exists(shardedController.getFilePath().resolve("bob.json.tmp")));
+    assertEquals(2, shardedController.readUsersFromJson().size());
+    assertTrue(shardedController.checkIfPasswordIsCorrect("bob", "newpassword"));
+    assertFalse(shardedController.checkIfPasswordIsCorrect("bob", "password"));
+  }
+
+  /**
+   * Tests reading a user and its expenses back from its shard.
+   *
+   * @throws IOException If an I/O error occurs during file operations.
+   */
+  @Test
+  public void testGetUser() throws IOException {
+    User user = new User("alice", "password");
+    user.getExpenseHandler().addExpense(new Expense(LocalDate.now(), "Food", 10.0, "Lunch"));
+    shardedController.saveNewUserToJson(user);
+
+    User retrievedUser = shardedController.getUser("alice");
+    assertNotNull(retrievedUser);
+    assertEquals(
+        user.getExpenseHandler().getAllExpenses(),
+        retrievedUser.getExpenseHandler().getAllExpenses());
+    assertNull(shardedController.getUser("nonexistentuser"));
+    assertFalse(shardedController.checkIfUserNameExists("nonexistentuser"));
+  }
+
+  /**
+   * Tests that authentication finds the user's shard through the credentials index, that saving
+   * expenses keeps the index valid, and that a new password saved by another controller replaces
+   * the old one.
+   *
+   * @throws IOException If an I/O error occurs during file operations.
+   */
+  @Test
+  public void testAuthenticateUser() throws IOException {
+    User user = new User("Alice", "password");
+    shardedController.saveNewUserToJson(user);
+    String stamp = shardedController.getStoreStamp();
+    user.getExpenseHandler().addExpense(new Expense(LocalDate.now(), "Food", 10.0, "Lunch"));
+    shardedController.saveNewUserToJson(user);
+
+    assertTrue(shardedController.credentials().isCurrent(stamp));
+    User authenticatedUser = shardedController.authenticateUser("Alice", "password");
+    assertNotNull(authenticatedUser);
+    assertEquals(1, authenticatedUser.getExpenseHandler().getAllExpenses().size());
+    assertNull(shardedController.authenticateUser("alice", "password"));
+
+    new ShardedJsonController(TEST_STORE).saveNewUserToJson(new User("Alice", "newpassword"));
+    assertNull(shardedController.authenticateUser("Alice", "password"));
+    assertNotNull(shardedController.authenticateUser("Alice", "newpassword"));
+    assertNull(new ShardedJsonController(TEST_STORE).authenticateUser("Alice", "password"));
+    assertNotNull(new ShardedJsonController(TEST_STORE).authenticateUser("Alice", "newpassword"));
+  }
+
+  /** Tests that usernames differing only in case get different shards. */
+  @Test
+  public void testShardNamesAreCaseSafe() {
+    assertNotEquals(shardedController.getShardPath("Bob"), shardedController.getShardPath("bob"));
+    assertNull(shardedController.getShardPath("../bob"));
+  }
+
+  /**
+   * Tests migrating a single-file store into the sharded store.
+   *
+   * @throws IOException If an I/O error occurs during file operations.
+   */
+  @Test
+  public void testMigrate() throws IOException {
+    JsonController fileController = new JsonController(TEST_JSON_FILE);
+    fileController.saveNewUserToJson(new User("alice", "password"));
+    fileController.saveNewUserToJson(new User("bob", "password"));
+
+    assertEquals(2, ShardMigrator.migrateIfEmpty(fileController, shardedController));
+    assertTrue(shardedController.checkIfUserNameExists("alice"));
+    assertTrue(shardedController.checkIfUserNameExists("bob"));
+    assertEquals(0, ShardMigrator.migrateIfEmpty(fileController, shardedController));
+  }
+
+  /**
+   * Tests that warming up parses every shard and reports the users, expenses and bytes read.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Test
+  public void testWarmUp() throws IOException {
+    User alice = new User("alice", "password");
+    alice.getExpenseHandler().addExpense(new Expense(LocalDate.of(2024, 1, 1), "Food", 10, "A"));
+    alice.getExpenseHandler().addExpense(new Expense(LocalDate.of(2024, 1, 2), "Food", 20, "B"));
+    shardedController.saveNewUserToJson(alice);
+    shardedController.saveNewUserToJson(new User("Bob", "password"));
+
+    WarmUpReport report = shardedController.warmUp(4);
+
+    assertEquals(2, report.getUsers());
+    assertEquals(2, report.getExpenses());
+    assertEquals(
+        Files.size(shardedController.getShardPath("alice"))
+            + Files.size(shardedController.getShardPath("Bob")),
+        report.getBytesRead());
+    assertEquals(2L, report.toMap().get("users"));
+    assertThrows(IllegalArgumentException.class, () -> shardedController.warmUp(0));
+  }
+}
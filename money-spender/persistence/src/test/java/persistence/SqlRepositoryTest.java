@@ -0,0 +1,209 @@
+package persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import core.Expense;
+import core.User;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** JUnit test class for {@link SqlRepository} and {@link JsonRepository} classes. */
+public class SqlRepositoryTest {
+
+  private static final String TEST_DATABASE = "sqltest";
+  private static final String TEST_JSON_FILE = "repositorytest.json";
+  private final Path appFolder = Paths.get(System.getProperty("user.home"), "money_spender");
+  private SqlRepository sqlRepository;
+  private JsonRepository jsonRepository;
+
+  /**
+   * Opens an empty database and an empty JSON store before each test.
+   *
+   * @throws IOException If an I/O error occurs while setting up the test.
+   */
+  @BeforeEach
+  public void setUp() throws IOException {
+    tearDownFiles();
+    sqlRepository = new SqlRepository(TEST_DATABASE);
+    jsonRepository = new JsonRepository(new JsonController(TEST_JSON_FILE));
+  }
+
+  /**
+   * Closes the database and deletes the test files after each test.
+   *
+   * @throws IOException If an I/O error occurs while cleaning up.
+   */
+  @AfterEach
+  public void tearDown() throws IOException {
+    sqlRepository.close();
+    tearDownFiles();
+  }
+
+  /**
+   * Deletes the files of the database and the JSON store.
+   *
+   * @throws IOException If an I/O error occurs while deleting the files.
+   */
+  private void tearDownFiles() throws IOException {
+    Files.deleteIfExists(appFolder.resolve(TEST_DATABASE + ".mv.db"));
+    Files.deleteIfExists(appFolder.resolve(TEST_DATABASE + ".trace.db"));
+    for (String suffix : new String[] {"", ".credentials", ".lock"}) {
+      Files.deleteIfExists(appFolder.resolve(TEST_JSON_FILE + suffix));
+    }
+  }
+
+  /**
+   * Tests creating, finding and authenticating users in both repositories.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Test
+  public void testUsers() throws IOException {
+    for (UserRepository repository : new UserRepository[] {sqlRepository, jsonRepository}) {
+      User alice = new User("alice", "password");
+      alice.getExpenseHandler().addExpense(new Expense(LocalDate.of(2024, 1, 1), "Food", 10, "A"));
+      assertTrue(repository.createUser(alice));
+      assertFalse(repository.createUser(new User("alice", "other")));
+      assertTrue(repository.createUser(new User("bob", "secret")));
+
+      assertTrue(repository.existsUser("alice"));
+      assertFalse(repository.existsUser("carol"));
+      assertEquals(1, repository.findUser("alice").getExpenseHandler().getAllExpenses().size());
+      assertNull(repository.findUser("carol"));
+      assertNotNull(repository.authenticate("bob", "secret"));
+      User authenticated = repository.authenticate("alice", "password");
+      assertEquals(
+          alice.getExpenseHandler().getAllExpenses(),
+          authenticated.getExpenseHandler().getAllExpenses());
+      assertNull(repository.authenticate("bob", "password"));
+      assertEquals(2, repository.findAllUsers().size());
+    }
+  }
+
+  /**
+   * Tests adding, filtering and removing expenses in both repositories, which must give the same
+   * results.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Test
+  public void testExpenses() throws IOException {
+    for (ExpenseRepository repository : new ExpenseRepository[] {sqlRepository, jsonRepository}) {
+      ((UserRepository) repository).createUser(new User("alice", "password"));
+      Expense food = new Expense(LocalDate.of(2024, 1, 1), "Food", 10, "Lunch");
+      Expense rent = new Expense(LocalDate.of(2024, 2, 1), "Rent", 5000, "February");
+      Expense dinner = new Expense(LocalDate.of(2024, 3, 1), "Food", 25.5, "Dinner");
+      repository.addExpense("alice", food);
+      repository.addExpense("alice", rent);
+      User alice = repository.addExpense("alice", dinner);
+
+      assertEquals(List.of(food, rent, dinner), alice.getExpenseHandler().getAllExpenses());
+      assertEquals(0, dinner.getId());
+      final long dinnerId = alice.getExpenseHandler().getAllExpenses().get(2).getId();
+      assertNull(repository.addExpense("nobody", food));
+      assertEquals(Set.of("Food", "Rent"), repository.findCategories("alice"));
+      assertEquals(List.of(food, dinner), repository.findExpenses("alice", "Food", null, null));
+      assertEquals(
+          List.of(rent, dinner),
+          repository.findExpenses("alice", " ", LocalDate.of(2024, 2, 1), null));
+      assertEquals(
+          List.of(food),
+          repository.findExpenses("alice", "Food", null, LocalDate.of(2024, 2, 29)));
+      assertThrows(
+          IllegalArgumentException.class,
+          () ->
+              repository.findExpenses(
+                  "alice", null, LocalDate.of(2024, 3, 1), LocalDate.of(2024, 1, 1)));
+      assertThrows(
+          IllegalArgumentException.class,
+          () -> repository.findExpenses("nobody", null, null, null));
+
+      Expense rentCopy = new Expense(LocalDate.of(2024, 2, 1), "Rent", 5000, "February");
+      alice = repository.removeExpense("alice", rentCopy);
+      assertEquals(List.of(food, dinner), alice.getExpenseHandler().getAllExpenses());
+      assertEquals(Set.of("Food"), repository.findCategories("alice"));
+
+      assertEquals(dinnerId, alice.getExpenseHandler().getAllExpenses().get(1).getId());
+      alice = repository.removeExpenseById("alice", dinnerId);
+      assertEquals(List.of(food), alice.getExpenseHandler().getAllExpenses());
+      alice = repository.removeExpenseById("alice", dinnerId);
+      assertEquals(List.of(food), alice.getExpenseHandler().getAllExpenses());
+      assertNull(repository.removeExpenseById("nobody", 1));
+    }
+  }
+
+  /**
+   * Tests that users are only imported into an empty database, and that the database is kept
+   * after it is synced and reopened.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Test
+  public void testImportAndReopen() throws IOException {
+    User alice = new User("alice", "password");
+    alice.getExpenseHandler().addExpense(new Expense(LocalDate.of(2024, 1, 1), "Food", 10, "A"));
+    List<User> users = List.of(alice, new User("bob", "secret"));
+
+    assertEquals(2, sqlRepository.importUsersIfEmpty(users));
+    assertEquals(0, sqlRepository.importUsersIfEmpty(users));
+    sqlRepository.sync();
+    sqlRepository.setStoreName(TEST_DATABASE);
+
+    assertEquals(2, sqlRepository.findAllUsers().size());
+    assertEquals(1, sqlRepository.findUser("alice").getExpenseHandler().getAllExpenses().size());
+    assertTrue(sqlRepository.getDatabasePath().endsWith(TEST_DATABASE));
+  }
+
+  /**
+   * Tests that a database with the older floating point price column is converted to minor units
+   * when it is opened, keeping its expenses.
+   *
+   * @throws IOException If an I/O error occurs.
+   * @throws SQLException If the older database cannot be created.
+   */
+  @Test
+  public void testConvertsFloatingPointPrices() throws IOException, SQLException {
+    sqlRepository.close();
+    tearDownFiles();
+    String url = "jdbc:h2:file:" + appFolder.resolve(TEST_DATABASE).toAbsolutePath();
+    try (Connection connection = DriverManager.getConnection(url);
+        Statement statement = connection.createStatement()) {
+      statement.execute(
+          "CREATE TABLE users (username VARCHAR(255) PRIMARY KEY, password VARCHAR(255) NOT NULL)");
+      statement.execute(
+          "CREATE TABLE expenses (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+              + "username VARCHAR(255) NOT NULL REFERENCES users(username), "
+              + "expense_date DATE NOT NULL, category VARCHAR(255) NOT NULL, "
+              + "price DOUBLE PRECISION NOT NULL, description VARCHAR NOT NULL)");
+      statement.execute("INSERT INTO users VALUES ('alice', 'password')");
+      statement.execute(
+          "INSERT INTO expenses (username, expense_date, category, price, description) "
+              + "VALUES ('alice', DATE '2024-01-01', 'Food', 0.1 + 0.2, 'Lunch')");
+    }
+
+    sqlRepository.setStoreName(TEST_DATABASE);
+    Expense lunch = sqlRepository.findUser("alice").getExpenseHandler().getAllExpenses().get(0);
+    assertEquals(30, lunch.toMinorUnits());
+    assertEquals(0.3, lunch.getPrice());
+    Expense same = new Expense(LocalDate.of(2024, 1, 1), "Food", 0.3, "Lunch");
+    sqlRepository.removeExpense("alice", same);
+    assertTrue(sqlRepository.findUser("alice").getExpenseHandler().getAllExpenses().isEmpty());
+  }
+}
@@ -0,0 +1,110 @@
+package persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/** JUnit test class for {@link StoreLocks} class. */
+public class StoreLocksTest {
+
+  private static final String PROBE =
+      String.join(
+          "\n",
+          "import java.nio.channels.FileChannel;",
+          "import java.nio.channels.FileLock;",
+          "import java.nio.file.Path;",
+          "import java.nio.file.StandardOpenOption;",
+          "public class LockProbe {",
+          "  public static void main(String[] args) throws Exception {",
+          "    try (FileChannel channel =",
+          "        FileChannel.open(Path.of(args[0]), StandardOpenOption.WRITE)) {",
+          "      FileLock lock = channel.tryLock();",
+          "      System.out.print(lock == null ? \"locked\" : \"free\");",
+          "    }",
+          "  }",
+          "}");
+
+  private final Path appFolder = Paths.get(System.getProperty("user.home"), "money_spender");
+  private final Path storePath = appFolder.resolve("locktest.json");
+
+  /**
+   * Deletes the lock file and the probe after each test.
+   *
+   * @throws IOException If an I/O error occurs while cleaning up.
+   */
+  @AfterEach
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(appFolder.resolve("locktest.json.lock"));
+    Files.deleteIfExists(appFolder.resolve("LockProbe.java"));
+  }
+
+  /**
+   * Tests that controllers of the same store share its locks, that threads can hold the operating
+   * system lock together, and that it is released by the last holder.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Test
+  public void testLocksAreSharedWithinProcess() throws IOException {
+    StoreLocks locks = StoreLocks.forStore(storePath);
+    assertSame(locks, StoreLocks.forStore(appFolder.resolve("../money_spender/locktest.json")));
+    assertEquals(appFolder.resolve("locktest.json.lock").toAbsolutePath(), locks.getLockPath());
+    assertSame(locks.userLock("alice"), locks.userLock("alice"));
+
+    locks.acquireFileLock();
+    locks.acquireFileLock();
+    locks.releaseFileLock();
+    assertTrue(locks.isFileLockHeld());
+    locks.releaseFileLock();
+    assertFalse(locks.isFileLockHeld());
+    assertThrows(IllegalStateException.class, locks::releaseFileLock);
+  }
+
+  /**
+   * Tests that another process cannot lock the store while it is held, and can once it is
+   * released.
+   *
+   * @throws Exception If an I/O error occurs or the test is interrupted.
+   */
+  @Test
+  public void testLockExcludesOtherProcesses() throws Exception {
+    StoreLocks locks = StoreLocks.forStore(storePath);
+    Path probe = appFolder.resolve("LockProbe.java");
+    Files.writeString(probe, PROBE);
+
+    locks.acquireFileLock();
+    try {
+      assertEquals("locked", runProbe(probe, locks.getLockPath()));
+    } finally {
+      locks.releaseFileLock();
+    }
+    assertEquals("free", runProbe(probe, locks.getLockPath()));
+  }
+
+  /**
+   * Runs the probe in a new Java process, which tries to lock the given file.
+   *
+   * @param probe The source file of the probe.
+   * @param lockPath The file to lock.
+   * @return The output of the probe, either "locked" or "free".
+   * @throws Exception If the process cannot be run or the test is interrupted.
+   */
+  private String runProbe(Path probe, Path lockPath) throws Exception {
+    Path java = Paths.get(System.getProperty("java.home"), "bin", "java");
+    Process process =
+        new ProcessBuilder(java.toString(), probe.toString(), lockPath.toString()).start();
+    String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+    assertEquals(0, process.waitFor());
+    return output.trim();
+  }
+}
@@ -0,0 +1,186 @@
+package persistence;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import core.Expense;
+import core.User;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** JUnit test class for {@link StoreMigrator} and {@link MigrationReport} classes. */
+public class StoreMigratorTest {
+
+  private static final String SOURCE_FILE = "migratetest.json";
+  private static final String TARGET_FILE = "migratetest.bin.gz";
+  private static final String SHARDED_STORE = "migratetest-sharded";
+  private static final String PARTITIONED_STORE = "migratetest-partitioned";
+  private final Path appFolder = Paths.get(System.getProperty("user.home"), "money_spender");
+  private final JsonStoreCodec jsonCodec = new JsonStoreCodec();
+  private List<User> users;
+
+  /**
+   * Writes a JSON store with users spread over several months before each test.
+   *
+   * @throws IOException If an I/O error occurs while setting up the test.
+   */
+  @BeforeEach
+  public void setUp() throws IOException {
+    users = new ArrayList<>();
+    for (int i = 0; i < 25; i++) {
+      User user = new User("user" + (char) ('a' + i), "password" + i);
+      for (int day = 1; day <= i; day++) {
+        user.getExpenseHandler()
+            .addExpense(new Expense(LocalDate.of(2024, day % 12 + 1, day), "Food", day, "Lunch"));
+      }
+      users.add(user);
+    }
+    Files.createDirectories(appFolder);
+    try (OutputStream out = Files.newOutputStream(appFolder.resolve(SOURCE_FILE))) {
+      jsonCodec.write(users, out);
+    }
+  }
+
+  /**
+   * Deletes the test files and stores after each test.
+   *
+   * @throws IOException If an I/O error occurs while cleaning up.
+   */
+  @AfterEach
+  public void tearDown() throws IOException {
+    for (String name : new String[] {SOURCE_FILE, TARGET_FILE, SHARDED_STORE, PARTITIONED_STORE}) {
+      Path path = appFolder.resolve(name);
+      if (Files.exists(path)) {
+        try (Stream<Path> paths = Files.walk(path)) {
+          for (Path file : paths.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) {
+            Files.delete(file);
+          }
+        }
+      }
+      Files.deleteIfExists(appFolder.resolve(name + ".lock"));
+      Files.deleteIfExists(appFolder.resolve(name + ".credentials"));
+    }
+  }
+
+  /**
+   * Tests migrating into a compressed binary file, which is read back with the same users.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Test
+  public void testMigrateToFile() throws IOException {
+    Path target = appFolder.resolve(TARGET_FILE);
+    GzipStoreCodec codec = new GzipStoreCodec(new BinaryStoreCodec(), 6);
+    MigrationReport report =
+        StoreMigrator.migrate(
+            appFolder.resolve(SOURCE_FILE), jsonCodec, StoreMigrator.file(target, codec));
+
+    assertTrue(report.isVerified(), report.toString());
+    assertEquals(25, report.getUsers());
+    assertEquals(300, report.getExpenses());
+    assertEquals(Files.size(appFolder.resolve(SOURCE_FILE)), report.getBytesRead());
+    assertEquals(report.getSourceChecksum(), report.getTargetChecksum());
+    assertEquals(25, new JsonController(TARGET_FILE, codec).readUsersFromJson().size());
+    assertFalse(Files.exists(target.resolveSibling(TARGET_FILE + ".tmp")));
+  }
+
+  /**
+   * Tests migrating into the sharded and the partitioned layouts, and that a store that already
+   * has users is not migrated into.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Test
+  public void testMigrateToFolders() throws IOException {
+    Path source = appFolder.resolve(SOURCE_FILE);
+    ShardedJsonController sharded = new ShardedJsonController(SHARDED_STORE);
+    MigrationReport shardedReport =
+        StoreMigrator.migrate(source, jsonCodec, StoreMigrator.sharded(sharded));
+    assertTrue(shardedReport.isVerified(), shardedReport.toString());
+    assertEquals(12, sharded.getUser("userm").getExpenseHandler().getAllExpenses().size());
+    assertTrue(sharded.checkIfPasswordIsCorrect("usery", "password24"));
+
+    PartitionedRepository partitioned = new PartitionedRepository(PARTITIONED_STORE);
+    MigrationReport partitionedReport =
+        StoreMigrator.migrate(source, jsonCodec, StoreMigrator.partitioned(partitioned));
+    assertTrue(partitionedReport.isVerified(), partitionedReport.toString());
+    assertEquals(shardedReport.getSourceChecksum(), partitionedReport.getTargetChecksum());
+    assertEquals(25, partitioned.findAllUsers().size());
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> StoreMigrator.migrate(source, jsonCodec, StoreMigrator.sharded(sharded)));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> StoreMigrator.migrate(source, jsonCodec, StoreMigrator.partitioned(partitioned)));
+  }
+
+  /**
+   * Tests that a changed expense gives a different checksum, so a lossy migration is detected.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Test
+  public void testChecksumDetectsChanges() throws IOException {
+    StoreMigrator.Target lossy =
+        new StoreMigrator.Target() {
+          @Override
+          public void write(StoreMigrator.UserSource source) throws IOException {
+            source.readEach(user -> {});
+          }
+
+          @Override
+          public void readEach(StoreCodec.UserSink sink) throws IOException {
+            for (User user : users) {
+              List<Expense> expenses = new ArrayList<>();
+              for (Expense expense : user.getExpenseHandler().getAllExpenses()) {
+                expenses.add(
+                    new Expense(
+                        expense.getDate(), expense.getCategory(), expense.getPrice(), "Dinner"));
+              }
+              sink.accept(new User(user.getUsername(), user.getPassword(), expenses));
+            }
+          }
+        };
+    Path source = appFolder.resolve(SOURCE_FILE);
+    MigrationReport report = StoreMigrator.migrate(source, jsonCodec, lossy);
+    assertEquals(300, report.getExpenses());
+    assertFalse(report.isVerified());
+    assertTrue(report.toString().contains("DO NOT MATCH"));
+  }
+
+  /**
+   * Tests that the streaming writers of the codecs give the same bytes as writing the whole list.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  @Test
+  public void testStreamingWritersMatchWrite() throws IOException {
+    for (StoreCodec codec : new StoreCodec[] {jsonCodec, new BinaryStoreCodec()}) {
+      ByteArrayOutputStream whole = new ByteArrayOutputStream();
+      codec.write(users, whole);
+      ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+      StoreCodec.UserWriter writer = codec.openWriter(streamed);
+      for (User user : users) {
+        writer.accept(user);
+      }
+      writer.finish();
+      assertArrayEquals(whole.toByteArray(), streamed.toByteArray());
+    }
+  }
+}
@@ -0,0 +1,64 @@
+package persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/** JUnit test class for {@link StoreWatcher} class. */
+public class StoreWatcherTest {
+
+  private final Path appFolder = Paths.get(System.getProperty("user.home"), "money_spender");
+  private final Path storePath = appFolder.resolve("watchtest.json");
+  private final Path otherPath = appFolder.resolve("watchtest-other.json");
+
+  /**
+   * Deletes the test files after each test.
+   *
+   * @throws IOException If an I/O error occurs while cleaning up.
+   */
+  @AfterEach
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(storePath);
+    Files.deleteIfExists(otherPath);
+  }
+
+  /**
+   * Tests that a burst of writes to the store is reported once, and that writes to other files in
+   * the folder are not reported.
+   *
+   * @throws Exception If an I/O error occurs or the test is interrupted.
+   */
+  @Test
+  public void testBurstIsDebounced() throws Exception {
+    AtomicInteger changes = new AtomicInteger();
+    try (StoreWatcher watcher = new StoreWatcher(storePath, 300, changes::incrementAndGet)) {
+      for (int i = 0; i < 5; i++) {
+        Files.writeString(storePath, "[" + i + "]");
+        Thread.sleep(10);
+      }
+      Files.writeString(otherPath, "[]");
+      for (int i = 0; i < 300 && changes.get() == 0; i++) {
+        Thread.sleep(10);
+      }
+      Thread.sleep(400);
+      assertEquals(1, changes.get());
+
+      Files.writeString(otherPath, "[1]");
+      Thread.sleep(400);
+      assertEquals(1, changes.get());
+    }
+  }
+
+  /** Tests that a negative debounce time is rejected. */
+  @Test
+  public void testNegativeDebounce() {
+    assertThrows(IllegalArgumentException.class, () -> new StoreWatcher(storePath, -1, () -> {}));
+  }
+}
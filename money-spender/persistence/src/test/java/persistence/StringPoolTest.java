@@ -0,0 +1,37 @@
+package persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/** JUnit test class for {@link StringPool} class. */
+public class StringPoolTest {
+
+  /** Tests that equal strings are canonicalized to the first instance. */
+  @Test
+  public void testCanonical() {
+    StringPool pool = new StringPool(10);
+    String food = new String("Food");
+    assertSame(food, pool.canonical(food));
+    assertSame(food, pool.canonical(new String("Food")));
+    assertNull(pool.canonical(null));
+    assertEquals(1, pool.size());
+  }
+
+  /** Tests that a full pool returns new strings as they are and keeps its canonical instances. */
+  @Test
+  public void testBounded() {
+    StringPool pool = new StringPool(2);
+    String food = pool.canonical(new String("Food"));
+    pool.canonical("Rent");
+    String clothes = new String("Clothes");
+    assertSame(clothes, pool.canonical(clothes));
+    assertEquals("Clothes", pool.canonical(new String("Clothes")));
+    assertSame(food, pool.canonical(new String("Food")));
+    assertEquals(2, pool.size());
+    assertThrows(IllegalArgumentException.class, () -> new StringPool(0));
+  }
+}
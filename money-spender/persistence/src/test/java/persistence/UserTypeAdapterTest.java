@@ -0,0 +1,162 @@
+package persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import core.Expense;
+import core.ExpenseHandlerImpl;
+import core.User;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * JUnit test class for {@link UserTypeAdapter}, {@link ExpenseHandlerImplTypeAdapter} and {@link
+ * ExpenseTypeAdapter} classes.
+ */
+public class UserTypeAdapterTest {
+
+  private static final String USER_JSON =
+      "{\"username\":\"testuser\",\"password\":\"testpassword\",\"expenseHandler\":"
+          + "{\"expenses\":[{\"description\":\"Lunch\",\"category\":\"Food\","
+          + "\"date\":\"01.01.2024\",\"price\":10.5,\"id\":1}],\"nextId\":2}}";
+  private Gson gson;
+
+  /** Creates a Gson instance with the streaming adapters before each test. */
+  @BeforeEach
+  public void setUp() {
+    gson =
+        new GsonBuilder()
+            .registerTypeAdapter(Expense.class, new ExpenseTypeAdapter())
+            .registerTypeAdapter(ExpenseHandlerImpl.class, new ExpenseHandlerImplTypeAdapter())
+            .registerTypeAdapter(User.class, new UserTypeAdapter())
+            .excludeFieldsWithoutExposeAnnotation()
+            .create();
+  }
+
+  /** Tests that a user is written in the same format Gson produces by reflection. */
+  @Test
+  public void testWrite() {
+    User user = new User("testuser", "testpassword");
+    user.getExpenseHandler()
+        .addExpense(new Expense(LocalDate.of(2024, 1, 1), "Food", 10.5, "Lunch"));
+
+    assertEquals(USER_JSON, gson.toJson(user));
+  }
+
+  /** Tests that a user read back has the same expenses and the categories of its expenses. */
+  @Test
+  public void testRoundTrip() {
+    User user = new User("testuser", "testpassword");
+    user.getExpenseHandler().addExpense(new Expense(LocalDate.now(), "Food", 10.0, "Lunch"));
+    user.getExpenseHandler().addExpense(new Expense(LocalDate.now(), "Rent", 500.0, "May"));
+
+    User[] users = gson.fromJson(gson.toJson(new User[] {user}), User[].class);
+    assertEquals(1, users.length);
+    assertEquals("testuser", users[0].getUsername());
+    assertEquals("testpassword", users[0].getPassword());
+    assertEquals(
+        user.getExpenseHandler().getAllExpenses(), users[0].getExpenseHandler().getAllExpenses());
+    assertEquals(
+        user.getExpenseHandler().getCategories(), users[0].getExpenseHandler().getCategories());
+  }
+
+  /** Tests that the ids of the expenses and the next id are read back exactly. */
+  @Test
+  public void testReadKeepsIds() {
+    User user =
+        new User(
+            "testuser",
+            "testpassword",
+            new ExpenseHandlerImpl(List.of(expenseWithId(7), expenseWithId(3)), 10));
+    user.getExpenseHandler().removeExpense(user.getExpenseHandler().getExpenseById(7));
+
+    User read = gson.fromJson(gson.toJson(user), User.class);
+    assertEquals(List.of(3L), ids(read.getExpenseHandler().getAllExpenses()));
+    assertEquals(10, read.getExpenseHandler().getNextId());
+  }
+
+  /** Tests that a user with two expenses with the same id is rejected instead of renumbered. */
+  @Test
+  public void testReadRejectsDuplicateIds() {
+    String json =
+        "{\"username\":\"testuser\",\"password\":\"testpassword\",\"expenseHandler\":"
+            + "{\"expenses\":[{\"description\":\"A\",\"category\":\"Food\","
+            + "\"date\":\"01.01.2024\",\"price\":1.0,\"id\":2},{\"description\":\"B\","
+            + "\"category\":\"Food\",\"date\":\"02.01.2024\",\"price\":2.0,\"id\":2}]}}";
+    assertThrows(JsonSyntaxException.class, () -> gson.fromJson(json, User.class));
+  }
+
+  private static Expense expenseWithId(long id) {
+    Expense expense = new Expense(LocalDate.of(2024, 1, (int) id), "Food", id, "Expense " + id);
+    expense.setId(id);
+    return expense;
+  }
+
+  private static List<Long> ids(List<Expense> expenses) {
+    List<Long> ids = new ArrayList<>();
+    for (Expense expense : expenses) {
+      ids.add(expense.getId());
+    }
+    return ids;
+  }
+
+  /** Tests that expenses read with the same category or date share one string for it. */
+  @Test
+  public void testReadSharesCategoriesAndDates() {
+    String expensesJson =
+        "[{\"description\":\"Lunch\",\"category\":\"Food\",\"date\":\"01.01.2024\","
+            + "\"price\":10.5},{\"description\":\"Dinner\",\"category\":\"Food\","
+            + "\"date\":\"01.01.2024\",\"price\":20.0}]";
+    Expense[] first = gson.fromJson(expensesJson, Expense[].class);
+    Expense[] second = gson.fromJson(expensesJson, Expense[].class);
+    assertSame(first[0].getCategory(), first[1].getCategory());
+    assertSame(first[0].getDate(), first[1].getDate());
+    assertSame(first[0].getCategory(), second[0].getCategory());
+    assertSame(first[0].getDate(), second[1].getDate());
+  }
+
+  /** Tests that fields in any order, unknown fields and nulls are read. */
+  @Test
+  public void testReadIsLenient() {
+    User user =
+        gson.fromJson(
+            "{\"extra\":[1,2],\"expenseHandler\":{\"categories\":[\"Food\"],\"expenses\":"
+                + "[{\"price\":3,\"date\":\"02.01.2024\",\"category\":\"Food\","
+                + "\"description\":\"Snack\"}]},\"password\":\"p\",\"username\":\"u\"}",
+            User.class);
+    assertEquals("u", user.getUsername());
+    List<Expense> expenses = user.getExpenseHandler().getAllExpenses();
+    assertEquals(1, expenses.size());
+    assertEquals(3.0, expenses.get(0).getPrice());
+
+    User withoutExpenses =
+        gson.fromJson(
+            "{\"username\":\"u\",\"password\":\"p\",\"expenseHandler\":null}", User.class);
+    assertTrue(withoutExpenses.getExpenseHandler().getAllExpenses().isEmpty());
+    assertNull(gson.fromJson("null", User.class));
+  }
+
+  /** Tests that invalid stored values are reported as JSON syntax errors. */
+  @Test
+  public void testReadRejectsInvalidValues() {
+    assertThrows(
+        JsonSyntaxException.class,
+        () -> gson.fromJson("{\"username\":\"not valid\",\"password\":\"p\"}", User.class));
+    assertThrows(
+        JsonSyntaxException.class,
+        () ->
+            gson.fromJson(
+                "{\"description\":\"Lunch\",\"category\":\"Food\",\"date\":\"2024-01-01\","
+                    + "\"price\":10.0}",
+                Expense.class));
+  }
+}
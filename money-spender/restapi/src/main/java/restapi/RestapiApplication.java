@@ -8,7 +8,9 @@ import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
  * The main class for the REST API application. This class configures and runs the Spring Boot
  * application.
  *
- * <p>It excludes the JacksonAutoConfiguration to customize Jackson configuration if needed.
+ * <p>It excludes the JacksonAutoConfiguration to customize Jackson configuration if needed. With
+ * {@code moneyspender.store.warm-up} the store is loaded by a {@link StoreWarmUp} before the
+ * application reports that it is ready to accept traffic.
  */
 @SpringBootApplication(exclude = {JacksonAutoConfiguration.class})
 public class RestapiApplication {
@@ -2,23 +2,231 @@ package restapi;
 
 import core.ExpenseService;
 import java.io.IOException;
+import java.util.Locale;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import persistence.AsyncRepository;
+import persistence.BinaryStoreCodec;
+import persistence.CachingJsonController;
+import persistence.Durability;
+import persistence.ExpenseRepository;
+import persistence.GzipStoreCodec;
+import persistence.JournaledJsonController;
 import persistence.JsonController;
+import persistence.JsonRepository;
+import persistence.PartitionedRepository;
+import persistence.ShardMigrator;
+import persistence.ShardedJsonController;
+import persistence.SqlRepository;
+import persistence.StoreCodec;
+import persistence.StoreConverter;
+import persistence.UserRepository;
 
 /** Configuration class for setting up various beans in the REST API application. */
 @Configuration
 public class RestapiConfig {
 
   /**
-   * Creates and configures a JsonController bean.
+   * Creates and configures the UserRepository bean, which is also the ExpenseRepository. The layout
+   * decides where users are kept:
    *
-   * @return A JsonController instance.
-   * @throws IOException if there's an issue with the "user.json" file.
+   * <ul>
+   *   <li>{@code sql}: the embedded H2 database "moneyspender".
+   *   <li>{@code partitioned}: one file per user and month in the "partitions" folder.
+   *   <li>{@code sharded}: one file per user in the "users" folder.
+   *   <li>{@code journal}: "user.json" with a journal of changes that is folded into it.
+   *   <li>{@code file}: "user.json", or a binary or compressed file, optionally cached in memory.
+   * </ul>
+   *
+   * <p>With {@code migrate} an empty store of another layout or file format is filled from
+   * "user.json" on startup. The properties are described in the readme of the restapi module.
+   *
+   * @param layout The storage layout, either "file", "journal", "sharded", "partitioned" or
+   *     "sql".
+   * @param format The file format of the "file" layout, either "json" or "binary".
+   * @param compression The compression of the "file" layout, either "none" or "gzip".
+   * @param compressionLevel The gzip compression level, from 1 for the fastest to 9 for the
+   *     smallest.
+   * @param migrate Whether an empty sharded, partitioned, binary or SQL store should be filled from
+   *     "user.json".
+   * @param cache Whether the users should be cached in memory.
+   * @param flushIntervalMillis The time in milliseconds between two background flushes.
+   * @param watch Whether the cache should watch the file for changes by another process.
+   * @param watchDebounceMillis The time in milliseconds without changes before they are reloaded.
+   * @param compactionThresholdBytes The journal size in bytes that triggers a compaction.
+   * @param commitWindowMillis The time in milliseconds a save waits for other saves to join it.
+   * @param mappedReads Whether the "file" layout should read its file through a memory mapping.
+   * @return A UserRepository instance.
+   * @throws IOException if there's an issue with the "user.json" file, the "users" or "partitions"
+   *     folder or the database.
+   * @throws IllegalArgumentException if the layout, format or compression is unknown.
+   */
+  @Bean
+  public UserRepository userRepository(
+      @Value("${moneyspender.store.layout:file}") String layout,
+      @Value("${moneyspender.store.format:json}") String format,
+      @Value("${moneyspender.store.compression:none}") String compression,
+      @Value("${moneyspender.store.compression-level:6}") int compressionLevel,
+      @Value("${moneyspender.store.migrate:false}") boolean migrate,
+      @Value("${moneyspender.store.cache:false}") boolean cache,
+      @Value("${moneyspender.store.flush-interval-ms:1000}") long flushIntervalMillis,
+      @Value("${moneyspender.store.watch:false}") boolean watch,
+      @Value("${moneyspender.store.watch-debounce-ms:200}") long watchDebounceMillis,
+      @Value("${moneyspender.store.compaction-threshold-bytes:1048576}")
+          long compactionThresholdBytes,
+      @Value("${moneyspender.store.commit-window-ms:0}") long commitWindowMillis,
+      @Value("${moneyspender.store.mapped-reads:false}") boolean mappedReads)
+      throws IOException {
+    switch (layout) {
+      case "sql":
+        SqlRepository sqlRepository = new SqlRepository("moneyspender");
+        if (migrate) {
+          sqlRepository.importUsersIfEmpty(new JsonController("user.json").readUsersFromJson());
+        }
+        return sqlRepository;
+      case "partitioned":
+        PartitionedRepository partitionedRepository = new PartitionedRepository("partitions");
+        if (migrate) {
+          partitionedRepository.importUsersIfEmpty(
+              new JsonController("user.json").readUsersFromJson());
+        }
+        return partitionedRepository;
+      case "journal":
+        return new JsonRepository(
+            new JournaledJsonController("user.json", compactionThresholdBytes));
+      case "sharded":
+        ShardedJsonController shardedController = new ShardedJsonController("users");
+        if (migrate) {
+          ShardMigrator.migrateIfEmpty(new JsonController("user.json"), shardedController);
+        }
+        return new JsonRepository(shardedController);
+      case "file":
+        JsonController fileController =
+            createFileController(format, compression, compressionLevel, cache, flushIntervalMillis);
+        fileController.setCommitWindowMillis(commitWindowMillis);
+        fileController.setMappedReads(mappedReads);
+        if (watch && fileController instanceof CachingJsonController) {
+          ((CachingJsonController) fileController).watchForExternalChanges(watchDebounceMillis);
+        }
+        if (migrate && (format.equals("binary") || !compression.equals("none"))) {
+          StoreConverter.convertIfEmpty(new JsonController("user.json"), fileController);
+        }
+        return new JsonRepository(fileController);
+      default:
+        throw new IllegalArgumentException("Unknown store layout: " + layout);
+    }
+  }
+
+  /**
+   * Creates the ExpenseRepository bean, which is the same store as the UserRepository bean, as
+   * every store keeps both users and their expenses.
+   *
+   * @param userRepository The UserRepository bean.
+   * @return The ExpenseRepository instance.
    */
   @Bean
-  public JsonController jsonController() throws IOException {
-    return new JsonController("user.json");
+  public ExpenseRepository expenseRepository(UserRepository userRepository) {
+    return (ExpenseRepository) userRepository;
+  }
+
+  /**
+   * Creates the warm-up of the store, which loads every user at startup with {@code
+   * moneyspender.store.warm-up}, using {@code moneyspender.store.warm-up-parallelism} threads or
+   * one per processor. The application is only reported as ready once it has finished.
+   *
+   * @param userRepository The UserRepository bean.
+   * @param warmUp Whether the store should be warmed up at startup.
+   * @param parallelism The number of threads to load with, or 0 for one per processor.
+   * @return The StoreWarmUp instance.
+   */
+  @Bean
+  public StoreWarmUp storeWarmUp(
+      UserRepository userRepository,
+      @Value("${moneyspender.store.warm-up:false}") boolean warmUp,
+      @Value("${moneyspender.store.warm-up-parallelism:0}") int parallelism) {
+    int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    return new StoreWarmUp(userRepository, warmUp, threads);
+  }
+
+  /**
+   * Creates the asynchronous access to the store, which runs changes on {@code
+   * moneyspender.store.io-threads} I/O threads and acknowledges them at {@code
+   * moneyspender.store.durability}: "queued" once the change is queued, "written" once it is
+   * applied to the store and "fsynced" once it is also forced to disk. Spring closes it on
+   * shutdown, which waits for the queued changes.
+   *
+   * @param userRepository The UserRepository bean.
+   * @param expenseRepository The ExpenseRepository bean.
+   * @param threads The number of I/O threads.
+   * @param durability The durability of changes, either "queued", "written" or "fsynced".
+   * @return The AsyncRepository instance.
+   * @throws IllegalArgumentException if the durability is unknown or the number of threads is not
+   *     positive.
+   */
+  @Bean
+  public AsyncRepository asyncRepository(
+      UserRepository userRepository,
+      ExpenseRepository expenseRepository,
+      @Value("${moneyspender.store.io-threads:4}") int threads,
+      @Value("${moneyspender.store.durability:written}") String durability) {
+    Durability level;
+    try {
+      level = Durability.valueOf(durability.toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unknown store durability: " + durability, e);
+    }
+    return new AsyncRepository(userRepository, expenseRepository, threads, level);
+  }
+
+  /**
+   * Creates the controller of the "file" layout in the given format and compression.
+   *
+   * @param format The file format, either "json" or "binary".
+   * @param compression The compression, either "none" or "gzip".
+   * @param compressionLevel The gzip compression level.
+   * @param cache Whether the users should be cached in memory.
+   * @param flushIntervalMillis The time in milliseconds between two background flushes.
+   * @return A JsonController instance.
+   * @throws IOException if there's an issue with the store file.
+   * @throws IllegalArgumentException if the format or compression is unknown, or the compression
+   *     level is not between 0 and 9.
+   */
+  private JsonController createFileController(
+      String format,
+      String compression,
+      int compressionLevel,
+      boolean cache,
+      long flushIntervalMillis)
+      throws IOException {
+    String file;
+    StoreCodec codec;
+    switch (format) {
+      case "json":
+        file = "user.json";
+        codec = null;
+        break;
+      case "binary":
+        file = "user.bin";
+        codec = new BinaryStoreCodec();
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown store format: " + format);
+    }
+    switch (compression) {
+      case "none":
+        break;
+      case "gzip":
+        file += ".gz";
+        codec = new GzipStoreCodec(codec, compressionLevel);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown store compression: " + compression);
+    }
+    if (cache) {
+      return new CachingJsonController(file, flushIntervalMillis, codec);
+    }
+    return new JsonController(file, codec);
   }
 
   /**
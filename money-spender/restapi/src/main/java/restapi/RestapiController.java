@@ -10,6 +10,8 @@ import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
@@ -68,7 +70,9 @@ public class RestapiController {
 
   /**
    * Endpoint for user authentication. This method checks the provided credentials and responds with
-   * the corresponding user details or an unauthorized status as needed.
+   * the corresponding user details or an unauthorized status as needed. Stores that authenticate
+   * without reading the expenses of the user respond with only the username and password; the
+   * expenses are fetched with the user endpoint.
    *
    * @param credentials A map containing "username" and "password" as keys to authenticate the user.
    * @return A ResponseEntity containing the authenticated user or an unauthorized status.
@@ -109,29 +113,52 @@ public class RestapiController {
 
   /**
    * Endpoint for creating a new expense for a user. Handles the HTTP POST request to add an expense
-   * associated with a given username.
+   * associated with a given username. The request thread is released while the change waits on
+   * the I/O threads of the store, and the response is written once the change is done.
    *
    * @param username The username for which the expense is being added.
    * @param credentials The map containing expense details.
-   * @return A ResponseEntity with the updated user data or an appropriate error status.
+   * @return A future of a ResponseEntity with the updated user data, an empty 202 Accepted if the
+   *     expense was only queued, or an appropriate error status.
    */
   @PostMapping("/expense/add/{username}")
-  public ResponseEntity<User> addExpenseForUser(
-      @PathVariable String username, @RequestBody Map<String, String> credentials)
-      throws IOException {
+  public CompletableFuture<ResponseEntity<User>> addExpenseForUser(
+      @PathVariable String username, @RequestBody Map<String, String> credentials) {
     try {
-      User user = restapiService.createNewExpense(username, credentials);
-      return ResponseEntity.ok(user);
+      return restapiService
+          .createNewExpense(username, credentials)
+          .handle(
+              (user, error) -> {
+                if (error != null) {
+                  return addExpenseFailure(error);
+                }
+                if (user == null) {
+                  return ResponseEntity.accepted().build();
+                }
+                return ResponseEntity.ok(user);
+              });
+    } catch (IOException | RuntimeException e) {
+      return CompletableFuture.completedFuture(addExpenseFailure(e));
+    }
+  }
 
-    } catch (NumberFormatException e) {
+  /**
+   * Maps an error while adding an expense to the status of the response.
+   *
+   * @param error The error, possibly wrapped in a CompletionException.
+   * @return A ResponseEntity with the status of the error.
+   */
+  private static ResponseEntity<User> addExpenseFailure(Throwable error) {
+    Throwable cause =
+        error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    if (cause instanceof NumberFormatException) {
       return ResponseEntity.status(HttpStatus.NOT_ACCEPTABLE).build();
-    } catch (IllegalArgumentException e) {
+    } else if (cause instanceof IllegalArgumentException) {
       return ResponseEntity.badRequest().build();
-    } catch (IOException e) {
+    } else if (cause instanceof IOException) {
       return ResponseEntity.status(HttpStatus.EXPECTATION_FAILED).build();
-    } catch (RuntimeException e) {
-      return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
     }
+    return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
   }
 
   /**
@@ -139,15 +166,27 @@ public class RestapiController {
    *
    * @param username The username for which the expense is deleted.
    * @param expense The expense to be deleted.
-   * @return The updated user object.
-   * @throws IOException if there's an issue with deleting the expense.
+   * @return A future of the updated user object, written as the response once it completes.
    */
   @DeleteMapping("/expense/delete/{username}")
-  public User deleteExpenseForUser(@PathVariable String username, @RequestBody Expense expense)
-      throws IOException {
+  public CompletableFuture<User> deleteExpenseForUser(
+      @PathVariable String username, @RequestBody Expense expense) {
     return restapiService.deleteExpenseForUser(username, expense);
   }
 
+  /**
+   * Endpoint for deleting an expense for a user by its id.
+   *
+   * @param username The username for which the expense is deleted.
+   * @param id The id of the expense to be deleted.
+   * @return A future of the updated user object, written as the response once it completes.
+   */
+  @DeleteMapping("/expense/delete/{username}/{id}")
+  public CompletableFuture<User> deleteExpenseByIdForUser(
+      @PathVariable String username, @PathVariable long id) {
+    return restapiService.deleteExpenseByIdForUser(username, id);
+  }
+
   /**
    * Endpoint for retrieving a set of expense categories associated with a specific user.
    *
@@ -223,12 +262,37 @@ public class RestapiController {
         category = URLDecoder.decode(category, StandardCharsets.UTF_8.toString());
       }
       List<Expense> expenses = restapiService.filterExpensesForUser(username, category, start, end);
-      double totalValue = restapiService.getTotalExpensesValueOfList(expenses);
-      return ResponseEntity.ok(new ListAndValueContainer(expenses, totalValue));
+      ListAndValueContainer container = new ListAndValueContainer();
+      container.setExpenses(expenses);
+      container.setTotalMinorUnits(restapiService.getTotalMinorUnitsOfList(expenses));
+      return ResponseEntity.ok(container);
     } catch (IllegalArgumentException e) {
       return ResponseEntity.badRequest().build();
     } catch (IOException e) {
       return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
     }
   }
+
+  /**
+   * Endpoint for retrieving the commit metrics of the store.
+   *
+   * @return The commit metrics by name.
+   */
+  @GetMapping("/store/metrics")
+  public Map<String, Number> getCommitMetrics() {
+    return restapiService.getCommitMetrics();
+  }
+
+  /**
+   * Endpoint for checking whether the application is ready to accept traffic, which it only is
+   * once the store has been warmed up.
+   *
+   * @return A ResponseEntity with the report of the warm-up, with status OK if the application is
+   *     ready and SERVICE_UNAVAILABLE otherwise.
+   */
+  @GetMapping("/store/readiness")
+  public ResponseEntity<Map<String, Number>> getReadiness() {
+    HttpStatus status = restapiService.isReady() ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE;
+    return ResponseEntity.status(status).body(restapiService.getWarmUpReport());
+  }
 }
@@ -2,44 +2,40 @@ package restapi;
 
 import core.Expense;
 import core.ExpenseService;
+import core.LazyUser;
 import core.User;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
 import org.springframework.stereotype.Service;
-import persistence.JsonController;
+import persistence.AsyncRepository;
+import persistence.Durability;
+import persistence.ExpenseRepository;
+import persistence.UserRepository;
 
-/** Service class for handling user and expense-related operations in the REST API. */
+/**
+ * Service class for handling user and expense-related operations in the REST API. Users and
+ * expenses are kept by the configured {@link UserRepository} and {@link ExpenseRepository}, and
+ * changes to expenses run on the I/O threads of the {@link AsyncRepository}.
+ */
 @Service
 public class RestapiService {
 
-  @Autowired private JsonController jsonController;
+  @Autowired private UserRepository userRepository;
+  @Autowired private ExpenseRepository expenseRepository;
+  @Autowired private AsyncRepository asyncRepository;
   @Autowired private ExpenseService expenseService;
-
-  /**
-   * Saves the user data to a file.
-   *
-   * @param user The user data to be saved.
-   * @throws IOException if there's an issue with saving the file.
-   */
-  private void saveFile(User user) throws IOException {
-    jsonController.saveNewUserToJson(user);
-  }
-
-  /**
-   * Finds and retrieves a specific expense from a user's list of expenses based on the given
-   * expense object.
-   *
-   * @param user1 The user for whom to search for the expense.
-   * @param expense The expense object to find within the user's expenses.
-   * @return The expense object if found, or null if the expense is not found.
-   */
-  private Expense findExpense(User user, Expense expense) {
-    return expenseService.findExpense(user, expense);
-  }
+  @Autowired private StoreWarmUp storeWarmUp;
+  @Autowired private ApplicationAvailability availability;
 
   /**
    * Validates the category provided by the user. This method checks if the user has provided a
@@ -88,13 +84,17 @@ public class RestapiService {
   }
 
   /**
-   * Sets the file path for the user data.
+   * Sets the file path for the user data. The call is ignored unless the store is named by a file,
+   * so the SQL and partitioned stores keep the database or folder they were configured with when a
+   * client such as the UI sends "user.json" at startup.
    *
    * @param filePath The file path to set.
    * @throws IOException if there's an issue with setting the file path.
    */
   public void setFilePath(String filePath) throws IOException {
-    jsonController.setFilePath(filePath);
+    if (userRepository.isNamedByFile()) {
+      userRepository.setStoreName(filePath);
+    }
   }
 
   /**
@@ -105,16 +105,13 @@ public class RestapiService {
    * @throws IOException if there's an issue with user creation.
    */
   public User createUserIfNotExists(String username, String password) throws IOException {
-    if (!jsonController.checkIfUserNameExists(username)) {
-      User user = new User(username, password);
-      saveFile(user);
-      return user;
-    }
-    return null;
+    User user = new User(username, password);
+    return userRepository.createUser(user) ? user : null;
   }
 
   /**
-   * Authenticates a user based on the provided username and password.
+   * Authenticates a user based on the provided username and password. The repository may return
+   * a user whose expenses are only read when accessed, and they are not read here.
    *
    * @param username The username to authenticate.
    * @param password The user's password.
@@ -122,11 +119,7 @@ public class RestapiService {
    * @throws IOException if there's an issue with user authentication.
    */
   public User authenticateUser(String username, String password) throws IOException {
-    if (jsonController.checkIfUserNameExists(username)
-        && jsonController.checkIfPasswordIsCorrect(username, password)) {
-      return jsonController.getUser(username);
-    }
-    return null;
+    return userRepository.authenticate(username, password);
   }
 
   /**
@@ -136,35 +129,52 @@ public class RestapiService {
    * @throws IOException if there's an issue with retrieving user data.
    */
   public List<User> getAllUsers() throws IOException {
-    return jsonController.readUsersFromJson();
+    return userRepository.findAllUsers();
   }
 
   /**
-   * Retrieves a user by their username.
+   * Retrieves a user by their username. The user is read on the I/O thread of the user after the
+   * changes queued before it, so a client that was only told a change was queued sees it here.
    *
    * @param username The username to search for.
    * @return The user object corresponding to the provided username.
    * @throws IOException if there's an issue with user retrieval.
    */
   public User getUserByUsername(String username) throws IOException {
-    return jsonController.getUser(username);
+    try {
+      return withExpenses(asyncRepository.loadUserAsync(username).join());
+    } catch (CompletionException e) {
+      Throwable cause = unwrap(e);
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException("Could not read user " + username, cause);
+    }
   }
 
   /**
    * Creates a new expense for a specific user and records it. This method wraps the process of
    * validating expense data, creating an expense instance, and persisting the expense information
-   * for the given username.
+   * for the given username. The repository applies the addition as one step, so concurrent changes
+   * to the same user are not lost. The returned future completes once the change has reached the
+   * configured durability, without holding the calling thread; when the change is only queued, the
+   * changed user is not known yet and the future completes with null.
    *
    * @param username The username for whom the expense record is to be created.
    * @param credentials A map of the expense data, including date, category, description, and price
    *     details.
-   * @throws IllegalArgumentException if the provided category is unrecognized or the price is
-   *     invalid (e.g., negative or non-numeric).
-   * @throws IOException if there is an issue with writing the expense data to the file system.
+   * @return A future of the updated user, or of null if the change was only queued. It completes
+   *     with an IllegalArgumentException if the user does not exist, and with an IOException if
+   *     there is an issue with writing the expense data to the file system.
+   * @throws IllegalArgumentException if the provided category is unrecognized, the price is
+   *     invalid (e.g., negative or non-numeric) or a queued expense is for an unknown user.
+   * @throws IOException if there is an issue with checking whether the user exists.
    */
-  public User createNewExpense(String username, Map<String, String> credentials)
+  public CompletableFuture<User> createNewExpense(String username, Map<String, String> credentials)
       throws IllegalArgumentException, IOException {
-    User user = getUserByUsername(username);
     String date = credentials.get("date");
     String category = credentials.get("newCategory");
     String dropDownCategory = credentials.get("dropDownCategory");
@@ -174,10 +184,22 @@ public class RestapiService {
     String chosenCategory = validateCategory(category, dropDownCategory);
     double priceValue = convertPrice(price);
 
-    expenseService.addExpenseForUser(
-        user, new Expense(date, chosenCategory, priceValue, description));
-    saveFile(user);
-    return user;
+    Expense expense = new Expense(date, chosenCategory, priceValue, description);
+    boolean queued = asyncRepository.getDurability() == Durability.QUEUED;
+    if (queued && !userRepository.existsUser(username)) {
+      throw new IllegalArgumentException("User not found.");
+    }
+    CompletableFuture<User> added = whenApplied(asyncRepository.addExpenseAsync(username, expense));
+    if (queued) {
+      return added;
+    }
+    return added.thenApply(
+        user -> {
+          if (user == null) {
+            throw new IllegalArgumentException("User not found.");
+          }
+          return user;
+        });
   }
 
   /**
@@ -188,8 +210,7 @@ public class RestapiService {
    * @throws IOException if there's an issue with retrieving expenses.
    */
   public List<Expense> getAllExpensesForUser(String username) throws IOException {
-    User user = getUserByUsername(username);
-    return expenseService.getAllExpensesForUser(user);
+    return expenseRepository.findExpenses(username, null, null, null);
   }
 
   /**
@@ -200,29 +221,95 @@ public class RestapiService {
    * @throws IOException if there's an issue with retrieving expense categories.
    */
   public Set<String> getCategoriesForUser(String username) throws IOException {
-    return expenseService.getCategoriesForUser(getUserByUsername(username));
+    return expenseRepository.findCategories(username);
   }
 
   /**
-   * Deletes an expense for a user and saves the updated data to the file.
+   * Deletes an expense for a user and saves the updated data. The repository applies the removal as
+   * one step, so concurrent changes to the same user are not lost. The returned future completes
+   * once the change has reached the configured durability.
    *
    * @param username The username for which the expense is deleted.
    * @param expense The expense to be deleted.
-   * @return The updated user object.
-   * @throws IOException if there's an issue with deleting the expense or saving the file.
+   * @return A future of the updated user object, or of null if the user does not exist or the
+   *     change was only queued. It completes with an IOException if there's an issue with deleting
+   *     the expense or saving the file.
+   */
+  public CompletableFuture<User> deleteExpenseForUser(String username, Expense expense) {
+    return whenApplied(asyncRepository.removeExpenseAsync(username, expense));
+  }
+
+  /**
+   * Deletes the expense with the given id for a user and saves the updated data. Unlike {@link
+   * #deleteExpenseForUser(String, Expense)}, the expense is looked up by its id and does not have
+   * to be sent in full. Deleting an id the user does not have leaves the user unchanged.
+   *
+   * @param username The username for which the expense is deleted.
+   * @param id The id of the expense to be deleted.
+   * @return A future of the updated user object, or of null if the user does not exist or the
+   *     change was only queued. It completes with an IOException if there's an issue with deleting
+   *     the expense or saving the file.
+   */
+  public CompletableFuture<User> deleteExpenseByIdForUser(String username, long id) {
+    return whenApplied(asyncRepository.removeExpenseByIdAsync(username, id));
+  }
+
+  /**
+   * Copies a user whose expenses are only loaded when accessed into a user that holds them, so the
+   * expenses are part of the response. Other users are returned as they are.
+   *
+   * @param user The user, or null.
+   * @return A user that holds its expenses, or null if the user is null.
+   */
+  private static User withExpenses(User user) {
+    return user instanceof LazyUser ? new User(user) : user;
+  }
+
+  /**
+   * Follows a change on the I/O threads of the store without waiting for it. The returned future
+   * completes with the changed user holding its expenses, or with the error of the change as it
+   * would have been thrown by the repository itself.
+   *
+   * @param future The future of the change.
+   * @return The future of the changed user.
    */
-  public User deleteExpenseForUser(String username, Expense expense) throws IOException {
-    User user = getUserByUsername(username);
-    Expense foundExpense = findExpense(user, expense);
-    expenseService.removeExpenseForUser(user, foundExpense);
-    saveFile(user);
-    return user;
+  private static CompletableFuture<User> whenApplied(CompletableFuture<User> future) {
+    CompletableFuture<User> applied = new CompletableFuture<>();
+    future.whenComplete(
+        (user, error) -> {
+          if (error != null) {
+            applied.completeExceptionally(unwrap(error));
+            return;
+          }
+          try {
+            applied.complete(withExpenses(user));
+          } catch (RuntimeException e) {
+            applied.completeExceptionally(unwrap(e));
+          }
+        });
+    return applied;
+  }
+
+  /**
+   * Unwraps the error of a change to the exception the repository would have thrown.
+   *
+   * @param error The error of the change.
+   * @return The exception the repository would have thrown.
+   */
+  private static Throwable unwrap(Throwable error) {
+    Throwable cause =
+        error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    if (cause instanceof UncheckedIOException) {
+      return cause.getCause();
+    }
+    return cause;
   }
 
   /**
    * Filters and sorts a user's expenses based on the specified category and date range. This method
-   * first filters the expenses by the provided category and the date range. After filtering, the
-   * expenses are sorted in descending order according to the price.
+   * first filters the expenses by the provided category and the date range, which the repository
+   * may answer from an index or from only the monthly partitions the range overlaps. After
+   * filtering, the expenses are sorted in descending order according to the price.
    *
    * @param username The user whose expenses are to be filtered.
    * @param selectedCategory The category for which expenses are to be filtered.
@@ -237,8 +324,10 @@ public class RestapiService {
   public List<Expense> filterExpensesForUser(
       String username, String selectedCategory, LocalDate start, LocalDate end)
       throws IllegalArgumentException, IOException {
-    return expenseService.filterExpensesForUser(
-        getUserByUsername(username), selectedCategory, start, end);
+    List<Expense> expenses =
+        new ArrayList<>(expenseRepository.findExpenses(username, selectedCategory, start, end));
+    expenses.sort((e1, e2) -> Long.compare(e2.toMinorUnits(), e1.toMinorUnits()));
+    return expenses;
   }
 
   /**
@@ -251,4 +340,44 @@ public class RestapiService {
   public double getTotalExpensesValueOfList(List<Expense> expenses) {
     return expenseService.calculateTotalExpenseValueForList(expenses);
   }
+
+  /**
+   * Calculates the exact total value of a list of expenses in minor units (øre).
+   *
+   * @param expenses the list of expenses to calculate the total value of
+   * @return the total value of all expenses in minor units
+   */
+  public long getTotalMinorUnitsOfList(List<Expense> expenses) {
+    return expenseService.calculateTotalMinorUnitsForList(expenses);
+  }
+
+  /**
+   * Retrieves the metrics of the writes of the store, such as the number of saves per write and how
+   * long a save waited until it was on disk.
+   *
+   * @return The commit metrics by name, or an empty map if the store has no such metrics.
+   */
+  public Map<String, Number> getCommitMetrics() {
+    return userRepository.getMetrics();
+  }
+
+  /**
+   * Checks whether the application is ready to accept traffic, which is only the case once the
+   * store has been warmed up.
+   *
+   * @return True if the application is ready; otherwise, false.
+   */
+  public boolean isReady() {
+    return availability.getReadinessState() == ReadinessState.ACCEPTING_TRAFFIC;
+  }
+
+  /**
+   * Retrieves the report of the warm-up of the store, such as how many users were loaded and how
+   * long it took.
+   *
+   * @return The values of the report by name, or an empty map if the store has not been warmed up.
+   */
+  public Map<String, Number> getWarmUpReport() {
+    return storeWarmUp.getReport();
+  }
 }
@@ -0,0 +1,77 @@
+package restapi;
+
+import java.io.IOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.Map;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import persistence.UserRepository;
+import persistence.WarmUpReport;
+
+/**
+ * Loads every user of the store at startup, so the first requests do not pay for a cold store.
+ * Spring Boot runs it before it reports the application as ready to accept traffic, so readiness
+ * is only reported once the warm-up has finished. Only stores that keep their users in memory are
+ * warmed up; for other stores the loaded users would be thrown away, so the warm-up is skipped with
+ * a warning and no report.
+ */
+public class StoreWarmUp implements ApplicationRunner {
+
+  private static final Logger LOGGER = System.getLogger(StoreWarmUp.class.getName());
+
+  private final UserRepository userRepository;
+  private final boolean enabled;
+  private final int parallelism;
+  private volatile WarmUpReport report;
+
+  /**
+   * Constructs the warm-up of a store.
+   *
+   * @param userRepository The store to warm up.
+   * @param enabled Whether the store should be warmed up.
+   * @param parallelism The number of threads to load with.
+   * @throws IllegalArgumentException If the warm-up is enabled and the parallelism is not positive.
+   */
+  public StoreWarmUp(UserRepository userRepository, boolean enabled, int parallelism) {
+    if (enabled && parallelism <= 0) {
+      throw new IllegalArgumentException("Parallelism must be positive.");
+    }
+    this.userRepository = userRepository;
+    this.enabled = enabled;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Warms up the store if enabled and logs the report.
+   *
+   * @param args The arguments of the application.
+   * @throws IOException If an error occurs while reading the store.
+   */
+  @Override
+  public void run(ApplicationArguments args) throws IOException {
+    if (!enabled) {
+      return;
+    }
+    if (!userRepository.keepsUsersInMemory()) {
+      LOGGER.log(
+          Level.WARNING,
+          "Skipping the store warm-up: the store does not keep users in memory, "
+              + "set moneyspender.store.cache with the file layout to warm it up");
+      return;
+    }
+    LOGGER.log(Level.INFO, "Warming up the store with {0} threads", parallelism);
+    report = userRepository.warmUp(parallelism);
+    LOGGER.log(Level.INFO, "Store warm-up finished: {0}", report);
+  }
+
+  /**
+   * Retrieves the report of the warm-up.
+   *
+   * @return The values of the report by name, or an empty map if the store has not been warmed up.
+   */
+  public Map<String, Number> getReport() {
+    WarmUpReport current = report;
+    return current == null ? Map.of() : current.toMap();
+  }
+}
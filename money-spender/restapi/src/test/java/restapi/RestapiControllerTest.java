@@ -7,11 +7,13 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -24,9 +26,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -36,6 +40,9 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 /** JUnit test class for {@link RestapiController} class. */
@@ -199,10 +206,10 @@ public class RestapiControllerTest {
   @Test
   void testAddExpenseForUserSuccessfully() throws Exception {
     User user = new User(username, password);
-    when(restapiService.createNewExpense(eq(username), any())).thenReturn(user);
+    when(restapiService.createNewExpense(eq(username), any()))
+        .thenReturn(CompletableFuture.completedFuture(user));
 
-    mockMvc
-        .perform(
+    performAsync(
             post(ADD_EXPENSE_ENDPOINT + username)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(credentials)))
@@ -210,14 +217,26 @@ public class RestapiControllerTest {
         .andExpect(jsonPath("$.username").value(username));
   }
 
+  /** Test for adding an expense that is only queued, which is acknowledged without a body. */
+  @Test
+  void testAddExpenseForUserQueued() throws Exception {
+    when(restapiService.createNewExpense(eq(username), any()))
+        .thenReturn(CompletableFuture.completedFuture(null));
+
+    performAsync(
+            post(ADD_EXPENSE_ENDPOINT + username)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(credentials)))
+        .andExpect(status().isAccepted());
+  }
+
   /** Test for adding an expense for a user when IllegalArgumentException is thrown. */
   @Test
   void testAddExpenseForUserWhenIllegalArgumentException() throws Exception {
     when(restapiService.createNewExpense(eq(username), any()))
         .thenThrow(new IllegalArgumentException());
 
-    mockMvc
-        .perform(
+    performAsync(
             post(ADD_EXPENSE_ENDPOINT + username)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(credentials)))
@@ -232,8 +251,7 @@ public class RestapiControllerTest {
 
     when(restapiService.createNewExpense(eq(username), any())).thenThrow(RuntimeException.class);
 
-    mockMvc
-        .perform(
+    performAsync(
             post(ADD_EXPENSE_ENDPOINT + username)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(credentials)))
@@ -246,8 +264,7 @@ public class RestapiControllerTest {
     when(restapiService.createNewExpense(eq(username), any()))
         .thenThrow(new NumberFormatException());
 
-    mockMvc
-        .perform(
+    performAsync(
             post(ADD_EXPENSE_ENDPOINT + username)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(credentials)))
@@ -259,12 +276,38 @@ public class RestapiControllerTest {
   void testAddExpenseForUserWhenIOException() throws Exception {
     when(restapiService.createNewExpense(eq(username), any())).thenThrow(new IOException());
 
-    mockMvc
-        .perform(
+    performAsync(
+            post(ADD_EXPENSE_ENDPOINT + username)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(credentials)))
+        .andExpect(status().isExpectationFailed());
+  }
+
+  /** Test for adding an expense whose change fails on the I/O threads of the store. */
+  @Test
+  void testAddExpenseForUserWhenChangeFails() throws Exception {
+    when(restapiService.createNewExpense(eq(username), any()))
+        .thenReturn(CompletableFuture.failedFuture(new IOException()));
+
+    performAsync(
             post(ADD_EXPENSE_ENDPOINT + username)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(credentials)))
         .andExpect(status().isExpectationFailed());
+
+    when(restapiService.createNewExpense(eq(username), any()))
+        .thenReturn(
+            CompletableFuture.completedFuture((User) null)
+                .thenApply(
+                    user -> {
+                      throw new IllegalArgumentException("User not found.");
+                    }));
+
+    performAsync(
+            post(ADD_EXPENSE_ENDPOINT + username)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(credentials)))
+        .andExpect(status().isBadRequest());
   }
 
   /** Test for creating, deleting, and filtering expenses. */
@@ -274,16 +317,17 @@ public class RestapiControllerTest {
     Expense testExpense = new Expense(LocalDate.now(), "TestCategory", 50.0, "TestDescription");
 
     User user = new User(username, "password");
-    when(restapiService.createNewExpense(eq(username), any())).thenReturn(user);
+    when(restapiService.createNewExpense(eq(username), any()))
+        .thenReturn(CompletableFuture.completedFuture(user));
 
-    mockMvc
-        .perform(
+    performAsync(
             post(ADD_EXPENSE_ENDPOINT + username)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(testExpense)))
         .andExpect(status().isOk());
 
-    when(restapiService.deleteExpenseForUser(eq(username), any(Expense.class))).thenReturn(user);
+    when(restapiService.deleteExpenseForUser(eq(username), any(Expense.class)))
+        .thenReturn(CompletableFuture.completedFuture(user));
 
     mockMvc
         .perform(
@@ -321,8 +365,7 @@ public class RestapiControllerTest {
 
     when(restapiService.filterExpensesForUser(username, category, start, end))
         .thenReturn(expectedFilteredExpenses);
-    when(restapiService.getTotalExpensesValueOfList(expectedFilteredExpenses))
-        .thenReturn(expectedTotalValue);
+    when(restapiService.getTotalMinorUnitsOfList(expectedFilteredExpenses)).thenReturn(10_000L);
 
     ResponseEntity<ListAndValueContainer> response =
         restapiController.getFilteredExpensesAndValueForUser(username, category, start, end);
@@ -331,6 +374,7 @@ public class RestapiControllerTest {
     assertNotNull(response.getBody());
     assertEquals(expectedFilteredExpenses, response.getBody().getExpenses());
     assertEquals(expectedTotalValue, response.getBody().getTotal(), 0.01);
+    assertEquals(10_000, response.getBody().getTotalMinorUnits());
   }
 
   /** Test for getting filtered expenses and their total value with IllegalArgumentException. */
@@ -364,8 +408,7 @@ public class RestapiControllerTest {
     double expectedTotalValue = 0.0;
     when(restapiService.filterExpensesForUser(username, null, null, null))
         .thenReturn(expectedFilteredExpenses);
-    when(restapiService.getTotalExpensesValueOfList(expectedFilteredExpenses))
-        .thenReturn(expectedTotalValue);
+    when(restapiService.getTotalMinorUnitsOfList(expectedFilteredExpenses)).thenReturn(0L);
 
     ResponseEntity<ListAndValueContainer> response =
         restapiController.getFilteredExpensesAndValueForUser(username, null, null, null);
@@ -434,13 +477,24 @@ public class RestapiControllerTest {
     Expense expense = new Expense(LocalDate.now(), "TestCategory", 50.0, "TestDescription");
     User expectedUserAfterDeletion = new User(username, "password");
     when(restapiService.deleteExpenseForUser(username, expense))
-        .thenReturn(expectedUserAfterDeletion);
-    User response = restapiController.deleteExpenseForUser(username, expense);
+        .thenReturn(CompletableFuture.completedFuture(expectedUserAfterDeletion));
+    User response = restapiController.deleteExpenseForUser(username, expense).join();
 
     assertNotNull(response);
     assertEquals(expectedUserAfterDeletion, response);
   }
 
+  /** Test for deleting an expense by its id successfully. */
+  @Test
+  void testDeleteExpenseByIdForUser_Success() throws IOException {
+    User expectedUserAfterDeletion = new User(username, "password");
+    when(restapiService.deleteExpenseByIdForUser(username, 3))
+        .thenReturn(CompletableFuture.completedFuture(expectedUserAfterDeletion));
+    User response = restapiController.deleteExpenseByIdForUser(username, 3).join();
+
+    assertEquals(expectedUserAfterDeletion, response);
+  }
+
   /** Test for getting categories for a user successfully. */
   @Test
   void testGetCategoriesForUser_Success() throws IOException {
@@ -454,4 +508,48 @@ public class RestapiControllerTest {
     assertNotNull(response);
     assertEquals(expectedCategories, response);
   }
+
+  /** Test for getting the commit metrics of the store. */
+  @Test
+  void testGetCommitMetrics() throws Exception {
+    Map<String, Number> metrics = new LinkedHashMap<>();
+    metrics.put("commitCount", 2L);
+    metrics.put("averageBatchSize", 1.5);
+    when(restapiService.getCommitMetrics()).thenReturn(metrics);
+
+    mockMvc
+        .perform(get("/moneyspender/store/metrics"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.commitCount").value(2))
+        .andExpect(jsonPath("$.averageBatchSize").value(1.5));
+  }
+
+  /** Test that the readiness endpoint reports the warm-up and is only OK once ready. */
+  @Test
+  void testGetReadiness() throws Exception {
+    when(restapiService.getWarmUpReport()).thenReturn(Map.of("users", 2L));
+    when(restapiService.isReady()).thenReturn(false);
+    mockMvc
+        .perform(get("/moneyspender/store/readiness"))
+        .andExpect(status().isServiceUnavailable());
+
+    when(restapiService.isReady()).thenReturn(true);
+    mockMvc
+        .perform(get("/moneyspender/store/readiness"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.users").value(2));
+  }
+
+  /**
+   * Performs a request to an endpoint that answers with a future, and dispatches the completed
+   * future to get the response.
+   *
+   * @param builder The request to perform.
+   * @return The actions on the response.
+   * @throws Exception If the request fails.
+   */
+  private ResultActions performAsync(RequestBuilder builder) throws Exception {
+    MvcResult result = mockMvc.perform(builder).andExpect(request().asyncStarted()).andReturn();
+    return mockMvc.perform(asyncDispatch(result));
+  }
 }
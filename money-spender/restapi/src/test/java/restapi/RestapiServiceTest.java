@@ -5,41 +5,65 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.Mockito.doNothing;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import core.Expense;
+import core.ExpenseHandlerImpl;
 import core.ExpenseService;
+import core.LazyUser;
 import core.User;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoExtension;
-import persistence.JsonController;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.test.util.ReflectionTestUtils;
+import persistence.AsyncRepository;
+import persistence.CommitMetrics;
+import persistence.Durability;
+import persistence.ExpenseRepository;
+import persistence.PartitionedRepository;
+import persistence.UserRepository;
+import persistence.WarmUpReport;
 
 /** JUnit test class for {@link RestapiService} class. */
 @ExtendWith(MockitoExtension.class)
 public class RestapiServiceTest {
 
-  @Mock private JsonController jsonController;
+  @Mock private UserRepository userRepository;
+  @Mock private ExpenseRepository expenseRepository;
   @Mock private ExpenseService expenseService;
+  @Mock private StoreWarmUp storeWarmUp;
+  @Mock private ApplicationAvailability availability;
   @InjectMocks private RestapiService restapiService;
 
   private static final String USERNAME = "username";
@@ -47,12 +71,27 @@ public class RestapiServiceTest {
   private static final String TEST_FILE_PATH = "testFilePath.json";
   private User testUser;
   private Expense testExpense;
+  private AsyncRepository asyncRepository;
 
   @BeforeEach
   void setUp() {
     MockitoAnnotations.openMocks(this);
     testUser = new User("username", "password");
     testExpense = new Expense(LocalDate.now(), "category", 10.0, "description");
+    useDurability(Durability.WRITTEN);
+  }
+
+  @AfterEach
+  void tearDown() {
+    asyncRepository.close();
+  }
+
+  private void useDurability(Durability durability) {
+    if (asyncRepository != null) {
+      asyncRepository.close();
+    }
+    asyncRepository = new AsyncRepository(userRepository, expenseRepository, 1, durability);
+    ReflectionTestUtils.setField(restapiService, "asyncRepository", asyncRepository);
   }
 
   private Map<String, String> createExpenseCredentials(
@@ -66,10 +105,12 @@ public class RestapiServiceTest {
     return credentials;
   }
 
-  private void mockUserAndExpenseServiceBehavior() throws IOException {
-    when(jsonController.getUser(USERNAME)).thenReturn(testUser);
-    doNothing().when(expenseService).addExpenseForUser(any(User.class), any(Expense.class));
-    doNothing().when(jsonController).saveNewUserToJson(any(User.class));
+  private void mockAddExpense() throws IOException {
+    when(expenseRepository.addExpense(eq(USERNAME), any(Expense.class))).thenReturn(testUser);
+  }
+
+  private static Throwable failureOf(CompletableFuture<User> future) {
+    return assertThrows(CompletionException.class, future::join).getCause();
   }
 
   /**
@@ -79,16 +120,33 @@ public class RestapiServiceTest {
    */
   @Test
   void testCreateUserIfExistsAndNonExistence() throws IOException {
-    when(jsonController.checkIfUserNameExists(USERNAME)).thenReturn(false);
+    when(userRepository.createUser(any(User.class))).thenReturn(true);
     User nonExistingUserResult = restapiService.createUserIfNotExists(USERNAME, PASSWORD);
     assertNotNull(nonExistingUserResult, "Newly created user should not be null");
     assertEquals(USERNAME, nonExistingUserResult.getUsername(), "Username should match");
 
-    when(jsonController.checkIfUserNameExists("existingUser")).thenReturn(true);
+    when(userRepository.createUser(any(User.class))).thenReturn(false);
     User existingUserResult = restapiService.createUserIfNotExists("existingUser", "password");
     assertNull(existingUserResult, "Should return null for existing user");
   }
 
+  /**
+   * Test that a user whose expenses are loaded when accessed is returned with its expenses.
+   *
+   * @throws IOException if there's an issue with retrieving the user.
+   */
+  @Test
+  void testGetUserByUsernameHoldsExpenses() throws IOException {
+    Expense expense = new Expense(LocalDate.of(2024, 1, 1), "Food", 10.0, "Lunch");
+    when(userRepository.findUser(USERNAME))
+        .thenReturn(
+            new LazyUser(USERNAME, PASSWORD, () -> new ExpenseHandlerImpl(List.of(expense))));
+
+    User user = restapiService.getUserByUsername(USERNAME);
+    assertFalse(user instanceof LazyUser, "The user should hold its expenses");
+    assertEquals(List.of(expense), user.getExpenseHandler().getAllExpenses());
+  }
+
   /**
    * Test user authentication scenarios, including correct authentication, non-existing user, and
    * incorrect password.
@@ -97,26 +155,24 @@ public class RestapiServiceTest {
    */
   @Test
   void testAuthenticateUserScenarios() throws IOException {
-    when(jsonController.checkIfUserNameExists(USERNAME)).thenReturn(true);
-    when(jsonController.checkIfPasswordIsCorrect(USERNAME, PASSWORD)).thenReturn(true);
-    when(jsonController.getUser(USERNAME)).thenReturn(new User(USERNAME, PASSWORD));
+    when(userRepository.authenticate(USERNAME, PASSWORD))
+        .thenReturn(new User(USERNAME, PASSWORD));
 
     User resultWithCorrectPassword = restapiService.authenticateUser(USERNAME, PASSWORD);
     assertNotNull(resultWithCorrectPassword, "User should be authenticated with correct password");
     assertEquals(
         USERNAME, resultWithCorrectPassword.getUsername(), "Authenticated username should match");
 
-    reset(jsonController);
+    reset(userRepository);
 
-    when(jsonController.checkIfUserNameExists(USERNAME)).thenReturn(false);
+    when(userRepository.authenticate("nonexistinguser", PASSWORD)).thenReturn(null);
 
-    User resultWithUserNotExist = restapiService.authenticateUser(USERNAME, PASSWORD);
+    User resultWithUserNotExist = restapiService.authenticateUser("nonexistinguser", PASSWORD);
     assertNull(resultWithUserNotExist, "Non-existing user should not be authenticated");
 
-    when(jsonController.checkIfUserNameExists(USERNAME)).thenReturn(true);
-    when(jsonController.checkIfPasswordIsCorrect(USERNAME, PASSWORD)).thenReturn(false);
+    when(userRepository.authenticate(USERNAME, "wrongpassword")).thenReturn(null);
 
-    User resultWithIncorrectPassword = restapiService.authenticateUser(USERNAME, PASSWORD);
+    User resultWithIncorrectPassword = restapiService.authenticateUser(USERNAME, "wrongpassword");
     assertNull(
         resultWithIncorrectPassword, "User should not be authenticated with incorrect password");
   }
@@ -139,11 +195,9 @@ public class RestapiServiceTest {
     credentials.put("price", "100.00");
 
     User user = new User(username, "password");
-    when(jsonController.getUser(username)).thenReturn(user);
-    doNothing().when(expenseService).addExpenseForUser(any(User.class), any(Expense.class));
-    doNothing().when(jsonController).saveNewUserToJson(any(User.class));
+    when(expenseRepository.addExpense(eq(username), any(Expense.class))).thenReturn(user);
 
-    User result = restapiService.createNewExpense(username, credentials);
+    User result = restapiService.createNewExpense(username, credentials).join();
     assertNotNull(result);
 
     credentials.put("newCategory", "Groceries");
@@ -161,6 +215,51 @@ public class RestapiServiceTest {
         NumberFormatException.class, () -> restapiService.createNewExpense(username, credentials));
   }
 
+  /**
+   * Test that an error of the store while adding an expense on the I/O threads completes the
+   * future as it would be thrown by the repository itself.
+   *
+   * @throws IOException if there's an issue with expense creation.
+   */
+  @Test
+  void createNewExpense_StoreFailure_ThrowsIoException() throws IOException {
+    when(expenseRepository.addExpense(eq(USERNAME), any(Expense.class)))
+        .thenThrow(new IOException("Disk is full"));
+    Map<String, String> credentials = createExpenseCredentials("Groceries", null, "100.00");
+    assertTrue(
+        failureOf(restapiService.createNewExpense(USERNAME, credentials)) instanceof IOException);
+
+    when(expenseRepository.addExpense(eq(USERNAME), any(Expense.class))).thenReturn(null);
+    assertTrue(
+        failureOf(restapiService.createNewExpense(USERNAME, credentials))
+            instanceof IllegalArgumentException);
+  }
+
+  /**
+   * Test that a queued expense is acknowledged without the changed user, that a later lookup of the
+   * user waits for it, and that an expense for an unknown user is still rejected.
+   *
+   * @throws IOException if there's an issue with expense creation.
+   */
+  @Test
+  void createNewExpense_Queued_ReturnsNull() throws IOException {
+    useDurability(Durability.QUEUED);
+    Map<String, String> credentials = createExpenseCredentials("Groceries", null, "100.00");
+    when(userRepository.existsUser(USERNAME)).thenReturn(true);
+    mockAddExpense();
+    when(userRepository.findUser(USERNAME)).thenReturn(testUser);
+    assertNull(restapiService.createNewExpense(USERNAME, credentials).join());
+    assertEquals(testUser, restapiService.getUserByUsername(USERNAME));
+    InOrder order = inOrder(expenseRepository, userRepository);
+    order.verify(expenseRepository).addExpense(eq(USERNAME), any(Expense.class));
+    order.verify(userRepository).findUser(USERNAME);
+
+    when(userRepository.existsUser("unknown")).thenReturn(false);
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> restapiService.createNewExpense("unknown", credentials));
+  }
+
   /**
    * Test the retrieval of all users from JSON storage.
    *
@@ -171,7 +270,7 @@ public class RestapiServiceTest {
     List<User> expectedUsers =
         Arrays.asList(new User("user", "password1"), new User("user", "password2"));
 
-    when(jsonController.readUsersFromJson()).thenReturn(expectedUsers);
+    when(userRepository.findAllUsers()).thenReturn(expectedUsers);
 
     List<User> result = restapiService.getAllUsers();
 
@@ -180,7 +279,7 @@ public class RestapiServiceTest {
         expectedUsers.size(), result.size(), "The number of users should match the expected size.");
     assertEquals(expectedUsers, result, "The returned user list should match the expected list.");
 
-    verify(jsonController).readUsersFromJson();
+    verify(userRepository).findAllUsers();
   }
 
   /**
@@ -190,8 +289,49 @@ public class RestapiServiceTest {
    */
   @Test
   void testSetFilePath() throws IOException {
+    when(userRepository.isNamedByFile()).thenReturn(true);
     restapiService.setFilePath(TEST_FILE_PATH);
-    verify(jsonController).setFilePath(TEST_FILE_PATH);
+    verify(userRepository).setStoreName(TEST_FILE_PATH);
+  }
+
+  /**
+   * Test that a file path is not passed on to a store that is not named by a file, such as the SQL
+   * store, which keeps its database.
+   *
+   * @throws IOException if there's an issue with setting the file path.
+   */
+  @Test
+  void testSetFilePathKeepsDatabase() throws IOException {
+    when(userRepository.isNamedByFile()).thenReturn(false);
+    restapiService.setFilePath("user.json");
+    verify(userRepository, never()).setStoreName(any());
+  }
+
+  /**
+   * Test that the file path the UI sends at startup keeps the folder and users of the partitioned
+   * store.
+   *
+   * @throws IOException if there's an issue with the test store.
+   */
+  @Test
+  void testSetFilePathKeepsPartitionedStore() throws IOException {
+    PartitionedRepository partitioned = new PartitionedRepository("restapipartitiontest");
+    Path folder = partitioned.getStorePath();
+    try {
+      partitioned.createUser(new User(USERNAME, PASSWORD));
+      ReflectionTestUtils.setField(restapiService, "userRepository", partitioned);
+
+      restapiService.setFilePath("user.json");
+      assertEquals(folder, partitioned.getStorePath());
+      assertNotNull(restapiService.authenticateUser(USERNAME, PASSWORD));
+    } finally {
+      try (Stream<Path> paths = Files.walk(folder)) {
+        for (Path path : paths.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) {
+          Files.delete(path);
+        }
+      }
+      Files.deleteIfExists(folder.resolveSibling("restapipartitiontest.lock"));
+    }
   }
 
   /**
@@ -201,8 +341,7 @@ public class RestapiServiceTest {
    */
   @Test
   void testGetAllExpensesForUser() throws IOException {
-    when(jsonController.getUser(anyString())).thenReturn(testUser);
-    when(expenseService.getAllExpensesForUser(any(User.class)))
+    when(expenseRepository.findExpenses("username", null, null, null))
         .thenReturn(Collections.singletonList(testExpense));
 
     List<Expense> result = restapiService.getAllExpensesForUser("username");
@@ -218,18 +357,24 @@ public class RestapiServiceTest {
    */
   @Test
   void testDeleteExpenseForUser() throws IOException {
-    when(jsonController.getUser("username")).thenReturn(testUser);
-    when(expenseService.findExpense(testUser, testExpense)).thenReturn(testExpense);
-    when(expenseService.removeExpenseForUser(any(User.class), any(Expense.class)))
-        .thenReturn(Boolean.TRUE);
-    doNothing().when(jsonController).saveNewUserToJson(testUser);
-    User result = restapiService.deleteExpenseForUser("username", testExpense);
+    when(expenseRepository.removeExpense("username", testExpense)).thenReturn(testUser);
+    User result = restapiService.deleteExpenseForUser("username", testExpense).join();
     assertNotNull(result);
     assertEquals("username", result.getUsername());
-    verify(jsonController).getUser("username");
-    verify(expenseService).findExpense(testUser, testExpense);
-    verify(expenseService).removeExpenseForUser(testUser, testExpense);
-    verify(jsonController).saveNewUserToJson(testUser);
+    verify(expenseRepository).removeExpense("username", testExpense);
+  }
+
+  /**
+   * Test deleting an expense for a user by its id.
+   *
+   * @throws IOException if there's an issue with reading or writing data to JSON.
+   */
+  @Test
+  void testDeleteExpenseByIdForUser() throws IOException {
+    when(expenseRepository.removeExpenseById("username", 3)).thenReturn(testUser);
+    User result = restapiService.deleteExpenseByIdForUser("username", 3).join();
+    assertEquals(testUser, result);
+    verify(expenseRepository).removeExpenseById("username", 3);
   }
 
   /**
@@ -242,15 +387,13 @@ public class RestapiServiceTest {
     String username = testUser.getUsername();
     Set<String> expectedCategories = new HashSet<>(Arrays.asList("Food", "Travel", "Utilities"));
 
-    when(jsonController.getUser(username)).thenReturn(testUser);
-    when(expenseService.getCategoriesForUser(testUser)).thenReturn(expectedCategories);
+    when(expenseRepository.findCategories(username)).thenReturn(expectedCategories);
 
     Set<String> result = restapiService.getCategoriesForUser(username);
 
     assertNotNull(result);
     assertEquals(expectedCategories, result);
-    verify(jsonController).getUser(username);
-    verify(expenseService).getCategoriesForUser(testUser);
+    verify(expenseRepository).findCategories(username);
   }
 
   /** Test calculating the total expenses value for a list of expenses. */
@@ -271,6 +414,19 @@ public class RestapiServiceTest {
     verify(expenseService).calculateTotalExpenseValueForList(expenses);
   }
 
+  /** Test calculating the exact total of a list of expenses in minor units. */
+  @Test
+  void getTotalMinorUnitsOfList_Successful() {
+    List<Expense> expenses =
+        Arrays.asList(
+            new Expense(LocalDate.now(), "Groceries", 0.10, "Grocery shopping"),
+            new Expense(LocalDate.now(), "Utilities", 0.20, "Electricity bill"));
+    when(expenseService.calculateTotalMinorUnitsForList(expenses)).thenReturn(30L);
+
+    assertEquals(30L, restapiService.getTotalMinorUnitsOfList(expenses));
+    verify(expenseService).calculateTotalMinorUnitsForList(expenses);
+  }
+
   /**
    * Test filtering expenses for a user based on selected category and date range.
    *
@@ -290,10 +446,8 @@ public class RestapiServiceTest {
             new Expense(
                 start.plusDays(19).format(formatter), selectedCategory, 60.00, "Water Bill"));
 
-    User user = new User(username, "password");
-    when(jsonController.getUser(username)).thenReturn(user);
-    when(expenseService.filterExpensesForUser(user, selectedCategory, start, end))
-        .thenReturn(filteredExpenses);
+    when(expenseRepository.findExpenses(username, selectedCategory, start, end))
+        .thenReturn(Arrays.asList(filteredExpenses.get(1), filteredExpenses.get(0)));
 
     List<Expense> result =
         restapiService.filterExpensesForUser(username, selectedCategory, start, end);
@@ -301,8 +455,7 @@ public class RestapiServiceTest {
     assertNotNull(result);
     assertEquals(filteredExpenses.size(), result.size());
     assertEquals(filteredExpenses, result);
-    verify(jsonController).getUser(username);
-    verify(expenseService).filterExpensesForUser(user, selectedCategory, start, end);
+    verify(expenseRepository).findExpenses(username, selectedCategory, start, end);
   }
 
   /**
@@ -329,9 +482,9 @@ public class RestapiServiceTest {
   void createNewExpense_EmptyCategory_ValidDropDown_ReturnsUser() throws IOException {
     Map<String, String> credentials = createExpenseCredentials("", "Food", "100.00");
 
-    mockUserAndExpenseServiceBehavior();
+    mockAddExpense();
 
-    User result = restapiService.createNewExpense(testUser.getUsername(), credentials);
+    User result = restapiService.createNewExpense(testUser.getUsername(), credentials).join();
     assertNotNull(result);
   }
 
@@ -345,9 +498,9 @@ public class RestapiServiceTest {
   void createNewExpense_ValidCategory_EmptyDropDown_ReturnsUser() throws IOException {
     Map<String, String> credentials = createExpenseCredentials("Food", null, "100.00");
 
-    mockUserAndExpenseServiceBehavior();
+    mockAddExpense();
 
-    User result = restapiService.createNewExpense(testUser.getUsername(), credentials);
+    User result = restapiService.createNewExpense(testUser.getUsername(), credentials).join();
     assertNotNull(result);
   }
 
@@ -402,9 +555,58 @@ public class RestapiServiceTest {
   void createNewExpense_ValidPrice_ReturnsUser() throws IOException {
     Map<String, String> credentials = createExpenseCredentials("Groceries", null, "100.00");
 
-    mockUserAndExpenseServiceBehavior();
+    mockAddExpense();
 
-    User result = restapiService.createNewExpense(testUser.getUsername(), credentials);
+    User result = restapiService.createNewExpense(testUser.getUsername(), credentials).join();
     assertNotNull(result);
   }
+
+  /**
+   * Test creating a new expense for a user that does not exist, which should complete with an
+   * IllegalArgumentException without saving anything.
+   *
+   * @throws IOException if there's an issue with reading data from JSON.
+   */
+  @Test
+  void createNewExpense_UnknownUser_ThrowsIllegalArgumentException() throws IOException {
+    Map<String, String> credentials = createExpenseCredentials("Groceries", null, "100.00");
+    when(expenseRepository.addExpense(eq(USERNAME), any(Expense.class))).thenReturn(null);
+
+    assertTrue(
+        failureOf(restapiService.createNewExpense(USERNAME, credentials))
+            instanceof IllegalArgumentException,
+        "Expected IllegalArgumentException for an unknown user.");
+  }
+
+  /** Test retrieving the commit metrics of the store. */
+  @Test
+  void getCommitMetrics_Successful() {
+    when(userRepository.getMetrics()).thenReturn(new CommitMetrics().toMap());
+
+    Map<String, Number> metrics = restapiService.getCommitMetrics();
+
+    assertEquals(0L, metrics.get("commitCount"));
+    assertEquals(0L, metrics.get("saveCount"));
+  }
+
+  /** Test that the application is only ready once it accepts traffic. */
+  @Test
+  void isReady_FollowsReadinessState() {
+    when(availability.getReadinessState()).thenReturn(ReadinessState.REFUSING_TRAFFIC);
+    assertFalse(restapiService.isReady());
+
+    when(availability.getReadinessState()).thenReturn(ReadinessState.ACCEPTING_TRAFFIC);
+    assertTrue(restapiService.isReady());
+  }
+
+  /** Test retrieving the report of the warm-up of the store. */
+  @Test
+  void getWarmUpReport_Successful() {
+    when(storeWarmUp.getReport()).thenReturn(new WarmUpReport(2, 3, 100, 5).toMap());
+
+    Map<String, Number> report = restapiService.getWarmUpReport();
+
+    assertEquals(2L, report.get("users"));
+    assertEquals(3L, report.get("expenses"));
+  }
 }
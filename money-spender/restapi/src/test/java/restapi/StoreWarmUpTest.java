@@ -0,0 +1,79 @@
+package restapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+import persistence.UserRepository;
+import persistence.WarmUpReport;
+
+/** JUnit test class for {@link StoreWarmUp} class. */
+public class StoreWarmUpTest {
+
+  /**
+   * Test that an enabled warm-up loads the store with the given parallelism and keeps the report.
+   *
+   * @throws IOException if there's an issue with warming up the store.
+   */
+  @Test
+  void run_WarmsUpStore() throws IOException {
+    UserRepository userRepository = mock(UserRepository.class);
+    when(userRepository.keepsUsersInMemory()).thenReturn(true);
+    when(userRepository.warmUp(4)).thenReturn(new WarmUpReport(10, 200, 4096, 12));
+    StoreWarmUp storeWarmUp = new StoreWarmUp(userRepository, true, 4);
+    assertTrue(storeWarmUp.getReport().isEmpty());
+
+    storeWarmUp.run(null);
+
+    verify(userRepository).warmUp(4);
+    assertEquals(10L, storeWarmUp.getReport().get("users"));
+    assertEquals(200L, storeWarmUp.getReport().get("expenses"));
+    assertEquals(4096L, storeWarmUp.getReport().get("bytesRead"));
+  }
+
+  /**
+   * Test that a disabled warm-up does not touch the store.
+   *
+   * @throws IOException if there's an issue with warming up the store.
+   */
+  @Test
+  void run_DisabledDoesNothing() throws IOException {
+    UserRepository userRepository = mock(UserRepository.class);
+    StoreWarmUp storeWarmUp = new StoreWarmUp(userRepository, false, 0);
+
+    storeWarmUp.run(null);
+
+    verify(userRepository, never()).warmUp(anyInt());
+    assertTrue(storeWarmUp.getReport().isEmpty());
+  }
+
+  /**
+   * Test that a store that does not keep its users in memory is not warmed up.
+   *
+   * @throws IOException if there's an issue with warming up the store.
+   */
+  @Test
+  void run_StoreWithoutMemoryIsSkipped() throws IOException {
+    UserRepository userRepository = mock(UserRepository.class);
+    StoreWarmUp storeWarmUp = new StoreWarmUp(userRepository, true, 4);
+
+    storeWarmUp.run(null);
+
+    verify(userRepository, never()).warmUp(anyInt());
+    assertTrue(storeWarmUp.getReport().isEmpty());
+  }
+
+  /** Test that an enabled warm-up needs a positive parallelism. */
+  @Test
+  void constructor_InvalidParallelism() {
+    UserRepository userRepository = mock(UserRepository.class);
+    assertThrows(IllegalArgumentException.class, () -> new StoreWarmUp(userRepository, true, 0));
+  }
+}
@@ -227,7 +227,8 @@ public class ApiClient {
   }
 
   /**
-   * Adds an expense for a user via a POST request to a remote API.
+   * Adds an expense for a user via a POST request to a remote API. A server that only queues the
+   * change answers 202 without the user, which is then fetched once the change is applied.
    *
    * @param username The user's identifier.
    * @param expenseCredentials Key-value pairs representing the expense details.
@@ -254,6 +255,8 @@ public class ApiClient {
 
       if (response.statusCode() == HttpURLConnection.HTTP_OK) {
         return gson.fromJson(response.body(), User.class);
+      } else if (response.statusCode() == HttpURLConnection.HTTP_ACCEPTED) {
+        return getUserByUsername(username);
       } else if (response.statusCode() == HttpURLConnection.HTTP_BAD_REQUEST) {
         throw new IllegalArgumentException("Illegal input.");
       } else if (response.statusCode() == HttpURLConnection.HTTP_NOT_ACCEPTABLE) {
@@ -268,7 +271,8 @@ public class ApiClient {
   }
 
   /**
-   * Deletes an expense for a user by sending the expense data to the remote API.
+   * Deletes an expense for a user by sending the expense data to the remote API. A server that only
+   * queues the change answers without the user, which is then fetched once the change is applied.
    *
    * @param username The username to the user for whom the expense is deleted.
    * @param expense The expense to be deleted.
@@ -288,7 +292,8 @@ public class ApiClient {
           httpClient.send(request, HttpResponse.BodyHandlers.ofString());
 
       if (response.statusCode() == HttpURLConnection.HTTP_OK) {
-        return gson.fromJson(response.body(), User.class);
+        User user = gson.fromJson(response.body(), User.class);
+        return user != null ? user : getUserByUsername(username);
       } else {
         return null;
       }